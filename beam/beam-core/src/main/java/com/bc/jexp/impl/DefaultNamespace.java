@@ -57,7 +57,10 @@ import org.apache.commons.math.util.FastMath;
  */
 public final class DefaultNamespace extends NamespaceImpl {
 
-    private static final double EPS = 1e-6;
+    /**
+     * The tolerance used by the two-argument forms of {@code feq} and {@code fneq}.
+     */
+    public static final double EPS = 1e-6;
 
     public DefaultNamespace() {
         this(null);
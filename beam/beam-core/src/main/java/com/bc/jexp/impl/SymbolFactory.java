@@ -38,7 +38,7 @@ public final class SymbolFactory {
      * @return a symbol representing the constant, never <code>null</code>
      */
     public static Symbol createConstant(final String name, final boolean value) {
-        return new VariableB(name, value);
+        return new ConstantB(name, value);
     }
 
     /**
@@ -48,7 +48,7 @@ public final class SymbolFactory {
      * @return a symbol representing the constant, never <code>null</code>
      */
     public static Symbol createConstant(final String name, final int value) {
-        return new VariableI(name, value);
+        return new ConstantI(name, value);
     }
 
     /**
@@ -58,7 +58,7 @@ public final class SymbolFactory {
      * @return a symbol representing the constant, never <code>null</code>
      */
     public static Symbol createConstant(final String name, final double value) {
-        return new VariableD(name, value);
+        return new ConstantD(name, value);
     }
 
     /**
@@ -91,6 +91,57 @@ public final class SymbolFactory {
         return new VariableD(name, value);
     }
 
+    /**
+     * Tests whether a symbol is a constant created by this factory, whose value never changes.
+     * @param symbol the symbol
+     * @return true if the symbol was created by one of the <code>createConstant</code> methods
+     */
+    public static boolean isConstant(final Symbol symbol) {
+        return symbol instanceof ConstantB || symbol instanceof ConstantI || symbol instanceof ConstantD;
+    }
+
+    private static final class ConstantB extends AbstractSymbol.B {
+
+        private final boolean _value;
+
+        private ConstantB(final String name, final boolean value) {
+            super(name);
+            _value = value;
+        }
+
+        public boolean evalB(final EvalEnv env) {
+            return _value;
+        }
+    }
+
+    private static final class ConstantI extends AbstractSymbol.I {
+
+        private final int _value;
+
+        private ConstantI(final String name, final int value) {
+            super(name);
+            _value = value;
+        }
+
+        public int evalI(final EvalEnv env) {
+            return _value;
+        }
+    }
+
+    private static final class ConstantD extends AbstractSymbol.D {
+
+        private final double _value;
+
+        private ConstantD(final String name, final double value) {
+            super(name);
+            _value = value;
+        }
+
+        public double evalD(final EvalEnv env) {
+            return _value;
+        }
+    }
+
     private static final class VariableB extends AbstractSymbol.B implements Variable {
 
         private boolean _value;
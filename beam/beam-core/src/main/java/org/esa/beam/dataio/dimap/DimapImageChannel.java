@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.dimap;
+
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+/**
+ * Positional access to the raw data of a BEAM-DIMAP image (.img) file through a {@link FileChannel}.
+ * <p/>
+ * Reads and writes are done with positional channel reads and writes of direct byte buffers, so several
+ * threads may access different regions of one file and different files are accessed concurrently without
+ * a shared lock. The direct buffers are pooled per file and released when the file is closed.
+ * <p/>
+ * With the system property {@code beam.dimap.mapImageFiles=true}, files opened read-only are memory mapped
+ * and the samples are bulk copied from the mapping into the {@link ProductData} array. The mapping is
+ * released when the file is closed. While it is open, a mapped file cannot be deleted or replaced on Windows,
+ * and truncating it, e.g. by writing the product again, makes reads fail.
+ * <p/>
+ * As for ENVI files written by BEAM, the samples are stored in big endian byte order.
+ */
+final class DimapImageChannel {
+
+    private static final boolean MAP_IMAGE_FILES =
+            Boolean.parseBoolean(System.getProperty("beam.dimap.mapImageFiles", "false"));
+    private static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int elemSize;
+    private final ConcurrentLinkedQueue<ByteBuffer> idleBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    // the mapping must not be read once it has been unmapped
+    private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+    private final boolean mapped;
+    private MappedByteBuffer mappedBuffer;
+    private volatile boolean closed;
+
+    private DimapImageChannel(File file, int dataType, boolean readOnly, boolean map) throws IOException {
+        this.file = file;
+        this.elemSize = ProductData.getElemSize(dataType);
+        this.randomAccessFile = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        this.channel = randomAccessFile.getChannel();
+        if (readOnly && map && channel.size() <= Integer.MAX_VALUE) {
+            try {
+                mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mappedBuffer.order(ByteOrder.BIG_ENDIAN);
+            } catch (IOException e) {
+                mappedBuffer = null;   // fall back to positional reads
+            }
+        }
+        mapped = mappedBuffer != null;
+    }
+
+    /**
+     * Opens an existing image file for reading.
+     *
+     * @param file     the image file
+     * @param dataType the product data type of the samples
+     * @return the channel
+     * @throws IOException if the file cannot be opened
+     */
+    static DimapImageChannel openForReading(File file, int dataType) throws IOException {
+        return openForReading(file, dataType, MAP_IMAGE_FILES);
+    }
+
+    /**
+     * Opens an existing image file for reading.
+     *
+     * @param file     the image file
+     * @param dataType the product data type of the samples
+     * @param map      if true, the file is read through a memory mapping if possible
+     * @return the channel
+     * @throws IOException if the file cannot be opened
+     */
+    static DimapImageChannel openForReading(File file, int dataType, boolean map) throws IOException {
+        return new DimapImageChannel(file, dataType, true, map);
+    }
+
+    /**
+     * Opens an existing image file for writing.
+     *
+     * @param file     the image file, already created with its final size
+     * @param dataType the product data type of the samples
+     * @return the channel
+     * @throws IOException if the file cannot be opened
+     */
+    static DimapImageChannel openForWriting(File file, int dataType) throws IOException {
+        return new DimapImageChannel(file, dataType, false, false);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Writes samples at the given sample position of the file.
+     *
+     * @param data     the samples to write
+     * @param dataPos  the index of the first sample in {@code data}
+     * @param numElems the number of samples to write
+     * @param filePos  the index of the first sample in the file
+     * @throws IOException if an I/O error occurs
+     */
+    void write(ProductData data, int dataPos, int numElems, long filePos) throws IOException {
+        final Object elems = data.getElems();
+        final int maxElems = MAX_BUFFER_SIZE / elemSize;
+        while (numElems > 0) {
+            final int n = Math.min(numElems, maxElems);
+            final ByteBuffer buffer = acquireBuffer(n * elemSize);
+            try {
+                putElems(buffer, elems, dataPos, n);
+                buffer.flip();
+                long position = filePos * elemSize;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            } finally {
+                releaseBuffer(buffer);
+            }
+            dataPos += n;
+            filePos += n;
+            numElems -= n;
+        }
+    }
+
+    /**
+     * Reads samples from the given sample position of the file.
+     *
+     * @param data     the buffer receiving the samples
+     * @param dataPos  the index of the first sample in {@code data}
+     * @param numElems the number of samples to read
+     * @param filePos  the index of the first sample in the file
+     * @throws IOException if an I/O error occurs
+     */
+    void read(ProductData data, int dataPos, int numElems, long filePos) throws IOException {
+        final Object elems = data.getElems();
+        if (mapped) {
+            mappingLock.readLock().lock();
+            try {
+                if (mappedBuffer == null) {
+                    throw new IOException("Image file closed " + file.getPath());
+                }
+                final ByteBuffer buffer = mappedBuffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+                buffer.position((int) (filePos * elemSize));
+                buffer.limit(buffer.position() + numElems * elemSize);
+                getElems(buffer, elems, dataPos, numElems);
+                return;
+            } finally {
+                mappingLock.readLock().unlock();
+            }
+        }
+
+        final int maxElems = MAX_BUFFER_SIZE / elemSize;
+        while (numElems > 0) {
+            final int n = Math.min(numElems, maxElems);
+            final ByteBuffer buffer = acquireBuffer(n * elemSize);
+            try {
+                long position = filePos * elemSize;
+                while (buffer.hasRemaining()) {
+                    final int count = channel.read(buffer, position);
+                    if (count < 0) {
+                        throw new IOException("Unexpected end of file " + file.getPath());
+                    }
+                    position += count;
+                }
+                buffer.flip();
+                getElems(buffer, elems, dataPos, n);
+            } finally {
+                releaseBuffer(buffer);
+            }
+            dataPos += n;
+            filePos += n;
+            numElems -= n;
+        }
+    }
+
+    /**
+     * Closes the file and releases the mapping and the direct buffers at once, so that the file
+     * can be deleted or overwritten afterwards.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+        closed = true;
+        if (mapped) {
+            mappingLock.writeLock().lock();
+            try {
+                if (mappedBuffer != null) {
+                    release(mappedBuffer);
+                    mappedBuffer = null;
+                }
+            } finally {
+                mappingLock.writeLock().unlock();
+            }
+        }
+        releaseIdleBuffers();
+        randomAccessFile.close();
+    }
+
+    private ByteBuffer acquireBuffer(int size) {
+        ByteBuffer buffer = idleBuffers.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            if (buffer != null) {
+                release(buffer);
+            }
+            buffer = ByteBuffer.allocateDirect(Math.max(size, MIN_BUFFER_SIZE)).order(ByteOrder.BIG_ENDIAN);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        idleBuffers.offer(buffer);
+        if (closed) {
+            releaseIdleBuffers();
+        }
+    }
+
+    private void releaseIdleBuffers() {
+        ByteBuffer buffer;
+        while ((buffer = idleBuffers.poll()) != null) {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Releases a direct or mapped buffer at once instead of when it is garbage collected. The buffer
+     * must no longer be in use. If the JVM does not allow it, the buffer is released when it is garbage collected.
+     */
+    private void release(ByteBuffer buffer) {
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            BeamLogManager.getSystemLogger().log(Level.FINEST, "Buffer of image file NOT released: " + file, e);
+        }
+    }
+
+    private static void putElems(ByteBuffer buffer, Object elems, int pos, int n) {
+        if (elems instanceof byte[]) {
+            buffer.put((byte[]) elems, pos, n);
+        } else if (elems instanceof short[]) {
+            buffer.asShortBuffer().put((short[]) elems, pos, n);
+            buffer.position(buffer.position() + n * 2);
+        } else if (elems instanceof int[]) {
+            buffer.asIntBuffer().put((int[]) elems, pos, n);
+            buffer.position(buffer.position() + n * 4);
+        } else if (elems instanceof float[]) {
+            buffer.asFloatBuffer().put((float[]) elems, pos, n);
+            buffer.position(buffer.position() + n * 4);
+        } else if (elems instanceof double[]) {
+            buffer.asDoubleBuffer().put((double[]) elems, pos, n);
+            buffer.position(buffer.position() + n * 8);
+        } else {
+            throw new IllegalArgumentException("Unsupported sample array " + elems);
+        }
+    }
+
+    private static void getElems(ByteBuffer buffer, Object elems, int pos, int n) {
+        if (elems instanceof byte[]) {
+            buffer.get((byte[]) elems, pos, n);
+        } else if (elems instanceof short[]) {
+            buffer.asShortBuffer().get((short[]) elems, pos, n);
+        } else if (elems instanceof int[]) {
+            buffer.asIntBuffer().get((int[]) elems, pos, n);
+        } else if (elems instanceof float[]) {
+            buffer.asFloatBuffer().get((float[]) elems, pos, n);
+        } else if (elems instanceof double[]) {
+            buffer.asDoubleBuffer().get((double[]) elems, pos, n);
+        } else {
+            throw new IllegalArgumentException("Unsupported sample array " + elems);
+        }
+    }
+}
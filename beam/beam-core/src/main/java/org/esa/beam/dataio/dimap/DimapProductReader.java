@@ -40,14 +40,12 @@ import org.esa.beam.util.Debug;
 import org.esa.beam.util.FeatureUtils;
 import org.esa.beam.util.io.FileUtils;
 import org.esa.beam.util.logging.BeamLogManager;
-import org.esa.nest.dataio.FileImageInputStreamExtImpl;
 import org.jdom.Document;
 import org.jdom.input.DOMBuilder;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import javax.imageio.stream.FileImageInputStream;
-import javax.imageio.stream.ImageInputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.*;
@@ -72,7 +70,7 @@ public class DimapProductReader extends AbstractProductReader {
 
     private File inputDir;
     private File inputFile;
-    private Map<Band, ImageInputStream> bandInputStreams;
+    private Map<Band, DimapImageChannel> bandInputChannels;
 
     private int sourceRasterWidth;
     private int sourceRasterHeight;
@@ -304,8 +302,8 @@ public class DimapProductReader extends AbstractProductReader {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
 
         final File dataFile = bandDataFiles.get(destBand);
-        final ImageInputStream inputStream = getOrCreateImageInputStream(destBand, dataFile);
-        if (inputStream == null) {
+        final DimapImageChannel inputChannel = getOrCreateImageInputChannel(destBand, dataFile);
+        if (inputChannel == null) {
             return;
         }
 
@@ -314,26 +312,29 @@ public class DimapProductReader extends AbstractProductReader {
         //pm.beginTask("Reading band '" + destBand.getName() + "'...", sourceMaxY - sourceMinY);
         // For each scan in the data source
         try {
-            synchronized (inputStream) {
-                for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
-                    if (pm.isCanceled()) {
-                        break;
-                    }
-                    final long sourcePosY = (long) sourceY * sourceRasterWidth;
-                    if (sourceStepX == 1) {
-                        long inputPos = sourcePosY + sourceMinX;
-                        destBuffer.readFrom(destPos, destWidth, inputStream, inputPos);
-                        destPos += destWidth;
-                    } else {
-                        for (int sourceX = sourceMinX; sourceX <= sourceMaxX; sourceX += sourceStepX) {
-                            long inputPos = sourcePosY + sourceX;
-                            destBuffer.readFrom(destPos, 1, inputStream, inputPos);
-                            destPos++;
-                        }
+            if (sourceStepX == 1 && sourceStepY == 1 && sourceWidth == sourceRasterWidth) {
+                // full width rows are contiguous in the image file
+                inputChannel.read(destBuffer, 0, destWidth * destHeight, (long) sourceMinY * sourceRasterWidth);
+                return;
+            }
+            for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
+                if (pm.isCanceled()) {
+                    break;
+                }
+                final long sourcePosY = (long) sourceY * sourceRasterWidth;
+                if (sourceStepX == 1) {
+                    long inputPos = sourcePosY + sourceMinX;
+                    inputChannel.read(destBuffer, destPos, destWidth, inputPos);
+                    destPos += destWidth;
+                } else {
+                    for (int sourceX = sourceMinX; sourceX <= sourceMaxX; sourceX += sourceStepX) {
+                        long inputPos = sourcePosY + sourceX;
+                        inputChannel.read(destBuffer, destPos, 1, inputPos);
+                        destPos++;
                     }
                 }
-                //pm.worked(1);
             }
+            //pm.worked(1);
         } finally {
             pm.done();
         }
@@ -352,43 +353,41 @@ public class DimapProductReader extends AbstractProductReader {
      */
     @Override
     public void close() throws IOException {
-        if (bandInputStreams == null) {
-            return;
-        }
-        for (ImageInputStream imageInputStream : bandInputStreams.values()) {
-            (imageInputStream).close();
+        synchronized (this) {
+            if (bandInputChannels == null) {
+                return;
+            }
+            for (DimapImageChannel inputChannel : bandInputChannels.values()) {
+                inputChannel.close();
+            }
+            bandInputChannels.clear();
+            bandInputChannels = null;
         }
-        bandInputStreams.clear();
-        bandInputStreams = null;
         super.close();
     }
 
-    private ImageInputStream getOrCreateImageInputStream(Band band, File file) throws IOException {
-        ImageInputStream inputStream = getImageInputStream(band);
-        if (inputStream == null) {
+    private synchronized DimapImageChannel getOrCreateImageInputChannel(Band band, File file) throws IOException {
+        DimapImageChannel inputChannel = null;
+        if (bandInputChannels != null) {
+            inputChannel = bandInputChannels.get(band);
+        }
+        if (inputChannel == null) {
             try {
-                inputStream = FileImageInputStreamExtImpl.createInputStream(file);
+                inputChannel = DimapImageChannel.openForReading(file, band.getDataType());
             } catch (IOException e) {
                 BeamLogManager.getSystemLogger().log(Level.WARNING,
                                                      "DimapProductReader: Unable to read file '" + file + "' referenced by '" + band.getName() + "'.",
                                                      e);
             }
-            if (inputStream == null) {
+            if (inputChannel == null) {
                 return null;
             }
-            if (bandInputStreams == null) {
-                bandInputStreams = new Hashtable<Band, ImageInputStream>();
+            if (bandInputChannels == null) {
+                bandInputChannels = new Hashtable<Band, DimapImageChannel>();
             }
-            bandInputStreams.put(band, inputStream);
-        }
-        return inputStream;
-    }
-
-    private ImageInputStream getImageInputStream(Band band) {
-        if (bandInputStreams != null) {
-            return bandInputStreams.get(band);
+            bandInputChannels.put(band, inputChannel);
         }
-        return null;
+        return inputChannel;
     }
 
     private void readVectorData(final CoordinateReferenceSystem modelCrs, final boolean onlyGCPs) throws IOException {
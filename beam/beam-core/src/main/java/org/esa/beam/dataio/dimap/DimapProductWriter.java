@@ -37,7 +37,6 @@ import org.esa.beam.util.io.FileUtils;
 import org.esa.beam.util.logging.BeamLogManager;
 import org.esa.nest.dataio.FileImageOutputStreamExtImpl;
 
-import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -59,7 +58,7 @@ public class DimapProductWriter extends AbstractProductWriter {
 
     private File _outputDir;
     private File _outputFile;
-    private Map<Band, ImageOutputStream> _bandOutputStreams;
+    private Map<Band, DimapImageChannel> _bandOutputChannels;
     private File _dataOutputDir;
     private boolean _incremental = true;
 
@@ -81,9 +80,13 @@ public class DimapProductWriter extends AbstractProductWriter {
 
     /**
      * Returns all band output streams opened so far.
+     *
+     * @return always <code>null</code>, band data is written through file channels and no output streams are opened
+     * @deprecated band data is no longer written through image output streams
      */
+    @Deprecated
     public Map<Band, ImageOutputStream> getBandOutputStreams() {
-        return _bandOutputStreams;
+        return null;
     }
 
     /**
@@ -166,18 +169,19 @@ public class DimapProductWriter extends AbstractProductWriter {
         final long sourceBandHeight = sourceBand.getSceneRasterHeight();
         checkSourceRegionInsideBandRegion(sourceWidth, sourceBandWidth, sourceHeight, sourceBandHeight, sourceOffsetX,
                                           sourceOffsetY);
-        final ImageOutputStream outputStream = getOrCreateImageOutputStream(sourceBand);
+        final DimapImageChannel outputChannel = getOrCreateImageOutputChannel(sourceBand);
         long outputPos = (long) sourceOffsetY * sourceBandWidth + (long) sourceOffsetX;
         //pm.beginTask("Writing band '" + sourceBand.getName() + "'...", sourceHeight);
         try {
             final int sourceSize = sourceHeight * sourceWidth;
-            for (int sourcePos = 0; sourcePos < sourceSize; sourcePos += sourceWidth) {
-                sourceBuffer.writeTo(sourcePos, sourceWidth, outputStream, outputPos);
-                outputPos += sourceBandWidth;
-                //pm.worked(1);
-                //if (pm.isCanceled()) {
-                //    break;
-                //}
+            if (sourceWidth == sourceBandWidth) {
+                // full width rows are contiguous in the image file
+                outputChannel.write(sourceBuffer, 0, sourceSize, outputPos);
+            } else {
+                for (int sourcePos = 0; sourcePos < sourceSize; sourcePos += sourceWidth) {
+                    outputChannel.write(sourceBuffer, sourcePos, sourceWidth, outputPos);
+                    outputPos += sourceBandWidth;
+                }
             }
         } finally {
             pm.done();
@@ -222,12 +226,7 @@ public class DimapProductWriter extends AbstractProductWriter {
      */
     @Override
     public synchronized void flush() throws IOException {
-        if (_bandOutputStreams == null) {
-            return;
-        }
-        for (ImageOutputStream imageOutputStream : _bandOutputStreams.values()) {
-            imageOutputStream.flush();
-        }
+        // band data is written directly to the image file channels, there is nothing to flush
     }
 
     /**
@@ -237,14 +236,14 @@ public class DimapProductWriter extends AbstractProductWriter {
      */
     @Override
     public synchronized void close() throws IOException {
-        if (_bandOutputStreams == null) {
+        if (_bandOutputChannels == null) {
             return;
         }
-        for (ImageOutputStream imageOutputStream : _bandOutputStreams.values()) {
-            (imageOutputStream).close();
+        for (DimapImageChannel outputChannel : _bandOutputChannels.values()) {
+            outputChannel.close();
         }
-        _bandOutputStreams.clear();
-        _bandOutputStreams = null;
+        _bandOutputChannels.clear();
+        _bandOutputChannels = null;
     }
 
     private void writeDimapDocument() throws IOException {
@@ -278,27 +277,23 @@ public class DimapProductWriter extends AbstractProductWriter {
     }
 
     /*
-     * Returns the data output stream associated with the given <code>Band</code>. If no stream exists, one is created
+     * Returns the data output channel associated with the given <code>Band</code>. If no channel exists, one is created
      * and fed into the hash map
      */
 
-    private synchronized ImageOutputStream getOrCreateImageOutputStream(Band band) throws IOException {
-        ImageOutputStream outputStream = getImageOutputStream(band);
-        if (outputStream == null) {
-            outputStream = createImageOutputStream(band);
-            if (_bandOutputStreams == null) {
-                _bandOutputStreams = new HashMap<Band, ImageOutputStream>();
-            }
-            _bandOutputStreams.put(band, outputStream);
+    private synchronized DimapImageChannel getOrCreateImageOutputChannel(Band band) throws IOException {
+        DimapImageChannel outputChannel = null;
+        if (_bandOutputChannels != null) {
+            outputChannel = _bandOutputChannels.get(band);
         }
-        return outputStream;
-    }
-
-    private synchronized ImageOutputStream getImageOutputStream(Band band) {
-        if (_bandOutputStreams != null) {
-            return _bandOutputStreams.get(band);
+        if (outputChannel == null) {
+            outputChannel = DimapImageChannel.openForWriting(getValidImageFile(band), band.getDataType());
+            if (_bandOutputChannels == null) {
+                _bandOutputChannels = new HashMap<Band, DimapImageChannel>();
+            }
+            _bandOutputChannels.put(band, outputChannel);
         }
-        return null;
+        return outputChannel;
     }
 
     /*
@@ -349,10 +344,6 @@ public class DimapProductWriter extends AbstractProductWriter {
                                       tiePointGrid.getRasterHeight());
     }
 
-    private ImageOutputStream createImageOutputStream(Band band) throws IOException {
-        return FileImageOutputStreamExtImpl.createOutputStream(getValidImageFile(band));
-    }
-
     private ImageOutputStream createImageOutputStream(TiePointGrid tiePointGrid) throws IOException {
         return FileImageOutputStreamExtImpl.createOutputStream(getValidImageFile(tiePointGrid));
     }
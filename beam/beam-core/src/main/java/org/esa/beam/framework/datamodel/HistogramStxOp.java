@@ -44,15 +44,90 @@ final class HistogramStxOp extends StxOp {
         histogram = StxFactory.createHistogram(binCount, minimum, maximum, logHistogram, intHistogram);
     }
 
+    private HistogramStxOp(Histogram histogram, Scaling scaling) {
+        super("Histogram");
+        this.histogram = histogram;
+        this.scaling = scaling;
+    }
+
     public Histogram getHistogram() {
         return histogram;
     }
 
+    /**
+     * Accumulates a value several times.
+     *
+     * @param value The (unscaled) value.
+     * @param count The number of times.
+     */
+    void accumulateValue(double value, long count) {
+        final int[] bins = histogram.getBins(0);
+        final double lowValue = histogram.getLowValue(0);
+        final double highValue = histogram.getHighValue(0);
+        final double scaledValue = scaling.scale(value);
+        if (scaledValue >= lowValue && scaledValue <= highValue) {
+            int i = (int) ((scaledValue - lowValue) / ((highValue - lowValue) / bins.length));
+            if (i == bins.length) {
+                i--;
+            }
+            bins[i] += (int) count;
+        }
+    }
+
+    /**
+     * Accumulates values uniformly distributed over a range, splitting the count over the bins
+     * covered by the range.
+     *
+     * @param lowerValue The (unscaled) lower bound of the values.
+     * @param upperValue The (unscaled) upper bound of the values.
+     * @param count      The number of values.
+     */
+    void accumulateRange(double lowerValue, double upperValue, long count) {
+        final double scaledLower = scaling.scale(lowerValue);
+        final double scaledUpper = scaling.scale(upperValue);
+        if (!(scaledUpper > scaledLower) || Double.isInfinite(scaledLower) || Double.isInfinite(scaledUpper)) {
+            accumulateValue(upperValue, count);
+            return;
+        }
+        final int[] bins = histogram.getBins(0);
+        final double lowValue = histogram.getLowValue(0);
+        final double highValue = histogram.getHighValue(0);
+        final double binWidth = (highValue - lowValue) / bins.length;
+        final int firstBin = Math.max(0, (int) Math.floor((scaledLower - lowValue) / binWidth));
+        final int lastBin = Math.min(bins.length - 1, (int) Math.floor((scaledUpper - lowValue) / binWidth));
+        // rounding the cumulative counts keeps the total count
+        final double rangeWidth = scaledUpper - scaledLower;
+        long accumulatedCount = 0;
+        for (int i = firstBin; i <= lastBin; i++) {
+            final double binUpper = Math.min(lowValue + (i + 1) * binWidth, scaledUpper);
+            final long cumulativeCount = Math.round(count * ((binUpper - scaledLower) / rangeWidth));
+            bins[i] += (int) (cumulativeCount - accumulatedCount);
+            accumulatedCount = cumulativeCount;
+        }
+    }
+
+    @Override
+    HistogramStxOp createPartial() {
+        return new HistogramStxOp(new Histogram(histogram.getNumBins(0),
+                                                histogram.getLowValue(0),
+                                                histogram.getHighValue(0),
+                                                1), scaling);
+    }
+
+    @Override
+    void merge(StxOp partial) {
+        final int[] bins = histogram.getBins(0);
+        final int[] partialBins = ((HistogramStxOp) partial).histogram.getBins(0);
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += partialBins[i];
+        }
+    }
+
     @Override
     public void accumulateData(UnpackedImageData dataPixels,
                                UnpackedImageData maskPixels) {
 
-        // Do not change this code block without doing the same changes in SummaryStxOp.java
+        // Do not change this code block without doing the same changes in SummaryStxOp.java and SketchStxOp.java
         // {{ Block Start
 
         final DoubleList values = StxOp.asDoubleList(dataPixels);
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2013 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.datamodel;
+
+/**
+ * A streaming sketch of the distribution of sample values with a bounded relative error.
+ * <p/>
+ * Values are counted in logarithmically spaced buckets, so the sketch needs no value range in advance
+ * and can be filled in the same pass which determines minimum and maximum. Every value is represented
+ * by a bucket value within the relative accuracy of the sketch. The bucket index is derived from the
+ * exponent and the linearly interpolated mantissa of a value instead of a logarithm, which keeps the
+ * cost per value close to that of the summary statistics. Sketches of disjoint sets of values can be merged.
+ */
+final class QuantileSketch {
+
+    static final double DEFAULT_RELATIVE_ACCURACY = 0.005;
+
+    private final double relativeAccuracy;
+    private final double multiplier;
+    private final Buckets positiveBuckets;
+    private final Buckets negativeBuckets;
+    private long zeroCount;
+
+    QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy The maximum relative difference of a value and the value representing it.
+     */
+    QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0.0 || relativeAccuracy >= 1.0) {
+            throw new IllegalArgumentException("relativeAccuracy must be in the range (0, 1)");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        // the upper bound of a bucket is at most gamma = (1 + a) / (1 - a) times its lower bound
+        this.multiplier = (1.0 - relativeAccuracy) / (2.0 * relativeAccuracy);
+        this.positiveBuckets = new Buckets();
+        this.negativeBuckets = new Buckets();
+    }
+
+    double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    QuantileSketch createEmpty() {
+        return new QuantileSketch(relativeAccuracy);
+    }
+
+    /**
+     * Adds a value. NaN and infinite values are ignored, values smaller in magnitude than
+     * {@link Double#MIN_NORMAL} are counted as zero.
+     *
+     * @param value The value.
+     */
+    void add(double value) {
+        if (value >= Double.MIN_NORMAL) {
+            if (value < Double.POSITIVE_INFINITY) {
+                positiveBuckets.add(getIndex(value), 1);
+            }
+        } else if (value <= -Double.MIN_NORMAL) {
+            if (value > Double.NEGATIVE_INFINITY) {
+                negativeBuckets.add(getIndex(-value), 1);
+            }
+        } else if (value == value) {
+            zeroCount++;
+        }
+    }
+
+    void merge(QuantileSketch other) {
+        if (other.multiplier != multiplier) {
+            throw new IllegalArgumentException("sketches have different accuracies");
+        }
+        positiveBuckets.merge(other.positiveBuckets);
+        negativeBuckets.merge(other.negativeBuckets);
+        zeroCount += other.zeroCount;
+    }
+
+    long getCount() {
+        return positiveBuckets.count + negativeBuckets.count + zeroCount;
+    }
+
+    /**
+     * Gets the value at a quantile.
+     *
+     * @param quantile The quantile in the range 0 to 1.
+     * @return The value, NaN if the sketch is empty.
+     */
+    double getQuantile(double quantile) {
+        final long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final long rank = (long) (Math.max(0.0, Math.min(1.0, quantile)) * (count - 1));
+        long n = 0;
+        for (int i = negativeBuckets.counts.length - 1; i >= 0; i--) {
+            n += negativeBuckets.counts[i];
+            if (n > rank) {
+                return -getValue(negativeBuckets.minIndex + i);
+            }
+        }
+        n += zeroCount;
+        if (n > rank) {
+            return 0.0;
+        }
+        for (int i = 0; i < positiveBuckets.counts.length; i++) {
+            n += positiveBuckets.counts[i];
+            if (n > rank) {
+                return getValue(positiveBuckets.minIndex + i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Counts the values of the sketch into the bins of a histogram. The values of a bucket are spread
+     * uniformly over the range of the bucket limited to the exact minimum and maximum of the values.
+     * Integer values are counted at the value representing a bucket rounded to the next integer.
+     *
+     * @param histogramOp The histogram.
+     * @param minimum     The minimum of the values.
+     * @param maximum     The maximum of the values.
+     * @param intValues   If the values are integers.
+     */
+    void accumulateTo(HistogramStxOp histogramOp, double minimum, double maximum, boolean intValues) {
+        for (int i = negativeBuckets.counts.length - 1; i >= 0; i--) {
+            final long count = negativeBuckets.counts[i];
+            if (count > 0) {
+                final int index = negativeBuckets.minIndex + i;
+                accumulateTo(histogramOp, -getLowerBound(index + 1), -getLowerBound(index), count,
+                             minimum, maximum, intValues);
+            }
+        }
+        if (zeroCount > 0) {
+            accumulateTo(histogramOp, 0.0, 0.0, zeroCount, minimum, maximum, intValues);
+        }
+        for (int i = 0; i < positiveBuckets.counts.length; i++) {
+            final long count = positiveBuckets.counts[i];
+            if (count > 0) {
+                final int index = positiveBuckets.minIndex + i;
+                accumulateTo(histogramOp, getLowerBound(index), getLowerBound(index + 1), count,
+                             minimum, maximum, intValues);
+            }
+        }
+    }
+
+    private static void accumulateTo(HistogramStxOp histogramOp, double lowerBound, double upperBound, long count,
+                                     double minimum, double maximum, boolean intValues) {
+        if (intValues) {
+            final double value = lowerBound == upperBound ?
+                                 lowerBound : Math.rint(2.0 * lowerBound * upperBound / (lowerBound + upperBound));
+            histogramOp.accumulateValue(limit(value, minimum, maximum), count);
+        } else {
+            histogramOp.accumulateRange(limit(lowerBound, minimum, maximum), limit(upperBound, minimum, maximum), count);
+        }
+    }
+
+    private static double limit(double value, double minimum, double maximum) {
+        if (value < minimum) {
+            return minimum;
+        }
+        if (value > maximum) {
+            return maximum;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the index of the bucket of a positive value. The index is the scaled approximation of the
+     * binary logarithm given by the exponent plus the mantissa minus one, which is monotonic in the value
+     * and at least as fine as the exact logarithm.
+     */
+    private int getIndex(double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final int exponent = (int) ((bits >>> 52) & 0x7ffL) - 1023;
+        final double mantissa = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+        return (int) Math.ceil((exponent + mantissa - 1.0) * multiplier);
+    }
+
+    /**
+     * Gets the value representing a bucket, which has a relative difference of at most the relative accuracy
+     * to the lower and upper bound of the bucket.
+     */
+    private double getValue(int index) {
+        final double lowerBound = getLowerBound(index);
+        final double upperBound = getLowerBound(index + 1);
+        return 2.0 * lowerBound * upperBound / (lowerBound + upperBound);
+    }
+
+    private double getLowerBound(int index) {
+        final double log2 = (index - 1) / multiplier;
+        final double exponent = Math.floor(log2);
+        return Math.scalb(1.0 + log2 - exponent, (int) exponent);
+    }
+
+    private static final class Buckets {
+
+        private long[] counts = new long[0];
+        private int minIndex;
+        private long count;
+
+        void add(int index, long n) {
+            if (index < minIndex || index >= minIndex + counts.length) {
+                extend(index);
+            }
+            counts[index - minIndex] += n;
+            count += n;
+        }
+
+        void merge(Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] > 0) {
+                    add(other.minIndex + i, other.counts[i]);
+                }
+            }
+        }
+
+        private void extend(int index) {
+            if (counts.length == 0) {
+                counts = new long[64];
+                minIndex = index - 32;
+                return;
+            }
+            final int newMinIndex = Math.min(minIndex, index);
+            final int newMaxIndex = Math.max(minIndex + counts.length - 1, index);
+            // grow with some headroom on the side of the new index to limit the number of copies
+            final int headroom = Math.max(counts.length / 2, 16);
+            final int lower = newMinIndex < minIndex ? newMinIndex - headroom : newMinIndex;
+            final int upper = newMaxIndex > minIndex + counts.length - 1 ? newMaxIndex + headroom : newMaxIndex;
+            final long[] newCounts = new long[upper - lower + 1];
+            System.arraycopy(counts, 0, newCounts, minIndex - lower, counts.length);
+            counts = newCounts;
+            minIndex = lower;
+        }
+    }
+}
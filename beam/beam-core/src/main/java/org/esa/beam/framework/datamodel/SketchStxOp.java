@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2013 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.datamodel;
+
+import org.esa.beam.util.math.DoubleList;
+
+import javax.media.jai.Histogram;
+import javax.media.jai.UnpackedImageData;
+
+/**
+ * Computes the summary statistics and a {@link QuantileSketch} of image data in a single pass,
+ * so that the histogram can be derived without reading the data a second time.
+ * The histogram is approximate, its values have the relative accuracy of the sketch.
+ */
+final class SketchStxOp extends StxOp {
+
+    private final SummaryStxOp summaryOp;
+    private final QuantileSketch sketch;
+
+    SketchStxOp() {
+        this(new QuantileSketch());
+    }
+
+    private SketchStxOp(QuantileSketch sketch) {
+        super("Statistics");
+        this.summaryOp = new SummaryStxOp();
+        this.sketch = sketch;
+    }
+
+    SummaryStxOp getSummaryOp() {
+        return summaryOp;
+    }
+
+    QuantileSketch getSketch() {
+        return sketch;
+    }
+
+    /**
+     * Creates the histogram of the accumulated data.
+     *
+     * @param binCount     The number of bins.
+     * @param minimum      The lower bound of the histogram.
+     * @param maximum      The upper bound of the histogram.
+     * @param intHistogram If the data are integers.
+     * @param logHistogram If the histogram is logarithmically scaled.
+     * @return The histogram.
+     */
+    Histogram createHistogram(int binCount, double minimum, double maximum, boolean intHistogram, boolean logHistogram) {
+        final HistogramStxOp histogramOp = new HistogramStxOp(binCount, minimum, maximum, intHistogram, logHistogram);
+        sketch.accumulateTo(histogramOp, summaryOp.getMinimum(), summaryOp.getMaximum(), intHistogram);
+        return histogramOp.getHistogram();
+    }
+
+    @Override
+    SketchStxOp createPartial() {
+        return new SketchStxOp(sketch.createEmpty());
+    }
+
+    @Override
+    void merge(StxOp partial) {
+        final SketchStxOp other = (SketchStxOp) partial;
+        summaryOp.merge(other.summaryOp);
+        sketch.merge(other.sketch);
+    }
+
+    @Override
+    public void accumulateData(UnpackedImageData dataPixels,
+                               UnpackedImageData maskPixels) {
+
+        summaryOp.accumulateData(dataPixels, maskPixels);
+
+        // Do not change this code block without doing the same changes in SummaryStxOp.java and HistogramStxOp.java
+        // {{ Block Start
+
+        final DoubleList values = StxOp.asDoubleList(dataPixels);
+
+        final int dataPixelStride = dataPixels.pixelStride;
+        final int dataLineStride = dataPixels.lineStride;
+        final int dataBandOffset = dataPixels.bandOffsets[0];
+
+        byte[] mask = null;
+        int maskPixelStride = 0;
+        int maskLineStride = 0;
+        int maskBandOffset = 0;
+        if (maskPixels != null) {
+            mask = maskPixels.getByteData(0);
+            maskPixelStride = maskPixels.pixelStride;
+            maskLineStride = maskPixels.lineStride;
+            maskBandOffset = maskPixels.bandOffsets[0];
+        }
+
+        final int width = dataPixels.rect.width;
+        final int height = dataPixels.rect.height;
+
+        int dataLineOffset = dataBandOffset;
+        int maskLineOffset = maskBandOffset;
+
+        // }} Block End
+
+        for (int y = 0; y < height; y++) {
+            int dataPixelOffset = dataLineOffset;
+            int maskPixelOffset = maskLineOffset;
+            for (int x = 0; x < width; x++) {
+                if (mask == null || mask[maskPixelOffset] != 0) {
+                    sketch.add(values.getDouble(dataPixelOffset));
+                }
+                dataPixelOffset += dataPixelStride;
+                maskPixelOffset += maskPixelStride;
+            }
+            dataLineOffset += dataLineStride;
+            maskLineOffset += maskLineStride;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.datamodel;
+
+import org.esa.beam.util.math.DoubleList;
+
+/**
+ * Accumulates summary statistics of sample data which is passed in chunks, e.g. the tiles of a band
+ * computed by an operator. Chunks may be passed concurrently from several threads: each chunk is accumulated
+ * into its own partial statistics without locking, and only the merge of these is synchronized.
+ * This uses the same statistics operator as the {@link StxFactory}. NaN and infinite samples are ignored.
+ */
+public final class StxAccumulator {
+
+    private final SummaryStxOp summaryOp;
+
+    public StxAccumulator() {
+        summaryOp = new SummaryStxOp();
+    }
+
+    /**
+     * Accumulates all elements of the given sample data.
+     *
+     * @param samples The samples.
+     */
+    public void accumulate(ProductData samples) {
+        final SummaryStxOp partialOp = summaryOp.createPartial();
+        partialOp.accumulateData(asDoubleList(samples));
+        synchronized (summaryOp) {
+            summaryOp.merge(partialOp);
+        }
+    }
+
+    public long getSampleCount() {
+        synchronized (summaryOp) {
+            return summaryOp.getSampleCount();
+        }
+    }
+
+    public double getMinimum() {
+        synchronized (summaryOp) {
+            return summaryOp.getMinimum();
+        }
+    }
+
+    public double getMaximum() {
+        synchronized (summaryOp) {
+            return summaryOp.getMaximum();
+        }
+    }
+
+    public double getMean() {
+        synchronized (summaryOp) {
+            return summaryOp.getMean();
+        }
+    }
+
+    public double getStandardDeviation() {
+        synchronized (summaryOp) {
+            return summaryOp.getStandardDeviation();
+        }
+    }
+
+    public double getSum() {
+        synchronized (summaryOp) {
+            return summaryOp.getValueSum();
+        }
+    }
+
+    public double getSumOfSquares() {
+        synchronized (summaryOp) {
+            return summaryOp.getSqrSum();
+        }
+    }
+
+    public double getSumOfPower4() {
+        synchronized (summaryOp) {
+            return summaryOp.getPower4Sum();
+        }
+    }
+
+    /**
+     * @param unit The unit of the samples, samples are intensities if it contains "intensity".
+     * @return The coefficient of variation.
+     */
+    public double getCoefficientOfVariation(String unit) {
+        synchronized (summaryOp) {
+            return summaryOp.getCoefficientOfVariation(unit);
+        }
+    }
+
+    /**
+     * @param unit The unit of the samples, samples are intensities if it contains "intensity".
+     * @return The equivalent number of looks.
+     */
+    public double getEquivalentNumberOfLooks(String unit) {
+        synchronized (summaryOp) {
+            return summaryOp.getEquivalentNumberOfLooks(unit);
+        }
+    }
+
+    static DoubleList asDoubleList(final ProductData samples) {
+        switch (samples.getType()) {
+            case ProductData.TYPE_INT8:
+                return new DoubleList.Byte((byte[]) samples.getElems());
+            case ProductData.TYPE_UINT8:
+                return new DoubleList.UByte((byte[]) samples.getElems());
+            case ProductData.TYPE_INT16:
+                return new DoubleList.Short((short[]) samples.getElems());
+            case ProductData.TYPE_UINT16:
+                return new DoubleList.UShort((short[]) samples.getElems());
+            case ProductData.TYPE_INT32:
+                return new DoubleList.Int((int[]) samples.getElems());
+            case ProductData.TYPE_UINT32:
+                return new DoubleList.UInt((int[]) samples.getElems());
+            case ProductData.TYPE_FLOAT32:
+                return new DoubleList.Float((float[]) samples.getElems());
+            case ProductData.TYPE_FLOAT64:
+                return new DoubleList.Double((double[]) samples.getElems());
+            default:
+                return new DoubleList() {
+                    @Override
+                    public int getSize() {
+                        return samples.getNumElems();
+                    }
+
+                    @Override
+                    public double getDouble(int index) {
+                        return samples.getElemDoubleAt(index);
+                    }
+                };
+        }
+    }
+}
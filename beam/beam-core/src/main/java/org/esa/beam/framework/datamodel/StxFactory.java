@@ -23,6 +23,8 @@ import java.awt.image.RenderedImage;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The factory for {@link Stx} instances.
@@ -50,6 +52,7 @@ public class StxFactory {
 
     private Number coefficientOfVariation;
     private Number enl;
+    private Boolean quantileSketch;
 
     public StxFactory() {
     }
@@ -123,6 +126,17 @@ public class StxFactory {
         return this;
     }
 
+    /**
+     * @param quantileSketch If {@code true}, the summary statistics and the histogram are computed in a single
+     *                       pass, using a quantile sketch for the histogram. Histogram values then have a relative
+     *                       error of up to {@link QuantileSketch#DEFAULT_RELATIVE_ACCURACY}.
+     * @return This instance.
+     */
+    public StxFactory withQuantileSketch(boolean quantileSketch) {
+        this.quantileSketch = quantileSketch;
+        return this;
+    }
+
     /**
      * Creates an {@code Stx} instance.
      *
@@ -148,6 +162,7 @@ public class StxFactory {
         boolean logHistogram = this.logHistogram != null ? this.logHistogram : false;
         boolean intHistogram = this.intHistogram != null ? this.intHistogram : false;
         int level = this.resolutionLevel != null ? this.resolutionLevel : 0;
+        boolean useQuantileSketch = this.quantileSketch != null ? this.quantileSketch : false;
 
         double coeffOfVariation = this.coefficientOfVariation != null ? this.coefficientOfVariation.doubleValue() : Double.NaN;
         double enl = this.enl != null ? this.enl.doubleValue() : Double.NaN;
@@ -193,12 +208,24 @@ public class StxFactory {
             try {
                 pm.beginTask("Computing statistics", mustComputeSummaryStx && mustComputeHistogramStx ? 100 : 50);
 
-                if (mustComputeSummaryStx) {
-                    final SummaryStxOp meanOp = new SummaryStxOp();
+                SketchStxOp sketchOp = null;
+                SummaryStxOp meanOp = null;
+                if (mustComputeSummaryStx && mustComputeHistogramStx && useQuantileSketch) {
+                    sketchOp = new SketchStxOp();
+                    for (int i = 0; i < filteredRasters.length; i++) {
+                        final RasterDataNode rasterDataNode = filteredRasters[i];
+                        accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], sketchOp, SubProgressMonitor.create(pm, 100));
+                    }
+                    meanOp = sketchOp.getSummaryOp();
+                } else if (mustComputeSummaryStx) {
+                    meanOp = new SummaryStxOp();
                     for (int i = 0; i < filteredRasters.length; i++) {
                         final RasterDataNode rasterDataNode = filteredRasters[i];
                         accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], meanOp, SubProgressMonitor.create(pm, 50));
                     }
+                }
+
+                if (meanOp != null) {
                     if (this.minimum == null) {
                         minimum = meanOp.getMinimum();
                     }
@@ -221,12 +248,16 @@ public class StxFactory {
 
                 if (mustComputeHistogramStx) {
                     int binCount = histogramBinCount != null ? histogramBinCount : DEFAULT_BIN_COUNT;
-                    final HistogramStxOp histogramOp = new HistogramStxOp(binCount, minimum, maximum, intHistogram, logHistogram);
-                    for (int i = 0; i < filteredRasters.length; i++) {
-                        final RasterDataNode rasterDataNode = filteredRasters[i];
-                        accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], histogramOp, SubProgressMonitor.create(pm, 50));
+                    if (sketchOp != null) {
+                        histogram = sketchOp.createHistogram(binCount, minimum, maximum, intHistogram, logHistogram);
+                    } else {
+                        final HistogramStxOp histogramOp = new HistogramStxOp(binCount, minimum, maximum, intHistogram, logHistogram);
+                        for (int i = 0; i < filteredRasters.length; i++) {
+                            final RasterDataNode rasterDataNode = filteredRasters[i];
+                            accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], histogramOp, SubProgressMonitor.create(pm, 50));
+                        }
+                        histogram = histogramOp.getHistogram();
                     }
-                    histogram = histogramOp.getHistogram();
                 }
             } finally {
                 pm.done();
@@ -301,33 +332,125 @@ public class StxFactory {
             ensureImageCompatibility(dataImage, maskImage);
         }
 
+        final int numTiles = dataImage.getNumXTiles() * dataImage.getNumYTiles();
+        final int numThreads = Math.min(numTiles, JAI.getDefaultInstance().getTileScheduler().getParallelism());
+
+        try {
+            pm.beginTask("Computing " + op.getName(), numTiles);
+
+            final StxOp firstPartial = numThreads > 1 ? op.createPartial() : null;
+            if (firstPartial != null) {
+                accumulateConcurrently(op, firstPartial, numThreads, dataImage, maskImage, maskShape, pm);
+            } else {
+                accumulateSequentially(op, dataImage, maskImage, maskShape, pm);
+            }
+        } finally {
+            pm.done();
+        }
+    }
+
+    private static void accumulateSequentially(StxOp op, PlanarImage dataImage, PlanarImage maskImage, Shape maskShape,
+                                               ProgressMonitor pm) {
         final PixelAccessor dataAccessor = new PixelAccessor(dataImage.getSampleModel(), null);
         final PixelAccessor maskAccessor = maskImage != null ? new PixelAccessor(maskImage.getSampleModel(), null) : null;
 
-        try {
-            pm.beginTask("Computing " + op.getName(), dataImage.getNumXTiles() * dataImage.getNumYTiles());
+        for (int tileY = dataImage.getMinTileY(); tileY <= dataImage.getMaxTileY(); tileY++) {
+            for (int tileX = dataImage.getMinTileX(); tileX <= dataImage.getMaxTileX(); tileX++) {
+                if (pm.isCanceled()) {
+                    throw new CancellationException("Process terminated by user."); /*I18N*/
+                }
+                if (tileContainsData(dataImage, maskShape, tileX, tileY)) {
+                    accumulateTile(op, dataImage, maskImage, dataAccessor, maskAccessor, tileX, tileY);
+                }
+                pm.worked(1);
+            }
+        }
+    }
 
-            for (int tileY = dataImage.getMinTileY(); tileY <= dataImage.getMaxTileY(); tileY++) {
-                for (int tileX = dataImage.getMinTileX(); tileX <= dataImage.getMaxTileX(); tileX++) {
-                    if (pm.isCanceled()) {
-                        throw new CancellationException("Process terminated by user."); /*I18N*/
-                    }
-                    boolean tileContainsData = true;
-                    if (maskShape != null) {
-                        Rectangle dataRect = dataImage.getTileRect(tileX, tileY);
-                        if (!maskShape.intersects(dataRect)) {
-                            tileContainsData = false;
+    /**
+     * Accumulates the tiles of an image on several threads. Thread i accumulates the tiles i, i + numThreads,
+     * i + 2 * numThreads, ... in this order into its own partial operator, and the partial operators are merged
+     * into the given operator in thread order once all tiles are done. The tiles of each partial operator and
+     * the merge order are fixed, so for a given number of threads the result does not depend on the scheduling.
+     */
+    private static void accumulateConcurrently(StxOp op, StxOp firstPartial, final int numThreads,
+                                               final PlanarImage dataImage, final PlanarImage maskImage,
+                                               final Shape maskShape, ProgressMonitor pm) {
+        final int numXTiles = dataImage.getNumXTiles();
+        final int numTiles = numXTiles * dataImage.getNumYTiles();
+        final AtomicInteger doneTiles = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final Throwable[] errors = new Throwable[numThreads];
+        final StxOp[] partials = new StxOp[numThreads];
+        final Thread[] threads = new Thread[numThreads];
+
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            partials[i] = i == 0 ? firstPartial : op.createPartial();
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final StxOp partial = partials[threadIndex];
+                    final PixelAccessor dataAccessor = new PixelAccessor(dataImage.getSampleModel(), null);
+                    final PixelAccessor maskAccessor = maskImage != null ? new PixelAccessor(maskImage.getSampleModel(), null) : null;
+                    try {
+                        for (int tileIndex = threadIndex; tileIndex < numTiles && !stopped.get(); tileIndex += numThreads) {
+                            final int tileX = dataImage.getMinTileX() + tileIndex % numXTiles;
+                            final int tileY = dataImage.getMinTileY() + tileIndex / numXTiles;
+                            if (tileContainsData(dataImage, maskShape, tileX, tileY)) {
+                                accumulateTile(partial, dataImage, maskImage, dataAccessor, maskAccessor, tileX, tileY);
+                            }
+                            doneTiles.incrementAndGet();
                         }
+                    } catch (Throwable t) {
+                        errors[threadIndex] = t;
+                        stopped.set(true);
                     }
-                    if (tileContainsData) {
-                        accumulateTile(op, dataImage, maskImage, dataAccessor, maskAccessor, tileX, tileY);
+                }
+            }, "StxFactory-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        // the progress monitor is only used on the calling thread
+        int reportedTiles = 0;
+        try {
+            for (Thread thread : threads) {
+                while (thread.isAlive()) {
+                    if (pm.isCanceled()) {
+                        stopped.set(true);
                     }
-                    pm.worked(1);
+                    thread.join(100);
+                    final int done = doneTiles.get();
+                    pm.worked(done - reportedTiles);
+                    reportedTiles = done;
                 }
             }
-        } finally {
-            pm.done();
+        } catch (InterruptedException e) {
+            stopped.set(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Process interrupted."); /*I18N*/
+        }
+
+        for (Throwable error : errors) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new IllegalStateException(error);
+            }
+        }
+        if (pm.isCanceled()) {
+            throw new CancellationException("Process terminated by user."); /*I18N*/
         }
+        for (StxOp partial : partials) {
+            op.merge(partial);
+        }
+    }
+
+    private static boolean tileContainsData(PlanarImage dataImage, Shape maskShape, int tileX, int tileY) {
+        return maskShape == null || maskShape.intersects(dataImage.getTileRect(tileX, tileY));
     }
 
     static void accumulateTile(StxOp op,
@@ -42,6 +42,25 @@ abstract class StxOp {
     public abstract void accumulateData(UnpackedImageData dataPixels,
                                         UnpackedImageData maskPixels);
 
+    /**
+     * Creates an empty operator with the same configuration as this one. Partial operators accumulate
+     * disjoint sets of tiles on separate threads and are {@link #merge merged} into this operator afterwards.
+     *
+     * @return The partial operator, or {@code null} if this operator cannot be split.
+     */
+    StxOp createPartial() {
+        return null;
+    }
+
+    /**
+     * Merges the data accumulated by a partial operator into this operator.
+     *
+     * @param partial An operator created by {@link #createPartial()}.
+     */
+    void merge(StxOp partial) {
+        throw new UnsupportedOperationException(getName() + " cannot be merged");
+    }
+
     static DoubleList asDoubleList(UnpackedImageData dataPixels) {
         if (dataPixels.type == DataBuffer.TYPE_BYTE) {
             return new DoubleList.Byte(dataPixels.getByteData(0));
@@ -105,11 +105,70 @@ final class SummaryStxOp extends StxOp {
         return enl;
     }
 
+    long getSampleCount() {
+        return sampleCount;
+    }
+
+    double getValueSum() {
+        return valueSum;
+    }
+
+    double getSqrSum() {
+        return sqrSum;
+    }
+
+    double getPower4Sum() {
+        return power4Sum;
+    }
+
+    @Override
+    SummaryStxOp createPartial() {
+        return new SummaryStxOp();
+    }
+
+    /**
+     * Merges the statistics of another operator into this one, combining mean and variance of
+     * both sets of samples with the pairwise formula of Chan et al.
+     */
+    @Override
+    void merge(StxOp partial) {
+        final SummaryStxOp other = (SummaryStxOp) partial;
+        if (other.sampleCount == 0) {
+            return;
+        }
+        if (sampleCount == 0) {
+            minimum = other.minimum;
+            maximum = other.maximum;
+            mean = other.mean;
+            meanSqr = other.meanSqr;
+        } else {
+            final long count = sampleCount + other.sampleCount;
+            final double delta = other.mean - mean;
+            mean += delta * other.sampleCount / count;
+            meanSqr += other.meanSqr + delta * delta * ((double) sampleCount * other.sampleCount / count);
+            minimum = Math.min(minimum, other.minimum);
+            maximum = Math.max(maximum, other.maximum);
+        }
+        sampleCount += other.sampleCount;
+        valueSum += other.valueSum;
+        sqrSum += other.sqrSum;
+        power4Sum += other.power4Sum;
+    }
+
+    /**
+     * Accumulates all values of a list, e.g. the raw samples of a tile.
+     *
+     * @param values The values.
+     */
+    void accumulateData(DoubleList values) {
+        accumulateData(values, 0, 1, values.getSize(), values.getSize(), 1, null, 0, 0, 0);
+    }
+
     @Override
     public void accumulateData(UnpackedImageData dataPixels,
                                UnpackedImageData maskPixels) {
 
-        // Do not change this code block without doing the same changes in HistogramStxOp.java
+        // Do not change this code block without doing the same changes in HistogramStxOp.java and SketchStxOp.java
         // {{ Block Start
 
         final DoubleList values = StxOp.asDoubleList(dataPixels);
@@ -132,11 +191,16 @@ final class SummaryStxOp extends StxOp {
         final int width = dataPixels.rect.width;
         final int height = dataPixels.rect.height;
 
-        int dataLineOffset = dataBandOffset;
-        int maskLineOffset = maskBandOffset;
-
         // }} Block End
 
+        accumulateData(values, dataBandOffset, dataPixelStride, dataLineStride, width, height,
+                       mask, maskBandOffset, maskPixelStride, maskLineStride);
+    }
+
+    private void accumulateData(DoubleList values, int dataLineOffset, int dataPixelStride, int dataLineStride,
+                                int width, int height,
+                                byte[] mask, int maskLineOffset, int maskPixelStride, int maskLineStride) {
+
         double tileMinimum = this.minimum;
         double tileMaximum = this.maximum;
         long tileSampleCount = this.sampleCount;
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.ceres.compiler.Code;
+import com.bc.jexp.Term;
+import org.apache.commons.math.util.FastMath;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * A band maths {@link Term} compiled to a Java class which evaluates the term for all pixels of a
+ * region at once, reading the primitive data arrays of the referred {@link RasterDataSymbol}s directly.
+ * <p/>
+ * Terms are compiled with the system Java compiler. The generated classes are cached by their source
+ * code, so an expression which is parsed anew for every tile is compiled only once. If no compiler is
+ * available, or the system property {@code beam.bandMaths.compile} is set to {@code false},
+ * {@link #compile(Term)} returns {@code null} and clients use the interpreter.
+ */
+public final class CompiledTerm {
+
+    public static final String COMPILE_PROPERTY = "beam.bandMaths.compile";
+
+    private static final int MAX_CACHE_SIZE = 256;
+    private static final Object NO_KERNEL = new Object();
+    private static final Map<String, Object> kernelCache = new HashMap<String, Object>();
+    private static int kernelCount;
+
+    private final Kernel kernel;
+    private final RasterDataSymbol[] symbols;
+    private final Term[] terms;
+
+    private CompiledTerm(Kernel kernel, RasterDataSymbol[] symbols, Term[] terms) {
+        this.kernel = kernel;
+        this.symbols = symbols;
+        this.terms = terms;
+    }
+
+    /**
+     * Compiles the given term. Since the generated code depends on the data types of the raster data
+     * symbols, their data must have been set before, and must not change its type afterwards.
+     *
+     * @param term The term.
+     * @return The compiled term, or {@code null} if the term cannot be compiled.
+     */
+    public static CompiledTerm compile(Term term) {
+        if (!Boolean.parseBoolean(System.getProperty(COMPILE_PROPERTY, "true"))) {
+            return null;
+        }
+        final TermCodeGenerator generator = new TermCodeGenerator();
+        final String code = generator.generate(term);
+        if (code == null) {
+            return null;
+        }
+        final Kernel kernel = getKernel(code);
+        if (kernel == null) {
+            return null;
+        }
+        return new CompiledTerm(kernel, generator.getSymbols(), generator.getTerms());
+    }
+
+    /**
+     * Evaluates the term as {@code double} for all pixels of the environment's region, which is
+     * equivalent to calling {@link Term#evalD} for every element index.
+     *
+     * @param env    The environment.
+     * @param values The values, at least of the size of the environment's region.
+     */
+    public void evalD(RasterDataEvalEnv env, double[] values) {
+        kernel.evalD(getData(), terms, env, values, env.getRegionWidth() * env.getRegionHeight());
+    }
+
+    /**
+     * Evaluates the term as {@code boolean} for all pixels of the environment's region, which is
+     * equivalent to calling {@link Term#evalB} for every element index.
+     *
+     * @param env    The environment.
+     * @param values The values, at least of the size of the environment's region.
+     */
+    public void evalB(RasterDataEvalEnv env, boolean[] values) {
+        kernel.evalB(getData(), terms, env, values, env.getRegionWidth() * env.getRegionHeight());
+    }
+
+    private Object[] getData() {
+        final Object[] data = new Object[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            data[i] = symbols[i].getData().getElems();
+        }
+        return data;
+    }
+
+    private static synchronized Kernel getKernel(String code) {
+        Object kernel = kernelCache.get(code);
+        if (kernel == null) {
+            kernel = createKernel(code);
+            if (kernelCache.size() >= MAX_CACHE_SIZE) {
+                kernelCache.clear();
+            }
+            kernelCache.put(code, kernel);
+        }
+        return kernel != NO_KERNEL ? (Kernel) kernel : null;
+    }
+
+    private static Object createKernel(String code) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            BeamLogManager.getSystemLogger().fine("No Java compiler available, band maths terms are interpreted.");
+            return NO_KERNEL;
+        }
+        final String className = "BandMathsKernel" + kernelCount++;
+        final Code source = new Code(className, code.replace(TermCodeGenerator.CLASS_NAME_PLACEHOLDER, className));
+        final ClassFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+        final List<String> options = Arrays.asList("-classpath", getClassPath(), "-proc:none", "-nowarn");
+        final StringWriter messages = new StringWriter();
+        try {
+            final boolean success = compiler.getTask(messages, fileManager, null, options, null,
+                                                     Arrays.asList(source)).call();
+            if (!success) {
+                BeamLogManager.getSystemLogger().warning("Failed to compile band maths term:\n" + messages);
+                return NO_KERNEL;
+            }
+            final ClassLoader classLoader = new KernelClassLoader(fileManager.classBytes);
+            return classLoader.loadClass(className).newInstance();
+        } catch (Exception e) {
+            BeamLogManager.getSystemLogger().log(Level.WARNING, "Failed to compile band maths term.", e);
+            return NO_KERNEL;
+        } catch (LinkageError e) {
+            BeamLogManager.getSystemLogger().log(Level.WARNING, "Failed to compile band maths term.", e);
+            return NO_KERNEL;
+        }
+    }
+
+    private static String getClassPath() {
+        final Set<String> paths = new LinkedHashSet<String>();
+        for (Class<?> type : new Class<?>[]{CompiledTerm.class, Term.class, FastMath.class}) {
+            final CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                try {
+                    paths.add(new File(codeSource.getLocation().toURI()).getPath());
+                } catch (Exception e) {
+                    // not a file, try the class path
+                }
+            }
+        }
+        paths.addAll(Arrays.asList(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+        final StringBuilder classPath = new StringBuilder();
+        for (String path : paths) {
+            if (!path.isEmpty()) {
+                if (classPath.length() > 0) {
+                    classPath.append(File.pathSeparatorChar);
+                }
+                classPath.append(path);
+            }
+        }
+        return classPath.toString();
+    }
+
+    /**
+     * The base class of the generated classes. It must be public, because the generated classes
+     * are defined by their own class loaders.
+     */
+    public abstract static class Kernel {
+
+        public abstract void evalD(Object[] data, Term[] terms, RasterDataEvalEnv env, double[] values, int n);
+
+        public abstract void evalB(Object[] data, Term[] terms, RasterDataEvalEnv env, boolean[] values, int n);
+
+        protected static double sqr(double v) {
+            return v * v;
+        }
+
+        protected static double ampl(double a, double b) {
+            return Math.sqrt(a * a + b * b);
+        }
+
+        protected static double phase(double a, double b) {
+            return Math.atan2(b, a);
+        }
+    }
+
+    private static class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> classBytes = new HashMap<String, ByteArrayOutputStream>();
+
+        private ClassFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, final String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            final URI uri = URI.create("bytes:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                    classBytes.put(className, stream);
+                    return stream;
+                }
+            };
+        }
+    }
+
+    private static class KernelClassLoader extends ClassLoader {
+
+        private final Map<String, ByteArrayOutputStream> classBytes;
+
+        private KernelClassLoader(Map<String, ByteArrayOutputStream> classBytes) {
+            super(CompiledTerm.class.getClassLoader());
+            this.classBytes = classBytes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final ByteArrayOutputStream stream = classBytes.get(name);
+            if (stream == null) {
+                throw new ClassNotFoundException(name);
+            }
+            final byte[] bytes = stream.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
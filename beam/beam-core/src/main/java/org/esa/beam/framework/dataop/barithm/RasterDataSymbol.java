@@ -107,6 +107,13 @@ public class RasterDataSymbol implements Symbol {
         return raster;
     }
 
+    /**
+     * @return The data most recently set by {@link #setData(Object)}, may be {@code null}.
+     */
+    public ProductData getData() {
+        return data;
+    }
+
     public final void setData(final Object data) {
         if (ProductData.class.isAssignableFrom(data.getClass())) {
             this.data = (ProductData) data;
@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.EvalException;
+import com.bc.jexp.Function;
+import com.bc.jexp.Symbol;
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.DefaultNamespace;
+import com.bc.jexp.impl.SymbolFactory;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the Java source of a {@link CompiledTerm.Kernel} evaluating a band maths {@link Term}
+ * for all pixels of a tile.
+ * <p/>
+ * The generated code mirrors the {@code evalB}, {@code evalI} and {@code evalD} methods of every
+ * term node it translates. Raster data symbols are read directly from the primitive arrays of their
+ * current data, constants are inlined. Nodes which cannot be translated, e.g. variables, whose value
+ * may change after compilation, or calls to functions not defined by the {@link DefaultNamespace},
+ * are evaluated by the generated code through the interpreter.
+ */
+final class TermCodeGenerator {
+
+    static final String CLASS_NAME_PLACEHOLDER = "$CLASS_NAME$";
+
+    private static final String FAST_MATH = "org.apache.commons.math.util.FastMath";
+    private static final String EXT_MATH = "com.bc.jexp.impl.ExtMath";
+
+    private static final String HEAD_PART = "" +
+            "public final class " + CLASS_NAME_PLACEHOLDER + " extends {0} '{'\n" +
+            "\n";
+    private static final String METHOD_HEAD_PART = "" +
+            "    public void eval{0}(Object[] data, com.bc.jexp.Term[] terms,\n" +
+            "                      {1} env, {2}[] values, int n) '{'\n";
+    private static final String DATA_DEF_PART = "" +
+            "        final {1}[] d{0} = ({1}[]) data[{0}];\n";
+    private static final String LOOP_HEAD_PART = "" +
+            "        for (int i = 0; i < n; i++) {\n";
+    private static final String ENV_PART = "" +
+            "            env.setElemIndex(i);\n";
+    private static final String LOOP_BODY_PART = "" +
+            "            values[i] = {0};\n" +
+            "        '}'\n" +
+            "    '}'\n" +
+            "\n";
+    private static final String FINAL_PART = "" +
+            "}\n";
+
+    private final Map<RasterDataSymbol, Integer> symbolIndexes;
+    private final List<RasterDataSymbol> symbols;
+    private final Map<Term, Integer> termIndexes;
+    private final List<Term> terms;
+    private int numCompiledNodes;
+
+    TermCodeGenerator() {
+        symbolIndexes = new IdentityHashMap<RasterDataSymbol, Integer>();
+        symbols = new ArrayList<RasterDataSymbol>();
+        termIndexes = new IdentityHashMap<Term, Integer>();
+        terms = new ArrayList<Term>();
+    }
+
+    /**
+     * Generates the kernel source for the given term. The data of all raster data symbols referred
+     * to by the term must have been set before.
+     *
+     * @param term The term.
+     * @return The source code, with the class name given by {@link #CLASS_NAME_PLACEHOLDER}, or
+     *         {@code null} if no part of the term can be translated.
+     */
+    String generate(Term term) {
+        final String exprD = generate(term, Term.TYPE_D);
+        final String exprB = generate(term, Term.TYPE_B);
+        if (numCompiledNodes == 0) {
+            return null;
+        }
+
+        final StringBuilder codeBuilder = new StringBuilder();
+        codeBuilder.append(MessageFormat.format(HEAD_PART, CompiledTerm.Kernel.class.getCanonicalName()));
+        appendMethod(codeBuilder, "D", "double", exprD);
+        appendMethod(codeBuilder, "B", "boolean", exprB);
+        codeBuilder.append(FINAL_PART);
+        return codeBuilder.toString();
+    }
+
+    /**
+     * @return The raster data symbols whose data arrays are passed to the kernel, in order.
+     */
+    RasterDataSymbol[] getSymbols() {
+        return symbols.toArray(new RasterDataSymbol[symbols.size()]);
+    }
+
+    /**
+     * @return The terms the kernel evaluates through the interpreter, in order.
+     */
+    Term[] getTerms() {
+        return terms.toArray(new Term[terms.size()]);
+    }
+
+    private void appendMethod(StringBuilder codeBuilder, String suffix, String valueType, String expr) {
+        codeBuilder.append(MessageFormat.format(METHOD_HEAD_PART, suffix, RasterDataEvalEnv.class.getName(), valueType));
+        for (int i = 0; i < symbols.size(); i++) {
+            final String arrayType = getArrayType(symbols.get(i).getData().getType());
+            codeBuilder.append(MessageFormat.format(DATA_DEF_PART, String.valueOf(i), arrayType));
+        }
+        codeBuilder.append(LOOP_HEAD_PART);
+        if (!terms.isEmpty()) {
+            codeBuilder.append(ENV_PART);
+        }
+        codeBuilder.append(MessageFormat.format(LOOP_BODY_PART, expr));
+    }
+
+    private String generate(Term term, int type) {
+        final String code = translate(term, type);
+        if (code != null) {
+            numCompiledNodes++;
+            return code;
+        }
+        return delegate(term, type);
+    }
+
+    private String translate(Term term, int type) {
+        final Class<? extends Term> termClass = term.getClass();
+        if (termClass == Term.ConstB.class || termClass == Term.ConstI.class
+            || termClass == Term.ConstD.class || termClass == Term.ConstS.class) {
+            return constant(term, type);
+        } else if (termClass == Term.Ref.class) {
+            return ref(((Term.Ref) term).getSymbol(), type);
+        } else if (termClass == Term.Call.class) {
+            return call((Term.Call) term, type);
+        } else if (termClass == Term.Cond.class) {
+            final Term[] args = ((Term.Cond) term).getArgs();
+            return "(" + generate(args[0], Term.TYPE_B) + " ? " + generate(args[1], type) + " : " + generate(args[2], type) + ")";
+        } else if (termClass == Term.NotB.class) {
+            return convert("(!" + generate(arg(term, 0), Term.TYPE_B) + ")", Term.TYPE_B, type);
+        } else if (termClass == Term.AndB.class) {
+            return binary(term, "&&", Term.TYPE_B, Term.TYPE_B, type);
+        } else if (termClass == Term.OrB.class) {
+            return binary(term, "||", Term.TYPE_B, Term.TYPE_B, type);
+        } else if (termClass == Term.NotI.class) {
+            return convert("(~" + generate(arg(term, 0), Term.TYPE_I) + ")", Term.TYPE_I, type);
+        } else if (termClass == Term.XOrI.class) {
+            return binary(term, "^", Term.TYPE_I, Term.TYPE_I, type);
+        } else if (termClass == Term.AndI.class) {
+            return binary(term, "&", Term.TYPE_I, Term.TYPE_I, type);
+        } else if (termClass == Term.OrI.class) {
+            return binary(term, "|", Term.TYPE_I, Term.TYPE_I, type);
+        } else if (termClass == Term.Neg.class) {
+            // Neg.evalB() converts evalD(), independent of the term's type
+            if (type == Term.TYPE_B) {
+                return convert("(-" + generate(arg(term, 0), Term.TYPE_D) + ")", Term.TYPE_D, type);
+            }
+            return "(-" + generate(arg(term, 0), type) + ")";
+        } else if (termClass == Term.Add.class) {
+            return arithmetic(term, "+", type);
+        } else if (termClass == Term.Sub.class) {
+            return arithmetic(term, "-", type);
+        } else if (termClass == Term.Mul.class) {
+            return arithmetic(term, "*", type);
+        } else if (termClass == Term.Div.class) {
+            return arithmetic(term, "/", type);
+        } else if (termClass == Term.Mod.class) {
+            return arithmetic(term, "%", type);
+        } else if (termClass == Term.EqB.class) {
+            return binary(term, "==", Term.TYPE_B, Term.TYPE_B, type);
+        } else if (termClass == Term.EqI.class) {
+            return binary(term, "==", Term.TYPE_I, Term.TYPE_B, type);
+        } else if (termClass == Term.EqD.class) {
+            return binary(term, "==", Term.TYPE_D, Term.TYPE_B, type);
+        } else if (termClass == Term.NEqB.class) {
+            return binary(term, "!=", Term.TYPE_B, Term.TYPE_B, type);
+        } else if (termClass == Term.NEqI.class) {
+            return binary(term, "!=", Term.TYPE_I, Term.TYPE_B, type);
+        } else if (termClass == Term.NEqD.class) {
+            return binary(term, "!=", Term.TYPE_D, Term.TYPE_B, type);
+        } else if (termClass == Term.LtI.class) {
+            return binary(term, "<", Term.TYPE_I, Term.TYPE_B, type);
+        } else if (termClass == Term.LtD.class) {
+            return binary(term, "<", Term.TYPE_D, Term.TYPE_B, type);
+        } else if (termClass == Term.LeI.class) {
+            return binary(term, "<=", Term.TYPE_I, Term.TYPE_B, type);
+        } else if (termClass == Term.LeD.class) {
+            return binary(term, "<=", Term.TYPE_D, Term.TYPE_B, type);
+        } else if (termClass == Term.GtI.class) {
+            return binary(term, ">", Term.TYPE_I, Term.TYPE_B, type);
+        } else if (termClass == Term.GtD.class) {
+            return binary(term, ">", Term.TYPE_D, Term.TYPE_B, type);
+        } else if (termClass == Term.GeI.class) {
+            return binary(term, ">=", Term.TYPE_I, Term.TYPE_B, type);
+        } else if (termClass == Term.GeD.class) {
+            return binary(term, ">=", Term.TYPE_D, Term.TYPE_B, type);
+        }
+        return null;
+    }
+
+    private String delegate(Term term, int type) {
+        Integer index = termIndexes.get(term);
+        if (index == null) {
+            index = terms.size();
+            termIndexes.put(term, index);
+            terms.add(term);
+        }
+        return "terms[" + index + "].eval" + getTypeSuffix(type) + "(env)";
+    }
+
+    private static Term arg(Term term, int index) {
+        return ((Term.Op) term).getArgs()[index];
+    }
+
+    private String binary(Term term, String operator, int argType, int retType, int type) {
+        final String code = "(" + generate(arg(term, 0), argType) + " " + operator + " " + generate(arg(term, 1), argType) + ")";
+        return convert(code, retType, type);
+    }
+
+    private String arithmetic(Term term, String operator, int type) {
+        // BinaryN.evalB() converts the result of the term's own type
+        if (type == Term.TYPE_B) {
+            final int retType = term.getRetType() == Term.TYPE_I ? Term.TYPE_I : Term.TYPE_D;
+            return binary(term, operator, retType, retType, type);
+        }
+        return binary(term, operator, type, type, type);
+    }
+
+    private static String constant(Term term, int type) {
+        try {
+            switch (type) {
+                case Term.TYPE_B:
+                    return String.valueOf(term.evalB(null));
+                case Term.TYPE_I:
+                    return literal(term.evalI(null));
+                default:
+                    return literal(term.evalD(null));
+            }
+        } catch (EvalException e) {
+            return null;
+        }
+    }
+
+    private String ref(Symbol symbol, int type) {
+        if (SymbolFactory.isConstant(symbol)) {
+            // constants do not depend on the environment, variables are read through the interpreter
+            switch (type) {
+                case Term.TYPE_B:
+                    return String.valueOf(symbol.evalB(null));
+                case Term.TYPE_I:
+                    return literal(symbol.evalI(null));
+                default:
+                    return literal(symbol.evalD(null));
+            }
+        }
+        if (symbol.getClass() != RasterDataSymbol.class && symbol.getClass() != SingleFlagSymbol.class) {
+            return null;
+        }
+        final RasterDataSymbol rasterDataSymbol = (RasterDataSymbol) symbol;
+        final ProductData data = rasterDataSymbol.getData();
+        if (data == null || getArrayType(data.getType()) == null) {
+            return null;
+        }
+        Integer index = symbolIndexes.get(rasterDataSymbol);
+        if (index == null) {
+            index = symbols.size();
+            symbolIndexes.put(rasterDataSymbol, index);
+            symbols.add(rasterDataSymbol);
+        }
+        final String elem = "d" + index + "[i]";
+        if (symbol instanceof SingleFlagSymbol) {
+            final String flagMask = literal(((SingleFlagSymbol) symbol).getFlagMask());
+            final String code = "((" + getElemInt(elem, data.getType()) + " & " + flagMask + ") == " + flagMask + ")";
+            return convert(code, Term.TYPE_B, type);
+        }
+        switch (type) {
+            case Term.TYPE_B:
+                return convert(getElemDouble(elem, data.getType()), Term.TYPE_D, Term.TYPE_B);
+            case Term.TYPE_I:
+                return getElemInt(elem, data.getType());
+            default:
+                return getElemDouble(elem, data.getType());
+        }
+    }
+
+    private String call(Term.Call term, int type) {
+        final Function function = term.getFunction();
+        if (function.getClass().getEnclosingClass() != DefaultNamespace.class) {
+            return null;
+        }
+        final String name = function.getName();
+        final Term[] args = term.getArgs();
+        final int retType = function.getRetType();
+        final String code;
+        if (retType == Term.TYPE_I) {
+            code = callI(name, args);
+        } else if (retType == Term.TYPE_D) {
+            code = callD(name, args);
+        } else if (retType == Term.TYPE_B) {
+            code = callB(name, args);
+        } else {
+            code = null;
+        }
+        return code != null ? convert(code, retType, type) : null;
+    }
+
+    private String callI(String name, Term[] args) {
+        if (args.length == 1) {
+            if ("sign".equals(name)) {
+                return EXT_MATH + ".sign(" + generate(args[0], Term.TYPE_I) + ")";
+            } else if ("abs".equals(name)) {
+                return "Math.abs(" + generate(args[0], Term.TYPE_I) + ")";
+            }
+        } else if (args.length == 2) {
+            if ("min".equals(name) || "max".equals(name)) {
+                return FAST_MATH + "." + name + "(" + generate(args[0], Term.TYPE_I) + ", " + generate(args[1], Term.TYPE_I) + ")";
+            }
+        }
+        return null;
+    }
+
+    private String callD(String name, Term[] args) {
+        if (args.length == 1) {
+            if ("sin".equals(name) || "cos".equals(name) || "tan".equals(name)
+                || "asin".equals(name) || "acos".equals(name) || "atan".equals(name)
+                || "exp".equals(name) || "rint".equals(name)) {
+                return FAST_MATH + "." + name + "(" + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("log".equals(name) || "log10".equals(name) || "sqrt".equals(name)
+                       || "floor".equals(name) || "ceil".equals(name) || "abs".equals(name)) {
+                return "Math." + name + "(" + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("exp10".equals(name)) {
+                return FAST_MATH + ".pow(10.0, " + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("sqr".equals(name)) {
+                return "sqr(" + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("round".equals(name)) {
+                return "((double) " + FAST_MATH + ".round(" + generate(args[0], Term.TYPE_D) + "))";
+            } else if ("sign".equals(name)) {
+                return EXT_MATH + ".sign(" + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("deg".equals(name)) {
+                return FAST_MATH + ".toDegrees(" + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("rad".equals(name)) {
+                return FAST_MATH + ".toRadians(" + generate(args[0], Term.TYPE_D) + ")";
+            }
+        } else if (args.length == 2) {
+            final String method;
+            if ("atan2".equals(name)) {
+                method = "Math.atan2";
+            } else if ("pow".equals(name) || "min".equals(name) || "max".equals(name)) {
+                method = FAST_MATH + "." + name;
+            } else if ("ampl".equals(name) || "phase".equals(name)) {
+                method = name;
+            } else {
+                return null;
+            }
+            return method + "(" + generate(args[0], Term.TYPE_D) + ", " + generate(args[1], Term.TYPE_D) + ")";
+        }
+        return null;
+    }
+
+    private String callB(String name, Term[] args) {
+        if (args.length == 1) {
+            if ("inf".equals(name)) {
+                return "Double.isInfinite(" + generate(args[0], Term.TYPE_D) + ")";
+            } else if ("nan".equals(name)) {
+                return "Double.isNaN(" + generate(args[0], Term.TYPE_D) + ")";
+            }
+        } else if (args.length == 2 || args.length == 3) {
+            if ("feq".equals(name) || "fneq".equals(name)) {
+                final String eps = args.length == 3 ? generate(args[2], Term.TYPE_D) : literal(DefaultNamespace.EPS);
+                return EXT_MATH + "." + name + "(" + generate(args[0], Term.TYPE_D) + ", " + generate(args[1], Term.TYPE_D) + ", " + eps + ")";
+            }
+        }
+        return null;
+    }
+
+    private static String convert(String code, int sourceType, int targetType) {
+        if (sourceType == targetType) {
+            return code;
+        }
+        if (sourceType == Term.TYPE_B) {
+            return targetType == Term.TYPE_I ? "(" + code + " ? 1 : 0)" : "(" + code + " ? 1.0 : 0.0)";
+        } else if (sourceType == Term.TYPE_I) {
+            return targetType == Term.TYPE_B ? "(" + code + " != 0)" : "((double) " + code + ")";
+        } else {
+            return targetType == Term.TYPE_B ? "(" + code + " != 0.0)" : "((int) " + code + ")";
+        }
+    }
+
+    private static String getElemInt(String elem, int dataType) {
+        switch (dataType) {
+            case ProductData.TYPE_UINT8:
+                return "(" + elem + " & 0xff)";
+            case ProductData.TYPE_UINT16:
+                return "(" + elem + " & 0xffff)";
+            case ProductData.TYPE_FLOAT32:
+                return "Math.round(" + elem + ")";
+            case ProductData.TYPE_FLOAT64:
+                return "((int) Math.round(" + elem + "))";
+            default:
+                return "((int) " + elem + ")";
+        }
+    }
+
+    private static String getElemDouble(String elem, int dataType) {
+        switch (dataType) {
+            case ProductData.TYPE_UINT8:
+                return "((double) (" + elem + " & 0xff))";
+            case ProductData.TYPE_UINT16:
+                return "((double) (" + elem + " & 0xffff))";
+            case ProductData.TYPE_UINT32:
+                return "((double) (" + elem + " & 0xffffffffL))";
+            default:
+                return "((double) " + elem + ")";
+        }
+    }
+
+    private static String getArrayType(int dataType) {
+        switch (dataType) {
+            case ProductData.TYPE_INT8:
+            case ProductData.TYPE_UINT8:
+                return "byte";
+            case ProductData.TYPE_INT16:
+            case ProductData.TYPE_UINT16:
+                return "short";
+            case ProductData.TYPE_INT32:
+            case ProductData.TYPE_UINT32:
+                return "int";
+            case ProductData.TYPE_FLOAT32:
+                return "float";
+            case ProductData.TYPE_FLOAT64:
+                return "double";
+            default:
+                return null;
+        }
+    }
+
+    private static String getTypeSuffix(int type) {
+        return type == Term.TYPE_B ? "B" : type == Term.TYPE_I ? "I" : "D";
+    }
+
+    private static String literal(int value) {
+        return "(" + value + ")";
+    }
+
+    private static String literal(double value) {
+        if (Double.isNaN(value)) {
+            return "Double.NaN";
+        } else if (value == Double.POSITIVE_INFINITY) {
+            return "Double.POSITIVE_INFINITY";
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            return "Double.NEGATIVE_INFINITY";
+        }
+        return "(" + value + ")";
+    }
+}
@@ -42,6 +42,18 @@ public interface ElevationModel {
      */
     double getElevation(GeoPos geoPos) throws Exception;
 
+    /**
+     * Gets the elevations at many geographical coordinates in meters. This is equivalent to calling
+     * {@link #getElevation(GeoPos)} for each coordinate but avoids the per-call overhead.
+     * @param lat  the latitudes
+     * @param lon  the longitudes
+     * @param elevations  the array receiving the elevations, or the special value returned by
+     *                    {@link ElevationModelDescriptor#getNoDataValue()} where an elevation is not available
+     * @return  true if at least one elevation is available
+     * @exception Exception if a non-runtime error occurs, e.g I/O error
+     */
+    boolean getElevations(double[] lat, double[] lon, double[] elevations) throws Exception;
+
     /**
      * Gets the pixel index in the DEM reference system at the geographical coordinate in meters.
      *
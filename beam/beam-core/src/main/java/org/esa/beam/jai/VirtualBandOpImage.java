@@ -24,6 +24,7 @@ import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.datamodel.RasterDataNode;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+import org.esa.beam.framework.dataop.barithm.CompiledTerm;
 import org.esa.beam.framework.dataop.barithm.RasterDataEvalEnv;
 import org.esa.beam.framework.dataop.barithm.RasterDataSymbol;
 import org.esa.beam.util.ImageUtils;
@@ -268,6 +269,12 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
                                                             colCount, rowCount,
                                                             getLevelImageSupport());
 
+        final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+        if (compiledTerm != null) {
+            computeRect(compiledTerm, env, productData, x, y, w, colCount, pixelCount);
+            return;
+        }
+
         if (mask) {
             for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
                 for (int j = 0, l = x; j < colCount; j++, l++) {
@@ -300,6 +307,33 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
         }
     }
 
+    private void computeRect(CompiledTerm compiledTerm, RasterDataEvalEnv env, ProductData productData,
+                             int x, int y, int w, int colCount, int pixelCount) {
+        if (mask) {
+            final boolean[] values = new boolean[pixelCount];
+            compiledTerm.evalB(env, values);
+            for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                for (int j = 0, l = x; j < colCount; j++, l++) {
+                    productData.setElemUIntAt(k + l, values[i + j] ? TRUE : FALSE);
+                }
+            }
+        } else {
+            final double[] values = new double[pixelCount];
+            compiledTerm.evalD(env, values);
+            final double fv = fillValue != null ? fillValue.doubleValue() : Double.NaN;
+            for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                for (int j = 0, l = x; j < colCount; j++, l++) {
+                    final double v = values[i + j];
+                    if (fillValue != null && Double.isNaN(v)) {
+                        productData.setElemDoubleAt(k + l, fv);
+                    } else {
+                        productData.setElemDoubleAt(k + l, v);
+                    }
+                }
+            }
+        }
+    }
+
     private Term parseExpression() {
         final Term term;
         try {
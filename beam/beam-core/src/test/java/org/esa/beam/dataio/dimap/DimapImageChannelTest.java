@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.dimap;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class DimapImageChannelTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("DimapImageChannelTest", ".img");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testWriteAndReadFloats() throws IOException {
+        final int numElems = 1500000;
+        setFileLength(numElems * 4L);
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, numElems);
+        for (int i = 0; i < numElems; i++) {
+            data.setElemFloatAt(i, i * 0.5f);
+        }
+
+        final DimapImageChannel writeChannel = DimapImageChannel.openForWriting(file, ProductData.TYPE_FLOAT32);
+        writeChannel.write(data, numElems / 2, numElems - numElems / 2, numElems / 2);
+        writeChannel.write(data, 0, numElems / 2, 0);
+        writeChannel.close();
+
+        // samples are stored big endian, as ENVI files written through image output streams
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(4L * 12345);
+            assertEquals(12345 * 0.5f, raf.readFloat());
+        } finally {
+            raf.close();
+        }
+
+        final ProductData readData = ProductData.createInstance(ProductData.TYPE_FLOAT32, numElems);
+        final DimapImageChannel readChannel = DimapImageChannel.openForReading(file, ProductData.TYPE_FLOAT32);
+        readChannel.read(readData, 10, numElems - 20, 10);
+        readChannel.close();
+        for (int i = 10; i < numElems - 10; i++) {
+            assertEquals(data.getElemFloatAt(i), readData.getElemFloatAt(i));
+        }
+    }
+
+    public void testWriteAndReadShorts() throws IOException {
+        setFileLength(2000);
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_INT16, 1000);
+        for (int i = 0; i < 1000; i++) {
+            data.setElemIntAt(i, i - 500);
+        }
+
+        final DimapImageChannel writeChannel = DimapImageChannel.openForWriting(file, ProductData.TYPE_INT16);
+        writeChannel.write(data, 0, 1000, 0);
+        writeChannel.close();
+
+        final ProductData readData = ProductData.createInstance(ProductData.TYPE_INT16, 50);
+        final DimapImageChannel readChannel = DimapImageChannel.openForReading(file, ProductData.TYPE_INT16);
+        readChannel.read(readData, 0, 50, 400);
+        readChannel.close();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i - 100, readData.getElemIntAt(i));
+        }
+    }
+
+    public void testMappedReads() throws IOException {
+        setFileLength(4000);
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_INT32, 1000);
+        for (int i = 0; i < 1000; i++) {
+            data.setElemIntAt(i, 3 * i - 100);
+        }
+        final DimapImageChannel writeChannel = DimapImageChannel.openForWriting(file, ProductData.TYPE_INT32);
+        writeChannel.write(data, 0, 1000, 0);
+        writeChannel.close();
+
+        final DimapImageChannel readChannel = DimapImageChannel.openForReading(file, ProductData.TYPE_INT32, true);
+        assertTrue(readChannel.isMapped());
+        final ProductData readData = ProductData.createInstance(ProductData.TYPE_INT32, 100);
+        readChannel.read(readData, 0, 100, 250);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(data.getElemIntAt(250 + i), readData.getElemIntAt(i));
+        }
+
+        // the mapping is released on close and must not be read afterwards
+        readChannel.close();
+        try {
+            readChannel.read(readData, 0, 100, 250);
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testPositionalReadsByDefault() throws IOException {
+        setFileLength(400);
+        final DimapImageChannel readChannel = DimapImageChannel.openForReading(file, ProductData.TYPE_INT32);
+        assertFalse(readChannel.isMapped());
+        readChannel.close();
+        try {
+            readChannel.read(ProductData.createInstance(ProductData.TYPE_INT32, 10), 0, 10, 0);
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+    }
+
+    private void setFileLength(long length) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+}
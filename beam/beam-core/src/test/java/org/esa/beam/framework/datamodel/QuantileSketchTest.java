@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.datamodel;
+
+import org.junit.Test;
+
+import javax.media.jai.Histogram;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void testQuantilesHaveRelativeAccuracy() throws Exception {
+        final double[] values = new double[10000];
+        final Random random = new Random(5);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(6.0 * random.nextGaussian()) * (random.nextBoolean() ? 1.0 : -1.0);
+        }
+
+        final QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+        sketch.add(Double.NaN);
+        sketch.add(Double.POSITIVE_INFINITY);
+        assertEquals(values.length, sketch.getCount());
+
+        Arrays.sort(values);
+        final double accuracy = sketch.getRelativeAccuracy() * (1.0 + 1.0e-12);
+        for (double q = 0.0; q <= 1.0; q += 0.01) {
+            final double expected = values[((int) (q * (values.length - 1)))];
+            assertEquals(expected, sketch.getQuantile(q), Math.abs(expected) * accuracy);
+        }
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        final QuantileSketch sketch = new QuantileSketch();
+        final QuantileSketch partial1 = sketch.createEmpty();
+        final QuantileSketch partial2 = sketch.createEmpty();
+        for (int i = -500; i <= 500; i++) {
+            sketch.add(i * 0.37);
+            (i % 3 == 0 ? partial1 : partial2).add(i * 0.37);
+        }
+
+        final QuantileSketch merged = sketch.createEmpty();
+        merged.merge(partial1);
+        merged.merge(partial2);
+        assertEquals(sketch.getCount(), merged.getCount());
+        for (double q = 0.0; q <= 1.0; q += 0.05) {
+            assertEquals(sketch.getQuantile(q), merged.getQuantile(q), 0.0);
+        }
+        assertEquals(0.0, merged.getQuantile(0.5), 0.0);
+        assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+    }
+
+    @Test
+    public void testIntegerHistogramIsExact() throws Exception {
+        final SketchStxOp op = new SketchStxOp();
+        final int[] expectedBins = new int[10];
+        for (int i = 0; i < 1000; i++) {
+            final int value = (i * 7) % 10 + 1;
+            op.getSketch().add(value);
+            expectedBins[value - 1]++;
+        }
+        final HistogramStxOp histogramOp = new HistogramStxOp(10, 1, 10, true, false);
+        op.getSketch().accumulateTo(histogramOp, 1, 10, true);
+
+        final Histogram histogram = histogramOp.getHistogram();
+        assertArrayEquals(expectedBins, histogram.getBins(0));
+    }
+}
@@ -3,6 +3,8 @@ package org.esa.beam.framework.datamodel;
 import com.bc.ceres.core.ProgressMonitor;
 import org.junit.Test;
 
+import javax.media.jai.JAI;
+import javax.media.jai.TileScheduler;
 import java.awt.Color;
 
 import static org.junit.Assert.*;
@@ -221,6 +223,55 @@ public class StxFactoryTest {
         assertEquals(3464.4, stx.getStandardDeviation(), 1.0e-1);
     }
 
+    @Test
+    public void testFloatBandStatisticsWithQuantileSketch() throws Exception {
+        final Band band = createTestBand(ProductData.TYPE_FLOAT32, 100, 120);
+        final Stx exactStx = new StxFactory().create(band, ProgressMonitor.NULL);
+        final Stx stx = new StxFactory().withQuantileSketch(true).create(band, ProgressMonitor.NULL);
+        assertEquals(exactStx.getMinimum(), stx.getMinimum(), 0.0);
+        assertEquals(exactStx.getMaximum(), stx.getMaximum(), 0.0);
+        assertEquals(exactStx.getMean(), stx.getMean(), 1.0e-6);
+        assertEquals(exactStx.getStandardDeviation(), stx.getStandardDeviation(), 1.0e-6);
+        assertEquals(exactStx.getSampleCount(), stx.getSampleCount());
+
+        final double binWidth = (stx.getMaximum() - stx.getMinimum()) / stx.getHistogramBins().length;
+        assertEquals(exactStx.getMedian(), stx.getMedian(), binWidth);
+        assertEquals(exactStx.getHistogram().getPTileThreshold(0.9)[0],
+                     stx.getHistogram().getPTileThreshold(0.9)[0], 2 * binWidth);
+        assertEquals(exactStx.getHistogram().getPTileThreshold(0.1)[0],
+                     stx.getHistogram().getPTileThreshold(0.1)[0], 2 * binWidth);
+    }
+
+    @Test
+    public void testConcurrentStatisticsDoNotDependOnScheduling() throws Exception {
+        final Product product = createTestProduct(100, 120);
+        product.setPreferredTileSize(16, 16);
+        final Band band = new VirtualBand("V", ProductData.TYPE_FLOAT32, 100, 120, "sin(X * Y) * 1000 + X");
+        product.addBand(band);
+
+        final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
+        final int parallelism = tileScheduler.getParallelism();
+        try {
+            tileScheduler.setParallelism(1);
+            final Stx sequentialStx = new StxFactory().create(band, ProgressMonitor.NULL);
+
+            tileScheduler.setParallelism(3);
+            final Stx stx = new StxFactory().create(band, ProgressMonitor.NULL);
+            assertEquals(sequentialStx.getMean(), stx.getMean(), 1.0e-9);
+            assertEquals(sequentialStx.getStandardDeviation(), stx.getStandardDeviation(), 1.0e-9);
+            assertArrayEquals(sequentialStx.getHistogramBins(), stx.getHistogramBins());
+
+            // each thread accumulates the same tiles in the same order every time
+            for (int i = 0; i < 5; i++) {
+                final Stx otherStx = new StxFactory().create(band, ProgressMonitor.NULL);
+                assertEquals(stx.getMean(), otherStx.getMean(), 0.0);
+                assertEquals(stx.getStandardDeviation(), otherStx.getStandardDeviation(), 0.0);
+            }
+        } finally {
+            tileScheduler.setParallelism(parallelism);
+        }
+    }
+
     @Test
     public void testCreateStxForMultipleBands() throws Exception {
         final Band testBand1 = createTestBand(ProductData.TYPE_FLOAT64, 10, 10, -100);
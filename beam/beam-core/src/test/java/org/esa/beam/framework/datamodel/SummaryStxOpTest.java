@@ -18,6 +18,7 @@ package org.esa.beam.framework.datamodel;
 
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.util.ImageUtils;
+import org.esa.beam.util.math.DoubleList;
 import org.junit.Test;
 
 import javax.media.jai.*;
@@ -26,6 +27,7 @@ import java.awt.*;
 import java.awt.image.*;
 import java.awt.image.DataBufferDouble;
 import java.awt.image.DataBufferFloat;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 
@@ -165,6 +167,30 @@ public class SummaryStxOpTest {
         assertEquals(0.33166247, op.getStandardDeviation(), 1.0e-8);
     }
 
+    @Test
+    public void testMerge() throws Exception {
+        double[] data = new double[]{-1.6, 2.7, -1.8, 0.9, Double.NaN, -2.1, 12.2, -2.3, 5.4, -2.5, 0.6};
+
+        SummaryStxOp op = new SummaryStxOp();
+        op.accumulateData(new DoubleList.Double(data));
+
+        SummaryStxOp mergedOp = new SummaryStxOp();
+        SummaryStxOp partialOp1 = mergedOp.createPartial();
+        SummaryStxOp partialOp2 = mergedOp.createPartial();
+        partialOp1.accumulateData(new DoubleList.Double(Arrays.copyOfRange(data, 0, 4)));
+        partialOp2.accumulateData(new DoubleList.Double(Arrays.copyOfRange(data, 4, data.length)));
+        mergedOp.merge(partialOp1);
+        mergedOp.merge(mergedOp.createPartial());
+        mergedOp.merge(partialOp2);
+
+        assertEquals(10, mergedOp.getSampleCount());
+        assertEquals(op.getMinimum(), mergedOp.getMinimum(), 1.0e-8);
+        assertEquals(op.getMaximum(), mergedOp.getMaximum(), 1.0e-8);
+        assertEquals(op.getMean(), mergedOp.getMean(), 1.0e-8);
+        assertEquals(op.getVariance(), mergedOp.getVariance(), 1.0e-8);
+        assertEquals(op.getEquivalentNumberOfLooks(null), mergedOp.getEquivalentNumberOfLooks(null), 1.0e-8);
+    }
+
     private UnpackedImageData getPixels(DataBuffer dataBuffer) {
         return getPixels(new BufferedOpImage(dataBuffer));
     }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.ParseException;
+import com.bc.jexp.Term;
+import com.bc.jexp.Variable;
+import com.bc.jexp.WritableNamespace;
+import com.bc.jexp.impl.ParserImpl;
+import com.bc.jexp.impl.SymbolFactory;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.FlagCoding;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import javax.tools.ToolProvider;
+
+public class CompiledTermTest extends TestCase {
+
+    private static final int W = 16;
+    private static final int H = 8;
+
+    private Product product;
+
+    @Override
+    protected void setUp() throws Exception {
+        product = new Product("p", "t", W, H);
+        final float[] f = new float[W * H];
+        final double[] d = new double[W * H];
+        final byte[] b = new byte[W * H];
+        final short[] s = new short[W * H];
+        final int[] i = new int[W * H];
+        for (int k = 0; k < W * H; k++) {
+            f[k] = k % 7 == 0 ? Float.NaN : (k - 40) * 0.37f;
+            d[k] = Math.sin(k) * 1000.0;
+            b[k] = (byte) (k * 13);
+            s[k] = (short) (k * 4099);
+            i[k] = k * 1234567 - 50000000;
+        }
+        product.addBand("f", ProductData.TYPE_FLOAT32).setDataElems(f);
+        product.addBand("d", ProductData.TYPE_FLOAT64).setDataElems(d);
+        product.addBand("ub", ProductData.TYPE_UINT8).setDataElems(b);
+        product.addBand("s", ProductData.TYPE_INT16).setDataElems(s);
+        product.addBand("us", ProductData.TYPE_UINT16).setDataElems(s.clone());
+        product.addBand("ui", ProductData.TYPE_UINT32).setDataElems(i);
+
+        final FlagCoding flagCoding = new FlagCoding("flags");
+        flagCoding.addFlag("F1", 0x01, null);
+        flagCoding.addFlag("F6", 0x06, null);
+        product.getFlagCodingGroup().add(flagCoding);
+        final Band flags = product.addBand("flags", ProductData.TYPE_UINT8);
+        flags.setSampleCoding(flagCoding);
+        flags.setDataElems(b.clone());
+    }
+
+    public void testCompiledTermEqualsInterpretedTerm() throws ParseException {
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            return;
+        }
+        assertSameResults("f * 2 + d / 3");
+        assertSameResults("(ub + s) / 2");
+        assertSameResults("us % 7 - ui");
+        assertSameResults("ui * 0.5");
+        assertSameResults("-f + ~s");
+        assertSameResults("sqrt(abs(d)) + sqr(f) + pow(ub, 0.5) + exp10(s / 10000.0)");
+        assertSameResults("sin(f) * cos(d) + atan2(f, d) + log(ub + 1) + rad(deg(f)) + ampl(f, d) + phase(f, d)");
+        assertSameResults("min(ub, s) + max(f, d) + round(f) + rint(d) + floor(f) + ceil(d) + sign(s) + sign(f)");
+        assertSameResults("nan(f) ? -1 : f > 0 && ub < 100 || feq(d, 0.0, 10.0)");
+        assertSameResults("flags.F1 && !flags.F6 || fneq(f, 1.11)");
+        assertSameResults("(ub & 0x0f) | (s ^ 3)");
+        assertSameResults("inf(f / 0) ? PI : NaN");
+        assertSameResults("f + d + X + Y");
+    }
+
+    public void testUnknownFunctionsAreInterpreted() throws ParseException {
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            return;
+        }
+        assertSameResults("tanh(f) + 1");
+        assertSameResults("inrange(f, 0.0, 5.0) ? f : -f");
+        // nothing left to compile
+        assertNull(CompiledTerm.compile(createTerm("inrange(f, 0.0, 5.0)")));
+    }
+
+    public void testVariablesAreReadAtEvaluationTime() throws ParseException {
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            return;
+        }
+        final Variable offset = SymbolFactory.createVariable("offset", 1.0);
+        final WritableNamespace namespace = BandArithmetic.createDefaultNamespace(new Product[]{product}, 0);
+        namespace.registerSymbol(offset);
+        namespace.registerSymbol(SymbolFactory.createConstant("scale", 2.0));
+        final Term term = new ParserImpl(namespace, false).parse("f * scale + offset");
+        for (RasterDataSymbol symbol : BandArithmetic.getRefRasterDataSymbols(term)) {
+            symbol.setData(symbol.getRaster().getData());
+        }
+
+        final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+        assertNotNull(compiledTerm);
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, W, H);
+        final double[] values = new double[W * H];
+        offset.assignD(env, 5.0);
+        compiledTerm.evalD(env, values);
+        for (int k = 0; k < W * H; k++) {
+            env.setElemIndex(k);
+            assertEquals(Double.valueOf(term.evalD(env)), Double.valueOf(values[k]));
+        }
+        assertEquals(Double.valueOf(2.0 * product.getBand("f").getPixelDouble(1, 0) + 5.0), Double.valueOf(values[1]));
+    }
+
+    public void testCompileCanBeDisabled() throws ParseException {
+        System.setProperty(CompiledTerm.COMPILE_PROPERTY, "false");
+        try {
+            assertNull(CompiledTerm.compile(createTerm("f + 1")));
+        } finally {
+            System.clearProperty(CompiledTerm.COMPILE_PROPERTY);
+        }
+    }
+
+    private void assertSameResults(String expression) throws ParseException {
+        final Term term = createTerm(expression);
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, W, H);
+
+        final CompiledTerm compiledTerm = CompiledTerm.compile(term);
+        assertNotNull(expression, compiledTerm);
+        final double[] valuesD = new double[W * H];
+        final boolean[] valuesB = new boolean[W * H];
+        compiledTerm.evalD(env, valuesD);
+        compiledTerm.evalB(env, valuesB);
+
+        for (int k = 0; k < W * H; k++) {
+            env.setElemIndex(k);
+            assertEquals(expression + " at " + k, Double.valueOf(term.evalD(env)), Double.valueOf(valuesD[k]));
+            assertEquals(expression + " at " + k, term.evalB(env), valuesB[k]);
+        }
+    }
+
+    private Term createTerm(String expression) throws ParseException {
+        final ParserImpl parser = new ParserImpl(BandArithmetic.createDefaultNamespace(new Product[]{product}, 0), false);
+        final Term term = parser.parse(expression);
+        for (RasterDataSymbol symbol : BandArithmetic.getRefRasterDataSymbols(term)) {
+            symbol.setData(symbol.getRaster().getData());
+        }
+        return term;
+    }
+}
@@ -18,7 +18,12 @@ package org.esa.beam.dataio.envisat;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.util.Debug;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 
 /**
  * A <code>BandLineReader</code> instance is used read and decode single lines of the geophysical raster data stored in
@@ -41,6 +46,11 @@ import java.io.IOException;
  */
 public class BandLineReader {
 
+    /**
+     * The maximum number of bytes read at once by {@link #readRasterLines}.
+     */
+    private static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024;
+
     public static class Virtual extends BandLineReader {
 
         private String _expression;
@@ -80,6 +90,18 @@ public class BandLineReader {
             throw new IllegalStateException();
         }
 
+        @Override
+        public boolean canReadRasterLines() {
+            return false;
+        }
+
+        @Override
+        public void readRasterLines(int sourceMinX, int sourceMaxX, int sourceStepX,
+                                    int sourceMinY, int sourceMaxY, int sourceStepY,
+                                    ProductData destRaster, int destRasterPos, int destWidth) throws IOException {
+            throw new IllegalStateException();
+        }
+
         @Override
         public int getRasterWidth() {
             throw new IllegalStateException();
@@ -304,6 +326,192 @@ public class BandLineReader {
         }
     }
 
+    /**
+     * Asks whether the lines of this band can be read with {@link #readRasterLines}. This is the case for bands
+     * with integer samples from measurement datasets which are stored record by record in an uncompressed product
+     * file, e.g. the ASAR IMS, IMP, APP and WSM measurement datasets.
+     *
+     * @return <code>true</code> if so
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    public boolean canReadRasterLines() throws IOException {
+        if (isTiePointBased() || getPixelDataReader() instanceof LineInterleavedRecordReader) {
+            return false;
+        }
+        final int dataType = getPixelDataField().getDataType();
+        if (dataType != ProductData.TYPE_INT8 && dataType != ProductData.TYPE_UINT8 &&
+                dataType != ProductData.TYPE_INT16 && dataType != ProductData.TYPE_UINT16 &&
+                dataType != ProductData.TYPE_INT32 && dataType != ProductData.TYPE_UINT32) {
+            return false;
+        }
+        return getProductFile().getDataChannel() != null;
+    }
+
+    /**
+     * Reads a rectangular region of a geophysical band from a measurement dataset (MDS), like subsequent calls of
+     * {@link #readRasterLine} for the lines <code>sourceMinY</code> to <code>sourceMaxY</code> with a sub-sampling
+     * of <code>sourceStepY</code> lines.
+     * <p/>
+     * <p>Contiguous records are read in blocks with a single positional read and their pixels are decoded from the
+     * block with bulk byte order conversion. The method does not lock this reader or the product file, so several
+     * threads can read different regions of the same band concurrently.
+     * It may only be called if {@link #canReadRasterLines()} returns <code>true</code>.
+     *
+     * @param sourceMinX    the minimum X offset in source raster co-ordinates
+     * @param sourceMaxX    the maximum X offset in source raster co-ordinates
+     * @param sourceStepX   the sub-sampling in X direction within the region providing samples to be read
+     * @param sourceMinY    the minimum Y offset in source raster co-ordinates
+     * @param sourceMaxY    the maximum Y offset in source raster co-ordinates
+     * @param sourceStepY   the sub-sampling in Y direction within the region providing samples to be read
+     * @param destRaster    the destination raster which receives the sample values to be read
+     * @param destRasterPos the offset of the first line within the destination raster
+     * @param destWidth     the line length of the destination raster
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    public void readRasterLines(final int sourceMinX,
+                                final int sourceMaxX,
+                                final int sourceStepX,
+                                final int sourceMinY,
+                                final int sourceMaxY,
+                                final int sourceStepY,
+                                final ProductData destRaster,
+                                final int destRasterPos,
+                                final int destWidth) throws IOException {
+        final ProductFile productFile = getProductFile();
+        final BandLineDecoder bandLineDecoder = ensureBandLineDecoder();
+        final Field pixelDataField = getPixelDataField();
+        final DSD dsd = getPixelDataReader().getDSD();
+        final long recordSize = dsd.getRecordSize();
+
+        final int destRasterIncr;
+        final int destPosOffset;
+        final int sMinX;
+        final int sMaxX;
+        if (!productFile.storesPixelsInChronologicalOrder()) {
+            destRasterIncr = 1;
+            destPosOffset = 0;
+            sMinX = sourceMinX;
+            sMaxX = sourceMaxX;
+        } else {
+            destRasterIncr = -1;
+            destPosOffset = (sourceMaxX - sourceMinX) / sourceStepX;
+            sMinX = _bandInfo.getWidth() - 1 - sourceMaxX;
+            sMaxX = _bandInfo.getWidth() - 1 - sourceMinX;
+        }
+
+        // the decoders expect the samples at their position within the whole field
+        final Object sourceArray = ProductData.createInstance(pixelDataField.getDataType(),
+                                                              pixelDataField.getNumElems()).getElems();
+        final int segmentOffset = sMinX * dataFieldSampleSize;
+        final int segmentLength = (sMaxX - sMinX + 1) * dataFieldSampleSize;
+        final int segmentSize = segmentLength * pixelDataField.getData().getElemSize();
+        final long segmentPos = dsd.getDatasetOffset() + fieldOffset +
+                (long) segmentOffset * pixelDataField.getData().getElemSize();
+
+        // if the segment covers most of a record, reading the gaps between the segments of
+        // contiguous records is cheaper than reading each segment on its own
+        final int maxBlockLines;
+        if (sourceStepY == 1 && 2L * segmentSize >= recordSize) {
+            maxBlockLines = (int) Math.max(1, Math.min(MAX_BLOCK_SIZE / recordSize, sourceMaxY - sourceMinY + 1));
+        } else {
+            maxBlockLines = 1;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) ((maxBlockLines - 1) * recordSize + segmentSize));
+
+        int destPos = destRasterPos;
+        int sourceY = sourceMinY;
+        while (sourceY <= sourceMaxY) {
+            final int mdsrIndex = productFile.getMappedMDSRIndex(sourceY);
+            if (mdsrIndex < 0 || mdsrIndex > _maxRecordIndex) {
+                final double missingValue = productFile.getMissingMDSRPixelValue();
+                int pos = destPos;
+                for (int index = sourceMinX; index <= sourceMaxX; index += sourceStepX) {
+                    destRaster.setElemDoubleAt(pos, missingValue);
+                    pos++;
+                }
+                destPos += destWidth;
+                sourceY += sourceStepY;
+                continue;
+            }
+
+            int numLines = 1;
+            while (numLines < maxBlockLines && sourceY + numLines <= sourceMaxY &&
+                    mdsrIndex + numLines <= _maxRecordIndex &&
+                    productFile.getMappedMDSRIndex(sourceY + numLines) == mdsrIndex + numLines) {
+                numLines++;
+            }
+
+            buffer.clear();
+            buffer.limit((int) ((numLines - 1) * recordSize + segmentSize));
+            readFully(productFile, buffer, segmentPos + mdsrIndex * recordSize);
+
+            for (int i = 0; i < numLines; i++) {
+                buffer.position((int) (i * recordSize));
+                decodeSegment(buffer, sourceArray, segmentOffset, segmentLength);
+                bandLineDecoder.computeLine(sourceArray,
+                                            sMinX,
+                                            sMaxX,
+                                            sourceStepX,
+                                            destRaster.getElems(),
+                                            destPos + destPosOffset,
+                                            destRasterIncr);
+                destPos += destWidth;
+            }
+            sourceY += numLines * sourceStepY;
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer from the product file at the given position.
+     */
+    private static void readFully(ProductFile productFile, ByteBuffer buffer, long pos) throws IOException {
+        final int bufferPos = buffer.position();
+        try {
+            readFully(productFile.getDataChannel(), buffer, pos);
+        } catch (ClosedChannelException e) {
+            // the channel has been closed by the interruption of another thread, retry once with a new channel
+            if (Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            buffer.position(bufferPos);
+            readFully(productFile.getDataChannel(), buffer, pos);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException {
+        if (channel == null) {
+            throw new IOException("product file is closed"); /*I18N*/
+        }
+        while (buffer.hasRemaining()) {
+            final int numBytes = channel.read(buffer, pos);
+            if (numBytes < 0) {
+                throw new EOFException();
+            }
+            pos += numBytes;
+        }
+    }
+
+    /**
+     * Decodes big endian samples from the current position of a buffer into an array.
+     *
+     * @param buffer      the buffer, the position is not changed
+     * @param array       the destination array, either <code>byte[]</code>, <code>short[]</code> or <code>int[]</code>
+     * @param arrayOffset the offset of the first sample within the destination array
+     * @param numElems    the number of samples
+     */
+    static void decodeSegment(ByteBuffer buffer, Object array, int arrayOffset, int numElems) {
+        final ByteBuffer source = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (array instanceof byte[]) {
+            source.get((byte[]) array, arrayOffset, numElems);
+        } else if (array instanceof short[]) {
+            source.asShortBuffer().get((short[]) array, arrayOffset, numElems);
+        } else if (array instanceof int[]) {
+            source.asIntBuffer().get((int[]) array, arrayOffset, numElems);
+        } else {
+            throw new IllegalArgumentException("unsupported array type: " + array.getClass()); /*I18N*/
+        }
+    }
+
     /**
      * Reads the record providing the pixels for the line at the given zero-based line index.
      *
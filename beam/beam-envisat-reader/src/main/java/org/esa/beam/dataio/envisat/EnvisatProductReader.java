@@ -68,6 +68,11 @@ public final class EnvisatProductReader extends AbstractProductReader {
      */
     private static final String SYSPROP_ENVISAT_USE_PIXEL_GEO_CODING = "beam.envisat.usePixelGeoCoding";
 
+    /**
+     * The number of lines read at once from measurement datasets
+     */
+    private static final int BLOCK_LINES = 64;
+
     /**
      * Represents the product's file.
      */
@@ -187,25 +192,57 @@ public final class EnvisatProductReader extends AbstractProductReader {
         pm.beginTask("Reading band '" + destBand.getName() + "'...", (sourceMaxY - sourceMinY) + 1);
         // For each scan in the data source
         try {
+            readBandRasterData(bandLineReader,
+                               sourceMinX, sourceMaxX, sourceStepX,
+                               sourceMinY, sourceMaxY, sourceStepY,
+                               destBuffer, destWidth, pm);
+        } finally {
+            pm.done();
+        }
+
+    }
 
+    /**
+     * Reads the lines <code>sourceMinY</code> to <code>sourceMaxY</code> of a band with a sub-sampling of
+     * <code>sourceStepY</code> lines into subsequent lines of the destination buffer.
+     */
+    static void readBandRasterData(BandLineReader bandLineReader,
+                                   int sourceMinX, int sourceMaxX, int sourceStepX,
+                                   int sourceMinY, int sourceMaxY, int sourceStepY,
+                                   ProductData destBuffer, int destWidth, ProgressMonitor pm) throws IOException {
+        if (bandLineReader.canReadRasterLines()) {
+            // read blocks of lines concurrently with other bands and tiles, checking for
+            // cancellation between the blocks
+            final int blockHeight = BLOCK_LINES * sourceStepY;
             int destArrayPos = 0;
-            for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
+            for (int blockMinY = sourceMinY; blockMinY <= sourceMaxY; blockMinY += blockHeight) {
                 if (pm.isCanceled()) {
                     break;
                 }
-
-                bandLineReader.readRasterLine(sourceMinX, sourceMaxX, sourceStepX,
-                                              sourceY,
-                                              destBuffer, destArrayPos);
-
-                destArrayPos += destWidth;
-                pm.worked(sourceStepY);
+                final int blockMaxY = Math.min(blockMinY + blockHeight - 1, sourceMaxY);
+                bandLineReader.readRasterLines(sourceMinX, sourceMaxX, sourceStepX,
+                                               blockMinY, blockMaxY, sourceStepY,
+                                               destBuffer, destArrayPos, destWidth);
+                destArrayPos += BLOCK_LINES * destWidth;
+                pm.worked(blockMaxY - blockMinY + 1);
             }
-            pm.worked(1);
-        } finally {
-            pm.done();
+            return;
         }
 
+        int destArrayPos = 0;
+        for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
+            if (pm.isCanceled()) {
+                break;
+            }
+
+            bandLineReader.readRasterLine(sourceMinX, sourceMaxX, sourceStepX,
+                                          sourceY,
+                                          destBuffer, destArrayPos);
+
+            destArrayPos += destWidth;
+            pm.worked(sourceStepY);
+        }
+        pm.worked(1);
     }
 
     private Product createProduct() throws IOException {
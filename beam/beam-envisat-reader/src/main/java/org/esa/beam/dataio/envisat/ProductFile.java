@@ -33,6 +33,8 @@ import javax.imageio.stream.ImageInputStream;
 import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -68,6 +70,12 @@ public abstract class ProductFile {
      */
     private final ImageInputStream dataInputStream;
 
+    /**
+     * The channel used for positional reads of measurement data, opened on demand
+     */
+    private volatile FileChannel dataChannel;
+    private boolean closed;
+
     /**
      * The logger
      */
@@ -466,6 +474,33 @@ public abstract class ProductFile {
         return dataInputStream;
     }
 
+    /**
+     * Gets a file channel for positional reads of the product file. Unlike the data input stream, the channel can
+     * be read concurrently by several threads, because reads do not move a shared stream position.
+     * <p/>
+     * <p>A channel closed by the interruption of a reading thread is reopened by the next call.
+     *
+     * @return the channel, or <code>null</code> if the data input stream does not read the product file
+     *         directly, e.g. for compressed product files
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    FileChannel getDataChannel() throws IOException {
+        FileChannel channel = dataChannel;
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        synchronized (this) {
+            if (closed || file == null || !file.isFile() ||
+                    !(dataInputStream instanceof FileImageInputStreamExtImpl || dataInputStream instanceof FileImageInputStream)) {
+                return null;
+            }
+            if (dataChannel == null || !dataChannel.isOpen()) {
+                dataChannel = new RandomAccessFile(file, "r").getChannel();
+            }
+            return dataChannel;
+        }
+    }
+
     /**
      * @return the sensing-start time as a <code>Date</code> object.
      */
@@ -790,6 +825,12 @@ public abstract class ProductFile {
      * @throws java.io.IOException if an I/O error occurs
      */
     public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            if (dataChannel != null) {
+                dataChannel.close();
+            }
+        }
         synchronized (dataInputStream) {
             dataInputStream.close();
         }
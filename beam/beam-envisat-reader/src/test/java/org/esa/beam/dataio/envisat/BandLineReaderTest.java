@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2013 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.envisat;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class BandLineReaderTest extends TestCase {
+
+    private static final int WIDTH = 50;
+    private static final int HEIGHT = 150;
+    private static final int NUM_RECORDS = 140;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int RECORD_TRAILER_SIZE = 4;
+    private static final int MISSING_VALUE = -1;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("ASA_IMP_1P", ".N1");
+        writeProductFile(file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testDecodeSegment() {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{
+                9, 9, 0x01, 0x02, (byte) 0xff, (byte) 0xfe, 0x7f, 0x00, 0x00, 0x00, 0x00, 0x05
+        });
+        buffer.position(2);
+
+        final byte[] bytes = new byte[5];
+        BandLineReader.decodeSegment(buffer, bytes, 1, 3);
+        assertEquals(0, bytes[0]);
+        assertEquals(0x01, bytes[1]);
+        assertEquals(0x02, bytes[2]);
+        assertEquals(-1, bytes[3]);
+        assertEquals(0, bytes[4]);
+
+        final short[] shorts = new short[6];
+        BandLineReader.decodeSegment(buffer, shorts, 2, 3);
+        assertEquals(0x0102, shorts[2]);
+        assertEquals(-2, shorts[3]);
+        assertEquals(0x7f00, shorts[4]);
+        assertEquals(0, shorts[5]);
+
+        final int[] ints = new int[2];
+        BandLineReader.decodeSegment(buffer, ints, 0, 2);
+        assertEquals(0x0102fffe, ints[0]);
+        assertEquals(0x7f000000, ints[1]);
+
+        // the position of the buffer is not changed
+        assertEquals(2, buffer.position());
+    }
+
+    public void testDecodeSegmentDecodesLikeField() throws Exception {
+        final Field field = new FieldInfo("f", ProductData.TYPE_UINT16, 4, null, null).createField();
+        final byte[] bytes = {0x00, 0x10, (byte) 0x80, 0x01, 0x12, 0x34, (byte) 0xff, (byte) 0xff};
+        field.readFrom(new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes)));
+
+        final short[] shorts = new short[4];
+        BandLineReader.decodeSegment(ByteBuffer.wrap(bytes), shorts, 0, 4);
+        for (int i = 0; i < shorts.length; i++) {
+            assertEquals(field.getData().getElemIntAt(i), shorts[i] & 0xffff);
+        }
+    }
+
+    public void testReadRasterLinesReadsLikeReadRasterLine() throws Exception {
+        assertReadsLikeReadRasterLine(false);
+    }
+
+    public void testReadRasterLinesReadsLikeReadRasterLineInChronologicalOrder() throws Exception {
+        assertReadsLikeReadRasterLine(true);
+    }
+
+    private void assertReadsLikeReadRasterLine(boolean chronologicalOrder) throws Exception {
+        final TestProductFile productFile = new TestProductFile(file, chronologicalOrder);
+        try {
+            final BandLineReader bandLineReader = createBandLineReader(productFile);
+            assertTrue(bandLineReader.canReadRasterLines());
+
+            final ProductData line = ProductData.createInstance(ProductData.TYPE_INT16, WIDTH);
+            bandLineReader.readRasterLine(0, WIDTH - 1, 1, 40, line, 0);
+            assertEquals(getSample(35, chronologicalOrder ? WIDTH - 1 : 0), line.getElemIntAt(0));
+            bandLineReader.readRasterLine(0, WIDTH - 1, 1, 32, line, 0);
+            assertEquals(MISSING_VALUE, line.getElemIntAt(0));
+
+            // whole lines are read in blocks of contiguous records
+            assertRegionReadsLikeReadRasterLine(bandLineReader, 0, WIDTH - 1, 1, 0, HEIGHT - 1, 1);
+            assertRegionReadsLikeReadRasterLine(bandLineReader, 5, 44, 1, 10, HEIGHT - 2, 1);
+            // narrow segments are read record by record
+            assertRegionReadsLikeReadRasterLine(bandLineReader, 3, 12, 3, 0, HEIGHT - 1, 1);
+            // sub-sampled lines
+            assertRegionReadsLikeReadRasterLine(bandLineReader, 0, WIDTH - 1, 2, 1, HEIGHT - 1, 2);
+            assertRegionReadsLikeReadRasterLine(bandLineReader, 7, 40, 1, 25, HEIGHT - 1, 3);
+        } finally {
+            productFile.close();
+        }
+    }
+
+    private static void assertRegionReadsLikeReadRasterLine(BandLineReader bandLineReader,
+                                                            int sourceMinX, int sourceMaxX, int sourceStepX,
+                                                            int sourceMinY, int sourceMaxY, int sourceStepY)
+            throws IOException {
+        final int destWidth = (sourceMaxX - sourceMinX) / sourceStepX + 1;
+        final int destHeight = (sourceMaxY - sourceMinY) / sourceStepY + 1;
+
+        final ProductData expected = ProductData.createInstance(ProductData.TYPE_INT16, destWidth * destHeight);
+        int destPos = 0;
+        for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
+            bandLineReader.readRasterLine(sourceMinX, sourceMaxX, sourceStepX, sourceY, expected, destPos);
+            destPos += destWidth;
+        }
+
+        final ProductData actual = ProductData.createInstance(ProductData.TYPE_INT16, destWidth * destHeight);
+        EnvisatProductReader.readBandRasterData(bandLineReader,
+                                                sourceMinX, sourceMaxX, sourceStepX,
+                                                sourceMinY, sourceMaxY, sourceStepY,
+                                                actual, destWidth, ProgressMonitor.NULL);
+        assertTrue(Arrays.equals((short[]) expected.getElems(), (short[]) actual.getElems()));
+    }
+
+    private static BandLineReader createBandLineReader(ProductFile productFile) {
+        final RecordInfo recordInfo = new RecordInfo("MDSR");
+        recordInfo.add(new FieldInfo("header", ProductData.TYPE_UINT8, RECORD_HEADER_SIZE, null, null));
+        recordInfo.add(new FieldInfo("samples", ProductData.TYPE_INT16, WIDTH, null, null));
+        recordInfo.add(new FieldInfo("trailer", ProductData.TYPE_UINT8, RECORD_TRAILER_SIZE, null, null));
+        final int recordSize = RECORD_HEADER_SIZE + 2 * WIDTH + RECORD_TRAILER_SIZE;
+        final DSD dsd = new DSD(0, "MDS1", EnvisatConstants.DS_TYPE_MEASUREMENT, "", getDatasetOffset(),
+                                (long) NUM_RECORDS * recordSize, NUM_RECORDS, recordSize);
+        final BandInfo bandInfo = new BandInfo("samples", ProductData.TYPE_INT16, -1, BandInfo.SMODEL_1OF1,
+                                               BandInfo.SCALE_NONE, 0.0f, 1.0f, null, null, null, null,
+                                               WIDTH, HEIGHT);
+        return new BandLineReader(bandInfo, new RecordReader(productFile, dsd, recordInfo), 1);
+    }
+
+    private static short getSample(int recordIndex, int x) {
+        return (short) (100 * recordIndex + x);
+    }
+
+    private static String getDsd() {
+        return "DS_NAME=\"MDS1                        \"\n";
+    }
+
+    private static String getSph() {
+        return "SPH_DESCRIPTOR=\"TEST                        \"\n" + getDsd();
+    }
+
+    private static long getDatasetOffset() {
+        return EnvisatConstants.MPH_SIZE + getSph().length();
+    }
+
+    private static void writeProductFile(File file) throws IOException {
+        final int recordSize = RECORD_HEADER_SIZE + 2 * WIDTH + RECORD_TRAILER_SIZE;
+        final StringBuilder mph = new StringBuilder();
+        mph.append("PRODUCT=\"ASA_IMP_1PNPDE20040101_000000_000000002023_00000_00000_0000.N1\"\n");
+        mph.append("SENSING_START=\"01-JAN-2004 00:00:00.000000\"\n");
+        mph.append("SENSING_STOP=\"01-JAN-2004 00:00:10.000000\"\n");
+        mph.append(String.format("TOT_SIZE=%+021d<bytes>\n", getDatasetOffset() + NUM_RECORDS * recordSize));
+        mph.append(String.format("SPH_SIZE=%+011d<bytes>\n", getSph().length()));
+        mph.append(String.format("NUM_DSD=%+011d\n", 1));
+        mph.append(String.format("DSD_SIZE=%+011d<bytes>\n", getDsd().length()));
+        mph.append(String.format("NUM_DATA_SETS=%+011d\n", 1));
+        while (mph.length() < EnvisatConstants.MPH_SIZE) {
+            mph.append(' ');
+        }
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeBytes(mph.toString());
+            out.writeBytes(getSph());
+            for (int i = 0; i < NUM_RECORDS; i++) {
+                out.write(new byte[RECORD_HEADER_SIZE]);
+                for (int x = 0; x < WIDTH; x++) {
+                    out.writeShort(getSample(i, x));
+                }
+                out.write(new byte[RECORD_TRAILER_SIZE]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * A product file with missing records and records not contiguous with the records of the preceding lines.
+     */
+    private static class TestProductFile extends ForwardingProductFile {
+
+        private final boolean chronologicalOrder;
+
+        private TestProductFile(File file, boolean chronologicalOrder) throws IOException {
+            super(file);
+            this.chronologicalOrder = chronologicalOrder;
+        }
+
+        @Override
+        public boolean storesPixelsInChronologicalOrder() {
+            return chronologicalOrder;
+        }
+
+        @Override
+        int getMappedMDSRIndex(int lineIndex) {
+            if (lineIndex < 30) {
+                return lineIndex;
+            }
+            if (lineIndex < 35) {
+                return -1;
+            }
+            if (lineIndex < 100) {
+                return lineIndex - 5;
+            }
+            // skips two records, the last lines are beyond the last record
+            return lineIndex - 3;
+        }
+
+        @Override
+        double getMissingMDSRPixelValue() {
+            return MISSING_VALUE;
+        }
+    }
+}
@@ -48,6 +48,13 @@ public class GPF {
 
     public static final String DISABLE_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.disableTileCache";
     public static final String USE_FILE_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.useFileTileCache";
+    public static final String COMPRESS_FILE_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.compressFileTileCache";
+    /**
+     * If set to {@code true}, GPF operator tiles are held in a
+     * {@link org.esa.beam.framework.gpf.internal.ShardedTileCache} instead of the JAI tile cache.
+     * The default is {@code false}.
+     */
+    public static final String USE_SHARDED_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.useShardedTileCache";
     public static final String TILE_COMPUTATION_OBSERVER_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.tileComputationObserver";
 
     public static final String SOURCE_PRODUCT_FIELD_NAME = "sourceProduct";
@@ -181,7 +181,11 @@ public class GraphProcessor {
                 final StdOutProgressMonitor stdOutPM = new StdOutProgressMonitor(numYTiles);
                 Dimension tileSize = nodeContextList.get(0).getTargetProduct().getPreferredTileSize();
                 for (int tileY = 0; tileY < numYTiles; tileY++) {
-                    for (int tileX = 0; tileX < numXTiles; tileX++) {
+                    for (int i = 0; i < numXTiles; i++) {
+                        // Traverse the tile rows alternately from left to right and from right to left. The
+                        // first tiles of a row then need the source tiles used last, so these are most likely
+                        // still cached and not the least recently used ones to be evicted first.
+                        final int tileX = tileY % 2 == 0 ? i : numXTiles - 1 - i;
                         if (pm.isCanceled()) {
                             // todo - check: throw exception here? (nf, 2010.10.21)
                             return graphContext.getOutputProducts();
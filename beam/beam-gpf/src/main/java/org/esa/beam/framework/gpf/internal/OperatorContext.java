@@ -30,6 +30,8 @@ import com.bc.ceres.core.Assert;
 import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
 import com.bc.ceres.jai.tilecache.DefaultSwapSpace;
+import com.bc.ceres.jai.tilecache.MappedSwapSpace;
+import com.bc.ceres.jai.tilecache.SwapSpace;
 import com.bc.ceres.jai.tilecache.SwappingTileCache;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.MetadataAttribute;
@@ -65,6 +67,7 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -76,6 +79,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -129,7 +133,8 @@ public class OperatorContext {
     }
 
     /**
-     * Makes sure that the given JAI OpImage has a valid tile cache (see System property {@link GPF#USE_FILE_TILE_CACHE_PROPERTY}),
+     * Makes sure that the given JAI OpImage has a valid tile cache (see System properties {@link GPF#USE_FILE_TILE_CACHE_PROPERTY}
+     * and {@link GPF#USE_SHARDED_TILE_CACHE_PROPERTY}),
      * or makes sure that it has none (see System property {@link GPF#DISABLE_TILE_CACHE_PROPERTY}).
      *
      * @param image Any JAI OpImage.
@@ -147,10 +152,12 @@ public class OperatorContext {
     private static synchronized TileCache getTileCache() {
         if (tileCache == null) {
             boolean useFileTileCache = Boolean.parseBoolean(System.getProperty(GPF.USE_FILE_TILE_CACHE_PROPERTY, "false"));
+            boolean useShardedTileCache = Boolean.parseBoolean(System.getProperty(GPF.USE_SHARDED_TILE_CACHE_PROPERTY, "false"));
             if (useFileTileCache) {
                 tileCache = new SwappingTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(),
-                                                  new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR,
-                                                                       BeamLogManager.getSystemLogger()));
+                                                  createSwapSpace());
+            } else if (useShardedTileCache) {
+                tileCache = new ShardedTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity());
             } else {
                 tileCache = JAI.getDefaultInstance().getTileCache();
             }
@@ -161,6 +168,16 @@ public class OperatorContext {
         return tileCache;
     }
 
+    private static SwapSpace createSwapSpace() {
+        boolean compress = Boolean.parseBoolean(System.getProperty(GPF.COMPRESS_FILE_TILE_CACHE_PROPERTY, "false"));
+        try {
+            return new MappedSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR, compress, BeamLogManager.getSystemLogger());
+        } catch (IOException e) {
+            BeamLogManager.getSystemLogger().log(Level.WARNING, "Unable to create swap file, using a file per tile", e);
+            return new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR, BeamLogManager.getSystemLogger());
+        }
+    }
+
     public String getId() {
         if (id == null) {
             id = getOperatorSpi().getOperatorAlias() + '$' + Long.toHexString(System.currentTimeMillis()).toUpperCase();
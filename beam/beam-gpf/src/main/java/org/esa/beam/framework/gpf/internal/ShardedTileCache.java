@@ -0,0 +1,871 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.internal;
+
+import com.sun.media.jai.util.CacheDiagnostics;
+
+import javax.media.jai.TileCache;
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A tile cache for GPF operator images whose tiles are spread over a number of shards, each with its
+ * own lock and least recently used order, so that concurrent tile requests rarely wait for each other.
+ * <p/>
+ * The cache has a memory budget in bytes. If an added tile exceeds the budget, tiles are evicted until
+ * the memory used is below the memory threshold. Tiles of stale tile rows are evicted first: the cache
+ * records for each image when each of its tile rows was last accessed, and a row is stale once the
+ * image had {@link #STALE_ROW_SWEEPS} times its number of tile columns further tile accesses. For images
+ * which are swept row by row, as by the {@link org.esa.beam.framework.gpf.graph.GraphProcessor}, the rows
+ * behind the processing front are thus evicted before the rows still read by the operators using them,
+ * whatever the extent of their source rectangles is. No tiles are pinned though: if this does not free
+ * enough memory, least recently used tiles are evicted from all shards in turn, whatever their row is.
+ * Tile counts, memory, hits, misses and evictions are accounted per target band of an
+ * {@link OperatorImage} and can be summed up per operator, see {@link #getBandUsages()} and
+ * {@link #getOperatorUsages()}. The totals are available through {@link CacheDiagnostics}.
+ * <p/>
+ * Tile comparators are not supported.
+ * <p/>
+ * GPF uses this cache for all operator images only if the system property
+ * {@link org.esa.beam.framework.gpf.GPF#USE_SHARDED_TILE_CACHE_PROPERTY} is set to {@code true},
+ * otherwise they share the JAI tile cache.
+ */
+public class ShardedTileCache implements TileCache, CacheDiagnostics {
+
+    private static final int STALE_ROW_SWEEPS = 2;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final AtomicLong memoryUsed = new AtomicLong();
+    private final AtomicBoolean memoryControlRunning = new AtomicBoolean();
+    private final ConcurrentHashMap<UsageKey, Usage> usageMap = new ConcurrentHashMap<UsageKey, Usage>();
+    private final ReferenceQueue<OperatorContext> collectedContexts = new ReferenceQueue<OperatorContext>();
+    private final Usage otherUsage = new Usage(null, null);
+    private final ConcurrentHashMap<ImageKey, RowAccess> rowAccessMap = new ConcurrentHashMap<ImageKey, RowAccess>();
+    private final ReferenceQueue<RenderedImage> collectedImages = new ReferenceQueue<RenderedImage>();
+
+    private volatile long memoryCapacity;
+    private volatile float memoryThreshold = 0.75F;
+    private volatile boolean diagnostics = true;
+    private Comparator tileComparator = null;
+    private int nextShard = 0;
+
+    /**
+     * Constructs a cache with a number of shards derived from the number of processors.
+     *
+     * @param memoryCapacity the memory capacity in bytes
+     */
+    public ShardedTileCache(long memoryCapacity) {
+        this(memoryCapacity, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param memoryCapacity the memory capacity in bytes
+     * @param numShards      the minimum number of shards, rounded up to a power of two
+     */
+    public ShardedTileCache(long memoryCapacity, int numShards) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        int n = 1;
+        while (n < numShards) {
+            n <<= 1;
+        }
+        this.shards = new Shard[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = n - 1;
+        this.memoryCapacity = memoryCapacity;
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile) {
+        add(owner, tileX, tileY, tile, null);
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile, Object tileCacheMetric) {
+        if (memoryCapacity == 0) {
+            return;
+        }
+        final TileKey key = new TileKey(owner, tileX, tileY, true);
+        final Entry entry = new Entry(key, tile, getUsage(owner, tileCacheMetric), getRowAccess(owner));
+        entry.touch();
+        final Shard shard = getShard(key);
+        final Entry oldEntry;
+        synchronized (shard) {
+            oldEntry = shard.entries.put(key, entry);
+            shard.memoryUsed += entry.tileSize;
+            if (oldEntry != null) {
+                shard.memoryUsed -= oldEntry.tileSize;
+            }
+        }
+        entry.usage.added(entry.tileSize);
+        if (oldEntry != null) {
+            oldEntry.usage.removed(oldEntry.tileSize);
+        }
+        final long used = memoryUsed.addAndGet(oldEntry != null ? entry.tileSize - oldEntry.tileSize : entry.tileSize);
+        if (used > memoryCapacity) {
+            memoryControl();
+        }
+    }
+
+    @Override
+    public void addTiles(RenderedImage owner, Point[] tileIndices, Raster[] tiles, Object tileCacheMetric) {
+        for (int i = 0; i < tileIndices.length; i++) {
+            add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
+        }
+    }
+
+    @Override
+    public void remove(RenderedImage owner, int tileX, int tileY) {
+        final TileKey key = new TileKey(owner, tileX, tileY, false);
+        final Shard shard = getShard(key);
+        final Entry entry;
+        synchronized (shard) {
+            entry = shard.entries.remove(key);
+            if (entry != null) {
+                shard.memoryUsed -= entry.tileSize;
+            }
+        }
+        if (entry != null) {
+            removed(entry);
+        }
+    }
+
+    @Override
+    public void removeTiles(RenderedImage owner) {
+        for (Shard shard : shards) {
+            final List<Entry> removedEntries = new ArrayList<Entry>();
+            synchronized (shard) {
+                final Iterator<Entry> iterator = shard.entries.values().iterator();
+                while (iterator.hasNext()) {
+                    final Entry entry = iterator.next();
+                    if (entry.key.getOwner() == owner) {
+                        iterator.remove();
+                        shard.memoryUsed -= entry.tileSize;
+                        removedEntries.add(entry);
+                    }
+                }
+            }
+            for (Entry entry : removedEntries) {
+                removed(entry);
+            }
+        }
+        rowAccessMap.remove(new ImageKey(owner, null));
+        if (owner instanceof OperatorImage) {
+            // other images of the operator may compute the same band
+            final OperatorImage operatorImage = (OperatorImage) owner;
+            final UsageKey usageKey = new UsageKey(operatorImage.getOperatorContext(),
+                                                   operatorImage.getTargetBand().getName(), null);
+            final Usage usage = usageMap.get(usageKey);
+            if (usage != null && usage.getTileCount() == 0) {
+                usageMap.remove(usageKey, usage);
+            }
+        }
+    }
+
+    @Override
+    public Raster getTile(RenderedImage owner, int tileX, int tileY) {
+        final TileKey key = new TileKey(owner, tileX, tileY, false);
+        final Shard shard = getShard(key);
+        final Entry entry;
+        synchronized (shard) {
+            entry = shard.entries.get(key);
+            if (entry != null) {
+                shard.hitCount++;
+                entry.touch();
+            } else {
+                shard.missCount++;
+            }
+        }
+        if (entry != null) {
+            if (diagnostics) {
+                entry.usage.hitCount.incrementAndGet();
+            }
+            return entry.tile;
+        }
+        if (diagnostics) {
+            getUsage(owner, null).missCount.incrementAndGet();
+        }
+        return null;
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner) {
+        final List<Raster> tiles = new ArrayList<Raster>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Entry entry : shard.entries.values()) {
+                    if (entry.key.getOwner() == owner) {
+                        tiles.add(entry.tile);
+                    }
+                }
+            }
+        }
+        return tiles.isEmpty() ? null : tiles.toArray(new Raster[tiles.size()]);
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+        final Raster[] tiles = new Raster[tileIndices.length];
+        for (int i = 0; i < tileIndices.length; i++) {
+            tiles[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        }
+        return tiles;
+    }
+
+    @Override
+    public void flush() {
+        for (Shard shard : shards) {
+            final List<Entry> removedEntries;
+            synchronized (shard) {
+                removedEntries = new ArrayList<Entry>(shard.entries.values());
+                shard.entries.clear();
+                shard.memoryUsed = 0;
+            }
+            for (Entry entry : removedEntries) {
+                removed(entry);
+            }
+        }
+        rowAccessMap.clear();
+    }
+
+    /**
+     * Evicts tiles of stale tile rows, most stale first, and then least recently used tiles until
+     * the memory used is below the memory threshold. Shards are visited in turn and only one shard
+     * is locked at a time. If another thread is already evicting tiles, this method returns immediately.
+     * That thread evicts tiles again if the tiles added meanwhile exceed the memory capacity.
+     */
+    @Override
+    public void memoryControl() {
+        while (memoryControlRunning.compareAndSet(false, true)) {
+            try {
+                evictTiles();
+            } finally {
+                memoryControlRunning.set(false);
+            }
+            if (memoryUsed.get() <= memoryCapacity) {
+                return;
+            }
+        }
+    }
+
+    private void evictTiles() {
+        final long target = (long) (memoryCapacity * memoryThreshold);
+        evictStaleTiles(target);
+        int shardIndex = nextShard;
+        int numEmptyShards = 0;
+        while (memoryUsed.get() > target && numEmptyShards < shards.length) {
+            final Shard shard = shards[shardIndex];
+            shardIndex = (shardIndex + 1) & shardMask;
+            Entry entry = null;
+            synchronized (shard) {
+                final Iterator<Entry> iterator = shard.entries.values().iterator();
+                if (iterator.hasNext()) {
+                    entry = iterator.next();
+                    iterator.remove();
+                    shard.memoryUsed -= entry.tileSize;
+                    shard.evictionCount++;
+                }
+            }
+            if (entry != null) {
+                removed(entry);
+                entry.usage.evictionCount.incrementAndGet();
+                numEmptyShards = 0;
+            } else {
+                numEmptyShards++;
+            }
+        }
+        nextShard = shardIndex;
+    }
+
+    private void evictStaleTiles(long target) {
+        final List<Entry> staleEntries = new ArrayList<Entry>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Entry entry : shard.entries.values()) {
+                    if (entry.getStaleness() >= STALE_ROW_SWEEPS) {
+                        staleEntries.add(entry);
+                    }
+                }
+            }
+        }
+        if (staleEntries.isEmpty()) {
+            return;
+        }
+        // the staleness changes concurrently, so sort a snapshot of it: staleness in the upper and index in the lower half
+        final long[] sortKeys = new long[staleEntries.size()];
+        for (int i = 0; i < sortKeys.length; i++) {
+            sortKeys[i] = ((long) staleEntries.get(i).getStaleness() << 32) | i;
+        }
+        Arrays.sort(sortKeys);
+        for (int i = sortKeys.length - 1; i >= 0 && memoryUsed.get() > target; i--) {
+            final Entry entry = staleEntries.get((int) sortKeys[i]);
+            final Shard shard = getShard(entry.key);
+            boolean evicted = false;
+            synchronized (shard) {
+                if (shard.entries.get(entry.key) == entry) {
+                    shard.entries.remove(entry.key);
+                    shard.memoryUsed -= entry.tileSize;
+                    shard.evictionCount++;
+                    evicted = true;
+                }
+            }
+            if (evicted) {
+                removed(entry);
+                entry.usage.evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @deprecated the cache is limited by memory only
+     */
+    @Override
+    @Deprecated
+    public void setTileCapacity(int tileCapacity) {
+    }
+
+    /**
+     * @deprecated the cache is limited by memory only
+     */
+    @Override
+    @Deprecated
+    public int getTileCapacity() {
+        return 0;
+    }
+
+    @Override
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        final long oldCapacity = this.memoryCapacity;
+        this.memoryCapacity = memoryCapacity;
+        if (memoryCapacity == 0) {
+            flush();
+        } else if (memoryCapacity < oldCapacity) {
+            memoryControl();
+        }
+    }
+
+    @Override
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    @Override
+    public void setMemoryThreshold(float memoryThreshold) {
+        if (memoryThreshold < 0.0F || memoryThreshold > 1.0F) {
+            throw new IllegalArgumentException("memoryThreshold not in [0, 1]");
+        }
+        this.memoryThreshold = memoryThreshold;
+        memoryControl();
+    }
+
+    @Override
+    public float getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    @Override
+    public synchronized void setTileComparator(Comparator comparator) {
+        this.tileComparator = comparator;
+    }
+
+    @Override
+    public synchronized Comparator getTileComparator() {
+        return tileComparator;
+    }
+
+    @Override
+    public void enableDiagnostics() {
+        diagnostics = true;
+    }
+
+    @Override
+    public void disableDiagnostics() {
+        diagnostics = false;
+    }
+
+    @Override
+    public long getCacheTileCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.entries.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getCacheMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.hitCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.missCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of tiles evicted to keep the memory used within the memory capacity
+     */
+    public long getCacheEvictionCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.evictionCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void resetCounts() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.hitCount = 0;
+                shard.missCount = 0;
+                shard.evictionCount = 0;
+            }
+        }
+        for (Usage usage : usageMap.values()) {
+            usage.resetCounts();
+        }
+        otherUsage.resetCounts();
+    }
+
+    /**
+     * @return the usage of the cache by each target band of an operator image. Tiles of other
+     *         images are accounted in a usage with neither operator nor band.
+     */
+    public Usage[] getBandUsages() {
+        final List<Usage> usages = new ArrayList<Usage>(usageMap.values());
+        usages.add(otherUsage);
+        return usages.toArray(new Usage[usages.size()]);
+    }
+
+    /**
+     * @return the usage of the cache summed up per operator. Operators are told apart by identity,
+     *         so operators with equal ids have usages of their own.
+     */
+    public Usage[] getOperatorUsages() {
+        final Map<OperatorContext, Usage> operatorUsages = new IdentityHashMap<OperatorContext, Usage>();
+        for (Map.Entry<UsageKey, Usage> entry : usageMap.entrySet()) {
+            final OperatorContext operatorContext = entry.getKey().getOperatorContext();
+            if (operatorContext == null) {
+                continue;
+            }
+            final Usage usage = entry.getValue();
+            Usage operatorUsage = operatorUsages.get(operatorContext);
+            if (operatorUsage == null) {
+                operatorUsage = new Usage(usage.getOperatorId(), null);
+                operatorUsages.put(operatorContext, operatorUsage);
+            }
+            operatorUsage.add(usage);
+        }
+        return operatorUsages.values().toArray(new Usage[operatorUsages.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + ": memoryCapacity = " + Long.toHexString(memoryCapacity) +
+               " memoryUsed = " + Long.toHexString(memoryUsed.get()) +
+               " #tilesInCache = " + Long.toString(getCacheTileCount());
+    }
+
+    private Shard getShard(TileKey key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return shards[h & shardMask];
+    }
+
+    private void removed(Entry entry) {
+        memoryUsed.addAndGet(-entry.tileSize);
+        entry.usage.removed(entry.tileSize);
+    }
+
+    private Usage getUsage(RenderedImage owner, Object tileCacheMetric) {
+        final OperatorContext operatorContext;
+        final String bandName;
+        if (owner instanceof OperatorImage) {
+            final OperatorImage operatorImage = (OperatorImage) owner;
+            operatorContext = operatorImage.getOperatorContext();
+            bandName = operatorImage.getTargetBand().getName();
+        } else if (tileCacheMetric instanceof OperatorContext) {
+            operatorContext = (OperatorContext) tileCacheMetric;
+            bandName = null;
+        } else {
+            return otherUsage;
+        }
+
+        Usage usage = usageMap.get(new UsageKey(operatorContext, bandName, null));
+        if (usage == null) {
+            removeCollectedUsages();
+            final Usage newUsage = new Usage(operatorContext.getId(), bandName);
+            usage = usageMap.putIfAbsent(new UsageKey(operatorContext, bandName, collectedContexts), newUsage);
+            if (usage == null) {
+                usage = newUsage;
+            }
+        }
+        return usage;
+    }
+
+    private void removeCollectedUsages() {
+        Reference<? extends OperatorContext> usageKey;
+        while ((usageKey = collectedContexts.poll()) != null) {
+            usageMap.remove(usageKey);
+        }
+    }
+
+    private RowAccess getRowAccess(RenderedImage owner) {
+        RowAccess rowAccess = rowAccessMap.get(new ImageKey(owner, null));
+        if (rowAccess == null) {
+            removeCollectedRowAccesses();
+            final RowAccess newRowAccess = new RowAccess(owner);
+            rowAccess = rowAccessMap.putIfAbsent(new ImageKey(owner, collectedImages), newRowAccess);
+            if (rowAccess == null) {
+                rowAccess = newRowAccess;
+            }
+        }
+        return rowAccess;
+    }
+
+    private void removeCollectedRowAccesses() {
+        Reference<? extends RenderedImage> imageKey;
+        while ((imageKey = collectedImages.poll()) != null) {
+            rowAccessMap.remove(imageKey);
+        }
+    }
+
+    /**
+     * Tile counts, memory and counters of the tiles of one band or operator.
+     */
+    public static final class Usage {
+
+        private final String operatorId;
+        private final String bandName;
+        private final AtomicLong tileCount = new AtomicLong();
+        private final AtomicLong memoryUsed = new AtomicLong();
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+        private final AtomicLong evictionCount = new AtomicLong();
+
+        Usage(String operatorId, String bandName) {
+            this.operatorId = operatorId;
+            this.bandName = bandName;
+        }
+
+        /**
+         * @return the id of the operator or null for tiles of other images
+         */
+        public String getOperatorId() {
+            return operatorId;
+        }
+
+        /**
+         * @return the name of the target band or null for usages summed up per operator
+         */
+        public String getBandName() {
+            return bandName;
+        }
+
+        public long getTileCount() {
+            return tileCount.get();
+        }
+
+        public long getMemoryUsed() {
+            return memoryUsed.get();
+        }
+
+        public long getHitCount() {
+            return hitCount.get();
+        }
+
+        public long getMissCount() {
+            return missCount.get();
+        }
+
+        public long getEvictionCount() {
+            return evictionCount.get();
+        }
+
+        private void added(long tileSize) {
+            tileCount.incrementAndGet();
+            memoryUsed.addAndGet(tileSize);
+        }
+
+        private void removed(long tileSize) {
+            tileCount.decrementAndGet();
+            memoryUsed.addAndGet(-tileSize);
+        }
+
+        private void add(Usage usage) {
+            tileCount.addAndGet(usage.getTileCount());
+            memoryUsed.addAndGet(usage.getMemoryUsed());
+            hitCount.addAndGet(usage.getHitCount());
+            missCount.addAndGet(usage.getMissCount());
+            evictionCount.addAndGet(usage.getEvictionCount());
+        }
+
+        private void resetCounts() {
+            hitCount.set(0);
+            missCount.set(0);
+            evictionCount.set(0);
+        }
+    }
+
+    private static final class Shard {
+        // in access order, the first entry is the least recently used one
+        final LinkedHashMap<TileKey, Entry> entries = new LinkedHashMap<TileKey, Entry>(64, 0.75F, true);
+        long memoryUsed;
+        long hitCount;
+        long missCount;
+        long evictionCount;
+    }
+
+    private static final class Entry {
+        final TileKey key;
+        final Raster tile;
+        final long tileSize;
+        final Usage usage;
+        final RowAccess rowAccess;
+
+        Entry(TileKey key, Raster tile, Usage usage, RowAccess rowAccess) {
+            this.key = key;
+            this.tile = tile;
+            this.usage = usage;
+            this.rowAccess = rowAccess;
+            final DataBuffer db = tile.getDataBuffer();
+            this.tileSize = DataBuffer.getDataTypeSize(db.getDataType()) / 8L * db.getSize() * db.getNumBanks();
+        }
+
+        void touch() {
+            rowAccess.touch(key.tileY);
+        }
+
+        int getStaleness() {
+            return rowAccess.getStaleness(key.tileY);
+        }
+    }
+
+    /**
+     * Records when the tile rows of an image were last accessed, counted in accesses of tiles of the image.
+     * It is updated without synchronization, lost updates only make it a less precise eviction hint.
+     */
+    private static final class RowAccess {
+        private final int minTileY;
+        private final int numXTiles;
+        // touched by threads adding tiles and by threads holding different shard locks
+        private final AtomicIntegerArray rowAccessCounts;
+        private final AtomicInteger accessCount = new AtomicInteger();
+
+        RowAccess(RenderedImage image) {
+            minTileY = image.getMinTileY();
+            numXTiles = Math.max(1, image.getNumXTiles());
+            rowAccessCounts = new AtomicIntegerArray(Math.max(0, image.getNumYTiles()));
+        }
+
+        void touch(int tileY) {
+            final int row = tileY - minTileY;
+            if (row >= 0 && row < rowAccessCounts.length()) {
+                rowAccessCounts.set(row, accessCount.incrementAndGet());
+            }
+        }
+
+        /**
+         * @return the number of accesses since the tile row was last accessed, in units of the number of tile columns
+         */
+        int getStaleness(int tileY) {
+            final int row = tileY - minTileY;
+            if (row < 0 || row >= rowAccessCounts.length()) {
+                return 0;
+            }
+            // the difference is correct even if the counts overflowed
+            return (accessCount.get() - rowAccessCounts.get(row)) / numXTiles;
+        }
+    }
+
+    /**
+     * Identifies an image by its identity. Keys stored in the row access map are created with a queue and only
+     * hold a weak reference to the image, so that they are enqueued when the image is garbage collected.
+     */
+    private static final class ImageKey extends WeakReference<RenderedImage> {
+        private final RenderedImage lookupImage;
+        private final int hash;
+
+        ImageKey(RenderedImage image, ReferenceQueue<RenderedImage> queue) {
+            super(queue != null ? image : null, queue);
+            this.lookupImage = queue != null ? null : image;
+            this.hash = System.identityHashCode(image);
+        }
+
+        RenderedImage getImage() {
+            return lookupImage != null ? lookupImage : get();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ImageKey)) {
+                return false;
+            }
+            final ImageKey other = (ImageKey) obj;
+            if (hash != other.hash) {
+                return false;
+            }
+            final RenderedImage image = getImage();
+            return image != null && image == other.getImage();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Identifies the usage of a target band of an operator, or of the other images of an operator if the band
+     * name is null, by the identity of the operator context. Keys stored in the usage map are created with a
+     * queue and only hold a weak reference to the operator context, so that they are enqueued when the
+     * operator is garbage collected.
+     */
+    private static final class UsageKey extends WeakReference<OperatorContext> {
+        private final OperatorContext lookupContext;
+        private final String bandName;
+        private final int hash;
+
+        UsageKey(OperatorContext operatorContext, String bandName, ReferenceQueue<OperatorContext> queue) {
+            super(queue != null ? operatorContext : null, queue);
+            this.lookupContext = queue != null ? null : operatorContext;
+            this.bandName = bandName;
+            this.hash = 31 * System.identityHashCode(operatorContext) + (bandName != null ? bandName.hashCode() : 0);
+        }
+
+        OperatorContext getOperatorContext() {
+            return lookupContext != null ? lookupContext : get();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof UsageKey)) {
+                return false;
+            }
+            final UsageKey other = (UsageKey) obj;
+            if (hash != other.hash || (bandName != null ? !bandName.equals(other.bandName) : other.bandName != null)) {
+                return false;
+            }
+            final OperatorContext operatorContext = getOperatorContext();
+            return operatorContext != null && operatorContext == other.getOperatorContext();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Identifies a tile by the identity of its owner and its indices. Keys stored in the cache only hold
+     * a weak reference to the owner, so that images which are not disposed can still be garbage collected.
+     */
+    private static final class TileKey {
+        private final RenderedImage owner;
+        private final WeakReference<RenderedImage> ownerRef;
+        private final int tileX;
+        private final int tileY;
+        private final int hash;
+
+        TileKey(RenderedImage owner, int tileX, int tileY, boolean weak) {
+            this.owner = weak ? null : owner;
+            this.ownerRef = weak ? new WeakReference<RenderedImage>(owner) : null;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.hash = (31 * System.identityHashCode(owner) + tileX) * 31 + tileY;
+        }
+
+        RenderedImage getOwner() {
+            return ownerRef != null ? ownerRef.get() : owner;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            if (hash != other.hash || tileX != other.tileX || tileY != other.tileY) {
+                return false;
+            }
+            final RenderedImage image = getOwner();
+            return image != null && image == other.getOwner();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
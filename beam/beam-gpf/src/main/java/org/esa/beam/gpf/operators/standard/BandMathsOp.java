@@ -29,6 +29,7 @@ import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic.ProductPrefixProvider;
+import org.esa.beam.framework.dataop.barithm.CompiledTerm;
 import org.esa.beam.framework.dataop.barithm.RasterDataEvalEnv;
 import org.esa.beam.framework.dataop.barithm.RasterDataSymbol;
 import org.esa.beam.framework.gpf.Operator;
@@ -291,8 +292,15 @@ public class BandMathsOp extends Operator {
         }
 
         final RasterDataEvalEnv env = new RasterDataEvalEnv(rect.x, rect.y, rect.width, rect.height);
+        final CompiledTerm compiledTerm = CompiledTerm.compile(term);
         pm.beginTask("Evaluating expression", rect.height);
         try {
+            if (compiledTerm != null) {
+                final double[] values = new double[rect.width * rect.height];
+                compiledTerm.evalD(env, values);
+                setSamples(targetTile, values, pm);
+                return;
+            }
             int pixelIndex = 0;
             for (int y = rect.y; y < rect.y + rect.height; y++) {
                 if (pm.isCanceled()) {
@@ -310,6 +318,21 @@ public class BandMathsOp extends Operator {
         }
     }
 
+    private static void setSamples(Tile targetTile, double[] values, ProgressMonitor pm) {
+        final Rectangle rect = targetTile.getRectangle();
+        int pixelIndex = 0;
+        for (int y = rect.y; y < rect.y + rect.height; y++) {
+            if (pm.isCanceled()) {
+                break;
+            }
+            for (int x = rect.x; x < rect.x + rect.width; x++) {
+                targetTile.setSample(x, y, values[pixelIndex]);
+                pixelIndex++;
+            }
+            pm.worked(1);
+        }
+    }
+
     private void createBand(BandDescriptor bandDescriptor, Parser verificationParser) {
         if (StringUtils.isNullOrEmpty(bandDescriptor.name)) {
             throw new OperatorException("Missing band name.");
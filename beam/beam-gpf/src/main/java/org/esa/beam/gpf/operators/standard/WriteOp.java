@@ -42,15 +42,19 @@ import org.esa.beam.util.math.MathUtils;
 import javax.media.jai.JAI;
 import javax.media.jai.TileCache;
 import java.awt.Dimension;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This standard operator is used to store a data product to a specified file location.
@@ -123,8 +127,16 @@ public class WriteOp extends Operator implements Output {
                description = "If true, the internal tile cache is cleared after a tile row has been written. Ignored if writeEntireTileRows=false.")
     private boolean clearCacheAfterRowWrite;
 
-    private final Map<MultiLevelImage, List<Point>> todoLists = new HashMap<MultiLevelImage, List<Point>>();
+    private final TileTracker queuedTiles = new TileTracker();
+    private final TileTracker writtenTiles = new TileTracker();
     private final Map<Row, Tile[]> writeCache = new HashMap<Row, Tile[]>();
+    private final Map<Band, Object> bandLocks = new HashMap<Band, Object>();
+    private final Object writeMonitor = new Object();
+    private final ReadWriteLock writerLock = new ReentrantReadWriteLock();
+    private int numPendingWrites;
+    private BlockingQueue<WriteJob> writeQueue;
+    private Thread[] writerThreads;
+    private volatile Throwable writeError;
 
     private ProductWriter productWriter;
     private List<Band> writableBands;
@@ -205,6 +217,7 @@ public class WriteOp extends Operator implements Output {
         OperatorExecutor operatorExecutor = OperatorExecutor.create(this);
         try {
             operatorExecutor.execute(ExecutionOrder.ROW_BAND_COLUMN, pm);
+            waitForWrites();
 
             getLogger().info("End writing product " + getTargetProduct().getName() + " to " + getFile());
 
@@ -220,6 +233,7 @@ public class WriteOp extends Operator implements Output {
             stopTileComputationObservation();
         } catch (OperatorException e) {
             if (deleteOutputOnFailure && !outputFileExists) {
+                stopWriterThreads();
                 try {
                     productWriter.deleteOutput();
                 } catch (Exception e2) {
@@ -249,6 +263,7 @@ public class WriteOp extends Operator implements Output {
             band.getSourceImage(); // trigger source image creation
             if (productWriter.shouldWrite(band)) {
                 writableBands.add(band);
+                bandLocks.put(band, new Object());
             }
         }
 
@@ -263,31 +278,39 @@ public class WriteOp extends Operator implements Output {
             return;
         }
         try {
+            if (writeError != null) {
+                throw new OperatorException(writeError);
+            }
             synchronized (this) {
                 if (!productFileWritten) {
                     productWriter.writeProductNodes(targetProduct, file);
                     productFileWritten = true;
+                    startWriterThreads();
                 }
             }
-            final Rectangle rect = targetTile.getRectangle();
+            final Tile[] tiles;
             if (writeEntireTileRows) {
                 int tileX = MathUtils.floorInt(targetTile.getMinX() / (double) tileSize.width);
                 int tileY = MathUtils.floorInt(targetTile.getMinY() / (double) tileSize.height);
                 Row row = new Row(targetBand, tileY);
-                Tile[] tileRow = updateTileRow(row, tileX, targetTile);
-                if (tileRow != null) {
-                    writeTileRow(targetBand, tileRow);
-                }
+                tiles = updateTileRow(row, tileX, targetTile);
             } else {
-                final ProductData rawSamples = targetTile.getRawSamples();
-                synchronized (productWriter) {
-                    productWriter.writeBandRasterData(targetBand, rect.x, rect.y, rect.width, rect.height, rawSamples,
-                                                      pm);
+                tiles = new Tile[]{targetTile};
+            }
+            if (tiles != null) {
+                queueWrite(new WriteJob(targetBand, tiles));
+                if (queuedTiles.markTilesDone(targetBand, tiles)) {
+                    // the graph processor does not call writeProduct, so the last tile waits for
+                    // the writer threads in order to report their errors
+                    waitForWrites();
                 }
             }
-            markTileDone(targetBand, targetTile);
         } catch (Exception e) {
+            if (writeError == null) {
+                writeError = e;
+            }
             if (deleteOutputOnFailure && !outputFileExists) {
+                stopWriterThreads();
                 try {
                     productWriter.deleteOutput();
                     productFileWritten = false;
@@ -302,71 +325,129 @@ public class WriteOp extends Operator implements Output {
         }
     }
 
-    private Tile[] updateTileRow(Row key, int tileX, Tile currentTile) {
-        synchronized (writeCache) {
-            Tile[] tileRow;
-            if (writeCache.containsKey(key)) {
-                tileRow = writeCache.get(key);
-            } else {
-                tileRow = new Tile[tileCountX];
-                writeCache.put(key, tileRow);
+    /**
+     * Starts the threads writing the queued tiles. Writers for which bands are independent files,
+     * such as BEAM-DIMAP, get one thread per band up to the number of processors, others get a single thread.
+     */
+    private void startWriterThreads() {
+        int numThreads = 1;
+        if (productWriter instanceof DimapProductWriter) {
+            numThreads = Math.max(1, Math.min(writableBands.size(), Runtime.getRuntime().availableProcessors()));
+        }
+        writerLock.writeLock().lock();
+        try {
+            writeQueue = new ArrayBlockingQueue<WriteJob>(2 * numThreads);
+            writerThreads = new Thread[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                writerThreads[i] = new Thread(new Writer(), "WriteOp-" + (i + 1));
+                writerThreads[i].setDaemon(true);
+                writerThreads[i].start();
             }
-            tileRow[tileX] = currentTile;
-            for (Tile tile : tileRow) {
-                if (tile == null) {
-                    return null;
+        } finally {
+            writerLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a write job. The read lock keeps the writer threads running until the job is queued.
+     */
+    private void queueWrite(WriteJob job) throws InterruptedException {
+        writerLock.readLock().lock();
+        try {
+            if (writerThreads == null) {
+                throw new OperatorException("The writing of product " + targetProduct.getName() + " has been stopped");
+            }
+            synchronized (writeMonitor) {
+                numPendingWrites++;
+            }
+            try {
+                writeQueue.put(job);
+            } catch (InterruptedException e) {
+                synchronized (writeMonitor) {
+                    numPendingWrites--;
+                    writeMonitor.notifyAll();
                 }
+                throw e;
             }
-            writeCache.remove(key);
-            return tileRow;
+        } finally {
+            writerLock.readLock().unlock();
         }
     }
 
-    private void writeTileRow(Band band, Tile[] cacheLine) throws IOException {
-        Tile firstTile = cacheLine[0];
-        int sceneWidth = targetProduct.getSceneRasterWidth();
-        Rectangle lineBounds = new Rectangle(0, firstTile.getMinY(), sceneWidth, firstTile.getHeight());
-        ProductData[] rawSampleOFLine = new ProductData[cacheLine.length];
-        int[] tileWidth = new int[cacheLine.length];
-        for (int tileX = 0; tileX < cacheLine.length; tileX++) {
-            Tile tile = cacheLine[tileX];
-            rawSampleOFLine[tileX] = tile.getRawSamples();
-            tileWidth[tileX] = tile.getRectangle().width;
-        }
-        ProductData sampleLine = ProductData.createInstance(rawSampleOFLine[0].getType(), sceneWidth);
-        synchronized (productWriter) {
-            for (int y = lineBounds.y; y < lineBounds.y + lineBounds.height; y++) {
-                int targetPos = 0;
-                for (int tileX = 0; tileX < cacheLine.length; tileX++) {
-                    Object rawSamples = rawSampleOFLine[tileX].getElems();
-                    int width = tileWidth[tileX];
-                    int srcPos = (y - lineBounds.y) * width;
-                    System.arraycopy(rawSamples, srcPos, sampleLine.getElems(), targetPos, width);
-                    targetPos += width;
+    /**
+     * Waits until all queued tiles are written.
+     *
+     * @throws OperatorException if writing a tile failed
+     */
+    private void waitForWrites() throws OperatorException {
+        synchronized (writeMonitor) {
+            while (numPendingWrites > 0) {
+                try {
+                    writeMonitor.wait();
+                } catch (InterruptedException e) {
+                    throw new OperatorException(e);
                 }
-                productWriter.writeBandRasterData(band, 0, y, sceneWidth, 1, sampleLine, ProgressMonitor.NULL);
             }
-            if (clearCacheAfterRowWrite) {
-                TileCache tileCache = JAI.getDefaultInstance().getTileCache();
-                if (tileCache != null) {
-                    tileCache.flush();
+        }
+        if (writeError != null) {
+            throw new OperatorException(writeError);
+        }
+    }
+
+    /**
+     * Waits for the queued tiles and stops the writer threads. After this method returns no
+     * writer thread accesses the output any more.
+     */
+    private void stopWriterThreads() {
+        // the write lock waits for the compute threads blocked in queueWrite
+        writerLock.writeLock().lock();
+        try {
+            if (writerThreads == null) {
+                return;
+            }
+            try {
+                waitForWrites();
+            } catch (OperatorException e) {
+                getLogger().warning("Failed to write product: " + e.getMessage());
+            }
+            try {
+                for (int i = 0; i < writerThreads.length; i++) {
+                    writeQueue.put(WriteJob.STOP);
                 }
+                for (Thread writerThread : writerThreads) {
+                    writerThread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            writerThreads = null;
+        } finally {
+            writerLock.writeLock().unlock();
         }
     }
 
-    private void markTileDone(Band targetBand, Tile targetTile) throws IOException {
-        boolean done;
-        synchronized (todoLists) {
-            MultiLevelImage sourceImage = targetBand.getSourceImage();
-
-            final List<Point> currentTodoList = getTodoList(sourceImage);
-            currentTodoList.remove(new Point(sourceImage.XToTileX(targetTile.getMinX()),
-                                             sourceImage.YToTileY(targetTile.getMinY())));
-
-            done = isDone();
+    private void write(WriteJob job) throws IOException {
+        final Tile[] tiles = job.tiles;
+        final ProductData data;
+        final Rectangle bounds;
+        if (tiles.length == 1) {
+            bounds = tiles[0].getRectangle();
+            data = tiles[0].getRawSamples();
+        } else {
+            data = getTileRowData(tiles);
+            bounds = new Rectangle(0, tiles[0].getMinY(), targetProduct.getSceneRasterWidth(), tiles[0].getHeight());
+        }
+        synchronized (getWriteLock(job.band)) {
+            productWriter.writeBandRasterData(job.band, bounds.x, bounds.y, bounds.width, bounds.height, data,
+                                              ProgressMonitor.NULL);
+        }
+        if (tiles.length > 1 && clearCacheAfterRowWrite) {
+            TileCache tileCache = JAI.getDefaultInstance().getTileCache();
+            if (tileCache != null) {
+                tileCache.flush();
+            }
         }
-        if (done) {
+        if (writtenTiles.markTilesDone(job.band, tiles)) {
             // If we get here all tiles are written
             if (productWriter instanceof DimapProductWriter) {
                 // if we can update the header (only DIMAP) rewrite it!
@@ -377,30 +458,61 @@ public class WriteOp extends Operator implements Output {
         }
     }
 
-    private boolean isDone() {
-        for (List<Point> todoList : todoLists.values()) {
-            if (!todoList.isEmpty()) {
-                return false;
-            }
+    /**
+     * Bands of writers writing each band to its own file can be written concurrently,
+     * all other writers are locked as a whole.
+     */
+    private Object getWriteLock(Band band) {
+        if (productWriter instanceof DimapProductWriter) {
+            return bandLocks.get(band);
         }
-        return true;
+        return productWriter;
     }
 
-
-    private List<Point> getTodoList(MultiLevelImage sourceImage) {
-        List<Point> todoList = todoLists.get(sourceImage);
-        if (todoList == null) {
-            final int numXTiles = sourceImage.getNumXTiles();
-            final int numYTiles = sourceImage.getNumYTiles();
-            todoList = new ArrayList<Point>(numXTiles * numYTiles);
-            for (int y = 0; y < numYTiles; y++) {
-                for (int x = 0; x < numXTiles; x++) {
-                    todoList.add(new Point(x, y));
+    private Tile[] updateTileRow(Row key, int tileX, Tile currentTile) {
+        synchronized (writeCache) {
+            Tile[] tileRow;
+            if (writeCache.containsKey(key)) {
+                tileRow = writeCache.get(key);
+            } else {
+                tileRow = new Tile[tileCountX];
+                writeCache.put(key, tileRow);
+            }
+            tileRow[tileX] = currentTile;
+            for (Tile tile : tileRow) {
+                if (tile == null) {
+                    return null;
                 }
             }
-            todoLists.put(sourceImage, todoList);
+            writeCache.remove(key);
+            return tileRow;
+        }
+    }
+
+    /**
+     * Copies the tiles of a tile row into one buffer covering the full scene width.
+     */
+    private ProductData getTileRowData(Tile[] cacheLine) {
+        int sceneWidth = targetProduct.getSceneRasterWidth();
+        int height = cacheLine[0].getHeight();
+        ProductData[] rawSampleOFLine = new ProductData[cacheLine.length];
+        int[] tileWidth = new int[cacheLine.length];
+        for (int tileX = 0; tileX < cacheLine.length; tileX++) {
+            Tile tile = cacheLine[tileX];
+            rawSampleOFLine[tileX] = tile.getRawSamples();
+            tileWidth[tileX] = tile.getRectangle().width;
+        }
+        ProductData rowData = ProductData.createInstance(rawSampleOFLine[0].getType(), sceneWidth * height);
+        Object rowElems = rowData.getElems();
+        int targetPos = 0;
+        for (int y = 0; y < height; y++) {
+            for (int tileX = 0; tileX < cacheLine.length; tileX++) {
+                int width = tileWidth[tileX];
+                System.arraycopy(rawSampleOFLine[tileX].getElems(), y * width, rowElems, targetPos, width);
+                targetPos += width;
+            }
         }
-        return todoList;
+        return rowData;
     }
 
     /**
@@ -447,13 +559,16 @@ public class WriteOp extends Operator implements Output {
 
     @Override
     public void dispose() {
+        stopWriterThreads();
         try {
             productWriter.close();
         } catch (IOException ignore) {
         }
         writableBands.clear();
-        todoLists.clear();
+        queuedTiles.clear();
+        writtenTiles.clear();
         writeCache.clear();
+        bandLocks.clear();
         super.dispose();
     }
 
@@ -465,6 +580,90 @@ public class WriteOp extends Operator implements Output {
         }
     }
 
+    private class Writer implements Runnable {
+
+        public void run() {
+            while (true) {
+                final WriteJob job;
+                try {
+                    job = writeQueue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job == WriteJob.STOP) {
+                    return;
+                }
+                try {
+                    if (writeError == null) {
+                        write(job);
+                    }
+                } catch (Throwable t) {
+                    writeError = t;
+                } finally {
+                    synchronized (writeMonitor) {
+                        numPendingWrites--;
+                        writeMonitor.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tracks the tiles of the writable bands. Bands are counted on their own, also if they share a source image.
+     */
+    private class TileTracker {
+
+        private final Map<Band, BitSet> doneTiles = new HashMap<Band, BitSet>();
+        private int numCompletedBands;
+
+        /**
+         * @return true if the tiles completed the last writable band
+         */
+        synchronized boolean markTilesDone(Band band, Tile[] tiles) {
+            final MultiLevelImage sourceImage = band.getSourceImage();
+            final int numXTiles = sourceImage.getNumXTiles();
+            final int numTiles = numXTiles * sourceImage.getNumYTiles();
+
+            BitSet bandTiles = doneTiles.get(band);
+            if (bandTiles == null) {
+                bandTiles = new BitSet(numTiles);
+                doneTiles.put(band, bandTiles);
+            }
+            boolean allDone = false;
+            for (Tile tile : tiles) {
+                final int tileIndex = sourceImage.YToTileY(tile.getMinY()) * numXTiles +
+                                      sourceImage.XToTileX(tile.getMinX());
+                if (!bandTiles.get(tileIndex)) {
+                    bandTiles.set(tileIndex);
+                    if (bandTiles.cardinality() == numTiles) {
+                        numCompletedBands++;
+                        allDone = numCompletedBands == writableBands.size();
+                    }
+                }
+            }
+            return allDone;
+        }
+
+        synchronized void clear() {
+            doneTiles.clear();
+            numCompletedBands = 0;
+        }
+    }
+
+    private static class WriteJob {
+
+        private static final WriteJob STOP = new WriteJob(null, null);
+
+        private final Band band;
+        private final Tile[] tiles;
+
+        private WriteJob(Band band, Tile[] tiles) {
+            this.band = band;
+            this.tiles = tiles;
+        }
+    }
+
     private static class Row {
 
         private final Band band;
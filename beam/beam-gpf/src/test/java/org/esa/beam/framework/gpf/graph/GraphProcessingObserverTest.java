@@ -30,15 +30,18 @@ import java.util.ArrayList;
 
 public class GraphProcessingObserverTest extends TestCase {
     private static OpMock.Spi opMockSpi = new OpMock.Spi();
+    private static WideOpMock.Spi wideOpMockSpi = new WideOpMock.Spi();
 
     @Override
     protected void setUp() throws Exception {
         GPF.getDefaultInstance().getOperatorSpiRegistry().addOperatorSpi(opMockSpi);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().addOperatorSpi(wideOpMockSpi);
     }
 
     @Override
     protected void tearDown() throws Exception {
         GPF.getDefaultInstance().getOperatorSpiRegistry().removeOperatorSpi(opMockSpi);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().removeOperatorSpi(wideOpMockSpi);
     }
 
     public void testAddingOberserverToChain() throws GraphException {
@@ -72,6 +75,26 @@ public class GraphProcessingObserverTest extends TestCase {
         assertEquals("graph [test-graph] stopped", observerMock.entries.get(5));
     }
 
+    public void testTilesAreTraversedInSerpentineOrder() throws GraphException {
+        GraphProcessor processor = new GraphProcessor();
+        GraphProcessingObserverMock observerMock = new GraphProcessingObserverMock();
+        processor.addObserver(observerMock);
+
+        Graph graph = new Graph("test-graph");
+        graph.addNode(new Node("a", WideOpMock.Spi.class.getName()));
+
+        processor.executeGraph(graph, ProgressMonitor.NULL);
+
+        // the second tile row starts below the last tile of the first one
+        assertEquals(14, observerMock.entries.size());
+        assertEquals("tile java.awt.Rectangle[x=0,y=0,width=10,height=5] started", observerMock.entries.get(1));
+        assertEquals("tile java.awt.Rectangle[x=10,y=0,width=10,height=5] started", observerMock.entries.get(3));
+        assertEquals("tile java.awt.Rectangle[x=20,y=0,width=10,height=5] started", observerMock.entries.get(5));
+        assertEquals("tile java.awt.Rectangle[x=20,y=5,width=10,height=5] started", observerMock.entries.get(7));
+        assertEquals("tile java.awt.Rectangle[x=10,y=5,width=10,height=5] started", observerMock.entries.get(9));
+        assertEquals("tile java.awt.Rectangle[x=0,y=5,width=10,height=5] started", observerMock.entries.get(11));
+    }
+
     public static class OpMock extends Operator {
         @TargetProduct
         private Product product;
@@ -94,6 +117,28 @@ public class GraphProcessingObserverTest extends TestCase {
         }
     }
 
+    public static class WideOpMock extends Operator {
+        @TargetProduct
+        private Product product;
+
+        @Override
+        public void initialize() throws OperatorException {
+            product = new Product(getClass().getSimpleName(), getClass().getSimpleName(), 30, 10);
+            product.addBand("band_1", ProductData.TYPE_INT32);
+            product.setPreferredTileSize(new Dimension(10, 5));
+        }
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+        }
+
+        public static class Spi extends OperatorSpi {
+            public Spi() {
+                super(WideOpMock.class, "WideOpMock");
+            }
+        }
+    }
+
     static class GraphProcessingObserverMock implements GraphProcessingObserver {
         ArrayList<String> entries = new ArrayList<String>();
 
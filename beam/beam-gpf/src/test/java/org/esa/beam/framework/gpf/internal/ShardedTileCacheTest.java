@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.internal;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
+
+import javax.media.jai.ComponentSampleModelJAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.TiledImage;
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+public class ShardedTileCacheTest extends TestCase {
+
+    private static final long TILE_SIZE = 256 * 256 * 4;
+
+    public void testAddAndGetTile() {
+        final TiledImage im0 = createImage(4, 4);
+        final TiledImage im1 = createImage(4, 4);
+        final ShardedTileCache cache = new ShardedTileCache(16 * TILE_SIZE);
+
+        final Raster tile00 = im0.getTile(0, 0);
+        final Raster tile12 = im0.getTile(1, 2);
+        cache.add(im0, 0, 0, tile00);
+        cache.add(im0, 1, 2, tile12);
+        cache.add(im1, 0, 0, im1.getTile(0, 0));
+
+        assertSame(tile00, cache.getTile(im0, 0, 0));
+        assertSame(tile12, cache.getTile(im0, 1, 2));
+        assertNull(cache.getTile(im0, 2, 1));
+        assertEquals(3, cache.getCacheTileCount());
+        assertEquals(3 * TILE_SIZE, cache.getCacheMemoryUsed());
+        assertEquals(2, cache.getCacheHitCount());
+        assertEquals(1, cache.getCacheMissCount());
+        assertEquals(2, cache.getTiles(im0).length);
+
+        cache.remove(im0, 0, 0);
+        assertNull(cache.getTile(im0, 0, 0));
+        assertEquals(2 * TILE_SIZE, cache.getCacheMemoryUsed());
+
+        cache.removeTiles(im0);
+        assertNull(cache.getTiles(im0));
+        assertEquals(1, cache.getCacheTileCount());
+        assertEquals(TILE_SIZE, cache.getCacheMemoryUsed());
+
+        cache.resetCounts();
+        assertEquals(0, cache.getCacheHitCount());
+        assertEquals(0, cache.getCacheMissCount());
+
+        cache.flush();
+        assertEquals(0, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheMemoryUsed());
+    }
+
+    public void testEvictLeastRecentlyUsedTiles() {
+        final TiledImage im0 = createImage(4, 4);
+        // a single shard gives an exact LRU order
+        final ShardedTileCache cache = new ShardedTileCache(4 * TILE_SIZE, 1);
+
+        cache.add(im0, 0, 0, im0.getTile(0, 0));
+        cache.add(im0, 1, 0, im0.getTile(1, 0));
+        cache.add(im0, 2, 0, im0.getTile(2, 0));
+        cache.add(im0, 3, 0, im0.getTile(3, 0));
+        assertEquals(4, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheEvictionCount());
+
+        assertNotNull(cache.getTile(im0, 0, 0));
+
+        // exceeds the capacity, evicts down to 75% of it
+        cache.add(im0, 0, 1, im0.getTile(0, 1));
+        assertEquals(3, cache.getCacheTileCount());
+        assertEquals(2, cache.getCacheEvictionCount());
+        assertNull(cache.getTile(im0, 1, 0));
+        assertNull(cache.getTile(im0, 2, 0));
+        assertNotNull(cache.getTile(im0, 3, 0));
+        assertNotNull(cache.getTile(im0, 0, 0));
+        assertNotNull(cache.getTile(im0, 0, 1));
+
+        cache.setMemoryCapacity(TILE_SIZE);
+        assertEquals(0, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheMemoryUsed());
+    }
+
+    public void testEvictStaleTileRowsFirst() {
+        final TiledImage im0 = createImage(1, 8);
+        final TiledImage im1 = createImage(1, 8);
+        final ShardedTileCache cache = new ShardedTileCache(4 * TILE_SIZE, 1);
+
+        // im1's tile is the least recently used one, but im0 is swept past its first rows
+        cache.add(im1, 0, 0, im1.getTile(0, 0));
+        cache.add(im0, 0, 0, im0.getTile(0, 0));
+        cache.add(im0, 0, 1, im0.getTile(0, 1));
+        cache.add(im0, 0, 2, im0.getTile(0, 2));
+        cache.add(im0, 0, 3, im0.getTile(0, 3));
+        assertEquals(3, cache.getCacheTileCount());
+        assertEquals(2, cache.getCacheEvictionCount());
+        assertNotNull(cache.getTile(im1, 0, 0));
+        assertNull(cache.getTile(im0, 0, 0));
+        assertNull(cache.getTile(im0, 0, 1));
+        assertNotNull(cache.getTile(im0, 0, 2));
+        assertNotNull(cache.getTile(im0, 0, 3));
+    }
+
+    public void testEvictStaleTileRowsOfMultiColumnImagesFirst() {
+        final TiledImage im0 = createImage(3, 4);
+        final TiledImage im1 = createImage(1, 1);
+        // stale rows are found in all shards
+        final ShardedTileCache cache = new ShardedTileCache(10 * TILE_SIZE, 8);
+        cache.setMemoryThreshold(0.8F);
+
+        // im0 is swept in serpentine order, a row is stale after two further rows of accesses
+        cache.add(im1, 0, 0, im1.getTile(0, 0));
+        addTile(cache, im0, 0, 0);
+        addTile(cache, im0, 1, 0);
+        addTile(cache, im0, 2, 0);
+        addTile(cache, im0, 2, 1);
+        addTile(cache, im0, 1, 1);
+        addTile(cache, im0, 0, 1);
+        addTile(cache, im0, 0, 2);
+        addTile(cache, im0, 1, 2);
+        addTile(cache, im0, 2, 2);
+        assertEquals(10, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheEvictionCount());
+
+        // exceeds the capacity, only the stale first row is evicted
+        addTile(cache, im0, 2, 3);
+        assertEquals(8, cache.getCacheTileCount());
+        assertEquals(3, cache.getCacheEvictionCount());
+        assertNotNull(cache.getTile(im1, 0, 0));
+        for (int tileX = 0; tileX < 3; tileX++) {
+            assertNull(cache.getTile(im0, tileX, 0));
+            assertNotNull(cache.getTile(im0, tileX, 1));
+            assertNotNull(cache.getTile(im0, tileX, 2));
+        }
+        assertNotNull(cache.getTile(im0, 2, 3));
+    }
+
+    public void testTileRowIsNotStaleWhileItIsRead() {
+        final TiledImage im0 = createImage(2, 4);
+        final ShardedTileCache cache = new ShardedTileCache(6 * TILE_SIZE, 1);
+        cache.setMemoryThreshold(0.9F);
+
+        addTile(cache, im0, 0, 0);
+        addTile(cache, im0, 1, 0);
+        addTile(cache, im0, 1, 1);
+        addTile(cache, im0, 0, 1);
+        addTile(cache, im0, 0, 2);
+        addTile(cache, im0, 1, 2);
+        // the first row is still read while the next rows are computed
+        assertNotNull(cache.getTile(im0, 1, 0));
+        assertEquals(6, cache.getCacheTileCount());
+
+        // exceeds the capacity, the second row is stale, the least recently used tile is not
+        addTile(cache, im0, 1, 3);
+        assertEquals(5, cache.getCacheTileCount());
+        assertEquals(2, cache.getCacheEvictionCount());
+        assertNotNull(cache.getTile(im0, 0, 0));
+        assertNull(cache.getTile(im0, 0, 1));
+        assertNull(cache.getTile(im0, 1, 1));
+    }
+
+    public void testBandUsages() {
+        final TiledImage im0 = createImage(2, 2);
+        final ShardedTileCache cache = new ShardedTileCache(16 * TILE_SIZE);
+        cache.add(im0, 0, 0, im0.getTile(0, 0));
+        cache.getTile(im0, 0, 0);
+        cache.getTile(im0, 1, 0);
+
+        final ShardedTileCache.Usage[] usages = cache.getBandUsages();
+        assertEquals(1, usages.length);
+        assertNull(usages[0].getOperatorId());
+        assertEquals(1, usages[0].getTileCount());
+        assertEquals(TILE_SIZE, usages[0].getMemoryUsed());
+        assertEquals(1, usages[0].getHitCount());
+        assertEquals(1, usages[0].getMissCount());
+        assertEquals(0, cache.getOperatorUsages().length);
+    }
+
+    public void testOperatorImageUsages() {
+        final Product product = new Product("name", "type", 512, 256);
+        product.setPreferredTileSize(256, 256);
+        final Band bandA = product.addBand("a", ProductData.TYPE_FLOAT32);
+        final Band bandB = product.addBand("b", ProductData.TYPE_FLOAT32);
+        final OperatorContext context1 = createOperatorContext("op1");
+        final OperatorContext context2 = createOperatorContext("op2");
+        final OperatorImage im1a = new OperatorImage(bandA, context1);
+        final OperatorImage im1b = new OperatorImage(bandB, context1);
+        final OperatorImage im2a = new OperatorImage(bandA, context2);
+        // a second image of the same operator and band is accounted in the same usage
+        final OperatorImage im2a2 = new OperatorImage(bandA, context2);
+        final long tileSize = 4L * im1a.getTileWidth() * im1a.getTileHeight();
+        final ShardedTileCache cache = new ShardedTileCache(16 * tileSize);
+
+        cache.add(im1a, 0, 0, createTile(im1a, 0, 0));
+        cache.add(im1a, 1, 0, createTile(im1a, 1, 0));
+        cache.add(im1b, 0, 0, createTile(im1b, 0, 0));
+        cache.add(im2a, 0, 0, createTile(im2a, 0, 0));
+        cache.add(im2a2, 1, 0, createTile(im2a2, 1, 0));
+        cache.getTile(im1b, 0, 0);
+        cache.getTile(im1b, 1, 0);
+
+        assertEquals(4, cache.getBandUsages().length);
+        assertEquals(2, getBandUsage(cache, "op1", "a").getTileCount());
+        assertEquals(2 * tileSize, getBandUsage(cache, "op1", "a").getMemoryUsed());
+        assertEquals(1, getBandUsage(cache, "op1", "b").getTileCount());
+        assertEquals(1, getBandUsage(cache, "op1", "b").getHitCount());
+        assertEquals(1, getBandUsage(cache, "op1", "b").getMissCount());
+        assertEquals(2, getBandUsage(cache, "op2", "a").getTileCount());
+
+        assertEquals(2, cache.getOperatorUsages().length);
+        assertEquals(3, getOperatorUsage(cache, "op1").getTileCount());
+        assertEquals(3 * tileSize, getOperatorUsage(cache, "op1").getMemoryUsed());
+        assertEquals(2, getOperatorUsage(cache, "op2").getTileCount());
+
+        // the usage is kept as long as another image has tiles in it
+        cache.removeTiles(im2a);
+        assertEquals(1, getBandUsage(cache, "op2", "a").getTileCount());
+        assertEquals(tileSize, getBandUsage(cache, "op2", "a").getMemoryUsed());
+        cache.removeTiles(im2a2);
+        assertNull(getBandUsage(cache, "op2", "a"));
+        assertEquals(3, cache.getBandUsages().length);
+        assertEquals(1, cache.getOperatorUsages().length);
+    }
+
+    public void testUsagesOfOperatorsWithEqualIds() {
+        final Product product = new Product("name", "type", 256, 256);
+        product.setPreferredTileSize(256, 256);
+        final Band band = product.addBand("a", ProductData.TYPE_FLOAT32);
+        // operator ids of the same type created in the same millisecond are equal
+        final OperatorImage im1 = new OperatorImage(band, createOperatorContext("op"));
+        final OperatorImage im2 = new OperatorImage(band, createOperatorContext("op"));
+        final long tileSize = 4L * im1.getTileWidth() * im1.getTileHeight();
+        final ShardedTileCache cache = new ShardedTileCache(16 * tileSize);
+
+        cache.add(im1, 0, 0, createTile(im1, 0, 0));
+        cache.add(im2, 0, 0, createTile(im2, 0, 0));
+        assertEquals(3, cache.getBandUsages().length);
+        assertEquals(2, cache.getOperatorUsages().length);
+        for (ShardedTileCache.Usage usage : cache.getOperatorUsages()) {
+            assertEquals("op", usage.getOperatorId());
+            assertEquals(1, usage.getTileCount());
+        }
+
+        // removing the tiles of one operator keeps the usage of the other
+        cache.removeTiles(im1);
+        assertEquals(1, cache.getOperatorUsages().length);
+        assertEquals(1, getBandUsage(cache, "op", "a").getTileCount());
+        assertEquals(tileSize, getBandUsage(cache, "op", "a").getMemoryUsed());
+    }
+
+    private static void addTile(ShardedTileCache cache, TiledImage image, int tileX, int tileY) {
+        cache.add(image, tileX, tileY, image.getTile(tileX, tileY));
+    }
+
+    private static ShardedTileCache.Usage getBandUsage(ShardedTileCache cache, String operatorId, String bandName) {
+        for (ShardedTileCache.Usage usage : cache.getBandUsages()) {
+            if (operatorId.equals(usage.getOperatorId()) && bandName.equals(usage.getBandName())) {
+                return usage;
+            }
+        }
+        return null;
+    }
+
+    private static ShardedTileCache.Usage getOperatorUsage(ShardedTileCache cache, String operatorId) {
+        for (ShardedTileCache.Usage usage : cache.getOperatorUsages()) {
+            if (operatorId.equals(usage.getOperatorId())) {
+                return usage;
+            }
+        }
+        return null;
+    }
+
+    private static OperatorContext createOperatorContext(String id) {
+        final OperatorContext context = new OperatorContext(new Operator() {
+            @Override
+            public void initialize() throws OperatorException {
+            }
+        });
+        context.setId(id);
+        return context;
+    }
+
+    private static Raster createTile(PlanarImage image, int tileX, int tileY) {
+        return Raster.createWritableRaster(image.getSampleModel(),
+                                           new Point(image.tileXToX(tileX), image.tileYToY(tileY)));
+    }
+
+    private static TiledImage createImage(int numXTiles, int numYTiles) {
+        ComponentSampleModelJAI sm = new ComponentSampleModelJAI(DataBuffer.TYPE_FLOAT, 256, 256, 1, 256, new int[1]);
+        return new TiledImage(0, 0, numXTiles * 256, numYTiles * 256, 0, 0, sm, PlanarImage.createColorModel(sm));
+    }
+}
@@ -286,30 +286,23 @@ public class PCAOp extends Operator {
                 calculateStatistics();
             }
 
-            final ProductData[] bandsRawSamples = new ProductData[numOfSourceBands];
-            for (int i = 0; i < numOfSourceBands; i++) {
-                bandsRawSamples[i] =
-                        getSourceTile(sourceProduct.getBand(sourceBandNames[i]), targetRectangle).getRawSamples();
-            }
-
+            final ProductData[] bandsRawSamples = getBandsRawSamples(targetRectangle);
+            final ProductData[] trgData = new ProductData[numPCA];
+            final TileIndex[] targetIndex = new TileIndex[numPCA];
             for (int i = 0; i < numPCA; i++) {
+                final Tile targetTile = targetTileMap.get(targetProduct.getBand("PC" + i));
+                trgData[i] = targetTile.getDataBuffer();
+                targetIndex[i] = new TileIndex(targetTile);
+            }
 
-                final Band targetBand = targetProduct.getBand("PC" + i);
-                final Tile targetTile = targetTileMap.get(targetBand);
-                final ProductData trgData = targetTile.getDataBuffer();
-                final TileIndex targetIndex = new TileIndex(targetTile);
-                int index;
-                int k = 0;
-                for (int y = y0; y < y0+h; y++) {
-                    targetIndex.calculateStride(y);
-                    for (int x = x0; x < x0+w; x++) {
-                        index = targetIndex.getIndex(x);
-                        double vPCA = 0.0;
-                        for (int j = 0; j < numOfSourceBands; j++) {
-                            vPCA += bandsRawSamples[j].getElemDoubleAt(k)*eigenVectorMatrices[j][i];
-                        }
-                        k++;
-                        trgData.setElemDoubleAt(index, vPCA - minPCA[i]);
+            final SampleRows rows = new SampleRows(numOfSourceBands, w);
+            for (int y = y0, k = 0; y < y0 + h; y++, k += w) {
+                rows.load(bandsRawSamples, null, k);
+                for (int i = 0; i < numPCA; i++) {
+                    final double[] vPCA = rows.project(eigenVectorMatrices, i);
+                    targetIndex[i].calculateStride(y);
+                    for (int x = x0; x < x0 + w; x++) {
+                        trgData[i].setElemDoubleAt(targetIndex[i].getIndex(x), vPCA[x - x0] - minPCA[i]);
                     }
                 }
             }
@@ -371,45 +364,58 @@ public class PCAOp extends Operator {
         return rectangles;
     }
 
+    /**
+     * Get the raw samples of all user selected bands for the given rectangle.
+     * @param rectangle The rectangle.
+     * @return The raw samples, one array for each band.
+     */
+    private ProductData[] getBandsRawSamples(final Rectangle rectangle) {
+        final ProductData[] bandsRawSamples = new ProductData[numOfSourceBands];
+        for (int i = 0; i < numOfSourceBands; i++) {
+            bandsRawSamples[i] =
+                    getSourceTile(sourceProduct.getBand(sourceBandNames[i]), rectangle).getRawSamples();
+        }
+        return bandsRawSamples;
+    }
+
+    /**
+     * Compute summation and cross-summation for the whole image in a single pass over all tiles.
+     * Each worker thread sums into its own accumulator, the accumulators are merged at the end.
+     * @param tileRectangles The rectangles of all tiles.
+     */
     private void processStatistics(final Rectangle[] tileRectangles) {
         final StatusProgressMonitor status = new StatusProgressMonitor(tileRectangles.length,
                 "Computing Statistics... ");
         int tileCnt = 0;
 
+        final List<StatisticsAccumulator> accumulators = new ArrayList<StatisticsAccumulator>();
+        final ThreadLocal<StatisticsAccumulator> threadAccumulator = new ThreadLocal<StatisticsAccumulator>() {
+            @Override
+            protected StatisticsAccumulator initialValue() {
+                final StatisticsAccumulator accumulator = new StatisticsAccumulator(numOfSourceBands);
+                synchronized (accumulators) {
+                    accumulators.add(accumulator);
+                }
+                return accumulator;
+            }
+        };
+
         final ThreadManager threadManager = new ThreadManager();
 
         try {
             for (final Rectangle rectangle : tileRectangles) {
 
-                Thread worker = new Thread() {
-                    final ProductData[] bandsRawSamples = new ProductData[numOfSourceBands];
-                    final double[] tileSum = new double[numOfSourceBands];
-                    final double[][] tileSumCross = new double[numOfSourceBands][numOfSourceBands];
-
+                final Runnable worker = new Runnable() {
                     @Override
                     public void run() {
-                        for (int i = 0; i < numOfSourceBands; i++) {
-                            bandsRawSamples[i] =
-                                    getSourceTile(sourceProduct.getBand(sourceBandNames[i]), rectangle).getRawSamples();
-                        }
-
+                        final ProductData[] bandsRawSamples = getBandsRawSamples(rectangle);
+                        ProductData meanBandRawSamples = null;
                         if (subtractMeanImage) {
-
-                            final ProductData meanBandRawSamples =
+                            meanBandRawSamples =
                                     getSourceTile(sourceProduct.getBand(meanImageBandName), rectangle).getRawSamples();
-
-                            computeTileStatisticsWithMeanImageSubstract(numOfSourceBands,
-                                    bandsRawSamples, meanBandRawSamples, tileSum, tileSumCross);
-
-                        } else {
-
-                            computeTileStatisticsWithoutMeanImageSubstract(numOfSourceBands,
-                                    bandsRawSamples, tileSum, tileSumCross);
-                        }
-
-                        synchronized(sum) {
-                            computeImageStatistics(tileSum, tileSumCross);
                         }
+                        threadAccumulator.get().accumulate(bandsRawSamples, meanBandRawSamples,
+                                                           rectangle.width, rectangle.height);
                     }
                 };
                 threadManager.add(worker);
@@ -418,6 +424,9 @@ public class PCAOp extends Operator {
             }
             threadManager.finish();
 
+            for (StatisticsAccumulator accumulator : accumulators) {
+                accumulator.mergeInto(sum, sumCross);
+            }
             completeStatistics();
 
         } catch(Throwable e) {
@@ -427,45 +436,52 @@ public class PCAOp extends Operator {
         }
     }
 
+    /**
+     * Compute the minimum values of all PCA images. The minimum depends on the eigenvectors, so it
+     * needs a second pass over all tiles once the statistics are complete.
+     * @param tileRectangles The rectangles of all tiles.
+     */
     private void processMin(final Rectangle[] tileRectangles) {
         final StatusProgressMonitor status = new StatusProgressMonitor(tileRectangles.length,
                 "Computing Min... ");
         int tileCnt = 0;
 
+        final List<double[]> minima = new ArrayList<double[]>();
+        final ThreadLocal<double[]> threadMin = new ThreadLocal<double[]>() {
+            @Override
+            protected double[] initialValue() {
+                final double[] min = new double[numOfSourceBands];
+                Arrays.fill(min, Double.MAX_VALUE);
+                synchronized (minima) {
+                    minima.add(min);
+                }
+                return min;
+            }
+        };
+
         final ThreadManager threadManager = new ThreadManager();
 
         try {
             initializeMin();
 
             for(final Rectangle rectangle : tileRectangles) {
-                Thread worker = new Thread() {
-                    final double[] tileMinPCA = new double[numOfSourceBands];
-                    final ProductData[] bandsRawSamples = new ProductData[numOfSourceBands];
-
+                final Runnable worker = new Runnable() {
                     @Override
                     public void run() {
-                        for (int i = 0; i < numOfSourceBands; i++) {
-                            bandsRawSamples[i] =
-                                    getSourceTile(sourceProduct.getBand(sourceBandNames[i]), rectangle).getRawSamples();
-                        }
-                        final int n = bandsRawSamples[0].getNumElems();
-
-                        Arrays.fill(tileMinPCA, Double.MAX_VALUE);
-
-                        for (int i = 0; i < numPCA; i++) {
-                            for (int k = 0; k < n; k++) {
-                                double vPCA = 0.0;
-                                for (int j = 0; j < numOfSourceBands; j++) {
-                                    vPCA += bandsRawSamples[j].getElemDoubleAt(k)*eigenVectorMatrices[j][i];
+                        final ProductData[] bandsRawSamples = getBandsRawSamples(rectangle);
+                        final double[] min = threadMin.get();
+                        final SampleRows rows = new SampleRows(numOfSourceBands, rectangle.width);
+                        for (int y = 0, k = 0; y < rectangle.height; y++, k += rectangle.width) {
+                            rows.load(bandsRawSamples, null, k);
+                            for (int i = 0; i < numPCA; i++) {
+                                final double[] vPCA = rows.project(eigenVectorMatrices, i);
+                                for (double v : vPCA) {
+                                    if (v < min[i]) {
+                                        min[i] = v;
+                                    }
                                 }
-                                if(vPCA < tileMinPCA[i])
-                                    tileMinPCA[i] = vPCA;
                             }
                         }
-
-                        synchronized (minPCA) {
-                            computePCAMin(tileMinPCA);
-                        }
                     }
                 };
                 threadManager.add(worker);
@@ -475,114 +491,18 @@ public class PCAOp extends Operator {
 
             threadManager.finish();
 
-        } catch(Throwable e) {
-            throw new OperatorException(e);
-        } finally {
-            status.done();
-        }
-    }
-
-    /**
-     * Compute summation and cross-summation for all bands for a given tile.
-     * @param numOfSourceBands numnber of bands
-     * @param bandsRawSamples The raw data for all bands for the given tile.
-     * @param tileSum The summation for all bands for the given tile.
-     * @param tileSumCross The cross-summation for all bands for the given tile.
-     */
-    private static void computeTileStatisticsWithoutMeanImageSubstract (final int numOfSourceBands,
-            final ProductData[] bandsRawSamples, final double[] tileSum, final double[][] tileSumCross) {
-
-        Arrays.fill(tileSum, 0.0);
-        final int n = bandsRawSamples[0].getNumElems();
-
-        double vi, vj;
-        for (int i = 0; i < numOfSourceBands; i++) {
-            Arrays.fill(tileSumCross[i], 0.0);
-
-            for (int j = 0; j <= i; j++) {
-
-                //System.out.println("i = " + i + ", j = " + j);
-                if (j < i) {
-
-                    for (int k = 0; k < n; k++) {
-                        vi = bandsRawSamples[i].getElemDoubleAt(k);
-                        vj = bandsRawSamples[j].getElemDoubleAt(k);
-                        tileSumCross[i][j] += vi*vj;
-                    }
-
-                } else { // j == i
-
-                    for (int k = 0; k < n; k++) {
-                        vi = bandsRawSamples[i].getElemDoubleAt(k);
-                        tileSum[i] += vi;
-                        tileSumCross[i][j] += vi*vi;
+            for (double[] min : minima) {
+                for (int i = 0; i < numPCA; i++) {
+                    if (min[i] < minPCA[i]) {
+                        minPCA[i] = min[i];
                     }
                 }
             }
-        }
-    }
-
-    /**
-     * Compute summation and cross-summation for all bands for a given tile with mean image substracted.
-     * @param numOfSourceBands numnber of bands
-     * @param bandsRawSamples The raw data for all bands for the given tile.
-     * @param meanBandRawSamples The raw data for the band of mean image for the given tile.
-     * @param tileSum The summation for all bands for the given tile.
-     * @param tileSumCross The cross-summation for all bands for the given tile.
-     */
-    private static void computeTileStatisticsWithMeanImageSubstract (
-            final int numOfSourceBands,
-            final ProductData[] bandsRawSamples, final ProductData meanBandRawSamples,
-            final double[] tileSum, final double[][] tileSumCross) {
-
-        Arrays.fill(tileSum, 0.0);
-        final int n = bandsRawSamples[0].getNumElems();
-
-        double vi, vj, vm;
-        for (int i = 0; i < numOfSourceBands; i++) {
-            Arrays.fill(tileSumCross[i], 0.0);
 
-            for (int j = 0; j <= i; j++) {
-
-                //System.out.println("i = " + i + ", j = " + j);
-                if (j < i) {
-
-                    for (int k = 0; k < n; k++) {
-                        vm = meanBandRawSamples.getElemDoubleAt(k);
-                        vi = bandsRawSamples[i].getElemDoubleAt(k) - vm;
-                        vj = bandsRawSamples[j].getElemDoubleAt(k) - vm;
-                        tileSumCross[i][j] += vi*vj;
-                    }
-
-                } else { // j == i
-
-                    for (int k = 0; k < n; k++) {
-                        vm = meanBandRawSamples.getElemDoubleAt(k);
-                        vi = bandsRawSamples[i].getElemDoubleAt(k) - vm;
-                        tileSum[i] += vi;
-                        tileSumCross[i][j] += vi*vi;
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Compute summation and cross-summation for the whole image.
-     * @param tileSum The summation computed for each tile.
-     * @param tileSumCross The cross-summation computed for each tile.
-     */
-    private void computeImageStatistics (final double[] tileSum, final double[][] tileSumCross) {
-
-        for (int i = 0; i < numOfSourceBands; i++) {
-            for (int j = 0; j <= i; j++) {
-                if (j < i) {
-                    sumCross[i][j] += tileSumCross[i][j];
-                } else { // j == i
-                    sum[i] += tileSum[i];
-                    sumCross[i][j] += tileSumCross[i][j];
-                }
-            }
+        } catch(Throwable e) {
+            throw new OperatorException(e);
+        } finally {
+            status.done();
         }
     }
 
@@ -614,18 +534,6 @@ public class PCAOp extends Operator {
         computeEigenDecompositionOfCovarianceMatrix();
     }
 
-    /**
-     * Compute minimum values for all PCA images.
-     * @param tileMinPCA The minimum values for all PCA images for a given tile.
-     */
-    private void computePCAMin(final double[] tileMinPCA) {
-        for (int i = 0; i < numPCA; i++) {
-            if (tileMinPCA[i] < minPCA[i]) {
-                minPCA[i] = tileMinPCA[i];
-            }
-        }
-    }
-
     /**
      * Compute covariance matrices and perform EVD on each of them.
      */
@@ -721,6 +629,114 @@ public class PCAOp extends Operator {
         }
     }
 
+    /**
+     * One image row of samples for all bands, converted to double.
+     */
+    private static class SampleRows {
+        final double[][] rows;
+        private final double[] projection;
+
+        SampleRows(final int numOfBands, final int width) {
+            rows = new double[numOfBands][width];
+            projection = new double[width];
+        }
+
+        /**
+         * Load one row from the raw samples of all bands.
+         * @param bandsRawSamples The raw samples of all bands.
+         * @param meanBandRawSamples The raw samples of the mean image to subtract, or null.
+         * @param offset The offset of the row in the raw samples.
+         */
+        void load(final ProductData[] bandsRawSamples, final ProductData meanBandRawSamples, final int offset) {
+            final int width = projection.length;
+            for (int i = 0; i < rows.length; i++) {
+                final double[] row = rows[i];
+                for (int x = 0; x < width; x++) {
+                    row[x] = bandsRawSamples[i].getElemDoubleAt(offset + x);
+                }
+                if (meanBandRawSamples != null) {
+                    for (int x = 0; x < width; x++) {
+                        row[x] -= meanBandRawSamples.getElemDoubleAt(offset + x);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Project the loaded row onto an eigenvector.
+         * @param eigenVectorMatrices The eigenvectors, one per column.
+         * @param column The column of the eigenvector.
+         * @return The projected row, valid until the next call.
+         */
+        double[] project(final double[][] eigenVectorMatrices, final int column) {
+            Arrays.fill(projection, 0.0);
+            for (int j = 0; j < rows.length; j++) {
+                final double e = eigenVectorMatrices[j][column];
+                final double[] row = rows[j];
+                for (int x = 0; x < projection.length; x++) {
+                    projection[x] += row[x] * e;
+                }
+            }
+            return projection;
+        }
+    }
+
+    /**
+     * The summation and cross-summation of all bands collected by one worker thread.
+     */
+    private static final class StatisticsAccumulator {
+        private final double[] sum;
+        private final double[][] sumCross;
+        private SampleRows rows = null;
+
+        StatisticsAccumulator(final int numOfBands) {
+            sum = new double[numOfBands];
+            sumCross = new double[numOfBands][numOfBands];
+        }
+
+        /**
+         * Add the samples of one tile.
+         * @param bandsRawSamples The raw data for all bands for the tile.
+         * @param meanBandRawSamples The raw data of the mean image for the tile, or null.
+         * @param width The tile width.
+         * @param height The tile height.
+         */
+        void accumulate(final ProductData[] bandsRawSamples, final ProductData meanBandRawSamples,
+                        final int width, final int height) {
+            if (rows == null || rows.projection.length != width) {
+                rows = new SampleRows(sum.length, width);
+            }
+            for (int y = 0, k = 0; y < height; y++, k += width) {
+                rows.load(bandsRawSamples, meanBandRawSamples, k);
+                for (int i = 0; i < sum.length; i++) {
+                    final double[] vi = rows.rows[i];
+                    double s = 0.0;
+                    for (int x = 0; x < width; x++) {
+                        s += vi[x];
+                    }
+                    sum[i] += s;
+                    for (int j = 0; j <= i; j++) {
+                        final double[] vj = rows.rows[j];
+                        double c = 0.0;
+                        for (int x = 0; x < width; x++) {
+                            c += vi[x] * vj[x];
+                        }
+                        sumCross[i][j] += c;
+                    }
+                }
+            }
+        }
+
+        void mergeInto(final double[] imageSum, final double[][] imageSumCross) {
+            for (int i = 0; i < sum.length; i++) {
+                imageSum[i] += sum[i];
+                for (int j = 0; j <= i; j++) {
+                    imageSumCross[i][j] += sumCross[i][j];
+                }
+            }
+        }
+    }
+
     /**
      * The SPI is used to register this operator in the graph processing framework
      * via the SPI configuration file
@@ -0,0 +1,660 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link SwapSpace} which stores all swapped tiles in one memory-mapped swap file.
+ * <p/>
+ * {@link #storeTile} only queues the tile. A background thread writes queued tiles into free
+ * extents of the swap file, optionally compressed with deflate at its fastest level. Until it is
+ * written, a queued tile is restored from memory. Uncompressed tiles are restored by a single bulk
+ * copy from the mapped file into the data arrays of the new raster.
+ * <p/>
+ * The swap file grows in segments of {@link #SEGMENT_SIZE} bytes, each mapped once. Space of deleted
+ * tiles is kept in a list of free extents and reused first. Trailing segments which became entirely
+ * free are unmapped and cut off the swap file, all segments are unmapped when the swap space is closed.
+ * If more than {@link #MAX_QUEUED_BYTES} bytes of tiles are waiting to be written, {@link #storeTile}
+ * waits for the writer.
+ */
+public class MappedSwapSpace implements SwapSpace {
+
+    public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long MAX_QUEUED_BYTES = 64L * 1024 * 1024;
+
+    private final File swapFile;
+    private final boolean compress;
+    private final int segmentSize;
+    private final Logger logger;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    // all fields below are guarded by this
+    private final Map<Object, SwapRecord> records = new HashMap<Object, SwapRecord>(1009); // prime number
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<Long, MappedByteBuffer>();
+    private final TreeMap<Long, Long> freeExtents = new TreeMap<Long, Long>();
+    private long fileSize = 0;
+    private long queuedBytes = 0;
+    // segments are only unmapped while no buffer is read or written outside of the lock
+    private int numBufferUsers = 0;
+    private Thread writerThread = null;
+    private boolean closed = false;
+
+    private final BlockingQueue<SwapRecord> writeQueue = new LinkedBlockingQueue<SwapRecord>();
+
+    public MappedSwapSpace(File swapDir, boolean compress) throws IOException {
+        this(swapDir, compress, Logger.getLogger(System.getProperty("ceres.context", "ceres")));
+    }
+
+    public MappedSwapSpace(File swapDir, boolean compress, Logger logger) throws IOException {
+        this(swapDir, compress, logger, SEGMENT_SIZE);
+    }
+
+    MappedSwapSpace(File swapDir, boolean compress, Logger logger, int segmentSize) throws IOException {
+        this.swapFile = File.createTempFile("ceres-swap-", ".bin", swapDir);
+        this.swapFile.deleteOnExit();
+        this.compress = compress;
+        this.segmentSize = segmentSize;
+        this.logger = logger;
+        this.randomAccessFile = new RandomAccessFile(swapFile, "rw");
+        this.channel = randomAccessFile.getChannel();
+        synchronized (this) {
+            addSegment(segmentSize);
+        }
+    }
+
+    public File getSwapFile() {
+        return swapFile;
+    }
+
+    public boolean isCompressing() {
+        return compress;
+    }
+
+    /**
+     * @return the size of the mapped part of the swap file in bytes
+     */
+    public synchronized long getSwapFileSize() {
+        return fileSize;
+    }
+
+    public synchronized boolean storeTile(MemoryTile mt) {
+        if (closed || records.containsKey(mt.getKey())) {
+            return false;
+        }
+        final SwapRecord record = new SwapRecord(mt);
+        records.put(mt.getKey(), record);
+        queuedBytes += record.rawSize;
+        startWriterThread();
+        writeQueue.add(record);
+
+        // limit the memory held by queued tiles
+        while (queuedBytes > MAX_QUEUED_BYTES && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return true;
+    }
+
+    public MemoryTile restoreTile(RenderedImage owner, int tileX, int tileY) {
+        final Object key = MemoryTile.hashKey(owner, tileX, tileY);
+        final SwapRecord record;
+        final Raster queuedTile;
+        final ByteBuffer data;
+        synchronized (this) {
+            record = records.get(key);
+            if (record == null) {
+                return null;
+            }
+            queuedTile = record.tile;
+            if (queuedTile == null) {
+                data = getData(record.position, record.storedSize);
+                numBufferUsers++;
+            } else {
+                data = null;
+            }
+        }
+        if (queuedTile != null) {
+            return new MemoryTile(owner, tileX, tileY, queuedTile, record.tileCacheMetric);
+        }
+        try {
+            final long t1 = System.currentTimeMillis();
+            final Raster tile = record.restoreTile(data);
+            final long t2 = System.currentTimeMillis();
+            logger.log(Level.FINEST, "Tile restored: " + key + " (" + (t2 - t1) + " ms)");
+            return new MemoryTile(owner, tileX, tileY, tile, record.tileCacheMetric);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Tile NOT restored: " + key, e);
+            return null;
+        } finally {
+            synchronized (this) {
+                endBufferUse();
+            }
+        }
+    }
+
+    public synchronized boolean deleteTile(RenderedImage owner, int tileX, int tileY) {
+        final Object key = MemoryTile.hashKey(owner, tileX, tileY);
+        final SwapRecord record = records.remove(key);
+        if (record == null) {
+            return false;
+        }
+        if (record.tile != null) {
+            // still queued, the writer skips it
+            record.tile = null;
+            record.deleted = true;
+            queuedBytes -= record.rawSize;
+            notifyAll();
+        } else {
+            freeExtent(record.position, record.storedSize);
+        }
+        logger.log(Level.FINEST, "Tile deleted: " + key);
+        return true;
+    }
+
+    /**
+     * Waits until all queued tiles are written.
+     *
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public synchronized void waitUntilWritten() throws InterruptedException {
+        while (queuedBytes > 0 && !closed) {
+            wait();
+        }
+    }
+
+    /**
+     * Stops the writer thread, unmaps the segments and deletes the swap file. Queued tiles are discarded.
+     */
+    public void close() {
+        final Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            records.clear();
+            freeExtents.clear();
+            queuedBytes = 0;
+            thread = writerThread;
+            if (numBufferUsers == 0) {
+                unmapSegments();
+            }
+            notifyAll();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Swap file NOT closed: " + swapFile, e);
+        }
+        // segments which could not be unmapped may keep the file until they are garbage collected
+        if (!swapFile.delete()) {
+            logger.log(Level.FINEST, "Swap file deleted on exit: " + swapFile);
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    private void startWriterThread() {
+        if (writerThread == null) {
+            writerThread = new Thread(new Writer(), "MappedSwapSpace-Writer");
+            writerThread.setDaemon(true);
+            writerThread.setPriority(Thread.NORM_PRIORITY - 1);
+            writerThread.start();
+        }
+    }
+
+    private ByteBuffer getData(long position, int size) {
+        final Map.Entry<Long, MappedByteBuffer> segment = segments.floorEntry(position);
+        final ByteBuffer data = segment.getValue().duplicate().order(ByteOrder.nativeOrder());
+        final int offset = (int) (position - segment.getKey());
+        data.limit(offset + size);
+        data.position(offset);
+        return data.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * First fit allocation of a free extent. Extents never span segments.
+     */
+    private long allocateExtent(int size) throws IOException {
+        final Iterator<Map.Entry<Long, Long>> iterator = freeExtents.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, Long> extent = iterator.next();
+            if (extent.getValue() >= size) {
+                final long position = extent.getKey();
+                final long remaining = extent.getValue() - size;
+                iterator.remove();
+                if (remaining > 0) {
+                    freeExtents.put(position + size, remaining);
+                }
+                return position;
+            }
+        }
+        addSegment(Math.max(segmentSize, size));
+        return allocateExtent(size);
+    }
+
+    private void freeExtent(long position, long size) {
+        final long segmentStart = segments.floorKey(position);
+        final long segmentEnd = segmentStart + segments.get(segmentStart).capacity();
+
+        // merge with the adjacent free extents of the same segment
+        final Map.Entry<Long, Long> next = freeExtents.ceilingEntry(position);
+        if (next != null && next.getKey() == position + size && next.getKey() < segmentEnd) {
+            freeExtents.remove(next.getKey());
+            size += next.getValue();
+        }
+        final Map.Entry<Long, Long> previous = freeExtents.lowerEntry(position);
+        if (previous != null && previous.getKey() + previous.getValue() == position && previous.getKey() >= segmentStart) {
+            position = previous.getKey();
+            size += previous.getValue();
+        }
+        freeExtents.put(position, size);
+        if (numBufferUsers == 0) {
+            releaseFreeSegments();
+        }
+    }
+
+    /**
+     * Unmaps the trailing segments which are entirely free and cuts them off the swap file.
+     * The first segment is kept.
+     */
+    private void releaseFreeSegments() {
+        while (segments.size() > 1) {
+            final Map.Entry<Long, MappedByteBuffer> segment = segments.lastEntry();
+            final Long freeSize = freeExtents.get(segment.getKey());
+            if (freeSize == null || freeSize != segment.getValue().capacity()) {
+                return;
+            }
+            freeExtents.remove(segment.getKey());
+            segments.remove(segment.getKey());
+            fileSize = segment.getKey();
+            unmap(segment.getValue());
+            try {
+                // fails on platforms which do not truncate mapped files, the segment is then mapped again when needed
+                channel.truncate(fileSize);
+            } catch (IOException e) {
+                logger.log(Level.FINEST, "Swap file NOT truncated: " + swapFile, e);
+            }
+            logger.log(Level.FINEST, "Swap file " + swapFile + " reduced to " + fileSize + " bytes");
+        }
+    }
+
+    private void endBufferUse() {
+        if (--numBufferUsers == 0) {
+            if (closed) {
+                unmapSegments();
+            } else {
+                releaseFreeSegments();
+            }
+        }
+    }
+
+    private void unmapSegments() {
+        for (MappedByteBuffer segment : segments.values()) {
+            unmap(segment);
+        }
+        segments.clear();
+    }
+
+    /**
+     * Releases a mapped buffer at once instead of when it is garbage collected. Only the segments' own
+     * buffers may be unmapped, and only while no view of them is in use. If the JVM does not allow it,
+     * the buffer is released when it is garbage collected.
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            logger.log(Level.FINEST, "Swap file segment NOT unmapped: " + swapFile, e);
+        }
+    }
+
+    private void addSegment(int size) throws IOException {
+        final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+        segments.put(fileSize, segment);
+        freeExtents.put(fileSize, (long) size);
+        fileSize += size;
+        logger.log(Level.FINEST, "Swap file " + swapFile + " extended to " + fileSize + " bytes");
+    }
+
+    private void write(SwapRecord record, Deflater deflater) throws IOException {
+        final Raster tile;
+        synchronized (this) {
+            tile = record.tile;
+        }
+        if (tile == null) {
+            return;
+        }
+        final byte[] compressed = compress ? record.compress(tile, deflater) : null;
+        final int storedSize = compressed != null ? compressed.length : record.rawSize;
+        final long position;
+        final ByteBuffer data;
+        synchronized (this) {
+            if (record.deleted || closed) {
+                return;
+            }
+            position = allocateExtent(storedSize);
+            data = getData(position, storedSize);
+            numBufferUsers++;
+        }
+
+        boolean written = false;
+        try {
+            if (compressed != null) {
+                data.put(compressed);
+            } else {
+                record.putData(tile, data);
+            }
+            written = true;
+        } finally {
+            synchronized (this) {
+                if (!closed) {
+                    if (written && !record.deleted) {
+                        record.position = position;
+                        record.storedSize = storedSize;
+                        record.compressed = compressed != null;
+                        record.tile = null;
+                        queuedBytes -= record.rawSize;
+                        notifyAll();
+                    } else {
+                        freeExtent(position, storedSize);
+                    }
+                }
+                endBufferUse();
+            }
+        }
+    }
+
+    private class Writer implements Runnable {
+
+        public void run() {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                while (true) {
+                    final SwapRecord record = writeQueue.take();
+                    try {
+                        final long t1 = System.currentTimeMillis();
+                        write(record, deflater);
+                        final long t2 = System.currentTimeMillis();
+                        logger.log(Level.FINEST, "Tile stored: " + record.key + " (" + (t2 - t1) + " ms)");
+                    } catch (Exception e) {
+                        logger.log(Level.SEVERE, "Tile NOT stored: " + record.key, e);
+                        synchronized (MappedSwapSpace.this) {
+                            if (!record.deleted) {
+                                records.remove(record.key);
+                                record.tile = null;
+                                record.deleted = true;
+                                queuedBytes -= record.rawSize;
+                                MappedSwapSpace.this.notifyAll();
+                            }
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // closed
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * The layout and location of a swapped tile. The tile is referenced until it is written.
+     */
+    private static final class SwapRecord {
+        final Object key;
+        final Object tileCacheMetric;
+        final SampleModel sampleModel;
+        final Point location;
+        final Rectangle bounds;
+        final boolean writable;
+        final int dataType;
+        final int size;
+        final int[] offsets;
+        final int bankLength;
+        final int rawSize;
+
+        Raster tile;
+        boolean deleted;
+        long position;
+        int storedSize;
+        boolean compressed;
+
+        SwapRecord(MemoryTile mt) {
+            final Raster raster = mt.getTile();
+            final DataBuffer dataBuffer = raster.getDataBuffer();
+            this.key = mt.getKey();
+            this.tileCacheMetric = mt.getTileCacheMetric();
+            this.tile = raster;
+            this.sampleModel = raster.getSampleModel();
+            this.location = new Point(raster.getSampleModelTranslateX(), raster.getSampleModelTranslateY());
+            this.bounds = raster.getBounds();
+            this.writable = raster instanceof WritableRaster;
+            this.dataType = dataBuffer.getDataType();
+            this.size = dataBuffer.getSize();
+            this.offsets = dataBuffer.getOffsets().clone();
+            this.bankLength = getBankLength(dataBuffer);
+            this.rawSize = bankLength * dataBuffer.getNumBanks() * (DataBuffer.getDataTypeSize(dataType) / 8);
+        }
+
+        void putData(Raster tile, ByteBuffer data) {
+            final DataBuffer dataBuffer = tile.getDataBuffer();
+            for (int bank = 0; bank < offsets.length; bank++) {
+                if (dataBuffer instanceof DataBufferByte) {
+                    data.put(((DataBufferByte) dataBuffer).getData(bank));
+                } else if (dataBuffer instanceof DataBufferShort) {
+                    data.asShortBuffer().put(((DataBufferShort) dataBuffer).getData(bank));
+                    data.position(data.position() + bankLength * 2);
+                } else if (dataBuffer instanceof DataBufferUShort) {
+                    data.asShortBuffer().put(((DataBufferUShort) dataBuffer).getData(bank));
+                    data.position(data.position() + bankLength * 2);
+                } else if (dataBuffer instanceof DataBufferInt) {
+                    data.asIntBuffer().put(((DataBufferInt) dataBuffer).getData(bank));
+                    data.position(data.position() + bankLength * 4);
+                } else if (dataBuffer instanceof DataBufferFloat) {
+                    data.asFloatBuffer().put(((DataBufferFloat) dataBuffer).getData(bank));
+                    data.position(data.position() + bankLength * 4);
+                } else if (dataBuffer instanceof DataBufferDouble) {
+                    data.asDoubleBuffer().put(((DataBufferDouble) dataBuffer).getData(bank));
+                    data.position(data.position() + bankLength * 8);
+                } else {
+                    throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass());
+                }
+            }
+        }
+
+        byte[] compress(Raster tile, Deflater deflater) {
+            final byte[] raw = new byte[rawSize];
+            putData(tile, ByteBuffer.wrap(raw).order(ByteOrder.nativeOrder()));
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            // incompressible tiles are stored as they are
+            final byte[] buffer = new byte[rawSize];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            final byte[] compressed = new byte[length];
+            System.arraycopy(buffer, 0, compressed, 0, length);
+            return compressed;
+        }
+
+        Raster restoreTile(ByteBuffer data) throws DataFormatException {
+            if (compressed) {
+                final byte[] input = new byte[storedSize];
+                data.get(input);
+                final byte[] raw = new byte[rawSize];
+                final Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(input);
+                    int length = 0;
+                    while (length < rawSize && !inflater.finished()) {
+                        final int count = inflater.inflate(raw, length, rawSize - length);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new DataFormatException("Truncated tile data");
+                        }
+                        length += count;
+                    }
+                } finally {
+                    inflater.end();
+                }
+                data = ByteBuffer.wrap(raw).order(ByteOrder.nativeOrder());
+            }
+            final DataBuffer dataBuffer = createDataBuffer(data);
+            if (writable) {
+                final WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, location);
+                if (raster.getBounds().equals(bounds)) {
+                    return raster;
+                }
+                return raster.createWritableChild(bounds.x, bounds.y, bounds.width, bounds.height,
+                                                  bounds.x, bounds.y, null);
+            } else {
+                final Raster raster = Raster.createRaster(sampleModel, dataBuffer, location);
+                if (raster.getBounds().equals(bounds)) {
+                    return raster;
+                }
+                return raster.createChild(bounds.x, bounds.y, bounds.width, bounds.height,
+                                          bounds.x, bounds.y, null);
+            }
+        }
+
+        private DataBuffer createDataBuffer(ByteBuffer data) {
+            final int numBanks = offsets.length;
+            switch (dataType) {
+                case DataBuffer.TYPE_BYTE: {
+                    final byte[][] banks = new byte[numBanks][bankLength];
+                    for (byte[] bank : banks) {
+                        data.get(bank);
+                    }
+                    return new DataBufferByte(banks, size, offsets);
+                }
+                case DataBuffer.TYPE_SHORT: {
+                    final short[][] banks = new short[numBanks][bankLength];
+                    for (short[] bank : banks) {
+                        data.asShortBuffer().get(bank);
+                        data.position(data.position() + bankLength * 2);
+                    }
+                    return new DataBufferShort(banks, size, offsets);
+                }
+                case DataBuffer.TYPE_USHORT: {
+                    final short[][] banks = new short[numBanks][bankLength];
+                    for (short[] bank : banks) {
+                        data.asShortBuffer().get(bank);
+                        data.position(data.position() + bankLength * 2);
+                    }
+                    return new DataBufferUShort(banks, size, offsets);
+                }
+                case DataBuffer.TYPE_INT: {
+                    final int[][] banks = new int[numBanks][bankLength];
+                    for (int[] bank : banks) {
+                        data.asIntBuffer().get(bank);
+                        data.position(data.position() + bankLength * 4);
+                    }
+                    return new DataBufferInt(banks, size, offsets);
+                }
+                case DataBuffer.TYPE_FLOAT: {
+                    final float[][] banks = new float[numBanks][bankLength];
+                    for (float[] bank : banks) {
+                        data.asFloatBuffer().get(bank);
+                        data.position(data.position() + bankLength * 4);
+                    }
+                    return new DataBufferFloat(banks, size, offsets);
+                }
+                case DataBuffer.TYPE_DOUBLE: {
+                    final double[][] banks = new double[numBanks][bankLength];
+                    for (double[] bank : banks) {
+                        data.asDoubleBuffer().get(bank);
+                        data.position(data.position() + bankLength * 8);
+                    }
+                    return new DataBufferDouble(banks, size, offsets);
+                }
+                default:
+                    throw new IllegalStateException("illegal data type: " + dataType);
+            }
+        }
+
+        private static int getBankLength(DataBuffer dataBuffer) {
+            if (dataBuffer instanceof DataBufferByte) {
+                return ((DataBufferByte) dataBuffer).getData().length;
+            } else if (dataBuffer instanceof DataBufferShort) {
+                return ((DataBufferShort) dataBuffer).getData().length;
+            } else if (dataBuffer instanceof DataBufferUShort) {
+                return ((DataBufferUShort) dataBuffer).getData().length;
+            } else if (dataBuffer instanceof DataBufferInt) {
+                return ((DataBufferInt) dataBuffer).getData().length;
+            } else if (dataBuffer instanceof DataBufferFloat) {
+                return ((DataBufferFloat) dataBuffer).getData().length;
+            } else if (dataBuffer instanceof DataBufferDouble) {
+                return ((DataBufferDouble) dataBuffer).getData().length;
+            }
+            throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass());
+        }
+    }
+}
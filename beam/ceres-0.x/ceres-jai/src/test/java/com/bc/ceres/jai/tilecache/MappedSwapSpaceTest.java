@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import junit.framework.TestCase;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+public class MappedSwapSpaceTest extends TestCase {
+
+    public void testStoreRestoreDelete() throws Exception {
+        testStoreRestoreDelete(false);
+    }
+
+    public void testStoreRestoreDeleteCompressed() throws Exception {
+        testStoreRestoreDelete(true);
+    }
+
+    private static void testStoreRestoreDelete(boolean compress) throws IOException, InterruptedException {
+        final MappedSwapSpace swapSpace = new MappedSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR, compress);
+        final BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB);
+        final WritableRaster tile00 = createTile(0, 0, 1.0F);
+        final WritableRaster tile10 = createTile(256, 0, 2.0F);
+        try {
+            assertTrue(swapSpace.storeTile(new MemoryTile(image, 0, 0, tile00, null)));
+            assertTrue(swapSpace.storeTile(new MemoryTile(image, 1, 0, tile10, null)));
+            assertFalse(swapSpace.storeTile(new MemoryTile(image, 1, 0, tile10, null)));
+            assertNull(swapSpace.restoreTile(image, 0, 1));
+
+            swapSpace.waitUntilWritten();
+
+            final Raster restored00 = swapSpace.restoreTile(image, 0, 0).getTile();
+            final Raster restored10 = swapSpace.restoreTile(image, 1, 0).getTile();
+            assertEqualTile(tile00, restored00);
+            assertEqualTile(tile10, restored10);
+
+            assertTrue(swapSpace.deleteTile(image, 0, 0));
+            assertFalse(swapSpace.deleteTile(image, 0, 0));
+            assertNull(swapSpace.restoreTile(image, 0, 0));
+            assertNotNull(swapSpace.restoreTile(image, 1, 0));
+        } finally {
+            swapSpace.close();
+        }
+        assertFalse(swapSpace.storeTile(new MemoryTile(image, 0, 0, tile00, null)));
+    }
+
+    public void testFreeSegmentsAreReleased() throws Exception {
+        final int tileSize = 256 * 256 * 4;
+        // one tile per segment
+        final MappedSwapSpace swapSpace = new MappedSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR, false,
+                                                              Logger.getAnonymousLogger(), tileSize);
+        final BufferedImage image = new BufferedImage(1024, 256, BufferedImage.TYPE_INT_RGB);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(swapSpace.storeTile(new MemoryTile(image, i, 0, createTile(256 * i, 0, i), null)));
+            }
+            swapSpace.waitUntilWritten();
+            assertEquals(3L * tileSize, swapSpace.getSwapFileSize());
+            assertEquals(3L * tileSize, swapSpace.getSwapFile().length());
+
+            // a free segment in the middle is kept for reuse
+            assertTrue(swapSpace.deleteTile(image, 1, 0));
+            assertEquals(3L * tileSize, swapSpace.getSwapFileSize());
+            assertTrue(swapSpace.storeTile(new MemoryTile(image, 3, 0, createTile(768, 0, 3.0F), null)));
+            swapSpace.waitUntilWritten();
+            assertEquals(3L * tileSize, swapSpace.getSwapFileSize());
+
+            // trailing free segments are cut off, the first one is kept
+            assertTrue(swapSpace.deleteTile(image, 2, 0));
+            assertTrue(swapSpace.deleteTile(image, 3, 0));
+            assertEquals(tileSize, swapSpace.getSwapFileSize());
+            assertEquals(tileSize, swapSpace.getSwapFile().length());
+            assertEqualTile(createTile(0, 0, 0.0F), swapSpace.restoreTile(image, 0, 0).getTile());
+
+            assertTrue(swapSpace.deleteTile(image, 0, 0));
+            assertEquals(tileSize, swapSpace.getSwapFileSize());
+        } finally {
+            swapSpace.close();
+        }
+        assertFalse(swapSpace.getSwapFile().exists());
+    }
+
+    private static WritableRaster createTile(int x, int y, float value) {
+        final BandedSampleModel sampleModel = new BandedSampleModel(DataBuffer.TYPE_FLOAT, 256, 256, 1);
+        final WritableRaster tile = Raster.createWritableRaster(sampleModel, new Point(x, y));
+        final float[] data = ((DataBufferFloat) tile.getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = value + (i % 256);
+        }
+        return tile;
+    }
+
+    private static void assertEqualTile(Raster expected, Raster actual) {
+        assertNotSame(expected, actual);
+        assertEquals(expected.getBounds(), actual.getBounds());
+        assertEquals(expected.getSampleModel(), actual.getSampleModel());
+        final float[] expectedData = ((DataBufferFloat) expected.getDataBuffer()).getData();
+        final float[] actualData = ((DataBufferFloat) actual.getDataBuffer()).getData();
+        assertEquals(expectedData.length, actualData.length);
+        for (int i = 0; i < expectedData.length; i++) {
+            assertEquals(expectedData[i], actualData[i]);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.nest.SingleOperatorBenchmark;
+import org.junit.Ignore;
+
+/**
+ * Test operator performance of terrain correction with Delaunay DEM interpolation
+ */
+@Ignore
+public class TestPerfDelaunayTC extends SingleOperatorBenchmark {
+
+    protected OperatorSpi CreateOperatorSpi() {
+        return new RangeDopplerGeocodingOp.Spi();
+    }
+
+    protected void setOperatorParameters(final Operator op) {
+        ((RangeDopplerGeocodingOp)op).setDEMResamplingMethod("DELAUNAY_INTERPOLATION");
+    }
+}
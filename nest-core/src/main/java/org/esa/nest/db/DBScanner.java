@@ -24,12 +24,20 @@ import javax.swing.*;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Scans folders for products to add or update into the database
+ * Scans folders for products to add or update into the database.
+ * Products are read concurrently and their entries written to the database in batches by the scanning thread.
+ * Files already in the database with an unchanged modification time are skipped without being read.
  */
 public final class DBScanner extends SwingWorker {
+    private static final int BATCH_SIZE = 100;
+
     private final ProductDB db;
 
     private final File baseDir;
@@ -37,7 +45,7 @@ public final class DBScanner extends SwingWorker {
     private final boolean generateQuicklooks;
     private final com.bc.ceres.core.ProgressMonitor pm;
     private final List<DBScannerListener> listenerList = new ArrayList<DBScannerListener>(1);
-    private final List<ErrorFile> errorList = new ArrayList<ErrorFile>();
+    private final List<ErrorFile> errorList = Collections.synchronizedList(new ArrayList<ErrorFile>());
 
     public DBScanner(final ProductDB database, final File baseDir, final boolean doRecursive,
                      final boolean doQuicklooks, final com.bc.ceres.core.ProgressMonitor pm) {
@@ -89,7 +97,14 @@ public final class DBScanner extends SwingWorker {
         int i=0;
         int prodCount = 0;
         try {
-            for(File file : fileList) {
+            // paths and modification times of products already in the db
+            final Map<String, ProductEntry> knownProducts = db.getKnownProducts();
+
+            final BlockingQueue<ProductEntry> readQueue = new LinkedBlockingQueue<ProductEntry>();
+            final List<ProductEntry> batch = new ArrayList<ProductEntry>(BATCH_SIZE);
+            final ThreadManager readerThreads = new ThreadManager();
+
+            for(final File file : fileList) {
                 ++i;
                 String taskMsg = "Scanning "+i+" of "+total+" files ";
                 if(prodCount > 0)
@@ -98,42 +113,53 @@ public final class DBScanner extends SwingWorker {
                 pm.worked(1);
 
                 // check if already exists in db
-                final ProductEntry existingEntry = db.getProductEntry(file);
+                final ProductEntry existingEntry = knownProducts.get(file.getAbsolutePath());
                 if(existingEntry != null) {
-                    // check for missing quicklook
-                    if(generateQuicklooks && !existingEntry.quickLookExists()) {
-                        qlProductFiles.add(file);
-                        qlIDs.add(existingEntry.getId());
+                    final long lastModified = existingEntry.getLastModified();
+                    if(lastModified == 0 || lastModified == file.lastModified()) {
+                        // check for missing quicklook
+                        if(generateQuicklooks && !existingEntry.quickLookExists()) {
+                            qlProductFiles.add(file);
+                            qlIDs.add(existingEntry.getId());
+                        }
+                        continue;
                     }
-                    existingEntry.dispose();
-                    continue;
+                    // product has changed since it was added
+                    db.deleteProductEntry(existingEntry);
                 }
 
-                if(pm.isCanceled())
+                if(pm.isCanceled()) {
+                    readerThreads.cancel();
                     break;
+                }
 
-                try {
-                    // quick test for common readers
-                    final Product sourceProduct = ProductIO.readProduct(file);
-                    if(sourceProduct != null) {
-                        final ProductEntry entry = db.saveProduct(sourceProduct);
-                        ++prodCount;
-                        if(!entry.quickLookExists()) {
-                            qlProductFiles.add(file);
-                            qlIDs.add(entry.getId());
+                final Runnable worker = new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            // quick test for common readers
+                            final Product sourceProduct = ProductIO.readProduct(file);
+                            if(sourceProduct != null) {
+                                readQueue.add(new ProductEntry(sourceProduct));
+                                sourceProduct.dispose();
+                            } else if(!file.isDirectory()) {
+                                System.out.println("No reader for "+file.getAbsolutePath());
+                            }
+                        } catch(Throwable e) {
+                            errorList.add(new ErrorFile(file, ErrorFile.UNREADABLE));
+                            System.out.println("Unable to read "+file.getAbsolutePath()+ '\n' +e.getMessage());
                         }
-                        sourceProduct.dispose();
-                        entry.dispose();
-                    } else if(!file.isDirectory()) {
-                        System.out.println("No reader for "+file.getAbsolutePath());
                     }
-                } catch(Throwable e) {
-                    errorList.add(new ErrorFile(file, ErrorFile.UNREADABLE));
-                    System.out.println("Unable to read "+file.getAbsolutePath()+ '\n' +e.getMessage());
-                }
+                };
+                readerThreads.add(worker);
+
+                prodCount += saveProducts(readQueue, batch, BATCH_SIZE, qlProductFiles, qlIDs);
             }
+            readerThreads.finish();
+            prodCount += saveProducts(readQueue, batch, 1, qlProductFiles, qlIDs);
 
-            db.cleanUpRemovedProducts();
+            db.cleanUpRemovedProducts(knownProducts.values());
 
             notifyMSG(DBScannerListener.MSG.FOLDERS_SCANNED);
 
@@ -145,13 +171,15 @@ public final class DBScanner extends SwingWorker {
                 for(int j=0; j < numQL; ++j) {
                     pm.setTaskName("Generating Quicklook... "+(j+1)+" of "+numQL);
                     pm.worked(1);
-                    if(pm.isCanceled())
+                    if(pm.isCanceled()) {
+                        threadManager.cancel();
                         break;
+                    }
 
                     final File file = qlProductFiles.get(j);
                     final int qlID = qlIDs.get(j);
 
-                    final Thread worker = new Thread() {
+                    final Runnable worker = new Runnable() {
 
                         @Override
                         public void run() {
@@ -181,6 +209,35 @@ public final class DBScanner extends SwingWorker {
         return true;
     }
 
+    /**
+     * Writes the read product entries to the database once at least minBatchSize are available
+     * @return the number of products added
+     */
+    private int saveProducts(final BlockingQueue<ProductEntry> readQueue, final List<ProductEntry> batch,
+                             final int minBatchSize, final List<File> qlProductFiles, final List<Integer> qlIDs)
+            throws Exception {
+        int prodCount = 0;
+        while(readQueue.size() >= minBatchSize) {
+            batch.clear();
+            readQueue.drainTo(batch, BATCH_SIZE);
+            db.saveProducts(batch);
+            for(ProductEntry entry : batch) {
+                if(entry.getId() >= 0) {
+                    ++prodCount;
+                    if(!entry.quickLookExists()) {
+                        qlProductFiles.add(entry.getFile());
+                        qlIDs.add(entry.getId());
+                    }
+                } else {
+                    // products without metadata cannot be stored
+                    errorList.add(new ErrorFile(entry.getFile(), ErrorFile.UNREADABLE));
+                }
+                entry.dispose();
+            }
+        }
+        return prodCount;
+    }
+
     @Override
     public void done() {
         notifyMSG(DBScannerListener.MSG.DONE);
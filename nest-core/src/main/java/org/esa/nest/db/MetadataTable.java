@@ -154,6 +154,27 @@ public class MetadataTable implements TableInterface {
     }
 
     public ResultSet addRecord(final ProductEntry record) throws SQLException {
+        setRecordParameters(record);
+        final int rowCount = stmtSaveNewRecord.executeUpdate();
+        return stmtSaveNewRecord.getGeneratedKeys();
+    }
+
+    /**
+     * Inserts the metadata of several records with one JDBC batch
+     * @param records the records to add
+     * @throws SQLException .
+     */
+    public void addRecords(final List<ProductEntry> records) throws SQLException {
+        if(records.isEmpty())
+            return;
+        for(ProductEntry record : records) {
+            setRecordParameters(record);
+            stmtSaveNewRecord.addBatch();
+        }
+        stmtSaveNewRecord.executeBatch();
+    }
+
+    private void setRecordParameters(final ProductEntry record) throws SQLException {
         stmtSaveNewRecord.clearParameters();
         //System.out.println(record.getFile());
 
@@ -178,8 +199,6 @@ public class MetadataTable implements TableInterface {
                 stmtSaveNewRecord.setString(i, absRoot.getAttributeString(name));
             ++i;
         }
-        final int rowCount = stmtSaveNewRecord.executeUpdate();
-        return stmtSaveNewRecord.getGeneratedKeys();
     }
 
     public void deleteRecord(final int id) throws SQLException {
@@ -27,7 +27,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -110,6 +112,15 @@ public class ProductDB extends DAO {
         return productTable.getProductEntry(path);
     }
 
+    /**
+     * Get the id, path and last modified time of all products in the database
+     * @return map of absolute paths to product entries
+     * @throws SQLException .
+     */
+    public Map<String, ProductEntry> getKnownProducts() throws SQLException {
+        return productTable.getKnownProducts();
+    }
+
     public MetadataElement getProductMetadata(final int id) throws SQLException {
         return metadataTable.getProductMetadata(id);
     }
@@ -125,6 +136,37 @@ public class ProductDB extends DAO {
         return newEntry;
     }
 
+    /**
+     * Adds several new products in one transaction using batched inserts.
+     * Entries without file or metadata are not added and keep an id of -1.
+     * @param entries the product entries to add, their ids are set on return
+     * @throws SQLException .
+     */
+    public void saveProducts(final List<ProductEntry> entries) throws SQLException {
+        // product and metadata ids are generated in step, so only insert records which have metadata
+        final List<ProductEntry> records = new ArrayList<ProductEntry>(entries.size());
+        for(ProductEntry entry : entries) {
+            if(entry.getFile() != null && entry.getMetadata() != null) {
+                records.add(entry);
+            }
+        }
+        if(records.isEmpty())
+            return;
+
+        final boolean autoCommit = dbConnection.getAutoCommit();
+        dbConnection.setAutoCommit(false);
+        try {
+            productTable.addRecords(records);
+            metadataTable.addRecords(records);
+            dbConnection.commit();
+        } catch(SQLException e) {
+            dbConnection.rollback();
+            throw e;
+        } finally {
+            dbConnection.setAutoCommit(autoCommit);
+        }
+    }
+
     private void addRecord(final ProductEntry record) throws SQLException {
 
         final ResultSet results = productTable.addRecord(record);
@@ -146,6 +188,19 @@ public class ProductDB extends DAO {
         }
     }
 
+    /**
+     * Removes the products of the given entries whose files no longer exist
+     * @param entries the entries to check
+     * @throws SQLException .
+     */
+    public void cleanUpRemovedProducts(final Collection<ProductEntry> entries) throws SQLException {
+        for(ProductEntry entry : entries) {
+            if(!entry.getFile().exists()) {
+                deleteProductEntry(entry);
+            }
+        }
+    }
+
     public void deleteProductEntry(final ProductEntry entry) throws SQLException {
         deleteRecord(entry.getId());
     }
@@ -74,6 +74,12 @@ public class ProductEntry {
         this.file = file;
     }
 
+    public ProductEntry(final int id, final File file, final long lastModified) {
+        this.id = id;
+        this.file = file;
+        this.lastModified = lastModified;
+    }
+
     public ProductEntry(final Product product) {
         file = product.getFileLocation();
         if(file != null)
@@ -21,7 +21,9 @@ import org.esa.nest.util.SQLUtils;
 import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -125,6 +127,9 @@ public class ProductTable implements TableInterface {
     private static final String strGetProductWithPath =
             "SELECT * FROM "+TABLE+" WHERE "+AbstractMetadata.PATH+" = ?";
 
+    private static final String strGetKnownProducts =
+            "SELECT ID, "+AbstractMetadata.PATH+", "+ProductEntry.LAST_MODIFIED+" FROM "+TABLE;
+
     private static final String strUpdateProduct =
             "UPDATE "+TABLE+" SET " +
             AbstractMetadata.PATH+" = ?, " +
@@ -179,6 +184,63 @@ public class ProductTable implements TableInterface {
     }
 
     public ResultSet addRecord(final ProductEntry record) throws SQLException {
+        setRecordParameters(record);
+
+        final int rowCount = stmtSaveNewRecord.executeUpdate();
+        return stmtSaveNewRecord.getGeneratedKeys();
+    }
+
+    /**
+     * Inserts several records with one JDBC batch and sets the generated ids on the records
+     * @param records the records to add
+     * @throws SQLException .
+     */
+    public void addRecords(final List<ProductEntry> records) throws SQLException {
+        if(records.isEmpty())
+            return;
+        for(ProductEntry record : records) {
+            setRecordParameters(record);
+            stmtSaveNewRecord.addBatch();
+        }
+        stmtSaveNewRecord.executeBatch();
+
+        // batches do not reliably return the generated keys, look them up by path
+        final StringBuilder query = new StringBuilder(255);
+        query.append("SELECT ID, ").append(AbstractMetadata.PATH).append(" FROM ").append(TABLE);
+        query.append(" WHERE ").append(AbstractMetadata.PATH).append(" IN (");
+        for(int i = 0; i < records.size(); ++i) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+
+        final PreparedStatement stmtGetIds = dbConnection.prepareStatement(query.toString());
+        try {
+            int i = 1;
+            for(ProductEntry record : records) {
+                stmtGetIds.setString(i++, record.getFile().getAbsolutePath());
+            }
+            final Map<String, Integer> idMap = new HashMap<String, Integer>(records.size());
+            final ResultSet results = stmtGetIds.executeQuery();
+            while(results.next()) {
+                final int id = results.getInt(1);
+                final String path = results.getString(2);
+                final Integer existingId = idMap.get(path);
+                if(existingId == null || existingId < id) {
+                    idMap.put(path, id);
+                }
+            }
+            for(ProductEntry record : records) {
+                final Integer id = idMap.get(record.getFile().getAbsolutePath());
+                if(id != null) {
+                    record.setId(id);
+                }
+            }
+        } finally {
+            stmtGetIds.close();
+        }
+    }
+
+    private void setRecordParameters(final ProductEntry record) throws SQLException {
         stmtSaveNewRecord.clearParameters();
         int i = 1;
         stmtSaveNewRecord.setString(i++, record.getFile().getAbsolutePath());
@@ -208,9 +270,6 @@ public class ProductTable implements TableInterface {
         } else {
             stmtSaveNewRecord.setString(i++, geoStr);
         }
-
-        final int rowCount = stmtSaveNewRecord.executeUpdate();
-        return stmtSaveNewRecord.getGeneratedKeys();
     }
 
     /* public void editRecord(final ProductEntry record) throws SQLException {
@@ -246,6 +305,23 @@ public class ProductTable implements TableInterface {
         return results.next();
     }
 
+    /**
+     * Get the id, path and last modified time of all products without reading the full records
+     * @return map of absolute paths to product entries
+     * @throws SQLException .
+     */
+    public Map<String, ProductEntry> getKnownProducts() throws SQLException {
+        final Map<String, ProductEntry> knownProducts = new HashMap<String, ProductEntry>();
+
+        final Statement queryStatement = dbConnection.createStatement();
+        final ResultSet results = queryStatement.executeQuery(strGetKnownProducts);
+        while(results.next()) {
+            final String path = results.getString(2);
+            knownProducts.put(path, new ProductEntry(results.getInt(1), new File(path), (long)results.getDouble(3)));
+        }
+        return knownProducts;
+    }
+
     public ProductEntry[] getProductEntryList() throws SQLException {
         final List<ProductEntry> listEntries = new ArrayList<ProductEntry>();
 
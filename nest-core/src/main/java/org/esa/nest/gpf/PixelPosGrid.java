@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+
+import java.awt.*;
+
+/**
+ * Maps the pixels of a target rectangle to pixel positions in a source product through their geo-positions.
+ * <p/>
+ * Inverting a tie-point or pixel geo-coding is expensive, so the source geo-coding is inverted only on a
+ * sparse grid of target pixels, and the positions in between are interpolated bilinearly. The interpolation
+ * of each grid cell is checked against an exact inversion at the cell centre. Cells exceeding the error bound,
+ * or having a corner without a valid source position, are computed exactly pixel by pixel.
+ * <p/>
+ * A grid is meant to be used for one tile by one thread.
+ */
+public final class PixelPosGrid {
+
+    public static final int DEFAULT_GRID_STEP = 16;
+    public static final float DEFAULT_MAX_ERROR = 0.1f;
+
+    private final GeoCoding targetGeoCoding;
+    private final GeoCoding sourceGeoCoding;
+    private final int x0;
+    private final int y0;
+    private final int width;
+    private final int height;
+    private final int gridStep;
+    private final int numNodesX;
+    private final int numNodesY;
+    private final int numCellsX;
+    private final float[] gridX;
+    private final float[] gridY;
+    private final boolean[] exactCells;
+
+    private final PixelPos targetPos = new PixelPos();
+    private final GeoPos geoPos = new GeoPos();
+
+    public PixelPosGrid(final GeoCoding targetGeoCoding, final GeoCoding sourceGeoCoding,
+                        final Rectangle targetRectangle) {
+        this(targetGeoCoding, sourceGeoCoding, targetRectangle, DEFAULT_GRID_STEP, DEFAULT_MAX_ERROR);
+    }
+
+    /**
+     * @param targetGeoCoding The geo-coding of the target product.
+     * @param sourceGeoCoding The geo-coding of the source product.
+     * @param targetRectangle The target pixels.
+     * @param gridStep        The distance of the grid nodes in target pixels.
+     * @param maxError        The maximum interpolation error in source pixels.
+     */
+    public PixelPosGrid(final GeoCoding targetGeoCoding, final GeoCoding sourceGeoCoding,
+                        final Rectangle targetRectangle, final int gridStep, final float maxError) {
+        this.targetGeoCoding = targetGeoCoding;
+        this.sourceGeoCoding = sourceGeoCoding;
+        x0 = targetRectangle.x;
+        y0 = targetRectangle.y;
+        width = targetRectangle.width;
+        height = targetRectangle.height;
+        this.gridStep = gridStep;
+        numNodesX = (width + gridStep - 2) / gridStep + 1;
+        numNodesY = (height + gridStep - 2) / gridStep + 1;
+        numCellsX = Math.max(numNodesX - 1, 1);
+        final int numCellsY = Math.max(numNodesY - 1, 1);
+
+        final PixelPos pixelPos = new PixelPos();
+        gridX = new float[numNodesX * numNodesY];
+        gridY = new float[numNodesX * numNodesY];
+        for (int j = 0, k = 0; j < numNodesY; ++j) {
+            for (int i = 0; i < numNodesX; ++i, ++k) {
+                computePixelPos(x0 + getNodeOffset(i, width), y0 + getNodeOffset(j, height), pixelPos);
+                gridX[k] = pixelPos.x;
+                gridY[k] = pixelPos.y;
+            }
+        }
+
+        exactCells = new boolean[numCellsX * numCellsY];
+        final PixelPos interpolated = new PixelPos();
+        for (int j = 0; j < numCellsY; ++j) {
+            final int y = y0 + (getNodeOffset(j, height) + getNodeOffset(j + 1, height)) / 2;
+            for (int i = 0; i < numCellsX; ++i) {
+                final int x = x0 + (getNodeOffset(i, width) + getNodeOffset(i + 1, width)) / 2;
+                final boolean valid = interpolate(x, y, interpolated) && computePixelPos(x, y, pixelPos);
+                exactCells[j * numCellsX + i] = !valid ||
+                        Math.abs(interpolated.x - pixelPos.x) > maxError ||
+                        Math.abs(interpolated.y - pixelPos.y) > maxError;
+            }
+        }
+    }
+
+    /**
+     * Gets the source pixel position of a target pixel.
+     *
+     * @param x        The x coordinate of the target pixel.
+     * @param y        The y coordinate of the target pixel.
+     * @param pixelPos The source pixel position.
+     * @return True if the target pixel has a valid source pixel position, false otherwise.
+     */
+    public boolean getPixelPos(final int x, final int y, final PixelPos pixelPos) {
+        final int i = getCellIndex(x - x0, numNodesX);
+        final int j = getCellIndex(y - y0, numNodesY);
+        if (exactCells[j * numCellsX + i]) {
+            return computePixelPos(x, y, pixelPos);
+        }
+        return interpolate(x, y, pixelPos);
+    }
+
+    /**
+     * Computes the source pixel positions of a target rectangle, like
+     * {@link org.esa.beam.util.ProductUtils#computeSourcePixelCoordinates} but with an interpolation grid.
+     *
+     * @param sourceGeoCoding The geo-coding of the source product.
+     * @param sourceWidth     The width of the source product.
+     * @param sourceHeight    The height of the source product.
+     * @param destGeoCoding   The geo-coding of the target product.
+     * @param destArea        The target rectangle.
+     * @return The source pixel positions in row order, {@code null} for target pixels outside the source product.
+     */
+    public static PixelPos[] computeSourcePixelCoordinates(final GeoCoding sourceGeoCoding,
+                                                           final int sourceWidth, final int sourceHeight,
+                                                           final GeoCoding destGeoCoding, final Rectangle destArea) {
+        final PixelPosGrid grid = new PixelPosGrid(destGeoCoding, sourceGeoCoding, destArea);
+        final PixelPos[] pixelCoords = new PixelPos[destArea.width * destArea.height];
+        final PixelPos pixelPos = new PixelPos();
+
+        int coordIndex = 0;
+        for (int y = destArea.y; y < destArea.y + destArea.height; ++y) {
+            for (int x = destArea.x; x < destArea.x + destArea.width; ++x) {
+                if (grid.getPixelPos(x, y, pixelPos) && pixelPos.x >= 0.0f && pixelPos.x < sourceWidth &&
+                        pixelPos.y >= 0.0f && pixelPos.y < sourceHeight) {
+                    pixelCoords[coordIndex] = new PixelPos(pixelPos.x, pixelPos.y);
+                }
+                ++coordIndex;
+            }
+        }
+        return pixelCoords;
+    }
+
+    private boolean computePixelPos(final int x, final int y, final PixelPos pixelPos) {
+        targetPos.setLocation(x + 0.5f, y + 0.5f);
+        targetGeoCoding.getGeoPos(targetPos, geoPos);
+        if (!geoPos.isValid()) {
+            pixelPos.setInvalid();
+            return false;
+        }
+        sourceGeoCoding.getPixelPos(geoPos, pixelPos);
+        return pixelPos.isValid();
+    }
+
+    private boolean interpolate(final int x, final int y, final PixelPos pixelPos) {
+        final int dx = x - x0;
+        final int dy = y - y0;
+        final int i0 = getCellIndex(dx, numNodesX);
+        final int j0 = getCellIndex(dy, numNodesY);
+        final int i1 = Math.min(i0 + 1, numNodesX - 1);
+        final int j1 = Math.min(j0 + 1, numNodesY - 1);
+        final float wx = getWeight(dx, i0, i1, width);
+        final float wy = getWeight(dy, j0, j1, height);
+
+        final int k00 = j0 * numNodesX + i0;
+        final int k01 = j0 * numNodesX + i1;
+        final int k10 = j1 * numNodesX + i0;
+        final int k11 = j1 * numNodesX + i1;
+        final float px0 = gridX[k00] + wx * (gridX[k01] - gridX[k00]);
+        final float px1 = gridX[k10] + wx * (gridX[k11] - gridX[k10]);
+        final float py0 = gridY[k00] + wx * (gridY[k01] - gridY[k00]);
+        final float py1 = gridY[k10] + wx * (gridY[k11] - gridY[k10]);
+        pixelPos.x = px0 + wy * (px1 - px0);
+        pixelPos.y = py0 + wy * (py1 - py0);
+        return pixelPos.isValid();
+    }
+
+    private int getNodeOffset(final int node, final int size) {
+        return Math.min(node * gridStep, size - 1);
+    }
+
+    private int getCellIndex(final int offset, final int numNodes) {
+        return Math.min(offset / gridStep, Math.max(numNodes - 2, 0));
+    }
+
+    private float getWeight(final int offset, final int node0, final int node1, final int size) {
+        if (node0 == node1) {
+            return 0.0f;
+        }
+        final int offset0 = getNodeOffset(node0, size);
+        return (offset - offset0) / (float) (getNodeOffset(node1, size) - offset0);
+    }
+}
@@ -15,40 +15,143 @@
  */
 package org.esa.nest.gpf;
 
+import org.esa.beam.util.logging.BeamLogManager;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 
 /**
- * Manages how many threads are working cuncurrently
+ * Runs work items concurrently on a work-stealing pool shared by all ThreadManagers in the JVM.
+ * Items are handed to the pool as soon as they are added, so a slow item does not hold up the others.
+ * The number of items waiting to run is bounded, which makes add() block when the pool falls behind.
+ * The first error thrown by a work item is thrown again by finish().
  */
 public class ThreadManager {
-    
+
     private static int numCPU = Runtime.getRuntime().availableProcessors();
-    private final List<Thread> threadList = new ArrayList<Thread>(numCPU);
+    private static ForkJoinPool pool = null;
+
+    private final List<ForkJoinTask<?>> taskList = new ArrayList<ForkJoinTask<?>>();
+    private final Semaphore pending = new Semaphore(numCPU * 4);
+    private final AtomicInteger numCompleted = new AtomicInteger(0);
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    private volatile boolean cancelled = false;
+    private volatile ProgressListener progressListener = null;
+
+    /**
+     * Notified on the worker thread each time a work item has completed
+     */
+    public interface ProgressListener {
+        void workDone(int numCompleted);
+    }
 
     public ThreadManager() {}
 
-    public void add(final Thread worker) throws InterruptedException {
-        threadList.add(worker);
-        worker.start();
+    private static synchronized ForkJoinPool getPool() {
+        if(pool == null) {
+            pool = new ForkJoinPool(numCPU);
+        }
+        return pool;
+    }
 
-        if(threadList.size() >= numCPU) {
-            for(Thread t: threadList) {
-                t.join();
-            }
-            threadList.clear();
+    public void setProgressListener(final ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    public void add(final Runnable worker) throws InterruptedException {
+        if(cancelled)
+            return;
+
+        // a worker of the pool adding items must not block, or nested use could starve the pool
+        final boolean bounded = !(Thread.currentThread() instanceof ForkJoinWorkerThread);
+        if(bounded) {
+            pending.acquire();
         }
+
+        final ForkJoinTask<?> task = ForkJoinTask.adapt(new Runnable() {
+            public void run() {
+                try {
+                    if(!cancelled) {
+                        worker.run();
+                    }
+                } catch(Throwable e) {
+                    if(!error.compareAndSet(null, e)) {
+                        BeamLogManager.getSystemLogger().log(Level.WARNING, "Work item failed", e);
+                    }
+                } finally {
+                    if(bounded) {
+                        pending.release();
+                    }
+                    final int completed = numCompleted.incrementAndGet();
+                    final ProgressListener listener = progressListener;
+                    if(listener != null) {
+                        listener.workDone(completed);
+                    }
+                }
+            }
+        });
+        taskList.add(task);
+        getPool().execute(task);
     }
 
+    /**
+     * Waits until all added work items have completed or were cancelled
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws RuntimeException the first error thrown by a work item, checked exceptions are wrapped
+     */
     public void finish() throws InterruptedException {
-        if(!threadList.isEmpty()) {
-            for(Thread t: threadList) {
-                t.join();
+        for(ForkJoinTask<?> task : taskList) {
+            try {
+                task.get();
+            } catch(ExecutionException e) {
+                // errors are caught and recorded by the task itself
+            } catch(CancellationException e) {
+                // skipped
             }
         }
+        taskList.clear();
+
+        final Throwable e = error.getAndSet(null);
+        if(e instanceof RuntimeException)
+            throw (RuntimeException)e;
+        if(e instanceof Error)
+            throw (Error)e;
+        if(e != null)
+            throw new RuntimeException(e);
+    }
+
+    /**
+     * Skips all work items which have not started yet. Items already running complete normally.
+     */
+    public void cancel() {
+        cancelled = true;
+        for(ForkJoinTask<?> task : taskList) {
+            task.cancel(false);
+        }
     }
 
-    public static void setNumCPU(int numCPU) {
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getNumCompleted() {
+        return numCompleted.get();
+    }
+
+    public static synchronized void setNumCPU(int numCPU) {
         ThreadManager.numCPU = numCPU;
+        if(pool != null) {
+            pool.shutdown();        // running items complete on the old pool
+            pool = null;
+        }
     }
 }
@@ -71,6 +71,10 @@ public final class TileGeoreferencing {
         }
     }
 
+    public GeoCoding getGeoCoding() {
+        return geocoding;
+    }
+
     public void getGeoPos(final int x, final int y, final GeoPos geo) {
 
         if(isCached) {
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.TiePointGeoCoding;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.util.ProductUtils;
+
+import java.awt.*;
+
+/**
+ * PixelPosGrid Tester.
+ */
+public class TestPixelPosGrid extends TestCase {
+
+    private static final int SUB_SAMPLING = 16;
+
+    public void testSourcePixelCoordinates() {
+        // target on a regular lat/lon grid, source rotated and sheared against it
+        final GeoCoding targetGeoCoding = createGeoCoding(9, 9, 50.0f, 10.0f, -0.01f, 0.0f, 0.0f, 0.01f);
+        final GeoCoding sourceGeoCoding = createGeoCoding(9, 9, 50.1f, 10.05f, -0.009f, -0.001f, 0.0005f, 0.011f);
+        final int sourceWidth = 8 * SUB_SAMPLING;
+        final int sourceHeight = 8 * SUB_SAMPLING;
+
+        final Rectangle[] rectangles = {
+                new Rectangle(0, 0, 128, 128), new Rectangle(37, 90, 50, 21), new Rectangle(3, 4, 1, 1)};
+        for (Rectangle rectangle : rectangles) {
+            final PixelPos[] expected = ProductUtils.computeSourcePixelCoordinates(
+                    sourceGeoCoding, sourceWidth, sourceHeight, targetGeoCoding, rectangle);
+            final PixelPos[] actual = PixelPosGrid.computeSourcePixelCoordinates(
+                    sourceGeoCoding, sourceWidth, sourceHeight, targetGeoCoding, rectangle);
+
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; ++i) {
+                if (expected[i] != null && actual[i] != null) {
+                    assertEquals(expected[i].x, actual[i].x, 2 * PixelPosGrid.DEFAULT_MAX_ERROR);
+                    assertEquals(expected[i].y, actual[i].y, 2 * PixelPosGrid.DEFAULT_MAX_ERROR);
+                } else if (expected[i] != null) {
+                    assertTrue(isNearBorder(expected[i], sourceWidth, sourceHeight));
+                } else if (actual[i] != null) {
+                    assertTrue(isNearBorder(actual[i], sourceWidth, sourceHeight));
+                }
+            }
+        }
+    }
+
+    private static boolean isNearBorder(PixelPos pixelPos, int width, int height) {
+        final float margin = 2 * PixelPosGrid.DEFAULT_MAX_ERROR;
+        return pixelPos.x < margin || pixelPos.y < margin ||
+                pixelPos.x >= width - margin || pixelPos.y >= height - margin;
+    }
+
+    private static GeoCoding createGeoCoding(int gridWidth, int gridHeight, float lat0, float lon0,
+                                             float latPerLine, float latPerPixel,
+                                             float lonPerLine, float lonPerPixel) {
+        final float[] lats = new float[gridWidth * gridHeight];
+        final float[] lons = new float[gridWidth * gridHeight];
+        for (int j = 0; j < gridHeight; ++j) {
+            for (int i = 0; i < gridWidth; ++i) {
+                final float x = i * SUB_SAMPLING + 0.5f;
+                final float y = j * SUB_SAMPLING + 0.5f;
+                lats[j * gridWidth + i] = lat0 + y * latPerLine + x * latPerPixel;
+                lons[j * gridWidth + i] = lon0 + y * lonPerLine + x * lonPerPixel;
+            }
+        }
+        final TiePointGrid latGrid = new TiePointGrid("latitude", gridWidth, gridHeight, 0.5f, 0.5f,
+                                                      SUB_SAMPLING, SUB_SAMPLING, lats);
+        final TiePointGrid lonGrid = new TiePointGrid("longitude", gridWidth, gridHeight, 0.5f, 0.5f,
+                                                      SUB_SAMPLING, SUB_SAMPLING, lons);
+        return new TiePointGeoCoding(latGrid, lonGrid);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadManager Tester.
+ */
+public class TestThreadManager extends TestCase {
+
+    public void testAllItemsComplete() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ThreadManager threadManager = new ThreadManager();
+        for(int i = 0; i < 100; ++i) {
+            threadManager.add(new Runnable() {
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+        threadManager.finish();
+        assertEquals(100, count.get());
+        assertEquals(100, threadManager.getNumCompleted());
+    }
+
+    public void testFinishThrowsWorkItemError() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ThreadManager threadManager = new ThreadManager();
+        for(int i = 0; i < 10; ++i) {
+            final int index = i;
+            threadManager.add(new Runnable() {
+                public void run() {
+                    if(index == 3)
+                        throw new IllegalStateException("item " + index);
+                    count.incrementAndGet();
+                }
+            });
+        }
+        try {
+            threadManager.finish();
+            fail("IllegalStateException expected");
+        } catch(IllegalStateException e) {
+            assertEquals("item 3", e.getMessage());
+        }
+        // the other items still run
+        assertEquals(9, count.get());
+        assertEquals(10, threadManager.getNumCompleted());
+
+        // the error is thrown once
+        threadManager.finish();
+    }
+}
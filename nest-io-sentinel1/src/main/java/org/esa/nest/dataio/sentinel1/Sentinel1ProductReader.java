@@ -26,11 +26,8 @@ import org.esa.nest.dataio.imageio.ImageIOFile;
 import org.esa.nest.datamodel.Unit;
 import org.esa.nest.gpf.ReaderUtils;
 
-import javax.imageio.ImageReadParam;
-import javax.imageio.ImageReader;
 import java.awt.*;
 import java.awt.image.Raster;
-import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.File;
 import java.io.IOException;
@@ -131,20 +128,16 @@ public class Sentinel1ProductReader extends AbstractProductReader {
         }
     }
 
-    public synchronized void readSLCRasterBand(final int sourceOffsetX, final int sourceOffsetY,
-                                                   final int sourceStepX, final int sourceStepY,
-                                                   final ProductData destBuffer,
-                                                   final int destOffsetX, final int destOffsetY,
-                                                   int destWidth, int destHeight,
-                                                   final int imageID, final ImageIOFile img,
-                                                   final boolean oneOfTwo) throws IOException {
+    public void readSLCRasterBand(final int sourceOffsetX, final int sourceOffsetY,
+                                  final int sourceStepX, final int sourceStepY,
+                                  final ProductData destBuffer,
+                                  final int destOffsetX, final int destOffsetY,
+                                  int destWidth, int destHeight,
+                                  final int imageID, final ImageIOFile img,
+                                  final boolean oneOfTwo) throws IOException {
         final double[] srcArray;
-        final ImageReader reader = img.getReader();
-        final ImageReadParam param = reader.getDefaultReadParam();
-        param.setSourceSubsampling(sourceStepX, sourceStepY, sourceOffsetX % sourceStepX, sourceOffsetY % sourceStepY);
-
-        final RenderedImage image = img.getReader().readAsRenderedImage(0, param);
-        final Raster data = image.getData(new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight));
+        final Raster data = img.getData(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                        new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight));
 
         final SampleModel sampleModel = data.getSampleModel();
         destWidth = Math.min(destWidth, sampleModel.getWidth());
@@ -15,7 +15,10 @@
  */
 package org.esa.nest.dataio.binary;
 
+import org.esa.nest.dataio.FileImageInputStreamExtImpl;
+
 import javax.imageio.stream.ImageInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -41,6 +44,15 @@ public final class BinaryFileReader {
         _stream.close();
     }
 
+    /**
+     * @return the file read by the stream or null if it is not known
+     */
+    public File getFile() {
+        if(_stream instanceof FileImageInputStreamExtImpl)
+            return ((FileImageInputStreamExtImpl)_stream).getFile();
+        return null;
+    }
+
     public void setByteOrder(ByteOrder order) {
          _stream.setByteOrder(order);
     }
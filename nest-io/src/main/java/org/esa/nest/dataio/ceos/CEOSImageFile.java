@@ -24,12 +24,23 @@ import org.esa.nest.eo.Constants;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
 
 /**
  * This class represents an image file of a CEOS product.
+ * <p/>
+ * Image lines are read in blocks of consecutive records through a positional read of a
+ * file channel and decoded with bulk big endian buffer conversions, so tiles of the same
+ * file are read concurrently without a shared lock.
  *
  * @version $Revision: 1.3 $ $Date: 2012-01-10 21:22:00 $
  */
@@ -43,6 +54,13 @@ public abstract class CEOSImageFile {
     protected long _startPosImageRecords = 0;
     protected int _imageHeaderLength = 0;
 
+    private static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> blockBuffers = new ThreadLocal<ByteBuffer>();
+
+    private RandomAccessFile imageRandomAccessFile = null;
+    private FileChannel imageChannel = null;
+    private boolean imageChannelChecked = false;
+
     public BinaryRecord getImageFileDescriptor() {
         return _imageFDR;
     }
@@ -168,33 +186,25 @@ public abstract class CEOSImageFile {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         final int x = sourceOffsetX * ProductData.getElemSize(destBuffer.getType());
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
+        final short[] destArray = (short[]) destBuffer.getElems();
+        final LineReader lineReader = new LineReader(xpos, sourceWidth * 2, sourceMaxY, sourceStepY);
 
         pm.beginTask("Reading band...", sourceMaxY - sourceOffsetY);
         try {
-            final short[] srcLine = new short[sourceWidth];
-            short[] destLine = null;
-            if (sourceStepX != 1)
-                destLine = new short[destWidth];
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
                 if (pm.isCanceled()) {
                     break;
                 }
 
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
+                final ShortBuffer srcLine = lineReader.getLine(y).asShortBuffer();
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
                 if (sourceStepX == 1) {
-
-                    System.arraycopy(srcLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    srcLine.get(destArray, currentLineIndex, destWidth);
                 } else {
-                    copyLine(srcLine, destLine, sourceStepX);
-
-                    System.arraycopy(destLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    for (int i = 0; i < destWidth; ++i) {
+                        destArray[currentLineIndex + i] = srcLine.get(i * sourceStepX);
+                    }
                 }
 
                 pm.worked(1);
@@ -214,33 +224,25 @@ public abstract class CEOSImageFile {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         final int x = sourceOffsetX * ProductData.getElemSize(destBuffer.getType());
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
+        final int[] destArray = (int[]) destBuffer.getElems();
+        final LineReader lineReader = new LineReader(xpos, sourceWidth * 4, sourceMaxY, sourceStepY);
 
         pm.beginTask("Reading band...", sourceMaxY - sourceOffsetY);
         try {
-            final int[] srcLine = new int[sourceWidth];
-            int[] destLine = null;
-            if (sourceStepX != 1)
-                destLine = new int[destWidth];
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
                 if (pm.isCanceled()) {
                     break;
                 }
 
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
+                final IntBuffer srcLine = lineReader.getLine(y).asIntBuffer();
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
                 if (sourceStepX == 1) {
-
-                    System.arraycopy(srcLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    srcLine.get(destArray, currentLineIndex, destWidth);
                 } else {
-                    copyLine(srcLine, destLine, sourceStepX);
-
-                    System.arraycopy(destLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    for (int i = 0; i < destWidth; ++i) {
+                        destArray[currentLineIndex + i] = srcLine.get(i * sourceStepX);
+                    }
                 }
                 pm.worked(1);
             }
@@ -258,33 +260,25 @@ public abstract class CEOSImageFile {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         final int x = sourceOffsetX * ProductData.getElemSize(destBuffer.getType());
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
+        final float[] destArray = (float[]) destBuffer.getElems();
+        final LineReader lineReader = new LineReader(xpos, sourceWidth * 4, sourceMaxY, sourceStepY);
 
         pm.beginTask("Reading band...", sourceMaxY - sourceOffsetY);
         try {
-            final float[] srcLine = new float[sourceWidth];
-            float[] destLine = null;
-            if (sourceStepX != 1)
-                destLine = new float[destWidth];
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
                 if (pm.isCanceled()) {
                     break;
                 }
 
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
+                final FloatBuffer srcLine = lineReader.getLine(y).asFloatBuffer();
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
                 if (sourceStepX == 1) {
-
-                    System.arraycopy(srcLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    srcLine.get(destArray, currentLineIndex, destWidth);
                 } else {
-                    copyLine(srcLine, destLine, sourceStepX);
-
-                    System.arraycopy(destLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    for (int i = 0; i < destWidth; ++i) {
+                        destArray[currentLineIndex + i] = srcLine.get(i * sourceStepX);
+                    }
                 }
                 pm.worked(1);
             }
@@ -301,33 +295,26 @@ public abstract class CEOSImageFile {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         final int x = sourceOffsetX * ProductData.getElemSize(destBuffer.getType());
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
+        final byte[] destArray = (byte[]) destBuffer.getElems();
+        final LineReader lineReader = new LineReader(xpos, sourceWidth, sourceMaxY, sourceStepY);
 
         pm.beginTask("Reading band...", sourceMaxY - sourceOffsetY);
         try {
-            final byte[] srcLine = new byte[sourceWidth];
-            byte[] destLine = null;
-            if (sourceStepX != 1)
-                destLine = new byte[destWidth];
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
                 if (pm.isCanceled()) {
                     break;
                 }
 
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
+                final ByteBuffer srcLine = lineReader.getLine(y);
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
                 if (sourceStepX == 1) {
-
-                    System.arraycopy(srcLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    srcLine.get(destArray, currentLineIndex, destWidth);
                 } else {
-                    copyLine(srcLine, destLine, sourceStepX);
-
-                    System.arraycopy(destLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                    final int pos = srcLine.position();
+                    for (int i = 0; i < destWidth; ++i) {
+                        destArray[currentLineIndex + i] = srcLine.get(pos + i * sourceStepX);
+                    }
                 }
 
                 pm.worked(1);
@@ -348,46 +335,14 @@ public abstract class CEOSImageFile {
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
 
         try {
-            final short[] srcLine = new short[sourceWidth * 2];
+            final LineReader lineReader = new LineReader(xpos, sourceWidth * 4, sourceMaxY, sourceStepY);
+            final int sampleOffset = oneOf2 ? 0 : 1;
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
 
-                /*
-                synchronized (binaryReader) {
-                    Integer cacheIndex = indexMap.get(y);
-                    if(cacheIndex == null) {
-                            if (cachePos >= cacheSize) {
-                                cachePos = 0;
-                            }
-
-                            srcLine = new short[sourceWidth * 2];
-                            binaryReader.seek(_imageRecordLength * y + xpos);
-                            binaryReader.read(srcLine);
-
-                            if(linesCache[cachePos] != null) {
-                                indexMap.put(indexList[cachePos], null);
-                            }
-                            linesCache[cachePos] = srcLine;
-                            indexList[cachePos] = y;
-                            indexMap.put(y, cachePos);
-                            ++cachePos;
-                    } else {
-                        srcLine = (short[]) linesCache[cacheIndex];
-                    }
-                }   */
-
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
-                if (oneOf2)
-                    copyLine1Of2(srcLine, destBuffer, currentLineIndex, sourceStepX);
-                else
-                    copyLine2Of2(srcLine, destBuffer, currentLineIndex, sourceStepX);
-
+                final ShortBuffer srcLine = lineReader.getLine(y).asShortBuffer();
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
+                copyLine(srcLine, sampleOffset, destBuffer, currentLineIndex, sourceStepX);
             }
         } catch(Throwable e) {
             System.out.println(e.getMessage());
@@ -402,27 +357,20 @@ public abstract class CEOSImageFile {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         final int x = sourceOffsetX * 8;
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
+        final LineReader lineReader = new LineReader(xpos, sourceWidth * 8, sourceMaxY, sourceStepY);
+        final int sampleOffset = oneOf2 ? 0 : 1;
 
         pm.beginTask("Reading band...", sourceMaxY - sourceOffsetY);
         try {
-            final float[] srcLine = new float[sourceWidth * 2];
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
                 if (pm.isCanceled()) {
                     break;
                 }
 
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
-                if (oneOf2)
-                    copyLine1Of2(srcLine, destBuffer, currentLineIndex, sourceStepX);
-                else
-                    copyLine2Of2(srcLine, destBuffer, currentLineIndex, sourceStepX);
+                final FloatBuffer srcLine = lineReader.getLine(y).asFloatBuffer();
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
+                copyLine(srcLine, sampleOffset, destBuffer, currentLineIndex, sourceStepX);
 
                 pm.worked(1);
             }
@@ -440,30 +388,24 @@ public abstract class CEOSImageFile {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         final int x = sourceOffsetX * 2;
         final long xpos = _startPosImageRecords +_imageHeaderLength + x;
+        final byte[] destArray = (byte[]) destBuffer.getElems();
+        final LineReader lineReader = new LineReader(xpos, sourceWidth * 2, sourceMaxY, sourceStepY);
+        final int sampleOffset = oneOf2 ? 0 : 1;
 
         pm.beginTask("Reading band...", sourceMaxY - sourceOffsetY);
         try {
-            final byte[] srcLine = new byte[sourceWidth * 2];
-            final byte[] destLine = new byte[destWidth];
             for (int y = sourceOffsetY; y <= sourceMaxY; y += sourceStepY) {
                 if (pm.isCanceled()) {
                     break;
                 }
 
-                // Read source line
-                synchronized (binaryReader) {
-                    binaryReader.seek(_imageRecordLength * y + xpos);
-                    binaryReader.read(srcLine);
-                }
-
                 // Copy source line into destination buffer
-                final int currentLineIndex = (y - sourceOffsetY) * destWidth;
-                if (oneOf2)
-                    copyLine1Of2(srcLine, destLine, sourceStepX);
-                else
-                    copyLine2Of2(srcLine, destLine, sourceStepX);
-
-                System.arraycopy(destLine, 0, destBuffer.getElems(), currentLineIndex, destWidth);
+                final ByteBuffer srcLine = lineReader.getLine(y);
+                final int currentLineIndex = (y - sourceOffsetY) / sourceStepY * destWidth;
+                final int pos = srcLine.position() + sampleOffset;
+                for (int i = 0; i < destWidth; ++i) {
+                    destArray[currentLineIndex + i] = srcLine.get(pos + ((i * sourceStepX) << 1));
+                }
 
                 pm.worked(1);
             }
@@ -473,116 +415,152 @@ public abstract class CEOSImageFile {
         }
     }
 
-    private static void copyLine(final short[] srcLine, final short[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[i];
-        }
-    }
-
-    private static void copyLine(final byte[] srcLine, final byte[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[i];
-        }
-    }
-
-    private static void copyLine(final int[] srcLine, final int[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[i];
-        }
-    }
-
-    private static void copyLine(final float[] srcLine, final float[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[i];
-        }
-    }
-
-    private static void copyLine1Of2(final short[] srcLine, final ProductData destBuffer,
-                          final int currentLineIndex, final int sourceStepX) {
+    /**
+     * Copies the real (sampleOffset 0) or imaginary (sampleOffset 1) samples of a line of complex pairs
+     */
+    private static void copyLine(final ShortBuffer srcLine, final int sampleOffset, final ProductData destBuffer,
+                                 final int currentLineIndex, final int sourceStepX) {
         final int destLength = destBuffer.getNumElems();
-        final int srcLength = srcLine.length/2;
-        for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
-            destBuffer.setElemDoubleAt(x, srcLine[i << 1]);
-        }
-    }
-
-    private static void copyLine1Of2(final short[] srcLine, final short[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[i << 1];
-        }
-    }
-
-    private static void copyLine1Of2(final byte[] srcLine, final byte[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[i << 1];
+        final int srcLength = srcLine.remaining() / 2;
+        final Object destElems = destBuffer.getElems();
+        if (destElems instanceof short[]) {
+            final short[] destArray = (short[]) destElems;
+            for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
+                destArray[x] = srcLine.get((i << 1) + sampleOffset);
+            }
+        } else {
+            for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
+                destBuffer.setElemDoubleAt(x, srcLine.get((i << 1) + sampleOffset));
+            }
         }
     }
 
-    private static void copyLine1Of2(final float[] srcLine, final ProductData destBuffer,
-                          final int currentLineIndex, final int sourceStepX) {
+    /**
+     * Copies the real (sampleOffset 0) or imaginary (sampleOffset 1) samples of a line of complex pairs
+     */
+    private static void copyLine(final FloatBuffer srcLine, final int sampleOffset, final ProductData destBuffer,
+                                 final int currentLineIndex, final int sourceStepX) {
         final int destLength = destBuffer.getNumElems();
-        final int srcLength = srcLine.length/2;
-        for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
-            destBuffer.setElemDoubleAt(x, srcLine[i << 1]);
-        }
-    }
-
-    private static void copyLine1Of2(final float[] srcLine, final float[] destLine,
-                          final int sourceStepX) {
-        for (int x = 0, i = 0; x < destLine.length; ++x, i += sourceStepX) {
-            destLine[x] = (int)srcLine[i << 1];
+        final int srcLength = srcLine.remaining() / 2;
+        final Object destElems = destBuffer.getElems();
+        if (destElems instanceof float[]) {
+            final float[] destArray = (float[]) destElems;
+            for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
+                destArray[x] = srcLine.get((i << 1) + sampleOffset);
+            }
+        } else {
+            for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
+                destBuffer.setElemDoubleAt(x, srcLine.get((i << 1) + sampleOffset));
+            }
         }
     }
 
-    private static void copyLine2Of2(final short[] srcLine, final ProductData destBuffer,
-                          final int currentLineIndex, final int sourceStepX) {
-        final int destLength = destBuffer.getNumElems();
-        final int srcLength = srcLine.length/2;
-        for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
-            destBuffer.setElemDoubleAt(x, srcLine[(i << 1) + 1]);
+    /**
+     * Opens a channel on the image file for positional reads, which need no lock on the
+     * binaryReader. Returns null if the file of the image stream is not known.
+     */
+    private synchronized FileChannel getImageChannel() throws IOException {
+        if (imageChannel == null && !imageChannelChecked) {
+            imageChannelChecked = true;
+            final File file = binaryReader.getFile();
+            if (file != null) {
+                imageRandomAccessFile = new RandomAccessFile(file, "r");
+                imageChannel = imageRandomAccessFile.getChannel();
+            }
         }
+        return imageChannel;
     }
 
-    private static void copyLine2Of2(final short[] srcLine, final short[] destLine,
-                          final int sourceStepX) {
-        final int length = destLine.length;
-        for (int x = 0, i = 0; x < length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[(i << 1) + 1];
+    private static ByteBuffer getBlockBuffer(final int size) {
+        ByteBuffer buffer = blockBuffers.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, 64 * 1024));
+            blockBuffers.set(buffer);
         }
-    }
-
-    private static void copyLine2Of2(final byte[] srcLine, final byte[] destLine,
-                          final int sourceStepX) {
-        final int length = destLine.length;
-        for (int x = 0, i = 0; x < length; ++x, i += sourceStepX) {
-            destLine[x] = srcLine[(i << 1) + 1];
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Reads the image lines of a tile in blocks of consecutive records. Each block is read with
+     * one positional read of the image file channel, or one locked read of the binaryReader if
+     * there is no channel. Lines are returned as big endian views of the block buffer of the
+     * calling thread and are valid until the next call.
+     */
+    private final class LineReader {
+
+        private final long xpos;
+        private final int lineBytes;
+        private final int sourceMaxY;
+        private final int sourceStepY;
+        private final FileChannel channel;
+
+        private ByteBuffer block = null;
+        private int blockStartY = 0;
+        private int blockEndY = -1;
+
+        LineReader(final long xpos, final int lineBytes, final int sourceMaxY, final int sourceStepY)
+                throws IOException {
+            this.xpos = xpos;
+            this.lineBytes = lineBytes;
+            this.sourceMaxY = sourceMaxY;
+            this.sourceStepY = sourceStepY;
+            this.channel = getImageChannel();
         }
-    }
 
-    private static void copyLine2Of2(final float[] srcLine, final ProductData destBuffer,
-                          final int currentLineIndex, final int sourceStepX) {
-        final int destLength = destBuffer.getNumElems();
-        final int srcLength = srcLine.length/2;
-        for (int x = currentLineIndex, i = 0; x < destLength && i < srcLength; ++x, i += sourceStepX) {
-            destBuffer.setElemDoubleAt(x, srcLine[(i << 1) + 1]);
+        ByteBuffer getLine(final int y) throws IOException {
+            if (y < blockStartY || y > blockEndY) {
+                readBlock(y);
+            }
+            final int pos = (y - blockStartY) * _imageRecordLength;
+            block.limit(pos + lineBytes);
+            block.position(pos);
+            return block.slice().order(ByteOrder.BIG_ENDIAN);
         }
-    }
 
-    private static void copyLine2Of2(final float[] srcLine, final float[] destLine,
-                          final int sourceStepX) {
-        final int length = destLine.length;
-        for (int x = 0, i = 0; x < length; ++x, i += sourceStepX) {
-            destLine[x] = (int)srcLine[(i << 1) + 1];
+        private void readBlock(final int y) throws IOException {
+            // sub-sampled lines are read one by one, consecutive lines as one block
+            int numLines = 1;
+            if (sourceStepY == 1 && _imageRecordLength > 0) {
+                numLines = Math.max(1, (MAX_BLOCK_SIZE - lineBytes) / _imageRecordLength + 1);
+                numLines = Math.min(numLines, sourceMaxY - y + 1);
+            }
+            final int size = (numLines - 1) * _imageRecordLength + lineBytes;
+            final long filePos = (long) _imageRecordLength * y + xpos;
+
+            block = getBlockBuffer(size);
+            if (channel != null) {
+                long position = filePos;
+                while (block.hasRemaining()) {
+                    final int count = channel.read(block, position);
+                    if (count < 0) {
+                        throw new IOException("Unexpected end of image file");
+                    }
+                    position += count;
+                }
+            } else {
+                final byte[] bytes = new byte[size];
+                synchronized (binaryReader) {
+                    binaryReader.seek(filePos);
+                    binaryReader.read(bytes);
+                }
+                block.put(bytes);
+            }
+            block.clear();
+            blockStartY = y;
+            blockEndY = y + numLines - 1;
         }
     }
 
     public void close() throws IOException {
+        synchronized (this) {
+            if (imageRandomAccessFile != null) {
+                imageRandomAccessFile.close();
+                imageRandomAccessFile = null;
+                imageChannel = null;
+            }
+        }
         binaryReader.close();
         binaryReader = null;
     }
@@ -31,13 +31,19 @@ import java.awt.image.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedList;
 
 /**
  * Reader for ImageIO File
- *
+ * <p/>
+ * Raster data is read through a pool of ImageReaders, each with its own input stream on the file,
+ * so that tiles of one file are decoded concurrently. The pool grows on demand up to the number of
+ * available processors. The first reader is only used for the image metadata.
  */
 public class ImageIOFile {
 
+    private static final int MAX_READERS = Runtime.getRuntime().availableProcessors();
+
     private final File inputFile;
     private final String name;
 
@@ -53,6 +59,10 @@ public class ImageIOFile {
     private ImageInputStream stream = null;
     private ImageReader reader;
 
+    private final LinkedList<ImageReader> idleReaders = new LinkedList<ImageReader>();
+    private int numReaders = 0;
+    private boolean closed = false;
+
     public ImageIOFile(final File inputFile) {
         this.inputFile = inputFile;
         this.name = inputFile.getName();
@@ -121,7 +131,7 @@ public class ImageIOFile {
         return reader;
     }
 
-    public ImageReader getReader() throws IOException {
+    public synchronized ImageReader getReader() throws IOException {
         if(reader == null) {
             createReader(getTiffIIOReader(inputFile));
         }
@@ -178,7 +188,101 @@ public class ImageIOFile {
         return imageInfo;
     }
 
+    /**
+     * Takes a reader for raster data from the pool, creating a new one if all are busy and the
+     * pool is not full. The reader must be given back with releaseReader.
+     * @return a reader that is used by no other thread
+     * @throws IOException if a new reader cannot be opened
+     */
+    public ImageReader acquireReader() throws IOException {
+        final ImageReader metadataReader = getReader();
+        synchronized(idleReaders) {
+            while(true) {
+                if(closed)
+                    throw new IOException(inputFile.toString() + " is closed");
+                if(!idleReaders.isEmpty())
+                    return idleReaders.removeFirst();
+                if(numReaders < MAX_READERS)
+                    break;
+                try {
+                    idleReaders.wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a reader of " + inputFile.toString());
+                }
+            }
+            ++numReaders;
+        }
+
+        try {
+            final ImageReader pooledReader = createPooledReader(metadataReader);
+            synchronized(idleReaders) {
+                if(closed) {
+                    disposeReader(pooledReader);
+                    throw new IOException(inputFile.toString() + " is closed");
+                }
+            }
+            return pooledReader;
+        } catch(IOException e) {
+            synchronized(idleReaders) {
+                --numReaders;
+                idleReaders.notify();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a reader taken with acquireReader back to the pool. If the file has been closed
+     * while the reader was in use, the reader and its stream are released.
+     * @param pooledReader the reader
+     */
+    public void releaseReader(final ImageReader pooledReader) {
+        synchronized(idleReaders) {
+            if(closed) {
+                disposeReader(pooledReader);
+                return;
+            }
+            idleReaders.addFirst(pooledReader);
+            idleReaders.notify();
+        }
+    }
+
+    private ImageReader createPooledReader(final ImageReader metadataReader) throws IOException {
+        if(metadataReader.getOriginatingProvider() == null)
+            throw new IOException("Unable to create another reader for " + inputFile.toString());
+
+        final ImageInputStream pooledStream = ImageIO.createImageInputStream(inputFile);
+        if(pooledStream == null)
+            throw new IOException("Unable to open " + inputFile.toString());
+
+        final ImageReader pooledReader = metadataReader.getOriginatingProvider().createReaderInstance();
+        pooledReader.setInput(pooledStream);
+        return pooledReader;
+    }
+
+    private static void disposeReader(final ImageReader pooledReader) {
+        final Object input = pooledReader.getInput();
+        pooledReader.dispose();
+        if(input instanceof ImageInputStream) {
+            try {
+                ((ImageInputStream)input).close();
+            } catch(IOException e) {
+                // the stream is not used anymore
+            }
+        }
+    }
+
     public void close() throws IOException {
+        synchronized(idleReaders) {
+            closed = true;
+            // readers still in use are disposed when they are given back
+            for(ImageReader pooledReader : idleReaders) {
+                disposeReader(pooledReader);
+            }
+            idleReaders.clear();
+            idleReaders.notifyAll();
+        }
         if(stream != null)
             stream.close();
         if(reader != null)
@@ -191,18 +295,49 @@ public class ImageIOFile {
 
     public int getSceneWidth() throws IOException {
         if(sceneWidth == 0) {
-            sceneWidth = reader.getWidth(0);
+            synchronized(this) {
+                sceneWidth = reader.getWidth(0);
+            }
         }
         return sceneWidth;
     }
 
     public int getSceneHeight() throws IOException {
         if(sceneHeight == 0) {
-            sceneHeight = reader.getHeight(0);
+            synchronized(this) {
+                sceneHeight = reader.getHeight(0);
+            }
         }
         return sceneHeight;
     }
 
+    /**
+     * Reads a region of the first image with a reader of the pool
+     * @param sourceOffsetX the x offset of the region in the source image
+     * @param sourceOffsetY the y offset of the region in the source image
+     * @param sourceStepX the sub-sampling in x
+     * @param sourceStepY the sub-sampling in y
+     * @param rect the region in the sub-sampled image
+     * @return the raster data of the region
+     * @throws IOException if the data cannot be read
+     */
+    public Raster getData(final int sourceOffsetX, final int sourceOffsetY,
+                          final int sourceStepX, final int sourceStepY,
+                          final Rectangle rect) throws IOException {
+        final ImageReader pooledReader = acquireReader();
+        try {
+            final ImageReadParam param = pooledReader.getDefaultReadParam();
+            param.setSourceSubsampling(sourceStepX, sourceStepY,
+                                       sourceOffsetX % sourceStepX,
+                                       sourceOffsetY % sourceStepY);
+
+            final RenderedImage image = pooledReader.readAsRenderedImage(0, param);
+            return image.getData(rect);
+        } finally {
+            releaseReader(pooledReader);
+        }
+    }
+
     public int getDataType() {
         return dataType;
     }
@@ -222,18 +357,8 @@ public class ImageIOFile {
                                                    final int destWidth, final int destHeight,
                                                    final int imageID,
                                                    final int bandSampleOffset) throws IOException {
-        final Raster data;
-
-        synchronized(inputFile) {
-            final ImageReader reader = getReader();
-            final ImageReadParam param = reader.getDefaultReadParam();
-            param.setSourceSubsampling(sourceStepX, sourceStepY,
-                                       sourceOffsetX % sourceStepX,
-                                       sourceOffsetY % sourceStepY);
-
-            final RenderedImage image = reader.readAsRenderedImage(0, param);
-            data = image.getData(new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight));
-        }
+        final Raster data = getData(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                    new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight));
 
         final DataBuffer dataBuffer = data.getDataBuffer();
         final SampleModel sampleModel = data.getSampleModel();
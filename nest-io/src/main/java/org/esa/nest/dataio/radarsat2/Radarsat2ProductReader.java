@@ -28,12 +28,9 @@ import org.esa.nest.gpf.ReaderUtils;
 import org.esa.nest.util.XMLSupport;
 import org.jdom.Element;
 
-import javax.imageio.ImageReadParam;
-import javax.imageio.ImageReader;
 import java.awt.*;
 import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
-import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.File;
 import java.io.IOException;
@@ -215,30 +212,21 @@ public class Radarsat2ProductReader extends AbstractProductReader {
                                         final int bandSampleOffset,
                                         final boolean isAntennaPointingRight) throws IOException {
 
-        final Raster data;
-
-        synchronized(dataDir) {
-            final ImageReader reader = img.getReader();
-            final ImageReadParam param = reader.getDefaultReadParam();
-            param.setSourceSubsampling(sourceStepX, sourceStepY,
-                                       sourceOffsetX % sourceStepX,
-                                       sourceOffsetY % sourceStepY);
-
-            final RenderedImage image = reader.readAsRenderedImage(0, param);
-            if (flipToSARGeometry) {
-                if (isAntennaPointingRight) { // flip the image up side down
-                    data = image.getData(new Rectangle(destOffsetX,
-                                                       img.getSceneHeight() - destOffsetY - destHeight,
-                                                       destWidth, destHeight));
-                } else { // flip the image upside down, then flip it left to right
-                    data = image.getData(new Rectangle(img.getSceneWidth() - destOffsetX - destWidth,
-                                                       img.getSceneHeight() - destOffsetY - destHeight,
-                                                       destWidth, destHeight));
-                }
-            } else {
-                data = image.getData(new Rectangle(destOffsetX,	destOffsetY, destWidth, destHeight));
+        final Rectangle rect;
+        if (flipToSARGeometry) {
+            if (isAntennaPointingRight) { // flip the image up side down
+                rect = new Rectangle(destOffsetX,
+                                     img.getSceneHeight() - destOffsetY - destHeight,
+                                     destWidth, destHeight);
+            } else { // flip the image upside down, then flip it left to right
+                rect = new Rectangle(img.getSceneWidth() - destOffsetX - destWidth,
+                                     img.getSceneHeight() - destOffsetY - destHeight,
+                                     destWidth, destHeight);
             }
+        } else {
+            rect = new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight);
         }
+        final Raster data = img.getData(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY, rect);
 
         final DataBuffer dataBuffer = data.getDataBuffer();
         final SampleModel sampleModel = data.getSampleModel();
@@ -280,23 +268,14 @@ public class Radarsat2ProductReader extends AbstractProductReader {
                                          final int bandSampleOffset,
                                          final boolean isAntennaPointingRight) throws IOException {
 
-        final Raster data;
-
-        synchronized(dataDir) {
-            final ImageReader reader = img.getReader();
-            final ImageReadParam param = reader.getDefaultReadParam();
-            param.setSourceSubsampling(sourceStepX, sourceStepY,
-                                       sourceOffsetX % sourceStepX,
-                                       sourceOffsetY % sourceStepY);
-
-            final RenderedImage image = reader.readAsRenderedImage(0, param);
-			if (flipToSARGeometry && isAntennaPointingRight) {  // flip the image left to right
-				data = image.getData(new Rectangle(img.getSceneWidth() - destOffsetX - destWidth,
-												   destOffsetY, destWidth, destHeight));
-			} else {
-				data = image.getData(new Rectangle(destOffsetX,	destOffsetY, destWidth, destHeight));
-			}
+        final Rectangle rect;
+        if (flipToSARGeometry && isAntennaPointingRight) {  // flip the image left to right
+            rect = new Rectangle(img.getSceneWidth() - destOffsetX - destWidth,
+                                 destOffsetY, destWidth, destHeight);
+        } else {
+            rect = new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight);
         }
+        final Raster data = img.getData(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY, rect);
 
         final DataBuffer dataBuffer = data.getDataBuffer();
         final SampleModel sampleModel = data.getSampleModel();
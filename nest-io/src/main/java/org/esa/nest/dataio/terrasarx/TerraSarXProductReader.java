@@ -31,13 +31,10 @@ import org.esa.nest.datamodel.Unit;
 import org.esa.nest.gpf.OperatorUtils;
 import org.esa.nest.gpf.ReaderUtils;
 
-import javax.imageio.ImageReadParam;
-import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
-import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.File;
 import java.io.IOException;
@@ -179,19 +176,9 @@ public class TerraSarXProductReader extends AbstractProductReader {
                                         final int imageID, final ImageIOFile img,
                                         final int bandSampleOffset) throws IOException {
 
-        final Raster data;
-
-        synchronized(dataDir) {
-            final ImageReader reader = img.getReader();
-            final ImageReadParam param = reader.getDefaultReadParam();
-            param.setSourceSubsampling(sourceStepX, sourceStepY,
-                                       sourceOffsetX % sourceStepX,
-                                       sourceOffsetY % sourceStepY);
-
-            final RenderedImage image = reader.readAsRenderedImage(0, param);
-            data = image.getData(new Rectangle(destOffsetX, img.getSceneHeight() - destOffsetY - destHeight,
-                                               destWidth, destHeight));
-        }
+        final Raster data = img.getData(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                        new Rectangle(destOffsetX, img.getSceneHeight() - destOffsetY - destHeight,
+                                                      destWidth, destHeight));
 
         final DataBuffer dataBuffer = data.getDataBuffer();
         final SampleModel sampleModel = data.getSampleModel();
@@ -220,19 +207,9 @@ public class TerraSarXProductReader extends AbstractProductReader {
                                          final int imageID, final ImageIOFile img,
                                          final int bandSampleOffset) throws IOException {
 
-        final Raster data;
-
-        synchronized(dataDir) {
-            final ImageReader reader = img.getReader();
-            final ImageReadParam param = reader.getDefaultReadParam();
-            param.setSourceSubsampling(sourceStepX, sourceStepY,
-                                       sourceOffsetX % sourceStepX,
-                                       sourceOffsetY % sourceStepY);
-
-            final RenderedImage image = reader.readAsRenderedImage(0, param);
-            data = image.getData(new Rectangle(img.getSceneWidth() - destOffsetX - destWidth,
-                                               destOffsetY, destWidth, destHeight));
-        }
+        final Raster data = img.getData(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                        new Rectangle(img.getSceneWidth() - destOffsetX - destWidth,
+                                                      destOffsetY, destWidth, destHeight));
 
         final DataBuffer dataBuffer = data.getDataBuffer();
         final SampleModel sampleModel = data.getSampleModel();
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.ceos;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.nest.dataio.FileImageInputStreamExtImpl;
+import org.esa.nest.dataio.binary.BinaryFileReader;
+import org.esa.nest.dataio.binary.BinaryRecord;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class CEOSImageFileTest extends TestCase {
+
+    // the records of the synthetic image file span more than one 4MB block
+    private static final int START_POS = 720;
+    private static final int HEADER_LENGTH = 12;
+    private static final int RECORD_LENGTH = 48000;
+    private static final int NUM_LINES = 120;
+
+    // sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight, sourceStepX, sourceStepY
+    private static final int[][] REGIONS = {
+            {0, 0, 1000, NUM_LINES, 1, 1},
+            {7, 5, 501, 110, 1, 1},
+            {3, 2, 400, 101, 2, 1},
+            {0, 1, 1000, 118, 1, 3},
+            {11, 4, 333, 97, 3, 2}
+    };
+
+    private File file;
+    private ByteBuffer fileBytes;
+
+    @Override
+    protected void setUp() throws Exception {
+        final byte[] bytes = new byte[START_POS + RECORD_LENGTH * NUM_LINES];
+        new Random(5).nextBytes(bytes);
+        fileBytes = ByteBuffer.wrap(bytes);
+
+        file = File.createTempFile("ceosImage", ".dat");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    /**
+     * Tiles read through the file channel in blocks of records give the same lines as reading
+     * one line at a time and as the bytes of the file, with and without sub-sampling.
+     * @throws Exception anything
+     */
+    public void testBlockReadsMatchLineReads() throws Exception {
+        final TestImageFile imageFile = new TestImageFile(FileImageInputStreamExtImpl.createInputStream(file));
+        try {
+            for (int[] region : REGIONS) {
+                checkShortReads(imageFile, region);
+                checkFloatReads(imageFile, region);
+            }
+        } finally {
+            imageFile.close();
+        }
+    }
+
+    /**
+     * Tiles read through the binaryReader, when the file of the stream is not known, give the
+     * same lines as reading one line at a time and as the bytes of the file.
+     * @throws Exception anything
+     */
+    public void testBlockReadsWithoutChannel() throws Exception {
+        final TestImageFile imageFile = new TestImageFile(new FileImageInputStream(file));
+        try {
+            for (int[] region : REGIONS) {
+                checkShortReads(imageFile, region);
+                checkFloatReads(imageFile, region);
+            }
+        } finally {
+            imageFile.close();
+        }
+    }
+
+    private void checkShortReads(final TestImageFile imageFile, final int[] region) throws IOException {
+        final int x0 = region[0], y0 = region[1], w = region[2], h = region[3], stepX = region[4], stepY = region[5];
+        final int destWidth = (w + stepX - 1) / stepX;
+        final int destHeight = (h + stepY - 1) / stepY;
+
+        final short[] tile = new short[destWidth * destHeight];
+        imageFile.readBandRasterDataShort(x0, y0, w, h, stepX, stepY, destWidth,
+                ProductData.createInstance(tile), ProgressMonitor.NULL);
+
+        final short[] line = new short[destWidth];
+        for (int r = 0; r < destHeight; r++) {
+            final int y = y0 + r * stepY;
+            imageFile.readBandRasterDataShort(x0, y, w, 1, stepX, 1, destWidth,
+                    ProductData.createInstance(line), ProgressMonitor.NULL);
+            for (int i = 0; i < destWidth; i++) {
+                final int pos = getSamplePosition(x0 + i * stepX, y, 2);
+                assertEquals(fileBytes.getShort(pos), line[i]);
+                assertEquals(line[i], tile[r * destWidth + i]);
+            }
+        }
+    }
+
+    private void checkFloatReads(final TestImageFile imageFile, final int[] region) throws IOException {
+        final int x0 = region[0], y0 = region[1], w = region[2], h = region[3], stepX = region[4], stepY = region[5];
+        final int destWidth = (w + stepX - 1) / stepX;
+        final int destHeight = (h + stepY - 1) / stepY;
+
+        final float[] tile = new float[destWidth * destHeight];
+        imageFile.readBandRasterDataFloat(x0, y0, w, h, stepX, stepY, destWidth,
+                ProductData.createInstance(tile), ProgressMonitor.NULL);
+
+        final float[] line = new float[destWidth];
+        for (int r = 0; r < destHeight; r++) {
+            final int y = y0 + r * stepY;
+            imageFile.readBandRasterDataFloat(x0, y, w, 1, stepX, 1, destWidth,
+                    ProductData.createInstance(line), ProgressMonitor.NULL);
+            for (int i = 0; i < destWidth; i++) {
+                final int pos = getSamplePosition(x0 + i * stepX, y, 4);
+                assertEquals(fileBytes.getInt(pos), Float.floatToRawIntBits(line[i]));
+                assertEquals(Float.floatToRawIntBits(line[i]), Float.floatToRawIntBits(tile[r * destWidth + i]));
+            }
+        }
+    }
+
+    private static int getSamplePosition(final int x, final int y, final int sampleSize) {
+        return START_POS + y * RECORD_LENGTH + HEADER_LENGTH + x * sampleSize;
+    }
+
+    private static class TestImageFile extends CEOSImageFile {
+
+        TestImageFile(final ImageInputStream stream) {
+            binaryReader = new BinaryFileReader(stream);
+            _imageRecordLength = RECORD_LENGTH;
+            _startPosImageRecords = START_POS;
+            _imageHeaderLength = HEADER_LENGTH;
+        }
+
+        @Override
+        protected BinaryRecord createNewImageRecord(final int line) throws IOException {
+            return null;
+        }
+    }
+}
@@ -81,6 +81,10 @@ public class AdaptiveThresholdingOp extends Operator {
     @Parameter(description = "Probability of false alarm", defaultValue = "6.5", label="PFA (10^(-x))")
     private double pfa = 6.5;
 
+    @Parameter(description = "Method used to compute the window statistics", valueSet = {STANDARD, INTEGRAL_IMAGE},
+            defaultValue = STANDARD, label="Window Statistics")
+    private String windowStatistics = STANDARD;
+
     private int sourceImageWidth = 0;
     private int sourceImageHeight = 0;
     private int targetWindowSize = 0;
@@ -94,6 +98,9 @@ public class AdaptiveThresholdingOp extends Operator {
 
     public final static String SHIPMASK_NAME = "_ship_bit_msk";
 
+    public final static String STANDARD = "Standard";
+    public final static String INTEGRAL_IMAGE = "Integral Image";
+
     @Override
     public void initialize() throws OperatorException {
         try {
@@ -231,6 +238,11 @@ public class AdaptiveThresholdingOp extends Operator {
             final Tile sourceTile = getSourceTile(sourceBand, sourceTileRectangle);
             final double noDataValue = sourceBand.getNoDataValue();
 
+            if (windowStatistics.equals(INTEGRAL_IMAGE) && (targetWindowSize - 1)/2 <= halfBackgroundWindowSize) {
+                computeTileWithIntegralImage(targetTile, sourceTile, noDataValue);
+                return;
+            }
+
             final TileIndex trgIndex = new TileIndex(targetTile);
             final TileIndex srcIndex = new TileIndex(sourceTile);    // src and trg tile are different size
 
@@ -260,6 +272,181 @@ public class AdaptiveThresholdingOp extends Operator {
         }
     }
 
+    /**
+     * Compute the ship mask of a tile using integral images (summed area tables) of the source values, their
+     * squares and the no data pixels, so that the statistics of each window are found with four lookups
+     * regardless of the window size.
+     * @param targetTile The target tile.
+     * @param sourceTile The source tile covering the background windows of all pixels in the target tile.
+     * @param noDataValue The no data value of the source band.
+     */
+    private void computeTileWithIntegralImage(final Tile targetTile, final Tile sourceTile, final double noDataValue) {
+
+        final Rectangle targetTileRectangle = targetTile.getRectangle();
+        final int tx0 = targetTileRectangle.x;
+        final int ty0 = targetTileRectangle.y;
+        final int maxx = tx0 + targetTileRectangle.width;
+        final int maxy = ty0 + targetTileRectangle.height;
+        final ProductData trgData = targetTile.getDataBuffer();
+        final TileIndex trgIndex = new TileIndex(targetTile);
+
+        final IntegralImage integral = new IntegralImage(sourceTile, noDataValue);
+        final int halfTargetWindowSize = (targetWindowSize - 1)/2;
+
+        for (int ty = ty0; ty < maxy; ty++) {
+            trgIndex.calculateStride(ty);
+            final int ty1 = Math.max(ty - halfTargetWindowSize, 0);
+            final int ty2 = Math.min(ty + halfTargetWindowSize, sourceImageHeight - 1);
+            final int gy1 = Math.max(ty - halfGuardWindowSize, 0);
+            final int gy2 = Math.min(ty + halfGuardWindowSize, sourceImageHeight - 1);
+            final int by1 = Math.max(ty - halfBackgroundWindowSize, 0);
+            final int by2 = Math.min(ty + halfBackgroundWindowSize, sourceImageHeight - 1);
+
+            for (int tx = tx0; tx < maxx; tx++) {
+                final int trgIdx = trgIndex.getIndex(tx);
+
+                // target window
+                final int tx1 = Math.max(tx - halfTargetWindowSize, 0);
+                final int tx2 = Math.min(tx + halfTargetWindowSize, sourceImageWidth - 1);
+                if (integral.noDataCount(tx1, ty1, tx2, ty2) > 0) {
+                    trgData.setElemIntAt(trgIdx, 0);
+                    continue;
+                }
+                final double targetMean = integral.offset +
+                        integral.sum(tx1, ty1, tx2, ty2) / ((tx2 - tx1 + 1) * (ty2 - ty1 + 1));
+                if (targetMean == noDataValue) {
+                    trgData.setElemIntAt(trgIdx, 0);
+                    continue;
+                }
+
+                // background window excluding the guard window
+                final int bx1 = Math.max(tx - halfBackgroundWindowSize, 0);
+                final int bx2 = Math.min(tx + halfBackgroundWindowSize, sourceImageWidth - 1);
+                final int gx1 = Math.max(Math.max(tx - halfGuardWindowSize, 0), bx1);
+                final int gx2 = Math.min(Math.min(tx + halfGuardWindowSize, sourceImageWidth - 1), bx2);
+                final int gy1b = Math.max(gy1, by1);
+                final int gy2b = Math.min(gy2, by2);
+                final boolean hasGuard = gx1 <= gx2 && gy1b <= gy2b;
+
+                int numNoData = integral.noDataCount(bx1, by1, bx2, by2);
+                if (hasGuard) {
+                    numNoData -= integral.noDataCount(gx1, gy1b, gx2, gy2b);
+                }
+                if (numNoData > 0) {
+                    trgData.setElemIntAt(trgIdx, 0);
+                    continue;
+                }
+
+                double sum = integral.sum(bx1, by1, bx2, by2);
+                double sum2 = integral.sumOfSquares(bx1, by1, bx2, by2);
+                int numPixels = (bx2 - bx1 + 1) * (by2 - by1 + 1);
+                if (hasGuard) {
+                    sum -= integral.sum(gx1, gy1b, gx2, gy2b);
+                    sum2 -= integral.sumOfSquares(gx1, gy1b, gx2, gy2b);
+                    numPixels -= (gx2 - gx1 + 1) * (gy2b - gy1b + 1);
+                }
+
+                final double mean = sum / numPixels;
+                final double backgroundSTD = Math.sqrt(Math.max(sum2 / numPixels - mean*mean, 0.0));
+                final double backgroundThreshold = integral.offset + mean + backgroundSTD*t;
+
+                trgData.setElemIntAt(trgIdx, targetMean > backgroundThreshold ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Summed area tables of the values, squared values and no data pixels of a source tile.
+     * Entry (x+1, y+1) holds the total over all pixels from the tile origin up to and including (x, y).
+     * The values are taken about the mean of the tile, see {@link #offset}, so that the variance of a window
+     * does not suffer from cancellation on bright backgrounds.
+     */
+    private static final class IntegralImage {
+
+        /** The mean of the valid values of the tile, which is subtracted from all values. */
+        final double offset;
+        private final int minX;
+        private final int minY;
+        private final int stride;
+        private final double[] sum;
+        private final double[] sumOfSquares;
+        private final int[] noDataCount;
+
+        IntegralImage(final Tile sourceTile, final double noDataValue) {
+            final Rectangle rect = sourceTile.getRectangle();
+            minX = rect.x;
+            minY = rect.y;
+            final int w = rect.width;
+            final int h = rect.height;
+            stride = w + 1;
+            sum = new double[stride * (h + 1)];
+            sumOfSquares = new double[stride * (h + 1)];
+            noDataCount = new int[stride * (h + 1)];
+
+            final ProductData srcData = sourceTile.getDataBuffer();
+            final int tileOffset = sourceTile.getScanlineOffset();
+            final int tileStride = sourceTile.getScanlineStride();
+
+            double tileSum = 0.0;
+            int numValid = 0;
+            for (int y = 0; y < h; y++) {
+                final int srcStride = y * tileStride + tileOffset;
+                for (int x = 0; x < w; x++) {
+                    final double v = srcData.getElemDoubleAt(srcStride + x);
+                    if (v != noDataValue && !Double.isNaN(v)) {
+                        tileSum += v;
+                        ++numValid;
+                    }
+                }
+            }
+            offset = numValid > 0 ? tileSum / numValid : 0.0;
+
+            for (int y = 0; y < h; y++) {
+                final int srcStride = y * tileStride + tileOffset;
+                final int above = y * stride;
+                final int row = above + stride;
+                double rowSum = 0.0, rowSum2 = 0.0;
+                int rowNoData = 0;
+                for (int x = 0; x < w; x++) {
+                    final double v = srcData.getElemDoubleAt(srcStride + x);
+                    if (v == noDataValue || Double.isNaN(v)) {
+                        ++rowNoData;
+                    } else {
+                        final double d = v - offset;
+                        rowSum += d;
+                        rowSum2 += d*d;
+                    }
+                    sum[row + x + 1] = sum[above + x + 1] + rowSum;
+                    sumOfSquares[row + x + 1] = sumOfSquares[above + x + 1] + rowSum2;
+                    noDataCount[row + x + 1] = noDataCount[above + x + 1] + rowNoData;
+                }
+            }
+        }
+
+        // all window bounds are inclusive image coordinates
+        double sum(final int x1, final int y1, final int x2, final int y2) {
+            return areaSum(sum, x1, y1, x2, y2);
+        }
+
+        double sumOfSquares(final int x1, final int y1, final int x2, final int y2) {
+            return areaSum(sumOfSquares, x1, y1, x2, y2);
+        }
+
+        int noDataCount(final int x1, final int y1, final int x2, final int y2) {
+            final int i1 = (y1 - minY) * stride + (x1 - minX);
+            final int i2 = (y2 - minY + 1) * stride + (x1 - minX);
+            final int w = x2 - x1 + 1;
+            return noDataCount[i2 + w] - noDataCount[i2] - noDataCount[i1 + w] + noDataCount[i1];
+        }
+
+        private double areaSum(final double[] table, final int x1, final int y1, final int x2, final int y2) {
+            final int i1 = (y1 - minY) * stride + (x1 - minX);
+            final int i2 = (y2 - minY + 1) * stride + (x1 - minX);
+            final int w = x2 - x1 + 1;
+            return table[i2 + w] - table[i2] - table[i1 + w] + table[i1];
+        }
+    }
+
     /**
      * Compute the mean value for pixels in the target window.
      * @param tx The x coordinate of the central point of the target window.
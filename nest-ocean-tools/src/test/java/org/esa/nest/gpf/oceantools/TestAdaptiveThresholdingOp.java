@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf.oceantools;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.MetadataElement;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.nest.datamodel.AbstractMetadata;
+import org.esa.nest.datamodel.Unit;
+import org.esa.nest.util.TestUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit test for AdaptiveThresholdingOp.
+ */
+public class TestAdaptiveThresholdingOp extends TestCase {
+
+    private OperatorSpi spi;
+
+    @Override
+    protected void setUp() throws Exception {
+        TestUtils.initTestEnvironment();
+        spi = new AdaptiveThresholdingOp.Spi();
+    }
+
+    /**
+     * The integral image window statistics give the same ship mask as the standard window loops,
+     * also on a bright background with no data pixels.
+     * @throws Exception The exception.
+     */
+    public void testIntegralImageEqualsStandard() throws Exception {
+        final Product sourceProduct = createTestProduct(120, 100);
+
+        final int[] standardMask = computeShipMask(sourceProduct, AdaptiveThresholdingOp.STANDARD);
+        final int[] integralMask = computeShipMask(sourceProduct, AdaptiveThresholdingOp.INTEGRAL_IMAGE);
+
+        int numShipPixels = 0;
+        for (int v : standardMask) {
+            numShipPixels += v;
+        }
+        assertTrue(numShipPixels > 0);
+        assertTrue(Arrays.equals(standardMask, integralMask));
+    }
+
+    private int[] computeShipMask(final Product sourceProduct, final String windowStatistics) throws Exception {
+        final AdaptiveThresholdingOp op = (AdaptiveThresholdingOp)spi.createOperator();
+        op.setSourceProduct(sourceProduct);
+        op.setParameter("targetWindowSizeInMeter", 30);
+        op.setParameter("guardWindowSizeInMeter", 100.0);
+        op.setParameter("backgroundWindowSizeInMeter", 300.0);
+        op.setParameter("windowStatistics", windowStatistics);
+
+        final Product targetProduct = op.getTargetProduct();
+        final Band band = targetProduct.getBand("Amplitude_VV" + AdaptiveThresholdingOp.SHIPMASK_NAME);
+        assertNotNull(band);
+
+        final int w = targetProduct.getSceneRasterWidth();
+        final int h = targetProduct.getSceneRasterHeight();
+        final int[] mask = new int[w * h];
+        band.readPixels(0, 0, w, h, mask, ProgressMonitor.NULL);
+        return mask;
+    }
+
+    private static Product createTestProduct(final int w, final int h) {
+        final Product product = TestUtils.createProduct("GRD", w, h);
+        final Band band = product.addBand("Amplitude_VV", ProductData.TYPE_FLOAT32);
+        band.setUnit(Unit.AMPLITUDE);
+
+        // bright sea clutter with a few ships and a no data corner
+        final Random random = new Random(42);
+        final float[] values = new float[w * h];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float)(50000.0 + 1500.0 * random.nextGaussian());
+        }
+        final int[][] ships = {{20, 30}, {60, 50}, {95, 80}, {40, 85}};
+        for (int[] ship : ships) {
+            for (int y = ship[1] - 1; y <= ship[1] + 1; y++) {
+                for (int x = ship[0] - 1; x <= ship[0] + 1; x++) {
+                    values[y * w + x] = 90000.0f;
+                }
+            }
+        }
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 10; x++) {
+                values[y * w + x] = 0.0f;
+            }
+        }
+        band.setRasterData(ProductData.createInstance(values));
+
+        final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(product);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.range_spacing, 10.0);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.azimuth_spacing, 10.0);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.srgr_flag, 1);
+        return product;
+    }
+}
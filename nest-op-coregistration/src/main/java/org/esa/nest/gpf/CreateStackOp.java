@@ -710,7 +710,7 @@ public class CreateStackOp extends Operator {
 
             } else { // with resampling
 
-                final PixelPos[] sourcePixelPositions = ProductUtils.computeSourcePixelCoordinates(
+                final PixelPos[] sourcePixelPositions = PixelPosGrid.computeSourcePixelCoordinates(
                         srcProduct.getGeoCoding(),
                         srcProduct.getSceneRasterWidth(),
                         srcProduct.getSceneRasterHeight(),
@@ -17,6 +17,7 @@ package org.esa.nest.gpf;
 
 import com.bc.ceres.core.ProgressMonitor;
 import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_2D;
 import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.framework.dataop.dem.ElevationModel;
 import org.esa.beam.framework.dataop.dem.ElevationModelDescriptor;
@@ -38,15 +39,12 @@ import org.esa.nest.datamodel.AbstractMetadata;
 import org.esa.nest.datamodel.Unit;
 import org.esa.nest.util.MemUtils;
 
-import javax.media.jai.*;
-import javax.media.jai.operator.DFTDescriptor;
 import java.awt.*;
-import java.awt.image.*;
-import java.awt.image.DataBufferDouble;
-import java.awt.image.renderable.ParameterBlock;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Image co-registration is fundamental for Interferometry SAR (InSAR) imaging and its applications, such as
@@ -167,6 +165,9 @@ public class GCPSelectionOp extends Operator {
 
     private ElevationModel dem = null;
 
+    // cross correlators of the coarse registration window, at most one per concurrently working thread
+    private final Queue<CrossCorrelator> correlatorPool = new ConcurrentLinkedQueue<CrossCorrelator>();
+
     /**
      * Default constructor. The graph processing framework
      * requires that an operator has a default constructor.
@@ -335,6 +336,11 @@ public class GCPSelectionOp extends Operator {
         dem = demDescriptor.createDem(ResamplingFactory.createResampling(ResamplingFactory.NEAREST_NEIGHBOUR_NAME));
     }
 
+    @Override
+    public void dispose() {
+        correlatorPool.clear();
+    }
+
     /**
      * Called by the framework in order to compute a tile for the given target band.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
@@ -473,7 +479,7 @@ public class GCPSelectionOp extends Operator {
                     continue;
                 }
 
-                final Thread worker = new Thread() {
+                final Runnable worker = new Runnable() {
 
                     @Override
                     public void run() {
@@ -575,7 +581,7 @@ public class GCPSelectionOp extends Operator {
                 for (final Rectangle rectangle : tileRectangles) {
                     checkForCancellation();
 
-                    final Thread worker = new Thread() {
+                    final Runnable worker = new Runnable() {
 
                         @Override
                         public void run() {
@@ -636,22 +642,13 @@ public class GCPSelectionOp extends Operator {
             }
 
             // correlate master and slave imagettes
-            final RenderedImage masterImage = createRenderedImage(mI, windowWidth, windowHeight);
-            final PlanarImage masterSpectrum = dft(masterImage);
-
-            final RenderedImage slaveImage = createRenderedImage(sI, windowWidth, windowHeight);
-            final PlanarImage slaveSpectrum = dft(slaveImage);
-            final PlanarImage conjugateSlaveSpectrum = conjugate(slaveSpectrum);
-
-            final PlanarImage crossSpectrum = multiplyComplex(masterSpectrum, conjugateSlaveSpectrum);
-            final PlanarImage correlatedImage = idft(crossSpectrum);
-            final PlanarImage crossCorrelatedImage = magnitude(correlatedImage);
+            // used once, so not pooled
+            final CrossCorrelator correlator = new CrossCorrelator(windowWidth, windowHeight, 1, 1);
+            final double[] real = correlator.correlate(mI, sI);
 
             // compute offset
-            final int w = crossCorrelatedImage.getWidth();
-            final int h = crossCorrelatedImage.getHeight();
-            final Raster idftData = crossCorrelatedImage.getData();
-            final double[] real = idftData.getSamples(0, 0, w, h, 0, (double[])null);
+            final int w = correlator.upWidth;
+            final int h = correlator.upHeight;
 
             int peakRow = 0;
             int peakCol = 0;
@@ -937,30 +934,18 @@ public class GCPSelectionOp extends Operator {
     }
 
     private boolean getSlaveGCPShift(final double[] shift, final double[] mI, final double[] sI) {
+        CrossCorrelator correlator = null;
         try {
             // perform cross correlation
-            final PlanarImage crossCorrelatedImage = computeCrossCorrelatedImage(mI, sI);
-
-            // check peak validity
-            /*
-            final double mean = getMean(crossCorrelatedImage);
-            if (Double.compare(mean, 0.0) == 0) {
-                return false;
+            correlator = correlatorPool.poll();
+            if (correlator == null) {
+                correlator = new CrossCorrelator(cWindowWidth, cWindowHeight, rowUpSamplingFactor, colUpSamplingFactor);
             }
-
-            double max = getMax(crossCorrelatedImage);
-            double qualityParam = max / mean;
-            if (qualityParam <= qualityThreshold) {
-                return false;
-            }
-            */
+            final double[] real = correlator.correlate(mI, sI);
 
             // get peak shift: row and col
-            final int w = crossCorrelatedImage.getWidth();
-            final int h = crossCorrelatedImage.getHeight();
-
-            final Raster idftData = crossCorrelatedImage.getData();
-            final double[] real = idftData.getSamples(0, 0, w, h, 0, (double[])null);
+            final int w = correlator.upWidth;
+            final int h = correlator.upHeight;
             //System.out.println("Cross correlated imagette:");
             //outputRealImage(real);
 
@@ -995,178 +980,105 @@ public class GCPSelectionOp extends Operator {
         } catch(Throwable t) {
             System.out.println("getSlaveGCPShift failed "+t.getMessage());
             return false;
+        } finally {
+            if (correlator != null) {
+                correlatorPool.offer(correlator);
+            }
         }
     }
 
-    private PlanarImage computeCrossCorrelatedImage(final double[] mI, final double[] sI) {
-
-        // get master imagette spectrum
-        final RenderedImage masterImage = createRenderedImage(mI, cWindowWidth, cWindowHeight);
-        final PlanarImage masterSpectrum = dft(masterImage);
-        //System.out.println("Master spectrum:");
-        //outputComplexImage(masterSpectrum);
-
-        // get slave imagette spectrum
-        final RenderedImage slaveImage = createRenderedImage(sI, cWindowWidth, cWindowHeight);
-        final PlanarImage slaveSpectrum = dft(slaveImage);
-        //System.out.println("Slave spectrum:");
-        //outputComplexImage(slaveSpectrum);
-
-        // get conjugate slave spectrum
-        final PlanarImage conjugateSlaveSpectrum = conjugate(slaveSpectrum);
-        //System.out.println("Conjugate slave spectrum:");
-        //outputComplexImage(conjugateSlaveSpectrum);
-
-        // multiply master spectrum and conjugate slave spectrum
-        final PlanarImage crossSpectrum = multiplyComplex(masterSpectrum, conjugateSlaveSpectrum);
-        //System.out.println("Cross spectrum:");
-        //outputComplexImage(crossSpectrum);
-
-        // upsampling cross spectrum
-        final RenderedImage upsampledCrossSpectrum = upsampling(crossSpectrum);
-
-        // perform IDF on the cross spectrum
-        final PlanarImage correlatedImage = idft(upsampledCrossSpectrum);
-        //System.out.println("Correlated image:");
-        //outputComplexImage(correlatedImage);
-
-        // compute the magnitode of the cross correlated image
-        return magnitude(correlatedImage);
-    }
-
-    private static RenderedImage createRenderedImage(final double[] array, final int w, final int h) {
-
-        // create rendered image with demension being width by height
-        final SampleModel sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_DOUBLE, w, h, 1);
-        final ColorModel colourModel = PlanarImage.createColorModel(sampleModel);
-        final DataBufferDouble dataBuffer = new DataBufferDouble(array, array.length);
-        final WritableRaster raster = RasterFactory.createWritableRaster(sampleModel, dataBuffer, new Point(0,0));
-
-        return new BufferedImage(colourModel, raster, false, new Hashtable());
-    }
-
-    private static PlanarImage dft(final RenderedImage image) {
-
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image);
-        pb.add(DFTDescriptor.SCALING_NONE);
-        pb.add(DFTDescriptor.REAL_TO_COMPLEX);
-        return JAI.create("dft", pb, null);
-    }
-
-    private static PlanarImage idft(final RenderedImage image) {
-
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image);
-        pb.add(DFTDescriptor.SCALING_DIMENSIONS);
-        pb.add(DFTDescriptor.COMPLEX_TO_COMPLEX);
-        return JAI.create("idft", pb, null);
-    }
-
-    private static PlanarImage conjugate(final PlanarImage image) {
-
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image);
-        return JAI.create("conjugate", pb, null);
-    }
-
-    private static PlanarImage multiplyComplex(final PlanarImage image1, final PlanarImage image2){
-
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image1);
-        pb.addSource(image2);
-        return JAI.create("MultiplyComplex", pb, null);
-    }
-
-    private RenderedImage upsampling(final PlanarImage image) {
-
-        // System.out.println("Source image:");
-        // outputComplexImage(image);
-
-        final int w = image.getWidth();  // w is power of 2
-        final int h = image.getHeight(); // h is power of 2
-        final int newWidth = rowUpSamplingFactor * w; // rowInterpFactor should be power of 2 to avoid zero padding in idft
-        final int newHeight = colUpSamplingFactor * h; // colInterpFactor should be power of 2 to avoid zero padding in idft
-
-        // create shifted image
-        final ParameterBlock pb1 = new ParameterBlock();
-        pb1.addSource(image);
-        pb1.add(w/2);
-        pb1.add(h/2);
-        PlanarImage shiftedImage = JAI.create("PeriodicShift", pb1, null);
-        //System.out.println("Shifted image:");
-        //outputComplexImage(shiftedImage);
-
-        // create zero padded image
-        final ParameterBlock pb2 = new ParameterBlock();
-        final int leftPad = (newWidth - w) / 2;
-        final int rightPad = leftPad;
-        final int topPad = (newHeight - h) / 2;
-        final int bottomPad = topPad;
-        pb2.addSource(shiftedImage);
-        pb2.add(leftPad);
-        pb2.add(rightPad);
-        pb2.add(topPad);
-        pb2.add(bottomPad);
-        pb2.add(BorderExtender.createInstance(BorderExtender.BORDER_ZERO));
-        final PlanarImage zeroPaddedImage = JAI.create("border", pb2);
-
-        // reposition zero padded image so the image origin is back at (0,0)
-        final ParameterBlock pb3 = new ParameterBlock();
-        pb3.addSource(zeroPaddedImage);
-        pb3.add(1.0f*leftPad);
-        pb3.add(1.0f*topPad);
-        final PlanarImage zeroBorderedImage = JAI.create("translate", pb3, null);
-        //System.out.println("Zero padded image:");
-        //outputComplexImage(zeroBorderedImage);
-
-        // shift the zero padded image
-        final ParameterBlock pb4 = new ParameterBlock();
-        pb4.addSource(zeroBorderedImage);
-        pb4.add(newWidth/2);
-        pb4.add(newHeight/2);
-        final PlanarImage shiftedZeroPaddedImage = JAI.create("PeriodicShift", pb4, null);
-        //System.out.println("Shifted zero padded image:");
-        //outputComplexImage(shiftedZeroPaddedImage);
-
-        return shiftedZeroPaddedImage;
-    }
-
-    private static PlanarImage magnitude(final PlanarImage image) {
-
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image);
-        return JAI.create("magnitude", pb, null);
-    }
-
-    private static double getMean(final RenderedImage image) {
-
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image);
-        pb.add(null); // null ROI means whole image
-        pb.add(1); // check every pixel horizontally
-        pb.add(1); // check every pixel vertically
-
-        // Perform the mean operation on the source image.
-        final RenderedImage meanImage = JAI.create("mean", pb, null);
-        // Retrieve and report the mean pixel value.
-        final double[] mean = (double[])meanImage.getProperty("mean");
-        return mean[0];
-    }
+    /**
+     * Computes the magnitude of the upsampled cross correlation of two imagettes with JTransforms 2D FFTs.
+     * A correlator holds the FFT plans and work buffers of one window size and must only be used by one thread at a time.
+     */
+    private static final class CrossCorrelator {
+
+        final int width;
+        final int height;
+        final int upWidth;
+        final int upHeight;
+        private final DoubleFFT_2D fft;
+        private final DoubleFFT_2D upFFT;
+        private final double[] masterSpectrum;
+        private final double[] slaveSpectrum;
+        private final double[] crossSpectrum;
+        private final double[] magnitude;
+
+        /**
+         * @param width imagette width
+         * @param height imagette height
+         * @param rowUpSamplingFactor up sampling factor applied to the width, should be a power of 2
+         * @param colUpSamplingFactor up sampling factor applied to the height, should be a power of 2
+         */
+        CrossCorrelator(final int width, final int height,
+                        final int rowUpSamplingFactor, final int colUpSamplingFactor) {
+            this.width = width;
+            this.height = height;
+            this.upWidth = rowUpSamplingFactor * width;
+            this.upHeight = colUpSamplingFactor * height;
+            fft = new DoubleFFT_2D(height, width);
+            upFFT = (upWidth == width && upHeight == height) ? fft : new DoubleFFT_2D(upHeight, upWidth);
+            masterSpectrum = new double[2*width*height];
+            slaveSpectrum = new double[2*width*height];
+            crossSpectrum = new double[2*upWidth*upHeight];
+            magnitude = new double[upWidth*upHeight];
+        }
 
-    private static double getMax(final RenderedImage image) {
+        /**
+         * Cross correlate master and slave imagettes
+         * @param mI master imagette, width*height samples
+         * @param sI slave imagette, width*height samples
+         * @return magnitude of the cross correlated image, upWidth*upHeight samples.
+         *         The array is reused by the next call from the same thread.
+         */
+        double[] correlate(final double[] mI, final double[] sI) {
+
+            // get master and slave imagette spectra
+            toComplex(mI, masterSpectrum);
+            fft.complexForward(masterSpectrum);
+            toComplex(sI, slaveSpectrum);
+            fft.complexForward(slaveSpectrum);
+
+            // multiply master spectrum and conjugate slave spectrum, zero padding the high frequencies
+            // in the middle of the spectrum for upsampling
+            if (upWidth != width || upHeight != height) {
+                Arrays.fill(crossSpectrum, 0.0);
+            }
+            final int halfW = width / 2;
+            final int halfH = height / 2;
+            for (int r = 0; r < height; r++) {
+                final int upR = r < halfH ? r : r + upHeight - height;
+                final int srcOffset = 2*r*width;
+                final int upOffset = 2*upR*upWidth;
+                for (int c = 0; c < width; c++) {
+                    final int upC = c < halfW ? c : c + upWidth - width;
+                    final int k = srcOffset + 2*c;
+                    final double mRe = masterSpectrum[k];
+                    final double mIm = masterSpectrum[k + 1];
+                    final double sRe = slaveSpectrum[k];
+                    final double sIm = slaveSpectrum[k + 1];
+                    final int u = upOffset + 2*upC;
+                    crossSpectrum[u] = mRe*sRe + mIm*sIm;
+                    crossSpectrum[u + 1] = mIm*sRe - mRe*sIm;
+                }
+            }
 
-        final ParameterBlock pb = new ParameterBlock();
-        pb.addSource(image);
-        pb.add(null); // null ROI means whole image
-        pb.add(1); // check every pixel horizontally
-        pb.add(1); // check every pixel vertically
+            // perform IDFT on the cross spectrum and compute the magnitude of the cross correlated image
+            upFFT.complexInverse(crossSpectrum, true);
+            for (int i = 0; i < magnitude.length; i++) {
+                final double re = crossSpectrum[2*i];
+                final double im = crossSpectrum[2*i + 1];
+                magnitude[i] = Math.sqrt(re*re + im*im);
+            }
+            return magnitude;
+        }
 
-        // Perform the extrema operation on the source image
-        final RenderedOp op = JAI.create("extrema", pb);
-        // Retrieve both the maximum and minimum pixel value
-        final double[][] extrema = (double[][]) op.getProperty("extrema");
-        return extrema[1][0];
+        private static void toComplex(final double[] real, final double[] complex) {
+            for (int i = 0; i < real.length; i++) {
+                complex[2*i] = real[i];
+                complex[2*i + 1] = 0.0;
+            }
+        }
     }
 
     // This function is for debugging only.
@@ -1178,26 +1090,6 @@ public class GCPSelectionOp extends Operator {
         System.out.println();
     }
 
-    // This function is for debugging only.
-    private static void outputComplexImage(final PlanarImage image) {
-
-        final int w = image.getWidth();
-        final int h = image.getHeight();
-        final Raster dftData = image.getData();
-        final double[] real = dftData.getSamples(0, 0, w, h, 0, (double[])null);
-        final double[] imag = dftData.getSamples(0, 0, w, h, 1, (double[])null);
-        System.out.println("Real part:");
-        for (double v:real) {
-            System.out.print(v + ", ");
-        }
-        System.out.println();
-        System.out.println("Imaginary part:");
-        for (double v:imag) {
-            System.out.print(v + ", ");
-        }
-        System.out.println();
-    }
-
     /**
      * The function is for unit test only.
      *
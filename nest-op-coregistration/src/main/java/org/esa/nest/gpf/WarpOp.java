@@ -36,9 +36,6 @@ import org.jlinda.core.coregistration.SimpleLUT;
 
 import javax.media.jai.*;
 import java.awt.*;
-import java.awt.image.DataBuffer;
-import java.awt.image.RenderedImage;
-import java.awt.image.renderable.ParameterBlock;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -95,7 +92,6 @@ public class WarpOp extends Operator {
     private String interpolationMethod = BILINEAR;
 
     private Interpolation interp = null;
-    private InterpolationTable interpTable = null;
 
     @Parameter(description = "Show the Residuals file in a text viewer", defaultValue = "false", label = "Show Residuals")
     private boolean openResidualsFile = false;
@@ -119,6 +115,7 @@ public class WarpOp extends Operator {
 
     private final Map<Band, Band> sourceRasterMap = new HashMap<Band, Band>(10);
     private final Map<Band, Band> complexSrcMap = new HashMap<Band, Band>(10);
+    private final Map<Band, Band> complexTgtMap = new HashMap<Band, Band>(10);
     private final Map<Band, WarpData> warpDataMap = new HashMap<Band, WarpData>(10);
 
     private String processedSlaveBand;
@@ -222,7 +219,7 @@ public class WarpOp extends Operator {
         final int precisionBits = 32;
         int padding = kernelLength / 2 - 1;
 
-        interpTable = new InterpolationTable(padding, kernelLength, subsampleBits, precisionBits, lutArrayFloats);
+        interp = new InterpolationTable(padding, kernelLength, subsampleBits, precisionBits, lutArrayFloats);
     }
 
     private void addSlaveGCPs(final WarpData warpData, final String bandName) {
@@ -288,6 +285,7 @@ public class WarpOp extends Operator {
                 sourceRasterMap.put(targetBandQ, srcBandQ);
 
                 complexSrcMap.put(srcBandQ, srcBand);
+                complexTgtMap.put(targetBand, targetBandQ);
                 final String suffix = '_'+OperatorUtils.getSuffixFromBandName(srcBand.getName());
                 ReaderUtils.createVirtualIntensityBand(targetProduct, targetBand, targetBandQ, suffix);
                 ReaderUtils.createVirtualPhaseBand(targetProduct, targetBand, targetBandQ, suffix);
@@ -467,8 +465,9 @@ public class WarpOp extends Operator {
     }     
 
     /**
-     * Called by the framework in order to compute a tile for the given target band.
-     * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
+     * Called by the framework in order to compute the stack of tiles for the given target bands.
+     * <p>The i and q bands of a complex slave are resampled together, so the warped positions and
+     * interpolation weights are computed once for both.</p>
      *
      * @param targetTileMap   The target tiles associated with all target bands to be computed.
      * @param targetRectangle The rectangle of target tile.
@@ -476,65 +475,105 @@ public class WarpOp extends Operator {
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs during computation of the target raster.
      */
-    //@Override
-   // public void computeTileStack(Map<Band, Tile> targetTileMap, Rectangle targetRectangle, ProgressMonitor pm)
-   //         throws OperatorException {
-    /**
-     * Called by the framework in order to compute a tile for the given target band.
-     * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
-     *
-     * @param targetBand The target band.
-     * @param targetTile The current tile associated with the target band to be computed.
-     * @param pm         A progress monitor which should be used to determine computation cancelation requests.
-     * @throws org.esa.beam.framework.gpf.OperatorException
-     *          If an error occurs during computation of the target raster.
-     */
     @Override
-    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        final Rectangle targetRectangle = targetTile.getRectangle();
-        final int x0 = targetRectangle.x;
-        final int y0 = targetRectangle.y;
-        final int w = targetRectangle.width;
-        final int h = targetRectangle.height;
-        //System.out.println("WARPOperator: x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
+    public void computeTileStack(Map<Band, Tile> targetTileMap, Rectangle targetRectangle, ProgressMonitor pm)
+            throws OperatorException {
 
         try {
             if(!warpDataAvailable) {
                 getWarpData(targetRectangle);
             }
 
-                final Band srcBand = sourceRasterMap.get(targetBand);
-                if (srcBand == null)
+            for (Band targetBand : targetTileMap.keySet()) {
+                if(pm.isCanceled())
                     return;
-                Band realSrcBand = complexSrcMap.get(srcBand);
-                if (realSrcBand == null)
-                    realSrcBand = srcBand;
 
-                // create source image
-                final Tile sourceRaster = getSourceTile(srcBand, targetRectangle);
+                final Band srcBand = sourceRasterMap.get(targetBand);
+                if (srcBand == null || complexSrcMap.containsKey(srcBand))
+                    continue;       // q bands are computed with their i band
+
+                final WarpData warpData = warpDataMap.get(srcBand);
+                if(warpData == null || warpData.notEnoughGCPs)
+                    continue;
+
+                final Band targetBandQ = complexTgtMap.get(targetBand);
+                if (targetBandQ != null && targetTileMap.get(targetBandQ) != null) {
+                    warpBands(warpData, targetRectangle,
+                              new Band[] {srcBand, sourceRasterMap.get(targetBandQ)},
+                              new Tile[] {targetTileMap.get(targetBand), targetTileMap.get(targetBandQ)});
+                } else {
+                    warpBands(warpData, targetRectangle, new Band[] {srcBand},
+                              new Tile[] {targetTileMap.get(targetBand)});
+                }
+            }
 
-                if(pm.isCanceled())
-                    return;
+        } catch (Throwable e) {
+            OperatorUtils.catchOperatorException(getId(), e);
+        } finally {
+            pm.done();
+        }
+    }
 
-                final WarpData warpData = warpDataMap.get(realSrcBand);
-                if(warpData.notEnoughGCPs)
-                    return;
+    /**
+     * Resamples slave bands sharing one warp function into their target tiles.
+     *
+     * @param warpData        The warp information of the bands.
+     * @param targetRectangle The rectangle of the target tiles.
+     * @param srcBands        The source bands.
+     * @param targetTiles     The target tiles of the source bands.
+     */
+    private void warpBands(final WarpData warpData, final Rectangle targetRectangle,
+                           final Band[] srcBands, final Tile[] targetTiles) {
 
-                final RenderedImage srcImage = sourceRaster.getRasterDataNode().getSourceImage();
+        final WarpResampler resampler = new WarpResampler(warpData.xCoef, warpData.yCoef, interp);
+        final Rectangle sourceRectangle = resampler.getSourceRectangle(targetRectangle,
+                sourceProduct.getSceneRasterWidth(), sourceProduct.getSceneRasterHeight());
 
-                // get warped image
-                final RenderedOp warpedImage = createWarpImage(warpData.jaiWarp, srcImage);
+        final float[][] sourceData = new float[srcBands.length][];
+        if (!sourceRectangle.isEmpty()) {
+            for (int b = 0; b < srcBands.length; ++b) {
+                sourceData[b] = getRawSamples(getSourceTile(srcBands[b], sourceRectangle));
+            }
+        }
 
-                // copy warped image data to target
-                final float[] dataArray = warpedImage.getData(targetRectangle).getSamples(x0, y0, w, h, 0, (float[]) null);
+        // the target bands are float32, their tiles are written in place
+        final int targetOffset = targetTiles[0].getScanlineOffset();
+        final int targetStride = targetTiles[0].getScanlineStride();
+        boolean sameLayout = true;
+        final float[][] targetData = new float[targetTiles.length][];
+        for (int b = 0; b < targetTiles.length; ++b) {
+            targetData[b] = targetTiles[b].getDataBufferFloat();
+            sameLayout &= targetTiles[b].getScanlineOffset() == targetOffset &&
+                          targetTiles[b].getScanlineStride() == targetStride;
+        }
 
-                targetTile.setRawSamples(ProductData.createInstance(dataArray));
+        if (sameLayout) {
+            resampler.resample(targetRectangle, sourceRectangle, sourceData, targetData, targetOffset, targetStride);
+        } else {
+            for (int b = 0; b < targetTiles.length; ++b) {
+                resampler.resample(targetRectangle, sourceRectangle, new float[][] {sourceData[b]},
+                                   new float[][] {targetData[b]},
+                                   targetTiles[b].getScanlineOffset(), targetTiles[b].getScanlineStride());
+            }
+        }
+    }
 
-        } catch (Throwable e) {
-            OperatorUtils.catchOperatorException(getId(), e);
-        } finally {
-            pm.done();
+    /**
+     * Gets the raw samples of a source tile as float, as the JAI format operation casts them.
+     *
+     * @param sourceTile The source tile.
+     * @return The samples of the tile rectangle.
+     */
+    private static float[] getRawSamples(final Tile sourceTile) {
+        final ProductData rawSamples = sourceTile.getRawSamples();
+        if (rawSamples.getType() == ProductData.TYPE_FLOAT32) {
+            return (float[]) rawSamples.getElems();
         }
+        final float[] samples = new float[rawSamples.getNumElems()];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = rawSamples.getElemFloatAt(i);
+        }
+        return samples;
     }
 
     /**
@@ -896,35 +935,6 @@ public class WarpOp extends Operator {
         return new File(appUserDir.toString(), fileName);
     }
 
-    /**
-     * Create warped image.
-     *
-     * @param warp     The WARP polynomial.
-     * @param srcImage The source image.
-     * @return The warped image.
-     */
-    private RenderedOp createWarpImage(WarpPolynomial warp, final RenderedImage srcImage) {
-
-        // reformat source image by casting pixel values from ushort to float
-        final ParameterBlock pb1 = new ParameterBlock();
-        pb1.addSource(srcImage);
-        pb1.add(DataBuffer.TYPE_FLOAT);
-        final RenderedImage srcImageFloat = JAI.create("format", pb1);
-
-        // get warped image
-        final ParameterBlock pb2 = new ParameterBlock();
-        pb2.addSource(srcImageFloat);
-        pb2.add(warp);
-
-        if (interp != null) {
-            pb2.add(interp);
-        } else if (interpTable != null) {
-            pb2.add(interpTable);
-        }
-
-        return JAI.create("warp", pb2);
-    }
-
     public static class WarpData {
         public final List<Placemark> slaveGCPList = new ArrayList<Placemark>();
         private WarpPolynomial jaiWarp = null;
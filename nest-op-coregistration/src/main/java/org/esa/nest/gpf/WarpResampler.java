@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import org.esa.beam.framework.gpf.OperatorException;
+
+import javax.media.jai.Interpolation;
+import javax.media.jai.InterpolationBilinear;
+import javax.media.jai.InterpolationTable;
+import java.awt.Rectangle;
+
+/**
+ * Resamples slave bands onto the master grid with a WARP polynomial, replacing a JAI warp image per tile.
+ * <p/>
+ * The polynomial maps master (target) pixel positions to slave (source) pixel positions. Along a target
+ * row it is evaluated by forward differencing, so each position costs a few additions, and every position
+ * is computed once for all bands resampled together, e.g. the i and q bands of a complex slave.
+ * The results follow the JAI warp operation: positions are computed for pixel centres, pixels whose
+ * interpolation kernel does not fit into the source image are set to zero, and interpolation tables
+ * such as the jlinda kernel LUTs or JAI's bicubic kernels are applied with their sub-sample precision.
+ */
+final class WarpResampler {
+
+    private static final int NEAREST = 0;
+    private static final int BILINEAR = 1;
+    private static final int TABLE = 2;
+
+    private final double[] xCoef;
+    private final double[] yCoef;
+    private final int degree;
+
+    private final int kernelType;
+    private final int leftPadding;
+    private final int topPadding;
+    private final int kernelWidth;
+    private final int kernelHeight;
+    private final int numSubsamplesH;
+    private final int numSubsamplesV;
+    private final float[] dataH;
+    private final float[] dataV;
+
+    /**
+     * @param xCoef  The WARP coefficients for the slave x coordinate.
+     * @param yCoef  The WARP coefficients for the slave y coordinate.
+     * @param interp The interpolation, nearest neighbour is used if {@code null}.
+     */
+    WarpResampler(final double[] xCoef, final double[] yCoef, final Interpolation interp) {
+        if (xCoef.length != yCoef.length) {
+            throw new OperatorException("WARP has different number of coefficients for X and Y");
+        }
+        this.xCoef = xCoef;
+        this.yCoef = yCoef;
+        this.degree = getDegree(xCoef.length);
+
+        if (interp instanceof InterpolationTable) {
+            final InterpolationTable table = (InterpolationTable) interp;
+            kernelType = TABLE;
+            leftPadding = table.getLeftPadding();
+            topPadding = table.getTopPadding();
+            kernelWidth = table.getWidth();
+            kernelHeight = table.getHeight();
+            numSubsamplesH = 1 << table.getSubsampleBitsH();
+            numSubsamplesV = 1 << table.getSubsampleBitsV();
+            dataH = getTableData(table.getHorizontalTableData(), table.getHorizontalTableDataDouble());
+            final float[] vertical = getTableData(table.getVerticalTableData(), table.getVerticalTableDataDouble());
+            dataV = vertical != null ? vertical : dataH;
+        } else {
+            kernelType = interp instanceof InterpolationBilinear ? BILINEAR : NEAREST;
+            leftPadding = 0;
+            topPadding = 0;
+            kernelWidth = kernelType == BILINEAR ? 2 : 1;
+            kernelHeight = kernelWidth;
+            numSubsamplesH = 1;
+            numSubsamplesV = 1;
+            dataH = null;
+            dataV = null;
+        }
+    }
+
+    /**
+     * Gets the source region read by the interpolation kernels of all pixels of a target rectangle.
+     *
+     * @param targetRectangle The target rectangle.
+     * @param sourceWidth     The width of the source image.
+     * @param sourceHeight    The height of the source image.
+     * @return The source rectangle, empty if no target pixel can be computed from the source image.
+     */
+    Rectangle getSourceRectangle(final Rectangle targetRectangle, final int sourceWidth, final int sourceHeight) {
+        final int w = targetRectangle.width;
+        final double[] sx = new double[w];
+        final double[] sy = new double[w];
+
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; ++y) {
+            warpRow(xCoef, targetRectangle.x, y, sx);
+            warpRow(yCoef, targetRectangle.x, y, sy);
+            for (int i = 0; i < w; ++i) {
+                final int xint = toIndex(sx[i]);
+                final int yint = toIndex(sy[i]);
+                if (xint < minX) minX = xint;
+                if (xint > maxX) maxX = xint;
+                if (yint < minY) minY = yint;
+                if (yint > maxY) maxY = yint;
+            }
+        }
+        if (minX > maxX || minY > maxY) {
+            return new Rectangle();
+        }
+
+        final Rectangle kernelBounds = new Rectangle(minX - leftPadding, minY - topPadding,
+                maxX - minX + kernelWidth, maxY - minY + kernelHeight);
+        final Rectangle sourceRectangle = kernelBounds.intersection(new Rectangle(0, 0, sourceWidth, sourceHeight));
+        return sourceRectangle.isEmpty() ? new Rectangle() : sourceRectangle;
+    }
+
+    /**
+     * Resamples the source bands for all pixels of a target rectangle.
+     *
+     * @param targetRectangle The target rectangle.
+     * @param sourceRectangle The source rectangle given by {@link #getSourceRectangle}.
+     * @param sourceData      The raw samples of the source rectangle per band, unused if the rectangle is empty.
+     * @param targetData      The target buffers per band.
+     * @param targetOffset    The index of the first target pixel in the target buffers.
+     * @param targetStride    The scanline stride of the target buffers.
+     */
+    void resample(final Rectangle targetRectangle, final Rectangle sourceRectangle, final float[][] sourceData,
+                  final float[][] targetData, final int targetOffset, final int targetStride) {
+        final int w = targetRectangle.width;
+        final int numBands = targetData.length;
+        final double[] sx = new double[w];
+        final double[] sy = new double[w];
+
+        // pixels are computed if their kernel fits into the source rectangle, which is the intersection
+        // of the kernel bounds of all pixels with the source image
+        final int minX = sourceRectangle.x + leftPadding;
+        final int minY = sourceRectangle.y + topPadding;
+        final int maxX = sourceRectangle.x + sourceRectangle.width - kernelWidth + leftPadding;
+        final int maxY = sourceRectangle.y + sourceRectangle.height - kernelHeight + topPadding;
+        final int sourceStride = sourceRectangle.width;
+
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; ++y) {
+            warpRow(xCoef, targetRectangle.x, y, sx);
+            warpRow(yCoef, targetRectangle.x, y, sy);
+
+            int tgtIdx = targetOffset + (y - targetRectangle.y) * targetStride;
+            for (int i = 0; i < w; ++i, ++tgtIdx) {
+                final int xint = toIndex(sx[i]);
+                final int yint = toIndex(sy[i]);
+                if (xint < minX || xint > maxX || yint < minY || yint > maxY) {
+                    for (int b = 0; b < numBands; ++b) {
+                        targetData[b][tgtIdx] = 0.0f;
+                    }
+                    continue;
+                }
+
+                final int srcIdx = (yint - topPadding - sourceRectangle.y) * sourceStride +
+                        xint - leftPadding - sourceRectangle.x;
+                switch (kernelType) {
+                    case NEAREST:
+                        for (int b = 0; b < numBands; ++b) {
+                            targetData[b][tgtIdx] = sourceData[b][srcIdx];
+                        }
+                        break;
+                    case BILINEAR: {
+                        final double xfrac = sx[i] - xint;
+                        final double yfrac = sy[i] - yint;
+                        for (int b = 0; b < numBands; ++b) {
+                            final float[] src = sourceData[b];
+                            final double s00 = src[srcIdx];
+                            final double s01 = src[srcIdx + 1];
+                            final double s10 = src[srcIdx + sourceStride];
+                            final double s11 = src[srcIdx + sourceStride + 1];
+                            final double s0 = s00 + xfrac * (s01 - s00);
+                            final double s1 = s10 + xfrac * (s11 - s10);
+                            targetData[b][tgtIdx] = (float) (s0 + yfrac * (s1 - s0));
+                        }
+                        break;
+                    }
+                    default: {
+                        final int offsetH = (int) ((sx[i] - xint) * numSubsamplesH) * kernelWidth;
+                        final int offsetV = (int) ((sy[i] - yint) * numSubsamplesV) * kernelHeight;
+                        for (int b = 0; b < numBands; ++b) {
+                            final float[] src = sourceData[b];
+                            double sum = 0.0;
+                            for (int j = 0, rowIdx = srcIdx; j < kernelHeight; ++j, rowIdx += sourceStride) {
+                                double rowSum = 0.0;
+                                for (int k = 0; k < kernelWidth; ++k) {
+                                    rowSum += src[rowIdx + k] * dataH[offsetH + k];
+                                }
+                                sum += rowSum * dataV[offsetV + j];
+                            }
+                            targetData[b][tgtIdx] = (float) sum;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the source pixel a warped position refers to, which is the pixel the position
+     * is rounded to for nearest neighbour interpolation, and the pixel at the kernel key point otherwise.
+     */
+    private int toIndex(final double pos) {
+        return (int) Math.floor(kernelType == NEAREST ? pos + 0.5 : pos);
+    }
+
+    /**
+     * Computes the warped positions of one target row. The polynomial is evaluated at the centres
+     * of the first four pixels and then continued by forward differences of up to third order.
+     */
+    private void warpRow(final double[] coef, final int x0, final int y, final double[] pos) {
+        final double u = x0 + 0.5;
+        final double v = y + 0.5;
+        double d0 = evaluate(coef, u, v);
+        double d1 = evaluate(coef, u + 1.0, v);
+        double d2 = evaluate(coef, u + 2.0, v);
+        double d3 = evaluate(coef, u + 3.0, v);
+        d3 -= d2;
+        d2 -= d1;
+        d1 -= d0;
+        d3 -= d2;
+        d2 -= d1;
+        d3 -= d2;
+        for (int i = 0; i < pos.length; ++i) {
+            pos[i] = d0 - 0.5;
+            d0 += d1;
+            d1 += d2;
+            d2 += d3;
+        }
+    }
+
+    /**
+     * Evaluates the polynomial with the coefficient order of {@link javax.media.jai.WarpPolynomial},
+     * i.e. 1, x, y, x^2, xy, y^2, x^3, x^2y, xy^2, y^3.
+     */
+    private double evaluate(final double[] coef, final double x, final double y) {
+        double sum = 0.0;
+        int c = 0;
+        for (int n = 0; n <= degree; ++n) {
+            for (int j = 0; j <= n; ++j) {
+                double term = coef[c++];
+                for (int k = j; k < n; ++k) {
+                    term *= x;
+                }
+                for (int k = 0; k < j; ++k) {
+                    term *= y;
+                }
+                sum += term;
+            }
+        }
+        return sum;
+    }
+
+    private static int getDegree(final int numOfCoeffs) {
+        switch (numOfCoeffs) {
+            case 3:
+                return 1;
+            case 6:
+                return 2;
+            case 10:
+                return 3;
+            default:
+                throw new OperatorException("Number of WARP coefficients do not match WARP degree");
+        }
+    }
+
+    private static float[] getTableData(final float[] data, final double[] dataDouble) {
+        if (data != null || dataDouble == null) {
+            return data;
+        }
+        final float[] floats = new float[dataDouble.length];
+        for (int i = 0; i < floats.length; ++i) {
+            floats[i] = (float) dataDouble[i];
+        }
+        return floats;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.ImageUtils;
+
+import javax.media.jai.Interpolation;
+import javax.media.jai.InterpolationTable;
+import javax.media.jai.JAI;
+import javax.media.jai.RenderedOp;
+import javax.media.jai.WarpCubic;
+import javax.media.jai.WarpPolynomial;
+import javax.media.jai.WarpQuadratic;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.ParameterBlock;
+
+/**
+ * Unit test for WarpResampler.
+ */
+public class TestWarpResampler extends TestCase {
+
+    private static final int W = 40;
+    private static final int H = 30;
+
+    private final float[] srcI = new float[W * H];
+    private final float[] srcQ = new float[W * H];
+
+    @Override
+    protected void setUp() throws Exception {
+        for (int i = 0; i < W * H; ++i) {
+            srcI[i] = i % W + 0.5f * (i / W);
+            srcQ[i] = (float) Math.sin(i);
+        }
+    }
+
+    public void testIntegerShift() {
+        // slave = master shifted by (2, -3), as quadratic polynomial
+        final double[] xCoef = {2, 1, 0, 0, 0, 0};
+        final double[] yCoef = {-3, 0, 1, 0, 0, 0};
+
+        final Interpolation[] interps = {
+                Interpolation.getInstance(Interpolation.INTERP_NEAREST),
+                Interpolation.getInstance(Interpolation.INTERP_BILINEAR),
+                Interpolation.getInstance(Interpolation.INTERP_BICUBIC),
+                createSincTable()};
+
+        for (Interpolation interp : interps) {
+            final WarpResampler resampler = new WarpResampler(xCoef, yCoef, interp);
+            final Rectangle targetRectangle = new Rectangle(8, 8, 16, 16);
+            final float[][] target = resample(resampler, targetRectangle);
+
+            for (int y = 0; y < targetRectangle.height; ++y) {
+                for (int x = 0; x < targetRectangle.width; ++x) {
+                    final int srcIdx = (targetRectangle.y + y - 3) * W + targetRectangle.x + x + 2;
+                    assertEquals(srcI[srcIdx], target[0][y * targetRectangle.width + x], 1.0e-4f);
+                    assertEquals(srcQ[srcIdx], target[1][y * targetRectangle.width + x], 1.0e-4f);
+                }
+            }
+        }
+    }
+
+    public void testSubPixelShift() {
+        final double[] xCoef = {0.25, 1, 0};
+        final double[] yCoef = {0.5, 0, 1};
+        final WarpResampler resampler = new WarpResampler(xCoef, yCoef,
+                Interpolation.getInstance(Interpolation.INTERP_BILINEAR));
+        final Rectangle targetRectangle = new Rectangle(0, 0, W, H);
+        final float[][] target = resample(resampler, targetRectangle);
+
+        // the test image is linear in x and y
+        assertEquals(5.25f + 0.5f * 7.5f, target[0][7 * W + 5], 1.0e-4f);
+        // kernels exceeding the source image give zero
+        assertEquals(0.0f, target[0][(H - 1) * W + 5]);
+        assertEquals(0.0f, target[0][7 * W + W - 1]);
+    }
+
+    public void testSourceRectangle() {
+        final double[] xCoef = {2, 1, 0};
+        final double[] yCoef = {-3, 0, 1};
+        final WarpResampler resampler = new WarpResampler(xCoef, yCoef, createSincTable());
+
+        assertEquals(new Rectangle(8, 3, 21, 21), resampler.getSourceRectangle(new Rectangle(8, 8, 16, 16), W, H));
+        // the kernel of the first pixel is clipped to the source image
+        assertEquals(new Rectangle(0, 0, 6, 1), resampler.getSourceRectangle(new Rectangle(0, 0, 1, 1), W, H));
+
+        final WarpResampler outside = new WarpResampler(xCoef, new double[]{-10, 0, 1}, createSincTable());
+        assertTrue(outside.getSourceRectangle(new Rectangle(0, 0, 1, 1), W, H).isEmpty());
+    }
+
+    public void testQuadraticWarpAgainstJAI() {
+        final float[] xCoef = {1.25f, 0.96875f, 0.03125f, 0.0078125f, -0.00390625f, 0.0f};
+        final float[] yCoef = {0.75f, 0.015625f, 0.9375f, 0.0f, 0.00390625f, -0.00390625f};
+        compareWithJAI(xCoef, yCoef, new WarpQuadratic(xCoef, yCoef));
+    }
+
+    public void testCubicWarpAgainstJAI() {
+        final float[] xCoef = {0.5f, 1.03125f, -0.0625f, 0.0f, 0.0f, 0.0f,
+                -0.00006103515625f, 0.0f, 0.0001220703125f, 0.0f};
+        final float[] yCoef = {-0.25f, 0.0625f, 0.9375f, 0.0f, 0.0f, 0.0f,
+                0.0f, -0.00006103515625f, 0.0f, 0.0001220703125f};
+        compareWithJAI(xCoef, yCoef, new WarpCubic(xCoef, yCoef));
+    }
+
+    /**
+     * Compares the resampled full image and a tile with the JAI warp operation. The coefficients are
+     * binary fractions, so that the warped positions are exact in float as well as in double precision
+     * and both select the same kernel weights.
+     */
+    private void compareWithJAI(final float[] xCoef, final float[] yCoef, final WarpPolynomial warp) {
+        final Interpolation[] interps = {
+                Interpolation.getInstance(Interpolation.INTERP_NEAREST),
+                Interpolation.getInstance(Interpolation.INTERP_BILINEAR),
+                Interpolation.getInstance(Interpolation.INTERP_BICUBIC),
+                createSincTable()};
+
+        final Rectangle[] targetRectangles = {new Rectangle(0, 0, W, H), new Rectangle(5, 7, 16, 12)};
+        for (Interpolation interp : interps) {
+            final float[] expectedI = warpWithJAI(srcI, warp, interp);
+            final float[] expectedQ = warpWithJAI(srcQ, warp, interp);
+
+            final WarpResampler resampler = new WarpResampler(toDouble(xCoef), toDouble(yCoef), interp);
+            for (Rectangle targetRectangle : targetRectangles) {
+                final float[][] target = resample(resampler, targetRectangle);
+                for (int y = 0; y < targetRectangle.height; ++y) {
+                    for (int x = 0; x < targetRectangle.width; ++x) {
+                        final int expectedIdx = (targetRectangle.y + y) * W + targetRectangle.x + x;
+                        assertEquals(expectedI[expectedIdx], target[0][y * targetRectangle.width + x], 1.0e-3f);
+                        assertEquals(expectedQ[expectedIdx], target[1][y * targetRectangle.width + x], 1.0e-3f);
+                    }
+                }
+            }
+        }
+    }
+
+    private static float[] warpWithJAI(float[] data, WarpPolynomial warp, Interpolation interp) {
+        final RenderedImage srcImage = ImageUtils.createRenderedImage(W, H, ProductData.createInstance(data));
+
+        final ParameterBlock pb = new ParameterBlock();
+        pb.addSource(srcImage);
+        pb.add(warp);
+        pb.add(interp);
+        final RenderedOp warpedImage = JAI.create("warp", pb);
+        return warpedImage.getData(new Rectangle(0, 0, W, H)).getSamples(0, 0, W, H, 0, (float[]) null);
+    }
+
+    private static double[] toDouble(float[] coef) {
+        final double[] values = new double[coef.length];
+        for (int i = 0; i < coef.length; ++i) {
+            values[i] = coef[i];
+        }
+        return values;
+    }
+
+    private float[][] resample(WarpResampler resampler, Rectangle targetRectangle) {
+        final Rectangle sourceRectangle = resampler.getSourceRectangle(targetRectangle, W, H);
+        final float[][] sourceData = {getSamples(srcI, sourceRectangle), getSamples(srcQ, sourceRectangle)};
+        final int size = targetRectangle.width * targetRectangle.height;
+        final float[][] targetData = {new float[size], new float[size]};
+        resampler.resample(targetRectangle, sourceRectangle, sourceData, targetData, 0, targetRectangle.width);
+        return targetData;
+    }
+
+    private static float[] getSamples(float[] data, Rectangle rect) {
+        final float[] samples = new float[rect.width * rect.height];
+        for (int y = 0; y < rect.height; ++y) {
+            System.arraycopy(data, (rect.y + y) * W + rect.x, samples, y * rect.width, rect.width);
+        }
+        return samples;
+    }
+
+    private static InterpolationTable createSincTable() {
+        final int kernelLength = 6;
+        final int subsampleBits = 7;
+        final float[] lut = new float[kernelLength << subsampleBits];
+        for (int p = 0; p < 1 << subsampleBits; ++p) {
+            final double frac = p / (double) (1 << subsampleBits);
+            for (int k = 0; k < kernelLength; ++k) {
+                final double t = Math.PI * (k - kernelLength / 2 + 1 - frac);
+                lut[p * kernelLength + k] = (float) (t == 0.0 ? 1.0 : Math.sin(t) / t);
+            }
+        }
+        return new InterpolationTable(kernelLength / 2 - 1, kernelLength, subsampleBits, 32, lut);
+    }
+}
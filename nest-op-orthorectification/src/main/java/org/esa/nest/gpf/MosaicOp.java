@@ -399,14 +399,18 @@ public class MosaicOp extends Operator {
                 return;
             }
 
-            final GeoPos geoPos = new GeoPos();
             final PixelPos pixelPos = new PixelPos();
             final int minX = targetRectangle.x;
             final int minY = targetRectangle.y;
             final int maxX = targetRectangle.x + targetRectangle.width - 1;
             final int maxY = targetRectangle.y + targetRectangle.height - 1;
 
-            final TileGeoreferencing tileGeoRef = new TileGeoreferencing(targetProduct, minX, minY, maxX-minX+1, maxY-minY+1);
+            // invert the source geocodings on a sparse grid only
+            final GeoCoding targetGeoCoding = targetProduct.getGeoCoding();
+            final PixelPosGrid[] pixelPosGrids = new PixelPosGrid[validProducts.size()];
+            for (int i = 0; i < pixelPosGrids.length; ++i) {
+                pixelPosGrids[i] = new PixelPosGrid(targetGeoCoding, validProducts.get(i).getGeoCoding(), targetRectangle);
+            }
 
             final List<PixelPos[]> srcPixelCoords = new ArrayList<PixelPos[]>(validProducts.size());
             final int numPixelPos = targetRectangle.width * targetRectangle.height;
@@ -418,13 +422,10 @@ public class MosaicOp extends Operator {
             int prodIndex;
             for (int y = minY; y <= maxY; ++y) {
                 for (int x = minX; x <= maxX; ++x) {
-                    tileGeoRef.getGeoPos(x, y, geoPos);
-
                     prodIndex = 0;
                     for (final Product srcProduct : validProducts) {
-                        srcProduct.getGeoCoding().getPixelPos(geoPos, pixelPos);
-
-                        if (pixelPos.x >= feather && pixelPos.y >= feather &&
+                        if (pixelPosGrids[prodIndex].getPixelPos(x, y, pixelPos) &&
+                                pixelPos.x >= feather && pixelPos.y >= feather &&
                                 pixelPos.x < srcProduct.getSceneRasterWidth()-feather &&
                                 pixelPos.y < srcProduct.getSceneRasterHeight()-feather) {
 
@@ -293,6 +293,7 @@ public class RangeDopplerGeocodingOp extends Operator {
     @Override
     public void dispose() throws OperatorException {
         if (dem != null) {
+            DEMFactory.releaseDelaunayCache(dem);
             dem.dispose();
         }
 
@@ -854,6 +855,19 @@ public class RangeDopplerGeocodingOp extends Operator {
             final int maxX = x0 + w;
             final TileData[] trgTiles = trgTileList.toArray(new TileData[trgTileList.size()]);
 
+            // first pass: project the DEM grid of the target tile into source (range, azimuth) coordinates
+            final int numPixels = w * h;
+            final boolean[] validPixel = new boolean[numPixels];
+            final double[] rangeIndexArray = new double[numPixels];
+            final double[] azimuthIndexArray = new double[numPixels];
+            final double[] slantRangeArray = new double[numPixels];
+            final double[] projectedIncidenceAngleArray = new double[numPixels];
+            final double[] satelliteHeightArray = saveSigmaNought ? new double[numPixels] : null;
+            final double[] sceneToEarthCentreArray = saveSigmaNought ? new double[numPixels] : null;
+            double minRangeIndex = Double.MAX_VALUE, maxRangeIndex = -Double.MAX_VALUE;
+            double minAzimuthIndex = Double.MAX_VALUE, maxAzimuthIndex = -Double.MAX_VALUE;
+            boolean anyValidPixel = false;
+
             for (int y = y0; y < maxY; y++) {
                 final int yy = y-y0+1;
 
@@ -952,33 +966,72 @@ public class RangeDopplerGeocodingOp extends Operator {
                                     index, incidenceAngle.getPixelFloat((float)rangeIndex, (float)azimuthIndex));
                         }
 
-                        double satelliteHeight = 0;
-                        double sceneToEarthCentre = 0;
+                        final int k = (y - y0) * w + (x - x0);
                         if (saveSigmaNought) {
-                                satelliteHeight = Math.sqrt(
+                                satelliteHeightArray[k] = Math.sqrt(
                                         sensorPos[0]*sensorPos[0] + sensorPos[1]*sensorPos[1] + sensorPos[2]*sensorPos[2]);
 
-                                sceneToEarthCentre = Math.sqrt(
+                                sceneToEarthCentreArray[k] = Math.sqrt(
                                         earthPoint[0]*earthPoint[0] + earthPoint[1]*earthPoint[1] + earthPoint[2]*earthPoint[2]);
                         }
 
-                        for(TileData tileData : trgTiles) {
-                            int[] subSwathIndex = {INVALID_SUB_SWATH_INDEX};
-                            double v = getPixelValue(azimuthIndex, rangeIndex, tileData, subSwathIndex);
-
-                            if (v != tileData.noDataValue && tileData.applyRadiometricNormalization) {
-                                if (localIncidenceAngles[1] != SARGeocoding.NonValidIncidenceAngle) {
-                                    v = calibrator.applyCalibration(
-                                            v, rangeIndex, azimuthIndex, slantRange, satelliteHeight, sceneToEarthCentre,
-                                            localIncidenceAngles[1], tileData.bandPolar, tileData.bandUnit, subSwathIndex); // use projected incidence angle
-                                } else {
-                                    v = tileData.noDataValue;
-                                }
+                        validPixel[k] = true;
+                        rangeIndexArray[k] = rangeIndex;
+                        azimuthIndexArray[k] = azimuthIndex;
+                        slantRangeArray[k] = slantRange;
+                        projectedIncidenceAngleArray[k] = localIncidenceAngles[1];
+
+                        if (rangeIndex < minRangeIndex) minRangeIndex = rangeIndex;
+                        if (rangeIndex > maxRangeIndex) maxRangeIndex = rangeIndex;
+                        if (azimuthIndex < minAzimuthIndex) minAzimuthIndex = azimuthIndex;
+                        if (azimuthIndex > maxAzimuthIndex) maxAzimuthIndex = azimuthIndex;
+                        anyValidPixel = true;
+                        orthoDataProduced = true;
+                    }
+                }
+            }
+
+            if (!anyValidPixel || trgTiles.length == 0) {
+                return;
+            }
+
+            // second pass: fetch one source tile per band covering all projected pixels and resample from it
+            final Rectangle srcRect = getSourceRectangle(minRangeIndex, maxRangeIndex, minAzimuthIndex, maxAzimuthIndex);
+            for(TileData tileData : trgTiles) {
+                tileData.imgResamplingRaster.setSourceTiles(getSourceTile(tileData.srcBands[0], srcRect),
+                        tileData.srcBands.length > 1 ? getSourceTile(tileData.srcBands[1], srcRect) : null);
+            }
+
+            final int[] subSwathIndex = {INVALID_SUB_SWATH_INDEX};
+            for (int y = y0; y < maxY; y++) {
+                for (int x = x0; x < maxX; x++) {
+
+                    final int k = (y - y0) * w + (x - x0);
+                    if (!validPixel[k]) {
+                        continue;
+                    }
+
+                    final int index = trgTiles[0].targetTile.getDataBufferIndex(x, y);
+                    final double rangeIndex = rangeIndexArray[k];
+                    final double azimuthIndex = azimuthIndexArray[k];
+                    final double satelliteHeight = saveSigmaNought ? satelliteHeightArray[k] : 0;
+                    final double sceneToEarthCentre = saveSigmaNought ? sceneToEarthCentreArray[k] : 0;
+
+                    for(TileData tileData : trgTiles) {
+                        subSwathIndex[0] = INVALID_SUB_SWATH_INDEX;
+                        double v = getPixelValue(azimuthIndex, rangeIndex, tileData, subSwathIndex);
+
+                        if (v != tileData.noDataValue && tileData.applyRadiometricNormalization) {
+                            if (projectedIncidenceAngleArray[k] != SARGeocoding.NonValidIncidenceAngle) {
+                                v = calibrator.applyCalibration(
+                                        v, rangeIndex, azimuthIndex, slantRangeArray[k], satelliteHeight, sceneToEarthCentre,
+                                        projectedIncidenceAngleArray[k], tileData.bandPolar, tileData.bandUnit, subSwathIndex); // use projected incidence angle
+                            } else {
+                                v = tileData.noDataValue;
                             }
-                            
-                            tileData.tileDataBuffer.setElemDoubleAt(index, v);
                         }
-                        orthoDataProduced = true;
+
+                        tileData.tileDataBuffer.setElemDoubleAt(index, v);
                     }
                 }
             }
@@ -1000,8 +1053,49 @@ public class RangeDopplerGeocodingOp extends Operator {
         return Unit.getUnitType(srcBands[0]);
     }
 
+    /**
+     * Get the source rectangle covering all projected source pixels of a target tile, extended by the
+     * neighbourhood needed by the image resampling method and clipped to the source image.
+     * @param minRangeIndex The minimum range index of the projected pixels.
+     * @param maxRangeIndex The maximum range index of the projected pixels.
+     * @param minAzimuthIndex The minimum azimuth index of the projected pixels.
+     * @param maxAzimuthIndex The maximum azimuth index of the projected pixels.
+     * @return The source rectangle.
+     */
+    private Rectangle getSourceRectangle(final double minRangeIndex, final double maxRangeIndex,
+                                         final double minAzimuthIndex, final double maxAzimuthIndex) {
+
+        final int margin = getResamplingMargin();
+        final int xMin = Math.max(0, (int)(minRangeIndex + 0.5) - margin);
+        final int xMax = Math.min(sourceImageWidth - 1, (int)(maxRangeIndex + 0.5) + margin);
+        final int yMin = Math.max(0, (int)(minAzimuthIndex + 0.5) - margin);
+        final int yMax = Math.min(sourceImageHeight - 1, (int)(maxAzimuthIndex + 0.5) + margin);
+
+        return new Rectangle(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+    }
+
+    /**
+     * Get the number of neighbouring source pixels needed on each side by the image resampling method.
+     * @return The margin in pixels.
+     */
+    private int getResamplingMargin() {
+
+        if (imgResampling == Resampling.NEAREST_NEIGHBOUR) {
+            return 0;
+        } else if (imgResampling == Resampling.BILINEAR_INTERPOLATION) {
+            return 1;
+        } else if (imgResampling == Resampling.CUBIC_CONVOLUTION || imgResampling == Resampling.BICUBIC_INTERPOLATION) {
+            return 2;
+        } else if (imgResampling == Resampling.BISINC_INTERPOLATION) {
+            return 3;
+        } else {
+            throw new OperatorException("Unhandled interpolation method");
+        }
+    }
+
     /**
      * Compute orthorectified pixel value for given pixel.
+     * The source tiles must have been set in the resampling raster of the tile data beforehand.
      * @param azimuthIndex The azimuth index for pixel in source image.
      * @param rangeIndex The range index for pixel in source image.
      * @param tileData The source tile information.
@@ -1011,53 +1105,16 @@ public class RangeDopplerGeocodingOp extends Operator {
     private double getPixelValue(final double azimuthIndex, final double rangeIndex,
                                  final TileData tileData, final int[] subSwathIndex) {
 
-        try {
-            final int x0 = (int)(rangeIndex + 0.5);
-            final int y0 = (int)(azimuthIndex + 0.5);
-            Rectangle srcRect;
-
-            if (imgResampling == Resampling.BILINEAR_INTERPOLATION) {
+        tileData.imgResamplingRaster.setPosition(rangeIndex, azimuthIndex);
 
-                srcRect = new Rectangle(Math.max(0, x0 - 1), Math.max(0, y0 - 1), 3, 3);
+        imgResampling.computeIndex(rangeIndex + 0.5, azimuthIndex + 0.5,
+                                   sourceImageWidth, sourceImageHeight, tileData.imgResamplingIndex);
 
-            } else if (imgResampling == Resampling.NEAREST_NEIGHBOUR) {
+        final double v = imgResampling.resample(tileData.imgResamplingRaster, tileData.imgResamplingIndex);
 
-                srcRect = new Rectangle(x0, y0, 1, 1);
+        subSwathIndex[0] = tileData.imgResamplingRaster.getSubSwathIndex();
 
-            } else if (imgResampling == Resampling.CUBIC_CONVOLUTION) {
-
-                srcRect = new Rectangle(Math.max(0, x0 - 2), Math.max(0, y0 - 2), 5, 5);
-
-            } else if (imgResampling == Resampling.BISINC_INTERPOLATION) {
-
-                srcRect = new Rectangle(Math.max(0, x0 - 3), Math.max(0, y0 - 3), 6, 6);
-
-            } else if (imgResampling == Resampling.BICUBIC_INTERPOLATION) {
-
-                srcRect = new Rectangle(Math.max(0, x0 - 2), Math.max(0, y0 - 2), 5, 5);
-
-            } else {
-                throw new OperatorException("Unhandled interpolation method");
-            }
-
-            final Band[] srcBands = targetBandNameToSourceBand.get(tileData.bandName);
-            tileData.imgResamplingRaster.set(rangeIndex, azimuthIndex, getSourceTile(srcBands[0], srcRect),
-                    srcBands.length > 1 ? getSourceTile(srcBands[1], srcRect) : null);
-
-            imgResampling.computeIndex(rangeIndex + 0.5, azimuthIndex + 0.5,
-                                    sourceImageWidth, sourceImageHeight, tileData.imgResamplingIndex);
-
-            double v = imgResampling.resample(tileData.imgResamplingRaster, tileData.imgResamplingIndex);
-
-            subSwathIndex[0] = tileData.imgResamplingRaster.getSubSwathIndex();
-
-            return v;
-
-        } catch(Throwable e) {
-            OperatorUtils.catchOperatorException(getId(), e);
-        }
-
-        return 0;
+        return v;
     }
 
     /**
@@ -1074,6 +1131,14 @@ public class RangeDopplerGeocodingOp extends Operator {
         sourceBandNames = names;
     }
 
+    /**
+     * Set the DEM resampling method. This function is for unit test and benchmarks only.
+     * @param method The resampling method name.
+     */
+    void setDEMResamplingMethod(final String method) {
+        demResamplingMethod = method;
+    }
+
     public static class TileData {
         final Tile targetTile;
         final ProductData tileDataBuffer;
@@ -1117,7 +1182,10 @@ public class RangeDopplerGeocodingOp extends Operator {
         private final TileData tileData;
         private Tile sourceTileI;
         private ProductData dataBufferI, dataBufferQ;
+        private int minX, minY, scanlineOffset, scanlineStride;
         private int subSwathIndex;
+        private int[][] subSwathIndices = null;
+        private final int[] pixelSubSwathIndex = {-1};
 
         public ResamplingRaster(final TileData tileData) {
 
@@ -1126,8 +1194,16 @@ public class RangeDopplerGeocodingOp extends Operator {
 
         public void set(final double rangeIndex, final double azimuthIndex,
                         final Tile sourceTileI, final Tile sourceTileQ) {
-            this.rangeIndex = rangeIndex;
-            this.azimuthIndex = azimuthIndex;
+            setSourceTiles(sourceTileI, sourceTileQ);
+            setPosition(rangeIndex, azimuthIndex);
+        }
+
+        /**
+         * Set the source tiles the samples are read from. The tiles may be reused for many positions.
+         * @param sourceTileI The source tile of the (real) band.
+         * @param sourceTileQ The source tile of the imaginary band or null.
+         */
+        public void setSourceTiles(final Tile sourceTileI, final Tile sourceTileQ) {
 
             this.sourceTileI = sourceTileI;
 
@@ -1137,6 +1213,16 @@ public class RangeDopplerGeocodingOp extends Operator {
             } else {
                 this.dataBufferQ = null;
             }
+
+            this.minX = sourceTileI.getMinX();
+            this.minY = sourceTileI.getMinY();
+            this.scanlineOffset = sourceTileI.getScanlineOffset();
+            this.scanlineStride = sourceTileI.getScanlineStride();
+        }
+
+        public void setPosition(final double rangeIndex, final double azimuthIndex) {
+            this.rangeIndex = rangeIndex;
+            this.azimuthIndex = azimuthIndex;
         }
 
         public final int getWidth() {
@@ -1149,14 +1235,19 @@ public class RangeDopplerGeocodingOp extends Operator {
 
         public boolean getSamples(final int[] x, final int[] y, final double[][] samples) {
 
-            final int[][] subSwathIndices = new int[y.length][x.length];
+            if (subSwathIndices == null || subSwathIndices.length != y.length || subSwathIndices[0].length != x.length) {
+                subSwathIndices = new int[y.length][x.length];
+            }
             boolean allPixelsFromSameSubSwath = true;
             boolean allValid = true;
 
             for (int i = 0; i < y.length; i++) {
+                final int rowOffset = scanlineOffset + (y[i] - minY) * scanlineStride - minX;
+                final int[] subSwathIndicesRow = subSwathIndices[i];
                 for (int j = 0; j < x.length; j++) {
 
-                    final  int index = sourceTileI.getDataBufferIndex(x[j], y[i]);
+                    subSwathIndicesRow[j] = 0;
+                    final  int index = rowOffset + x[j];
                     double v = dataBufferI.getElemDoubleAt(index);
                     if (tileData.noDataValue != 0 && (v == tileData.noDataValue)) {
                         samples[i][j] = tileData.noDataValue;
@@ -1178,13 +1269,13 @@ public class RangeDopplerGeocodingOp extends Operator {
                         samples[i][j] = v*v + vq*vq;
                     }
 
-                    final int[] subSwathIndex = {-1};
                     if (tileData.applyRetroCalibration) {
+                        pixelSubSwathIndex[0] = -1;
                         samples[i][j] = tileData.calibrator.applyRetroCalibration(
-                                x[j], y[i], samples[i][j], tileData.bandPolar, tileData.bandUnit, subSwathIndex);
+                                x[j], y[i], samples[i][j], tileData.bandPolar, tileData.bandUnit, pixelSubSwathIndex);
 
-                        subSwathIndices[i][j] = subSwathIndex[0];
-                        if (subSwathIndex[0] != subSwathIndices[0][0]) {
+                        subSwathIndicesRow[j] = pixelSubSwathIndex[0];
+                        if (pixelSubSwathIndex[0] != subSwathIndices[0][0]) {
                             allPixelsFromSameSubSwath = false;
                         }
                     }
@@ -301,6 +301,7 @@ public class SARSimTerrainCorrectionOp extends Operator {
     @Override
     public synchronized void dispose() {
         if (dem != null) {
+            DEMFactory.releaseDelaunayCache(dem);
             dem.dispose();
             dem = null;
         }
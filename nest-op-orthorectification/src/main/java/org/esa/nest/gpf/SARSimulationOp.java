@@ -231,6 +231,7 @@ public final class SARSimulationOp extends Operator {
     @Override
     public synchronized void dispose() {
         if (dem != null) {
+            DEMFactory.releaseDelaunayCache(dem);
             dem.dispose();
             dem = null;
         }
@@ -567,6 +568,27 @@ public final class SARSimulationOp extends Operator {
              final double[][] neighbourDEM = new double[3][3];
              double alt;
 
+             // read the DEM for the whole grid, including the neighbours of the last row and column, row by row
+             if(saveZeroHeightSimulation) {
+                 for (double[] row : tileDEM) {
+                     Arrays.fill(row, 1);
+                 }
+             } else {
+                 final double[] gridLat = new double[nLon+1];
+                 final double[] gridLon = new double[nLon+1];
+                 for (int j = 0; j <= nLon; j++) {
+                     double lon = lonMin + j*delLon;
+                     if (lon >= 180.0) {
+                         lon -= 360.0;
+                     }
+                     gridLon[j] = (float)lon;
+                 }
+                 for (int i = 0; i <= nLat; i++) {
+                     Arrays.fill(gridLat, (float)(latMin + i*delLat));
+                     dem.getElevations(gridLat, gridLon, tileDEM[i]);
+                 }
+             }
+
              for (int i = 0; i < nLat; i++) {
                 final double lat = latMin + i*delLat;
                 for (int j = 0; j < nLon; j++) {
@@ -574,15 +596,9 @@ public final class SARSimulationOp extends Operator {
                     if (lon >= 180.0) {
                         lon -= 360.0;
                     }
-                    if(saveZeroHeightSimulation) {
-                        alt = 1;
-                    } else {
-                        geoPos.setLocation((float)lat, (float)lon);
-                        alt = dem.getElevation(geoPos);
-                        if(alt == demNoDataValue)
-                            continue;
-                    }
-                    tileDEM[i][j] = alt;
+                    alt = tileDEM[i][j];
+                    if(!saveZeroHeightSimulation && alt == demNoDataValue)
+                        continue;
 
                     if(!getPosition(lat, lon, alt, x0, y0, w, h, posData))
                         continue;
@@ -596,19 +612,9 @@ public final class SARSimulationOp extends Operator {
                     for(int ii=Math.max(0,i-1); ii<=i+1; ++ii) {
                         ii = Math.min(nLat, ii);
                         int c = 0;
-                        float neighbourLat = (float)(latMin + ii*delLat);
                         for(int jj=Math.max(0,j-1); jj<=j+1; ++jj) {
                             jj = Math.min(nLon, jj);
                             neighbourDEM[r][c] = tileDEM[ii][jj];
-                            if(neighbourDEM[r][c] == 0) {
-                                if(saveZeroHeightSimulation) {
-                                    neighbourDEM[r][c] = 1;
-                                } else {
-                                    geoPos.setLocation(neighbourLat, (float)(lonMin + jj*delLon));
-                                    neighbourDEM[r][c] = dem.getElevation(geoPos);
-                                }
-                                tileDEM[ii][jj] = neighbourDEM[r][c];
-                            }
                             ++c;
                         }
                         ++r;
@@ -19,6 +19,7 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.StxAccumulator;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
@@ -70,12 +71,10 @@ public class DataAnalysisOp extends Operator {
     private boolean statsCalculated = false;
     private boolean sampleTypeIsComplex;
     private int numOfBands;
-    private int numOfPixels; // total number of pixel values
+    private long[] numOfPixels; // total number of valid pixel values for each band
     private double[] min;    // min of all pixel values for each band
     private double[] max;    // max of all pixel values for each band
-    private double[] sum;    // summation of all pixel values for each band
-    private double[] sum2;   // summation of all pixel value squares for each band
-    private double[] sum4;   // summation of all pixel value to the power of 4 for each band
+    private StxAccumulator[] accumulators; // sums of all pixel values, squares and powers of 4 for each band
     private double[] mean;   // mean for each band
     private double[] coefVar;// coefficient of variation for each band
     private double[] std;    // standard deviation for each band
@@ -138,24 +137,17 @@ public class DataAnalysisOp extends Operator {
      */
     void setInitialValues() {
 
+        numOfPixels = new long[numOfBands];
         min = new double[numOfBands];
         max = new double[numOfBands];
         mean = new double[numOfBands];
         coefVar = new double[numOfBands];
         std = new double[numOfBands];
         enl = new double[numOfBands];
-        sum = new double[numOfBands];
-        sum2 = new double[numOfBands];
-        sum4 = new double[numOfBands];
+        accumulators = new StxAccumulator[numOfBands];
         for (int i = 0; i < numOfBands; i++) {
-            min[i] = Double.MAX_VALUE;
-            max[i] = 0.0;
-            sum[i] = 0.0;
-            sum2[i] = 0.0;
-            sum4[i] = 0.0;
+            accumulators[i] = new StxAccumulator();
         }
-
-        numOfPixels = sourceProduct.getSceneRasterWidth() * sourceProduct.getSceneRasterHeight();
     }
 
     /**
@@ -204,23 +196,12 @@ public class DataAnalysisOp extends Operator {
         final ProductData rawSamples1 = sourceRaster1.getRawSamples();
 
         final int idx = statisticsBandIndex.get(targetBand.getName());
-        final int n = rawSamples1.getNumElems();
-        double v, v2;
-        for (int i = 0; i < n; i++) {
 
-            if(sampleTypeIsComplex) {
-                // todo
-            }
-            v = rawSamples1.getElemDoubleAt(i);
-            if(v > max[idx])
-                max[idx] = v;
-            if(v < min[idx])
-                min[idx] = v;
-            v2 = v*v;
-            sum[idx] += v;
-            sum2[idx] += v2;
-            sum4[idx] += v2*v2;
+        if(sampleTypeIsComplex) {
+            // todo
         }
+        // tiles are computed concurrently, the accumulator merges the statistics of each tile
+        accumulators[idx].accumulate(rawSamples1);
 
         // copy source data to target
         targetTile.setRawSamples(rawSamples1);
@@ -248,14 +229,18 @@ public class DataAnalysisOp extends Operator {
         for (String bandName : statisticsBandIndex.keySet())  {
 
                 final int bandIdx = statisticsBandIndex.get(bandName);
-                final double m = sum[bandIdx] / numOfPixels;
-                final double m2 = sum2[bandIdx] / numOfPixels;
-                final double m4 = sum4[bandIdx] / numOfPixels;
-
+                final StxAccumulator accumulator = accumulators[bandIdx];
+                final long n = accumulator.getSampleCount();
+                final double m = accumulator.getSum() / n;
+                final double m2 = accumulator.getSumOfSquares() / n;
+
+                numOfPixels[bandIdx] = n;
+                min[bandIdx] = accumulator.getMinimum();
+                max[bandIdx] = accumulator.getMaximum();
                 mean[bandIdx] = m;
                 std[bandIdx] = Math.sqrt(m2 - m*m);
-                coefVar[bandIdx] = Math.sqrt(m4 - m2*m2) / m2;
-                enl[bandIdx] = m2*m2 / (m4 - m2*m2);
+                coefVar[bandIdx] = accumulator.getCoefficientOfVariation(null);
+                enl[bandIdx] = accumulator.getEquivalentNumberOfLooks(null);
         }
     }
 
@@ -279,7 +264,7 @@ public class DataAnalysisOp extends Operator {
 
                 p.println();
                 p.println("Band: " + bandName);
-                p.format("Total pixels = %d", numOfPixels);
+                p.format("Total pixels = %d", numOfPixels[bandIdx]);
                 p.println();
                 p.format("Min = %8.3f", min[bandIdx]);
                 p.println();
@@ -312,10 +297,10 @@ public class DataAnalysisOp extends Operator {
 
             System.out.println();
             System.out.println("Band: " + bandName);
-            System.out.println("Total pixels = " + numOfPixels);
+            System.out.println("Total pixels = " + numOfPixels[bandIdx]);
             System.out.println("min[" + bandIdx + "] = " + min[bandIdx]);
             System.out.println("max[" + bandIdx + "] = " + max[bandIdx]);
-            System.out.println("sum[" + bandIdx + "] = " + sum[bandIdx]);
+            System.out.println("sum[" + bandIdx + "] = " + accumulators[bandIdx].getSum());
             System.out.println("mean[" + bandIdx + "] = " + mean[bandIdx]);
             System.out.println("std[" + bandIdx + "] = " + std[bandIdx]);
             System.out.println("coefVar[" + bandIdx + "] = " + coefVar[bandIdx]);
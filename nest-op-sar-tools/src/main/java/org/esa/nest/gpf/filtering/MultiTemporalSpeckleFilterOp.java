@@ -29,9 +29,11 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.nest.datamodel.Unit;
 import org.esa.nest.gpf.OperatorUtils;
+import org.esa.nest.gpf.TileIndex;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -89,6 +91,11 @@ public class MultiTemporalSpeckleFilterOp extends Operator {
                defaultValue = WINDOW_SIZE_3x3, label="Window Size")
     private String windowSize = WINDOW_SIZE_3x3;
 
+    @Parameter(description = "The number of bands whose local means are kept between the ratio pass and the output pass;" +
+            " the means of the other bands are computed again", interval = "[1, *)", defaultValue = "4",
+               label="Bands Kept In Memory")
+    private int maxBandsInMemory = 4;
+
     private int halfWindowWidth = 0;
     private int halfWindowHeight = 0;
     private int sourceImageWidth = 0;
@@ -224,62 +231,70 @@ public class MultiTemporalSpeckleFilterOp extends Operator {
         final int w  = targetRectangle.width;
         final int h  = targetRectangle.height;
         //System.out.println("x0 = " + x0 + ", y0 = " + y0 + ", w = " + w + ", h = " + h);
-        
+
         final Band[] targetBands = targetProduct.getBands();
         final int numBands = targetBands.length;
-        final ProductData[] targetData = new ProductData[numBands];
-        for (int i = 0; i < numBands; i++) {
-            Tile targetTile = targetTiles.get(targetBands[i]);
-            targetData[i] = targetTile.getDataBuffer();
-        }
+        final int firstKeptBand = numBands - Math.min(maxBandsInMemory, numBands);
 
         final Rectangle sourceRectangle = getSourceRectangle(x0, y0, w, h);
+        final double[] ratioSum = new double[w*h];
+        final int[] numValidBands = new int[w*h];
+        final double[][] localMeans = new double[numBands][];
 
-        final Tile[] sourceTile = new Tile[numBands];
-        final ProductData[] sourceData = new ProductData[numBands];
-        final double[] bandNoDataValues = new double[numBands];
+        // sum the ratio of each band to its local mean, one band at a time
         for (int i = 0; i < numBands; i++) {
             final Band srcBand = sourceProduct.getBand(targetBands[i].getName());
-            sourceTile[i] = getSourceTile(srcBand, sourceRectangle);
-            sourceData[i] = sourceTile[i].getDataBuffer();
-            bandNoDataValues[i] = srcBand.getNoDataValue();
-        }
-
-        final double[] localMeans = new double[numBands];
-        double srcDataValue = 0.0;
-        final int yMax = y0 + h;
-        for(int y = y0; y < yMax; y++) {
-            final int xMax = x0 + w;
-            for (int x = x0; x < xMax; x++) {
-
-                final int sourceIndex = sourceTile[0].getDataBufferIndex(x, y);
-
-                double sum = 0.0;
-                int n = 0;
-                for (int i = 0; i < numBands; i++) {
-                    srcDataValue = sourceData[i].getElemDoubleAt(sourceIndex);
-                    if (srcDataValue == bandNoDataValues[i]) {
-                        localMeans[i] = bandNoDataValues[i];
+            final double noDataValue = srcBand.getNoDataValue();
+            final double[] values = getSourceValues(getSourceTile(srcBand, sourceRectangle), sourceRectangle);
+            final double[] means = computeLocalMeans(values, sourceRectangle, targetRectangle, noDataValue);
+
+            for (int y = 0; y < h; y++) {
+                final int stride = (y0 + y - sourceRectangle.y)*sourceRectangle.width + x0 - sourceRectangle.x;
+                for (int x = 0; x < w; x++) {
+                    final double value = values[stride + x];
+                    if (value == noDataValue) {
                         continue;
                     }
-
-                    localMeans[i] = computeLocalMean(x, y, sourceTile[i], sourceData[i], bandNoDataValues[i]);
-
-                    if (localMeans[i] != 0.0) {
-                        sum += sourceData[i].getElemDoubleAt(sourceIndex) / localMeans[i];
+                    final int k = y*w + x;
+                    if (means[k] != 0.0) {
+                        ratioSum[k] += value / means[k];
                     }
-                    n++;
-                }
-                if (n > 0) {
-                    sum /= n;
+                    numValidBands[k]++;
                 }
+            }
 
-                final int targetIndex = targetTiles.get(targetBands[0]).getDataBufferIndex(x, y);
-                for (int i = 0; i < numBands; i++) {
-                    if (localMeans[i] != bandNoDataValues[i]) {
-                        targetData[i].setElemDoubleAt(targetIndex, sum * localMeans[i]);
+            // only the means of the last bands are kept, the others are computed again below
+            if (i >= firstKeptBand) {
+                localMeans[i] = means;
+            }
+        }
+
+        for (int k = 0; k < ratioSum.length; k++) {
+            if (numValidBands[k] > 0) {
+                ratioSum[k] /= numValidBands[k];
+            }
+        }
+
+        final TileIndex trgIndex = new TileIndex(targetTiles.get(targetBands[0]));
+        for (int i = 0; i < numBands; i++) {
+            final Band srcBand = sourceProduct.getBand(targetBands[i].getName());
+            final double noDataValue = srcBand.getNoDataValue();
+            double[] means = localMeans[i];
+            if (means == null) {
+                final double[] values = getSourceValues(getSourceTile(srcBand, sourceRectangle), sourceRectangle);
+                means = computeLocalMeans(values, sourceRectangle, targetRectangle, noDataValue);
+            }
+            localMeans[i] = null;
+
+            final ProductData targetData = targetTiles.get(targetBands[i]).getDataBuffer();
+            for (int y = 0; y < h; y++) {
+                final int offset = trgIndex.calculateStride(y0 + y);
+                for (int x = 0; x < w; x++) {
+                    final double localMean = means[y*w + x];
+                    if (localMean != noDataValue) {
+                        targetData.setElemDoubleAt(x0 + x - offset, ratioSum[y*w + x] * localMean);
                     } else {
-                        targetData[i].setElemDoubleAt(targetIndex, bandNoDataValues[i]);
+                        targetData.setElemDoubleAt(x0 + x - offset, noDataValue);
                     }
                 }
             }
@@ -297,42 +312,116 @@ public class MultiTemporalSpeckleFilterOp extends Operator {
     private Rectangle getSourceRectangle(final int tx0, final int ty0, final int tw, final int th) {
         final int x0 = Math.max(0, tx0 - halfWindowWidth);
         final int y0 = Math.max(0, ty0 - halfWindowHeight);
-        final int xMax = Math.min(tx0 + tw - 1 + halfWindowWidth, sourceImageWidth);
-        final int yMax = Math.min(ty0 + th - 1 + halfWindowHeight, sourceImageHeight);
+        final int xMax = Math.min(tx0 + tw - 1 + halfWindowWidth, sourceImageWidth - 1);
+        final int yMax = Math.min(ty0 + th - 1 + halfWindowHeight, sourceImageHeight - 1);
         final int w = xMax - x0 + 1;
         final int h = yMax - y0 + 1;
         return new Rectangle(x0, y0, w, h);
     }
 
     /**
-     * Compute mean value for pixels in a window with given center.
-     * @param xc X coordinate of the center pixel.
-     * @param yc Y coordinate of the center pixel.
+     * Get the values of a source tile.
      * @param srcTile Source tile.
-     * @param srcData Source data.
+     * @param srcRect The source tile rectangle.
+     * @return The values in row major order.
+     */
+    private static double[] getSourceValues(final Tile srcTile, final Rectangle srcRect) {
+        final ProductData srcData = srcTile.getDataBuffer();
+        final TileIndex srcIndex = new TileIndex(srcTile);
+        final double[] values = new double[srcRect.width*srcRect.height];
+        final int xMax = srcRect.x + srcRect.width;
+        final int yMax = srcRect.y + srcRect.height;
+        int k = 0;
+        for (int y = srcRect.y; y < yMax; y++) {
+            final int offset = srcIndex.calculateStride(y);
+            for (int x = srcRect.x; x < xMax; x++) {
+                values[k++] = srcData.getElemDoubleAt(x - offset);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Compute the mean value of the pixels in the window centered at each target pixel with a box filter.
+     * Column sums are updated as the window moves down a row and the window sum as it moves along
+     * the row, so the cost does not depend on the window size. The window sum is started again on each
+     * row and the column sums each time the window has moved by its height, so that rounding errors
+     * of the running sums do not accumulate over the tile.
+     * @param values The source values returned by getSourceValues.
+     * @param srcRect The source tile rectangle.
+     * @param trgRect The target tile rectangle.
      * @param noDataValue The noDataValue for source band.
-     * @return The mean value.
+     * @return The mean values of the target pixels in row major order, noDataValue where the pixel has no data.
      */
-    private double computeLocalMean(int xc, int yc, Tile srcTile, ProductData srcData, double noDataValue) {
-        final int x0 = Math.max(0, xc - halfWindowWidth);
-        final int y0 = Math.max(0, yc - halfWindowHeight);
-        final int xMax = Math.min(xc + halfWindowWidth, sourceImageWidth-1);
-        final int yMax = Math.min(yc + halfWindowHeight, sourceImageHeight-1);
-
-        double mean = 0.0;
-        double value = 0.0;
-        int n = 0;
-        for (int y = y0; y < yMax; y++) {
-            for (int x = x0; x < xMax; x++) {
-                final int index = srcTile.getDataBufferIndex(x, y);
-                value = srcData.getElemDoubleAt(index);
-                if (value != noDataValue) {
-                    mean += value;
-                    n++;
+    private double[] computeLocalMeans(final double[] values, final Rectangle srcRect, final Rectangle trgRect,
+                                       final double noDataValue) {
+        final int sw = srcRect.width;
+        final int w = trgRect.width;
+        final int h = trgRect.height;
+        final double[] colSum = new double[sw];
+        final int[] colCount = new int[sw];
+        final double[] means = new double[w*h];
+
+        // source rows and columns currently in the sums, relative to the source rectangle
+        int rowMin = 0, rowMax = -1;
+        int numRemovedRows = 0;
+        for (int r = 0; r < h; r++) {
+            final int yc = trgRect.y + r;
+            final int wy0 = Math.max(yc - halfWindowHeight, 0) - srcRect.y;
+            final int wy1 = Math.min(yc + halfWindowHeight, sourceImageHeight - 1) - srcRect.y;
+            while (rowMax < wy1) {
+                addRow(values, ++rowMax, sw, noDataValue, colSum, colCount, 1);
+            }
+            while (rowMin < wy0) {
+                addRow(values, rowMin++, sw, noDataValue, colSum, colCount, -1);
+                ++numRemovedRows;
+            }
+            if (numRemovedRows > 2*halfWindowHeight) {
+                Arrays.fill(colSum, 0.0);
+                Arrays.fill(colCount, 0);
+                for (int row = rowMin; row <= rowMax; row++) {
+                    addRow(values, row, sw, noDataValue, colSum, colCount, 1);
                 }
+                numRemovedRows = 0;
+            }
+
+            double sum = 0.0;
+            int n = 0;
+            int colMin = 0, colMax = -1;
+            for (int c = 0; c < w; c++) {
+                final int xc = trgRect.x + c;
+                final int wx0 = Math.max(xc - halfWindowWidth, 0) - srcRect.x;
+                final int wx1 = Math.min(xc + halfWindowWidth, sourceImageWidth - 1) - srcRect.x;
+                while (colMax < wx1) {
+                    ++colMax;
+                    sum += colSum[colMax];
+                    n += colCount[colMax];
+                }
+                while (colMin < wx0) {
+                    sum -= colSum[colMin];
+                    n -= colCount[colMin];
+                    ++colMin;
+                }
+                if (values[(yc - srcRect.y)*sw + xc - srcRect.x] == noDataValue) {
+                    means[r*w + c] = noDataValue;
+                } else {
+                    means[r*w + c] = sum/n;
+                }
+            }
+        }
+        return means;
+    }
+
+    private static void addRow(final double[] values, final int row, final int sw, final double noDataValue,
+                               final double[] colSum, final int[] colCount, final int sign) {
+        final int stride = row*sw;
+        for (int i = 0; i < sw; i++) {
+            final double value = values[stride + i];
+            if (value != noDataValue) {
+                colSum[i] += sign*value;
+                colCount[i] += sign;
             }
         }
-        return mean/n;
     }
 
 
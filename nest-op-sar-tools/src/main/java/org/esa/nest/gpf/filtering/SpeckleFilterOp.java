@@ -240,8 +240,8 @@ public class SpeckleFilterOp extends Operator {
             switch (filter) {
                 case MEAN_SPECKLE_FILTER:
 
-                    computeMean(srcData1, srcData2, trgData, bandUnit, neighborValues, srcIndex, trgIndex,
-                            x0, y0, w, h, sx0, sy0, sw, sh);
+                    computeMean(getPaddedValues(srcData1, srcData2, srcIndex, bandUnit, x0, y0, w, h, sx0, sy0, sw, sh),
+                            trgData, trgIndex, x0, y0, w, h);
 
                     break;
                 case MEDIAN_SPECKLE_FILTER:
@@ -252,8 +252,8 @@ public class SpeckleFilterOp extends Operator {
                     break;
                 case FROST_SPECKLE_FILTER:
 
-                    computeFrost(srcData1, srcData2, trgData, bandUnit, neighborValues, srcIndex, trgIndex,
-                            x0, y0, w, h, sx0, sy0, sw, sh);
+                    computeFrost(getPaddedValues(srcData1, srcData2, srcIndex, bandUnit, x0, y0, w, h, sx0, sy0, sw, sh),
+                            trgData, trgIndex, x0, y0, w, h);
 
                     break;
                 case GAMMA_MAP_SPECKLE_FILTER:
@@ -266,8 +266,8 @@ public class SpeckleFilterOp extends Operator {
                     cu = 1.0 / Math.sqrt(n);
                     cu2 = cu * cu;
 
-                    computeGammaMap(srcData1, srcData2, trgData, bandUnit, neighborValues, srcIndex, trgIndex,
-                            x0, y0, w, h, sx0, sy0, sw, sh, cu, cu2, n);
+                    computeGammaMap(getPaddedValues(srcData1, srcData2, srcIndex, bandUnit, x0, y0, w, h, sx0, sy0, sw, sh),
+                            trgData, trgIndex, x0, y0, w, h, cu, cu2, n);
 
                     break;
                 case LEE_SPECKLE_FILTER:
@@ -280,8 +280,8 @@ public class SpeckleFilterOp extends Operator {
                     cu = 1.0 / Math.sqrt(n);
                     cu2 = cu * cu;
 
-                    computeLee(srcData1, srcData2, trgData, bandUnit, neighborValues, srcIndex, trgIndex,
-                            x0, y0, w, h, sx0, sy0, sw, sh, cu, cu2);
+                    computeLee(getPaddedValues(srcData1, srcData2, srcIndex, bandUnit, x0, y0, w, h, sx0, sy0, sw, sh),
+                            trgData, trgIndex, x0, y0, w, h, cu, cu2);
 
                     break;
                 case LEE_REFINED_FILTER:
@@ -336,37 +336,24 @@ public class SpeckleFilterOp extends Operator {
 
     /**
      * Filter the given tile of image with Mean filter.
-     * @param srcData1 The source ProductData for the 1st band.
-     * @param srcData2 The source ProductData for the 2nd band.
+     * @param values The padded source values returned by getPaddedValues.
      * @param trgData target ProductData
-     * @param unit Unit for the 1st band.
-     * @param neighborValues data to fill
      * @param x0 X coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param y0 Y coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param w Width for the target_Tile_Rectangle.
      * @param h Hight for the target_Tile_Rectangle.
-     * @param sx0 src rect x
-     * @param sy0 src rect y
-     * @param sw src rect w
-     * @param sh src rect h
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs during computation of the filtered value.
      */
-    private void computeMean(final ProductData srcData1, final ProductData srcData2, final ProductData trgData,
-                             final Unit.UnitType unit, final double[] neighborValues,
-                             final TileIndex srcIndex, final TileIndex trgIndex,
-                             final int x0, final int y0, final int w, final int h,
-                             final int sx0, final int sy0, final int sw, final int sh) {
-
-        final int maxY = y0 + h;
-        final int maxX = x0 + w;
-        for (int y = y0; y < maxY; ++y) {
-            final int offset = trgIndex.calculateStride(y);
-            for (int x = x0; x < maxX; ++x) {
-
-                getNeighborValues(x, y, sx0, sy0, sw, sh, srcData1, srcData2, srcIndex, unit, neighborValues);
-
-                trgData.setElemDoubleAt(x-offset, getMeanValue(neighborValues));
+    private void computeMean(final double[] values, final ProductData trgData, final TileIndex trgIndex,
+                             final int x0, final int y0, final int w, final int h) {
+
+        final WindowStatistics stats = new WindowStatistics(values, w, h, filterSizeX, filterSizeY);
+        for (int r = 0; r < h; ++r) {
+            stats.nextRow();
+            final int offset = trgIndex.calculateStride(y0 + r);
+            for (int i = 0; i < w; ++i) {
+                trgData.setElemDoubleAt(x0 + i - offset, stats.mean[i]);
             }
         }
     }
@@ -410,89 +397,122 @@ public class SpeckleFilterOp extends Operator {
 
     /**
      * Filter the given tile of image with Frost filter.
-     * @param srcData1 The source ProductData for the 1st band.
-     * @param srcData2 The source ProductData for the 2nd band.
+     * @param values The padded source values returned by getPaddedValues.
      * @param trgData target ProductData
-     * @param unit Unit for the 1st band.
-     * @param neighborValues data to fill
      * @param x0 X coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param y0 Y coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param w Width for the target_Tile_Rectangle.
      * @param h Hight for the target_Tile_Rectangle.
-     * @param sx0 src rect x
-     * @param sy0 src rect y
-     * @param sw src rect w
-     * @param sh src rect h
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs during computation of the filtered value.
      */
-    private void computeFrost(final ProductData srcData1, final ProductData srcData2, final ProductData trgData,
-                              final Unit.UnitType unit, final double[] neighborValues,
-                              final TileIndex srcIndex, final TileIndex trgIndex,
-                              final int x0, final int y0, final int w, final int h,
-                              final int sx0, final int sy0, final int sw, final int sh) {
-
-        final double[] mask = new double[filterSizeX*filterSizeY];
-        getFrostMask(mask);
-
-        final int maxY = y0 + h;
-        final int maxX = x0 + w;
-        for (int y = y0; y < maxY; ++y) {
-            final int offset = trgIndex.calculateStride(y);
-            for (int x = x0; x < maxX; ++x) {
-
-                getNeighborValues(x, y, sx0, sy0, sw, sh, srcData1, srcData2, srcIndex, unit, neighborValues);
+    private void computeFrost(final double[] values, final ProductData trgData, final TileIndex trgIndex,
+                              final int x0, final int y0, final int w, final int h) {
 
-                trgData.setElemDoubleAt(x-offset, getFrostValue(neighborValues, mask));
+        final int[] rings = getFrostRings();
+        int numRings = 0;
+        for (int ring : rings) {
+            numRings = Math.max(numRings, ring + 1);
+        }
+        final int[] ringCounts = new int[numRings];
+        for (int ring : rings) {
+            ringCounts[ring]++;
+        }
+        final double[] ringSums = new double[numRings];
+
+        final int pw = w + filterSizeX - 1;
+        final WindowStatistics stats = new WindowStatistics(values, w, h, filterSizeX, filterSizeY);
+        for (int r = 0; r < h; ++r) {
+            stats.nextRow();
+            final int offset = trgIndex.calculateStride(y0 + r);
+            for (int i = 0; i < w; ++i) {
+
+                final double mean = stats.mean[i];
+                final double var = stats.var[i];
+                double val = mean;
+                if (mean > Double.MIN_VALUE && var > Double.MIN_VALUE) {
+
+                    Arrays.fill(ringSums, 0.0);
+                    int k = 0;
+                    for (int j = 0; j < filterSizeY; ++j) {
+                        final int stride = (r + j)*pw + i;
+                        for (int l = 0; l < filterSizeX; ++l) {
+                            ringSums[rings[k++]] += values[stride + l];
+                        }
+                    }
+                    val = getFrostValue(mean, var, ringSums, ringCounts);
+                }
+                trgData.setElemDoubleAt(x0 + i - offset, val);
             }
         }
     }
 
     /**
      * Filter the given tile of image with Gamma filter.
-     * @param srcData1 The source ProductData for the 1st band.
-     * @param srcData2 The source ProductData for the 2nd band.
+     * @param values The padded source values returned by getPaddedValues.
      * @param trgData target ProductData
-     * @param unit Unit for the 1st band.
-     * @param neighborValues data to fill
      * @param x0 X coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param y0 Y coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param w Width for the target_Tile_Rectangle.
      * @param h Hight for the target_Tile_Rectangle.
-     * @param sx0 src rect x
-     * @param sy0 src rect y
-     * @param sw src rect w
-     * @param sh src rect h
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs during computation of the filtered value.
      */
-    private void computeGammaMap(final ProductData srcData1, final ProductData srcData2, final ProductData trgData,
-                                 final Unit.UnitType unit, final double[] neighborValues,
-                                 final TileIndex srcIndex, final TileIndex trgIndex,
+    private void computeGammaMap(final double[] values, final ProductData trgData, final TileIndex trgIndex,
                                  final int x0, final int y0, final int w, final int h,
-                                 final int sx0, final int sy0, final int sw, final int sh,
                                  final double cu, final double cu2, final double enl) {
 
-        final int maxY = y0 + h;
-        final int maxX = x0 + w;
-        for (int y = y0; y < maxY; ++y) {
-            final int offset = trgIndex.calculateStride(y);
-            for (int x = x0; x < maxX; ++x) {
+        final int pw = w + filterSizeX - 1;
+        final int centre = getCentreOffset(pw);
+        final WindowStatistics stats = new WindowStatistics(values, w, h, filterSizeX, filterSizeY);
+        for (int r = 0; r < h; ++r) {
+            stats.nextRow();
+            final int offset = trgIndex.calculateStride(y0 + r);
+            final int stride = r*pw + centre;
+            for (int i = 0; i < w; ++i) {
+                trgData.setElemDoubleAt(x0 + i - offset,
+                        getGammaMapValue(stats.mean[i], stats.var[i], values[stride + i], cu, cu2, enl));
+            }
+        }
+    }
 
-                getNeighborValues(x, y, sx0, sy0, sw, sh, srcData1, srcData2, srcIndex, unit, neighborValues);
+    /**
+     * Filter the given tile of image with Lee filter.
+     * @param values The padded source values returned by getPaddedValues.
+     * @param trgData target ProductData
+     * @param x0 X coordinate for the upper-left point of the target_Tile_Rectangle.
+     * @param y0 Y coordinate for the upper-left point of the target_Tile_Rectangle.
+     * @param w Width for the target_Tile_Rectangle.
+     * @param h Hight for the target_Tile_Rectangle.
+     * @throws org.esa.beam.framework.gpf.OperatorException
+     *          If an error occurs during computation of the filtered value.
+     */
+    private void computeLee(final double[] values, final ProductData trgData, final TileIndex trgIndex,
+                            final int x0, final int y0, final int w, final int h,
+                            final double cu, final double cu2) {
 
-                trgData.setElemDoubleAt(x-offset, getGammaMapValue(neighborValues, cu, cu2, enl));
+        final int pw = w + filterSizeX - 1;
+        final int centre = getCentreOffset(pw);
+        final WindowStatistics stats = new WindowStatistics(values, w, h, filterSizeX, filterSizeY);
+        for (int r = 0; r < h; ++r) {
+            stats.nextRow();
+            final int offset = trgIndex.calculateStride(y0 + r);
+            final int stride = r*pw + centre;
+            for (int i = 0; i < w; ++i) {
+                trgData.setElemDoubleAt(x0 + i - offset,
+                        getLeeValue(stats.mean[i], stats.var[i], values[stride + i], cu, cu2));
             }
         }
     }
 
     /**
-     * Filter the given tile of image with Lee filter.
+     * Get the pixel values needed to filter the target tile, padded by the filter size so that the
+     * filter window of every target pixel lies inside the buffer. Pixels outside the source tile are
+     * replaced by the nearest source pixel, as in getNeighborValues.
      * @param srcData1 The source ProductData for the 1st band.
      * @param srcData2 The source ProductData for the 2nd band.
-     * @param trgData target ProductData
+     * @param srcIndex The source tile index.
      * @param unit Unit for the 1st band.
-     * @param neighborValues data to fill
      * @param x0 X coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param y0 Y coordinate for the upper-left point of the target_Tile_Rectangle.
      * @param w Width for the target_Tile_Rectangle.
@@ -501,27 +521,51 @@ public class SpeckleFilterOp extends Operator {
      * @param sy0 src rect y
      * @param sw src rect w
      * @param sh src rect h
-     * @throws org.esa.beam.framework.gpf.OperatorException
-     *          If an error occurs during computation of the filtered value.
+     * @return The (w + filterSizeX - 1) by (h + filterSizeY - 1) pixel values.
      */
-    private void computeLee(final ProductData srcData1, final ProductData srcData2, final ProductData trgData,
-                            final Unit.UnitType unit, final double[] neighborValues,
-                            final TileIndex srcIndex, final TileIndex trgIndex,
-                            final int x0, final int y0, final int w, final int h,
-                            final int sx0, final int sy0, final int sw, final int sh,
-                            final double cu, final double cu2) {
+    private double[] getPaddedValues(final ProductData srcData1, final ProductData srcData2, final TileIndex srcIndex,
+                                     final Unit.UnitType unit, final int x0, final int y0, final int w, final int h,
+                                     final int sx0, final int sy0, final int sw, final int sh) {
 
-        final int maxY = y0 + h;
-        final int maxX = x0 + w;
-        for (int y = y0; y < maxY; ++y) {
-            final int offset = trgIndex.calculateStride(y);
-            for (int x = x0; x < maxX; ++x) {
+        final int pw = w + filterSizeX - 1;
+        final int ph = h + filterSizeY - 1;
+        final boolean isComplex = unit == Unit.UnitType.REAL || unit == Unit.UnitType.IMAGINARY;
 
-                getNeighborValues(x, y, sx0, sy0, sw, sh, srcData1, srcData2, srcIndex, unit, neighborValues);
+        final int[] srcX = new int[pw];
+        for (int i = 0; i < pw; ++i) {
+            srcX[i] = Math.min(Math.max(x0 - halfSizeX + i, sx0), sx0 + sw - 1);
+        }
 
-                trgData.setElemDoubleAt(x-offset, getLeeValue(neighborValues, cu, cu2));
+        final double[] values = new double[pw*ph];
+        for (int j = 0; j < ph; ++j) {
+            final int yj = Math.min(Math.max(y0 - halfSizeY + j, sy0), sy0 + sh - 1);
+            final int offset = srcIndex.calculateStride(yj);
+            final int stride = j*pw;
+            if (isComplex) {
+                for (int i = 0; i < pw; ++i) {
+                    final int idx = srcX[i] - offset;
+                    final double I = srcData1.getElemDoubleAt(idx);
+                    final double Q = srcData2.getElemDoubleAt(idx);
+                    values[stride + i] = I*I + Q*Q;
+                }
+            } else {
+                for (int i = 0; i < pw; ++i) {
+                    values[stride + i] = srcData1.getElemDoubleAt(srcX[i] - offset);
+                }
             }
         }
+        return values;
+    }
+
+    /**
+     * Get the offset from the upper left corner of a filter window in the padded values to the pixel
+     * used as the centre pixel, which is the middle element of the window in row major order.
+     * @param pw The width of the padded values.
+     * @return The offset.
+     */
+    private int getCentreOffset(final int pw) {
+        final int n = filterSizeX*filterSizeY;
+        return ((n/2) / filterSizeX)*pw + (n/2) % filterSizeX;
     }
 
     /**
@@ -567,7 +611,7 @@ public class SpeckleFilterOp extends Operator {
                     int idx = xi-offset;
                     double I = srcData1.getElemDoubleAt(idx);
                     double Q = srcData2.getElemDoubleAt(idx);
-                    neighborValues[stride + j] = I*I + Q*Q;
+                    neighborValues[stride + i] = I*I + Q*Q;
                 }
             }
 
@@ -654,71 +698,65 @@ public class SpeckleFilterOp extends Operator {
     }
 
     /**
-     * Get Frost mask for given Frost filter size.
-     * @param mask Array holding Frost filter mask values.
-     * @throws org.esa.beam.framework.gpf.OperatorException
-     *          If an error occurs in computation of the Frost mask.
+     * Get the Frost ring of each pixel in the filter window, which is its chessboard distance
+     * to the window centre. All pixels in a ring get the same Frost weight.
+     * @return The ring index of each window pixel in row major order.
      */
-    private void getFrostMask(final double[] mask) {
+    private int[] getFrostRings() {
 
-        for (int i = 0; i < filterSizeX; i++) {
+        final int[] rings = new int[filterSizeX*filterSizeY];
+        for (int j = 0; j < filterSizeY; j++) {
 
-            final int s = i*filterSizeY;
-            final int dr = Math.abs(i - halfSizeX);
+            final int s = j*filterSizeX;
+            final int dr = Math.abs(j - halfSizeY);
 
-            for (int j = 0; j < filterSizeY; j++) {
-                mask[j + s] = Math.max(dr, Math.abs(j - halfSizeY));
+            for (int i = 0; i < filterSizeX; i++) {
+                rings[s + i] = Math.max(dr, Math.abs(i - halfSizeX));
             }
         }
+        return rings;
     }
 
     /**
      * Get the Frost filtered pixel intensity for pixels in a given rectanglar region.
-     * @param neighborValues Array holding the pixel valuses.
-     * @param mask Array holding Frost filter mask values.
+     * @param mean The mean of the pixel values in the region.
+     * @param var The variance of the pixel values in the region.
+     * @param ringSums The sum of the pixel values in each Frost ring.
+     * @param ringCounts The number of pixels in each Frost ring.
      * @return val The Frost filtered value.
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs in computation of the Frost filtered value.
      */
-    private double getFrostValue(final double[] neighborValues, final double[] mask) {
-
-        final double mean = getMeanValue(neighborValues);
-        if (mean <= Double.MIN_VALUE) {
-            return mean;
-        }
-
-        final double var = getVarianceValue(neighborValues, mean);
-        if (var <= Double.MIN_VALUE) {
-            return mean;
-        }
+    private double getFrostValue(final double mean, final double var, final double[] ringSums, final int[] ringCounts) {
 
         final double k = dampingFactor * var / (mean*mean);
 
         double sum = 0.0;
         double totalWeight = 0.0;
-        for (int i = 0; i < neighborValues.length; i++) {
-            final double weight = FastMath.exp(-k * mask[i]);
-            sum += weight * neighborValues[i];
-            totalWeight += weight;
+        for (int d = 0; d < ringSums.length; d++) {
+            final double weight = FastMath.exp(-k * d);
+            sum += weight * ringSums[d];
+            totalWeight += weight * ringCounts[d];
         }
         return sum / totalWeight;
     }
 
     /**
      * Get the Gamma filtered pixel intensity for pixels in a given rectanglar region.
-     * @param neighborValues Array holding the pixel valuses.
+     * @param mean The mean of the pixel values in the region.
+     * @param var The variance of the pixel values in the region.
+     * @param cp The centre pixel value.
      * @return val The Gamma filtered value.
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs in computation of the Gamma filtered value.
      */
-    private double getGammaMapValue(final double[] neighborValues, final double cu, final double cu2, final double enl) {
+    private static double getGammaMapValue(final double mean, final double var, final double cp,
+                                           final double cu, final double cu2, final double enl) {
 
-        final double mean = getMeanValue(neighborValues);
         if (mean <= Double.MIN_VALUE) {
             return mean;
         }
 
-        final double var = getVarianceValue(neighborValues, mean);
         if (var <= Double.MIN_VALUE) {
             return mean;
         }
@@ -728,8 +766,6 @@ public class SpeckleFilterOp extends Operator {
             return mean;
         }
 
-        final double cp = neighborValues[(neighborValues.length/2)];
-
         if (cu < ci) {
             final double cmax = Math.sqrt(2)*cu;
             if(ci < cmax) {
@@ -745,19 +781,20 @@ public class SpeckleFilterOp extends Operator {
 
     /**
      * Get the Lee filtered pixel intensity for pixels in a given rectanglar region.
-     * @param neighborValues Array holding the pixel valuses.
+     * @param mean The mean of the pixel values in the region.
+     * @param var The variance of the pixel values in the region.
+     * @param cp The centre pixel value.
      * @return val The Lee filtered value.
      * @throws org.esa.beam.framework.gpf.OperatorException
      *          If an error occurs in computation of the Lee filtered value.
      */
-    private double getLeeValue(final double[] neighborValues, final double cu, final double cu2) {
+    private static double getLeeValue(final double mean, final double var, final double cp,
+                                      final double cu, final double cu2) {
 
-        final double mean = getMeanValue(neighborValues);
         if (Double.compare(mean, Double.MIN_VALUE) <= 0) {
             return mean;
         }
 
-        final double var = getVarianceValue(neighborValues, mean);
         if (Double.compare(var, Double.MIN_VALUE) <= 0) {
             return mean;
         }
@@ -767,7 +804,6 @@ public class SpeckleFilterOp extends Operator {
             return mean;
         }
 
-        final double cp = neighborValues[(neighborValues.length/2)];
         final double w = 1 - cu2 / (ci*ci);
 
         return cp*w + mean*(1 - w);
@@ -1303,6 +1339,101 @@ public class SpeckleFilterOp extends Operator {
         }
     }
 
+    /**
+     * Local mean and variance of a filter window sliding over the padded values of a tile.
+     * Column sums of the values and squared values are updated as the window moves down a row,
+     * and the window sums as it moves along the row, so each pixel costs O(1) whatever the filter size.
+     */
+    private static final class WindowStatistics {
+
+        private final double[] values;
+        private final int w, pw, fx, fy, n;
+        private final double ref;
+        private final double[] colSum, colSum2;
+        private final int[] colNaN;
+        private int row = 0;
+
+        final double[] mean, var;
+
+        WindowStatistics(final double[] values, final int w, final int h, final int fx, final int fy) {
+            this.values = values;
+            this.w = w;
+            this.fx = fx;
+            this.fy = fy;
+            pw = w + fx - 1;
+            n = fx*fy;
+            colSum = new double[pw];
+            colSum2 = new double[pw];
+            colNaN = new int[pw];
+            mean = new double[w];
+            var = new double[w];
+
+            // the sums are taken about the mean of the values to avoid losing precision in the variance
+            double sum = 0.0;
+            int cnt = 0;
+            for (double v : values) {
+                if (!Double.isNaN(v)) {
+                    sum += v;
+                    ++cnt;
+                }
+            }
+            ref = cnt > 0 ? sum / cnt : 0.0;
+
+            for (int j = 0; j < fy - 1; ++j) {
+                addRow(j, 1);
+            }
+        }
+
+        private void addRow(final int j, final int sign) {
+            final int stride = j*pw;
+            for (int i = 0; i < pw; ++i) {
+                final double v = values[stride + i];
+                if (Double.isNaN(v)) {
+                    colNaN[i] += sign;
+                } else {
+                    final double d = v - ref;
+                    colSum[i] += sign*d;
+                    colSum2[i] += sign*d*d;
+                }
+            }
+        }
+
+        /**
+         * Computes the mean and variance of the windows of the next target row
+         */
+        void nextRow() {
+            addRow(row + fy - 1, 1);
+
+            double sum = 0.0, sum2 = 0.0;
+            int numNaN = 0;
+            for (int i = 0; i < fx - 1; ++i) {
+                sum += colSum[i];
+                sum2 += colSum2[i];
+                numNaN += colNaN[i];
+            }
+            for (int i = 0; i < w; ++i) {
+                sum += colSum[i + fx - 1];
+                sum2 += colSum2[i + fx - 1];
+                numNaN += colNaN[i + fx - 1];
+
+                if (numNaN > 0) {
+                    mean[i] = Double.NaN;
+                    var[i] = Double.NaN;
+                } else {
+                    mean[i] = ref + sum / n;
+                    var[i] = n > 1 ? Math.max((sum2 - sum*sum/n) / (n - 1), 0.0) : 0.0;
+                }
+
+                sum -= colSum[i];
+                sum2 -= colSum2[i];
+                numNaN -= colNaN[i];
+            }
+
+            addRow(row, -1);
+            ++row;
+        }
+    }
+
 
     /**
      * The SPI is used to register this operator in the graph processing framework
@@ -1319,4 +1450,3 @@ public class SpeckleFilterOp extends Operator {
         }
     }
 }
-
@@ -23,6 +23,7 @@ import org.esa.nest.datamodel.Orbits;
 import org.esa.nest.util.ftpUtils;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,6 +38,15 @@ public abstract class BaseOrbitFile implements OrbitFile {
     protected ftpUtils ftp = null;
     protected Map<String, Long> fileSizeMap = null;
 
+    // orbit readers with parsed orbit vectors, shared across products using the same orbit file
+    private static final int MAX_CACHED_READERS = 16;
+    private static final Map<String, Object> readerCache = new LinkedHashMap<String, Object>(MAX_CACHED_READERS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+            return size() > MAX_CACHED_READERS;
+        }
+    };
+
     protected BaseOrbitFile(final String orbitType, final MetadataElement absRoot) {
         this.orbitType = orbitType;
         this.absRoot = absRoot;
@@ -48,6 +58,29 @@ public abstract class BaseOrbitFile implements OrbitFile {
         return orbitFile;
     }
 
+    private static String getReaderKey(final File file) {
+        return file.getAbsolutePath() + '@' + file.lastModified();
+    }
+
+    /**
+     * Get a cached orbit reader which has already parsed the given orbit file
+     * @param file the orbit file
+     * @param readerClass the type of reader
+     * @return the reader or null if not cached
+     */
+    protected static <T> T getCachedReader(final File file, final Class<T> readerClass) {
+        synchronized (readerCache) {
+            final Object reader = readerCache.get(getReaderKey(file));
+            return readerClass.isInstance(reader) ? readerClass.cast(reader) : null;
+        }
+    }
+
+    protected static void cacheReader(final File file, final Object reader) {
+        synchronized (readerCache) {
+            readerCache.put(getReaderKey(file), reader);
+        }
+    }
+
     protected static void getRemoteFiles(final ftpUtils ftp, final Map<String, Long> fileSizeMap,
                                        final String remotePath, final File localPath, final ProgressMonitor pm) {
         final Set<String> remoteFileNames = fileSizeMap.keySet();
@@ -19,8 +19,8 @@ import com.bc.ceres.core.NullProgressMonitor;
 import org.esa.beam.dataio.envisat.EnvisatOrbitReader;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.visat.VisatApp;
-import org.esa.nest.datamodel.AbstractMetadata;
 import org.esa.nest.datamodel.Orbits;
 import org.esa.nest.util.Settings;
 import org.esa.nest.util.ftpUtils;
@@ -74,9 +74,6 @@ public class DorisOrbitFile extends BaseOrbitFile {
      */
     private void init(final Product sourceProduct) throws IOException {
 
-        dorisReader = EnvisatOrbitReader.getInstance();
-        final int absOrbit = absRoot.getAttributeInt(AbstractMetadata.ABS_ORBIT, 0);
-
         // construct path to the orbit file folder
         String orbitPath = "";
         String remoteBaseFolder = "";
@@ -89,6 +86,7 @@ public class DorisOrbitFile extends BaseOrbitFile {
         }
 
         final Date startDate = sourceProduct.getStartTime().getAsDate();
+        final double startMJD = sourceProduct.getStartTime().getMJD();
         final int month = startDate.getMonth()+1;
         String folder = String.valueOf(startDate.getYear() + 1900);
         if(month < 10) {
@@ -99,68 +97,66 @@ public class DorisOrbitFile extends BaseOrbitFile {
         final File localPath = new File(orbitPath);
 
         // find orbit file in the folder
-        orbitFile = FindDorisOrbitFile(dorisReader, localPath, startDate, absOrbit);
+        orbitFile = FindDorisOrbitFile(localPath, startMJD);
         if(orbitFile == null) {
             final String remotePath = remoteBaseFolder +'/'+ folder;
             getRemoteDorisFiles(remotePath, localPath);
             // find again in newly downloaded folder
-            orbitFile = FindDorisOrbitFile(dorisReader, localPath, startDate, absOrbit);
+            orbitFile = FindDorisOrbitFile(localPath, startMJD);
         }
 
         if(orbitFile == null) {
             throw new IOException("Unable to find suitable DORIS orbit file in\n"+orbitPath);
         }
+
+        dorisReader = getOrbitReader(orbitFile);
     }
 
     /**
      * Find DORIS orbit file.
-     * @param dorisReader The ENVISAT oribit reader.
      * @param path The path to the orbit file.
-     * @param productDate The start date of the product.
-     * @param absOrbit The absolute orbit number.
+     * @param productMJD The start time of the product.
      * @return The orbit file.
-     * @throws IOException
      */
-    private static File FindDorisOrbitFile(EnvisatOrbitReader dorisReader, File path, Date productDate, int absOrbit)
-            throws IOException {
-
-        final File[] list = path.listFiles();
-        if(list == null) return null;
+    private static File FindDorisOrbitFile(final File path, final double productMJD) {
 
-        // loop through all orbit files in the given folder
-        for(File f : list) {
+        final OrbitFileIndex index = OrbitFileIndex.getIndex("DORIS", path, true, headerReader);
+        return index.findOrbitFile(productMJD);
+    }
 
-            if(f.isDirectory()) {
-                final File foundFile = FindDorisOrbitFile(dorisReader, f, productDate, absOrbit);
-                if(foundFile != null) {
-                    return foundFile;
-                }
+    /**
+     * Get a reader with the orbit vectors of an orbit file. Readers are shared by all products using the file.
+     * @param file The orbit file.
+     * @return The reader.
+     * @throws IOException if the file can't be read.
+     */
+    private static EnvisatOrbitReader getOrbitReader(final File file) throws IOException {
+        EnvisatOrbitReader reader = getCachedReader(file, EnvisatOrbitReader.class);
+        if(reader == null) {
+            reader = new EnvisatOrbitReader();
+            reader.readProduct(file);
+            try {
+                reader.readOrbitData();
+            } finally {
+                reader.close();
             }
+            cacheReader(file, reader);
+        }
+        return reader;
+    }
 
+    private static final OrbitFileIndex.HeaderReader headerReader = new OrbitFileIndex.HeaderReader() {
+        public double[] readValidity(final File file) throws Exception {
+            final EnvisatOrbitReader reader = new EnvisatOrbitReader();
             try {
-                // open each orbit file
-                dorisReader.readProduct(f);
-
-                // get the start and end dates and compare them against product start date
-                final Date startDate = dorisReader.getSensingStart();
-                final Date stopDate = dorisReader.getSensingStop();
-                if (productDate.after(startDate) && productDate.before(stopDate)) {
-
-                    // get the absolute orbit code and compare it against the orbit code in the product
-                    dorisReader.readOrbitData();
-                    //EnvisatOrbitReader.OrbitVector orb = dorisReader.getOrbitVector(0);
-                    //if (absOrbit == orb.absOrbit) {
-                        return f;
-                    //}
-                }
-            } catch(Exception e) {
-                System.out.println(e.getMessage());
-                // continue
+                reader.readProduct(file);
+                return new double[] { ProductData.UTC.create(reader.getSensingStart(), 0).getMJD(),
+                                      ProductData.UTC.create(reader.getSensingStop(), 0).getMJD() };
+            } finally {
+                reader.close();
             }
         }
-
-        return null;
-    }
+    };
 
     private void getRemoteDorisFiles(final String remotePath, final File localPath) {
         final String dorisFTP = Settings.instance().get("OrbitFiles/dorisFTP");
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf.orbits;
+
+import org.esa.beam.util.logging.BeamLogManager;
+import org.esa.nest.util.ResourceUtils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Persistent index of the validity period of the orbit files in a folder.
+ * Each orbit file header is read once. The index is kept in the user temp folder and
+ * entries are refreshed when the modification time of an orbit file changes, so that
+ * finding the orbit file covering a product is a binary search over the sorted periods.
+ * The folders are only scanned again when the modification time of one of them changes,
+ * which happens when files are added or removed, or when no orbit file is found for a time.
+ */
+public final class OrbitFileIndex {
+
+    private static final Map<String, OrbitFileIndex> indexMap = new HashMap<String, OrbitFileIndex>();
+
+    // folders modified this shortly before a scan may change again within the resolution of their modification time
+    private static final long RACY_INTERVAL = 2000L;
+    // a time not found in the index causes a scan at most this often
+    private static final long MISS_RESCAN_INTERVAL = 10000L;
+
+    private final File folder;
+    private final boolean recursive;
+    private final File indexFile;
+    private final HeaderReader headerReader;
+
+    private final Map<String, Entry> entryMap = new HashMap<String, Entry>();
+    private Entry[] sortedEntries = null;
+    private double[] startTimes = null;
+    private double[] maxStopTimes = null;
+    private final Map<File, Long> folderTimes = new HashMap<File, Long>();
+    private long lastScanTime = 0;
+    private int numScans = 0;
+
+    /**
+     * Reads the validity period from the header of an orbit file
+     */
+    public interface HeaderReader {
+        /**
+         * @param file the orbit file
+         * @return the start and stop time of the file in MJD
+         * @throws Exception if the file is not a valid orbit file
+         */
+        double[] readValidity(final File file) throws Exception;
+    }
+
+    private static final class Entry {
+        final File file;
+        final long lastModified;
+        final double startMJD;
+        final double stopMJD;
+
+        Entry(final File file, final long lastModified, final double startMJD, final double stopMJD) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.startMJD = startMJD;
+            this.stopMJD = stopMJD;
+        }
+    }
+
+    OrbitFileIndex(final File folder, final boolean recursive, final File indexFile, final HeaderReader headerReader) {
+        this.folder = folder;
+        this.recursive = recursive;
+        this.indexFile = indexFile;
+        this.headerReader = headerReader;
+        load();
+    }
+
+    /**
+     * Get the shared index of an orbit file folder
+     * @param name the name of the orbit type, used to name the index file
+     * @param folder the orbit file folder
+     * @param recursive true to include sub folders
+     * @param headerReader reads the validity period of new or changed files
+     * @return the index
+     */
+    public static synchronized OrbitFileIndex getIndex(final String name, final File folder, final boolean recursive,
+                                                       final HeaderReader headerReader) {
+        final String key = name + '|' + folder.getAbsolutePath();
+        OrbitFileIndex index = indexMap.get(key);
+        if(index == null) {
+            final File indexFolder = new File(ResourceUtils.getApplicationUserTempDataDir(), "OrbitIndex");
+            final String fileName = name.replaceAll("[^A-Za-z0-9]", "_") + '_' + folder.getName() + '_' +
+                    Integer.toHexString(folder.getAbsolutePath().hashCode()) + ".txt";
+            index = new OrbitFileIndex(folder, recursive, new File(indexFolder, fileName), headerReader);
+            indexMap.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Find the orbit file whose validity period contains the given time
+     * @param mjd the time in MJD
+     * @return the orbit file or null if none is found
+     */
+    public synchronized File findOrbitFile(final double mjd) {
+        if(sortedEntries == null || isFolderModified()) {
+            refresh();
+        }
+        File file = search(mjd);
+        if(file == null && System.currentTimeMillis() - lastScanTime >= MISS_RESCAN_INTERVAL) {
+            refresh();
+            file = search(mjd);
+        }
+        return file;
+    }
+
+    private File search(final double mjd) {
+        // last entry starting at or before the time
+        int i = Arrays.binarySearch(startTimes, mjd);
+        if(i < 0) {
+            i = -i - 2;
+        } else {
+            while(i + 1 < startTimes.length && startTimes[i + 1] == mjd)
+                ++i;
+        }
+
+        // earlier entries can only contain the time while their maximum stop time is after it
+        for(; i >= 0 && maxStopTimes[i] > mjd; --i) {
+            final Entry entry = sortedEntries[i];
+            if(entry.startMJD <= mjd && mjd < entry.stopMJD) {
+                return entry.file;
+            }
+        }
+        return null;
+    }
+
+    public synchronized int getNumEntries() {
+        return entryMap.size();
+    }
+
+    synchronized int getNumScans() {
+        return numScans;
+    }
+
+    private boolean isFolderModified() {
+        for(Map.Entry<File, Long> entry : folderTimes.entrySet()) {
+            final long lastModified = entry.getKey().lastModified();
+            if(lastModified != entry.getValue() || lastModified >= lastScanTime - RACY_INTERVAL)
+                return true;
+        }
+        return folderTimes.isEmpty();
+    }
+
+    /**
+     * Brings the index up to date with the files in the folder. Only new or modified files are opened.
+     */
+    private void refresh() {
+        folderTimes.clear();
+        lastScanTime = System.currentTimeMillis();
+        ++numScans;
+        final Set<String> currentFiles = new HashSet<String>(entryMap.size() + 16);
+        boolean modified = scanFolder(folder, currentFiles);
+        if(entryMap.keySet().retainAll(currentFiles)) {
+            modified = true;
+        }
+        if(modified || sortedEntries == null) {
+            sortEntries();
+        }
+        if(modified) {
+            save();
+        }
+    }
+
+    private boolean scanFolder(final File path, final Set<String> currentFiles) {
+        folderTimes.put(path, path.lastModified());
+        final File[] list = path.listFiles();
+        if(list == null)
+            return false;
+
+        boolean modified = false;
+        for(File f : list) {
+            if(f.isDirectory()) {
+                if(recursive && scanFolder(f, currentFiles))
+                    modified = true;
+                continue;
+            }
+
+            final String filePath = f.getAbsolutePath();
+            currentFiles.add(filePath);
+            final long lastModified = f.lastModified();
+            final Entry entry = entryMap.get(filePath);
+            if(entry != null && entry.lastModified == lastModified)
+                continue;
+
+            try {
+                final double[] validity = headerReader.readValidity(f);
+                entryMap.put(filePath, new Entry(f, lastModified, validity[0], validity[1]));
+            } catch(Exception e) {
+                BeamLogManager.getSystemLogger().warning("Unable to read orbit file "+filePath+": "+e.getMessage());
+                // remember unreadable files with an empty period so they are not opened again
+                entryMap.put(filePath, new Entry(f, lastModified, 0, 0));
+            }
+            modified = true;
+        }
+        return modified;
+    }
+
+    private void sortEntries() {
+        sortedEntries = entryMap.values().toArray(new Entry[entryMap.size()]);
+        Arrays.sort(sortedEntries, new Comparator<Entry>() {
+            public int compare(final Entry e1, final Entry e2) {
+                return Double.compare(e1.startMJD, e2.startMJD);
+            }
+        });
+
+        startTimes = new double[sortedEntries.length];
+        maxStopTimes = new double[sortedEntries.length];
+        double maxStop = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < sortedEntries.length; ++i) {
+            startTimes[i] = sortedEntries[i].startMJD;
+            maxStop = Math.max(maxStop, sortedEntries[i].stopMJD);
+            maxStopTimes[i] = maxStop;
+        }
+    }
+
+    private void load() {
+        if(!indexFile.exists())
+            return;
+        try {
+            final BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+            try {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    final String[] tokens = line.split("\t");
+                    if(tokens.length != 4)
+                        continue;
+                    final File file = new File(tokens[0]);
+                    entryMap.put(file.getAbsolutePath(), new Entry(file, Long.parseLong(tokens[1]),
+                            Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3])));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch(Exception e) {
+            BeamLogManager.getSystemLogger().warning("Unable to read orbit index "+indexFile.getAbsolutePath()+": "+e.getMessage());
+            entryMap.clear();
+        }
+    }
+
+    private void save() {
+        final File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try {
+            if(!indexFile.getParentFile().exists())
+                indexFile.getParentFile().mkdirs();
+
+            final PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(tmpFile)));
+            try {
+                for(Entry entry : sortedEntries) {
+                    writer.print(entry.file.getAbsolutePath());
+                    writer.print('\t');
+                    writer.print(entry.lastModified);
+                    writer.print('\t');
+                    writer.print(entry.startMJD);
+                    writer.print('\t');
+                    writer.println(entry.stopMJD);
+                }
+            } finally {
+                writer.close();
+            }
+            if(indexFile.exists() && !indexFile.delete())
+                throw new IOException("Unable to replace index");
+            if(!tmpFile.renameTo(indexFile))
+                throw new IOException("Unable to rename index");
+        } catch(IOException e) {
+            BeamLogManager.getSystemLogger().warning("Unable to write orbit index "+indexFile.getAbsolutePath()+": "+e.getMessage());
+            tmpFile.delete();
+        }
+    }
+}
@@ -74,7 +74,6 @@ public class PrareOrbitFile extends BaseOrbitFile {
      */
     private void init(final Product sourceProduct) throws IOException {
 
-        prareReader = PrareOrbitReader.getInstance();
         final String mission = absRoot.getAttributeString(AbstractMetadata.MISSION);
         
         // construct path to the orbit file folder
@@ -99,22 +98,24 @@ public class PrareOrbitFile extends BaseOrbitFile {
         final File localPath = new File(orbitPath);
 
         // find orbit file in the folder
-        orbitFile = FindPrareOrbitFile(prareReader, localPath, startMJD);
+        orbitFile = FindPrareOrbitFile(localPath, startMJD);
         if(orbitFile == null) {
             final String remotePath = remoteBaseFolder +'/'+ folder;
             getRemotePrareFiles(remotePath, localPath, getPrefix(year, month));
             // find again in newly downloaded folder
-            orbitFile = FindPrareOrbitFile(prareReader, localPath, startMJD);
+            orbitFile = FindPrareOrbitFile(localPath, startMJD);
             if(orbitFile == null) {
                 // check next month
                 getRemotePrareFiles(remotePath, localPath, getPrefix(year, month+1));
-                orbitFile = FindPrareOrbitFile(prareReader, localPath, startMJD);
+                orbitFile = FindPrareOrbitFile(localPath, startMJD);
             }
         }
 
         if(orbitFile == null) {
             throw new IOException("Unable to find suitable orbit file \n"+orbitPath+"\nPlease check your firewall settings");
         }
+
+        prareReader = getOrbitReader(orbitFile);
     }
 
     private static String getPrefix(int year, int month) {
@@ -167,42 +168,44 @@ public class PrareOrbitFile extends BaseOrbitFile {
 
     /**
      * Find PRARE orbit file.
-     * @param prareReader The PRARE oribit reader.
      * @param path The path to the orbit file.
      * @param startMJD The start date of the product.
      * @return The orbit file.
-     * @throws IOException if can't read file
      */
-    private static File FindPrareOrbitFile(final PrareOrbitReader prareReader, final File path,
-                                           final double startMJD) throws IOException {
-
-        final File[] list = path.listFiles();
-        if(list == null) return null;
-
-        // loop through all orbit files in the given folder
-        for(File f : list) {
+    private static File FindPrareOrbitFile(final File path, final double startMJD) {
 
-            if (f.isDirectory()) {
-                continue;
-            }
+        final OrbitFileIndex index = OrbitFileIndex.getIndex("PRARE", path, false, headerReader);
+        return index.findOrbitFile(startMJD);
+    }
 
-            // read header record of each orbit file
-            prareReader.readOrbitHeader(f);
-
-            // get the start and end dates and compare them against product start date
-            final float startDateInMJD = prareReader.getSensingStart(); // in days
-            final float stopDateInMJD = prareReader.getSensingStop(); // in days
-            if (startDateInMJD <= startMJD && startMJD < stopDateInMJD) {
-                try {
-                    // read orbit data records in each orbit file
-                    prareReader.readOrbitData(f);
-                    return f;
-                } catch(Exception e) {
-                    throw new IOException("Unable to parse file: "+e.toString());    
-                }
+    /**
+     * Get a reader with the orbit vectors of an orbit file. Readers are shared by all products using the file.
+     * @param file The orbit file.
+     * @return The reader.
+     * @throws IOException if can't parse file
+     */
+    private static PrareOrbitReader getOrbitReader(final File file) throws IOException {
+        PrareOrbitReader reader = getCachedReader(file, PrareOrbitReader.class);
+        if(reader == null) {
+            reader = new PrareOrbitReader();
+            try {
+                // read orbit data records in the orbit file
+                reader.readOrbitHeader(file);
+                reader.readOrbitData(file);
+            } catch(Exception e) {
+                throw new IOException("Unable to parse file: "+e.toString());
             }
+            cacheReader(file, reader);
         }
-
-        return null;
+        return reader;
     }
+
+    private static final OrbitFileIndex.HeaderReader headerReader = new OrbitFileIndex.HeaderReader() {
+        public double[] readValidity(final File file) throws Exception {
+            // read header record of the orbit file
+            final PrareOrbitReader reader = new PrareOrbitReader();
+            reader.readOrbitHeader(file);
+            return new double[] { reader.getSensingStart(), reader.getSensingStop() };
+        }
+    };
 }
\ No newline at end of file
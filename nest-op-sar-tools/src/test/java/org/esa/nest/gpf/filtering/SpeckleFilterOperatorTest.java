@@ -26,6 +26,7 @@ import org.esa.nest.datamodel.Unit;
 import org.esa.nest.util.TestUtils;
 
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Unit test for SpeckleFilterOperator.
@@ -233,6 +234,119 @@ public class SpeckleFilterOperatorTest extends TestCase {
         assertTrue(Arrays.equals(expectedValues, floatValues));
     }
 
+    /**
+     * Tests the Mean, Median and Lee filters against filters computed over each window, on a product
+     * with several tiles so that windows across tile borders and windows clipped at the image edges
+     * are both covered.
+     * @throws Exception anything
+     */
+    public void testFiltersAgainstBruteForce() throws Exception {
+        final Product sourceProduct = createSpeckledTestProduct(45, 37);
+
+        final String[] filters = {"Mean", "Median", "Lee"};
+        final int[][] filterSizes = {{3, 3}, {5, 3}, {3, 7}};
+        for (String filter : filters) {
+            for (int[] filterSize : filterSizes) {
+                final float[] filtered = filter(sourceProduct, filter, filterSize[0], filterSize[1]);
+                final double[] expected = filterBruteForce(sourceProduct, filter, filterSize[0], filterSize[1]);
+                for (int k = 0; k < expected.length; k++) {
+                    assertEquals(filter + " " + filterSize[0] + "x" + filterSize[1] + " at " + k,
+                            expected[k], filtered[k], 1.0e-5 * expected[k]);
+                }
+            }
+        }
+    }
+
+    private float[] filter(final Product sourceProduct, final String filter,
+                           final int filterSizeX, final int filterSizeY) throws Exception {
+        final SpeckleFilterOp op = (SpeckleFilterOp)spi.createOperator();
+        op.setSourceProduct(sourceProduct);
+        op.SetFilter(filter);
+        op.setParameter("filterSizeX", filterSizeX);
+        op.setParameter("filterSizeY", filterSizeY);
+        op.setParameter("estimateENL", false);
+
+        final Band band = op.getTargetProduct().getBandAt(0);
+        final int w = band.getSceneRasterWidth();
+        final int h = band.getSceneRasterHeight();
+        final float[] values = new float[w * h];
+        band.readPixels(0, 0, w, h, values, ProgressMonitor.NULL);
+        return values;
+    }
+
+    private static double[] filterBruteForce(final Product sourceProduct, final String filter,
+                                             final int filterSizeX, final int filterSizeY) {
+        final ProductData data = sourceProduct.getBandAt(0).getRasterData();
+        final int w = sourceProduct.getSceneRasterWidth();
+        final int h = sourceProduct.getSceneRasterHeight();
+        final int n = filterSizeX * filterSizeY;
+
+        final double[] expected = new double[w * h];
+        final double[] window = new double[n];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                // pixels outside the image are replaced by the nearest edge pixel
+                int k = 0;
+                for (int j = 0; j < filterSizeY; j++) {
+                    final int yj = Math.min(Math.max(y - filterSizeY / 2 + j, 0), h - 1);
+                    for (int i = 0; i < filterSizeX; i++) {
+                        final int xi = Math.min(Math.max(x - filterSizeX / 2 + i, 0), w - 1);
+                        window[k++] = data.getElemDoubleAt(yj * w + xi);
+                    }
+                }
+                final double centre = window[n / 2];
+
+                double mean = 0.0;
+                for (double value : window) {
+                    mean += value;
+                }
+                mean /= n;
+                double var = 0.0;
+                for (double value : window) {
+                    var += (value - mean) * (value - mean);
+                }
+                var /= n - 1;
+
+                if (filter.equals("Mean")) {
+                    expected[y * w + x] = mean;
+                } else if (filter.equals("Median")) {
+                    Arrays.sort(window);
+                    expected[y * w + x] = window[n / 2];
+                } else {
+                    // Lee with one look, so that the speckle coefficient of variation is 1
+                    final double ci = Math.sqrt(var) / mean;
+                    if (ci < 1.0) {
+                        expected[y * w + x] = mean;
+                    } else {
+                        final double weight = 1.0 - 1.0 / (ci * ci);
+                        expected[y * w + x] = centre * weight + mean * (1.0 - weight);
+                    }
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Creates a test product with one look speckled intensities, split into 16-by-16 tiles.
+     * @param w width
+     * @param h height
+     * @return the new test product
+     */
+    private static Product createSpeckledTestProduct(final int w, final int h) {
+        final Product testProduct = TestUtils.createProduct("type", w, h);
+        testProduct.setPreferredTileSize(16, 16);
+        final Band band1 = testProduct.addBand("band1", ProductData.TYPE_FLOAT32);
+        final Random random = new Random(11);
+        final float[] floatValues = new float[w * h];
+        for (int i = 0; i < w * h; i++) {
+            floatValues[i] = (float)(100.0 * (1.0 + Math.sin(i * 0.01)) * -Math.log(1.0 - random.nextDouble()));
+        }
+        band1.setData(ProductData.createInstance(floatValues));
+        band1.setUnit(Unit.INTENSITY);
+        return testProduct;
+    }
+
     /**
      * Creates a 4-by-4 test product as shown below for speckle filter tests:
      *  1  2  3  4
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf.filtering;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.nest.datamodel.Unit;
+import org.esa.nest.util.TestUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit test for MultiTemporalSpeckleFilterOp.
+ */
+public class TestMultiTemporalSpeckleFilterOp extends TestCase {
+
+    private static final int NUM_BANDS = 5;
+
+    private OperatorSpi spi;
+
+    @Override
+    protected void setUp() throws Exception {
+        TestUtils.initTestEnvironment();
+        spi = new MultiTemporalSpeckleFilterOp.Spi();
+    }
+
+    /**
+     * Recomputing the local means of bands that are not kept in memory gives the same output
+     * as keeping the means of all bands.
+     * @throws Exception The exception.
+     */
+    public void testBandsKeptInMemory() throws Exception {
+        final Product sourceProduct = createTestProduct(40, 30);
+
+        final float[][] allKept = filter(sourceProduct, "5x5", NUM_BANDS);
+        final float[][] oneKept = filter(sourceProduct, "5x5", 1);
+        final float[][] twoKept = filter(sourceProduct, "5x5", 2);
+
+        for (int i = 0; i < NUM_BANDS; i++) {
+            assertTrue(Arrays.equals(allKept[i], oneKept[i]));
+            assertTrue(Arrays.equals(allKept[i], twoKept[i]));
+        }
+    }
+
+    /**
+     * The box filtered local means give the same output as means computed over each window,
+     * including the windows clipped at the image edges and windows across tile borders.
+     * @throws Exception The exception.
+     */
+    public void testLocalMeansAgainstBruteForce() throws Exception {
+        final Product sourceProduct = createTestProduct(40, 30);
+
+        final String[] windowSizes = {"3x3", "5x5", "7x7"};
+        for (String windowSize : windowSizes) {
+            final float[][] filtered = filter(sourceProduct, windowSize, NUM_BANDS);
+            final double[][] expected = filterBruteForce(sourceProduct, Integer.parseInt(windowSize.substring(2)) / 2);
+            for (int i = 0; i < NUM_BANDS; i++) {
+                for (int k = 0; k < expected[i].length; k++) {
+                    assertEquals(expected[i][k], filtered[i][k], 1.0e-4 * expected[i][k]);
+                }
+            }
+        }
+    }
+
+    private static double[][] filterBruteForce(final Product sourceProduct, final int halfWindowSize) {
+        final int w = sourceProduct.getSceneRasterWidth();
+        final int h = sourceProduct.getSceneRasterHeight();
+        final double[][] means = new double[NUM_BANDS][w * h];
+        final double[] ratioSum = new double[w * h];
+        final int[] numValidBands = new int[w * h];
+
+        for (int i = 0; i < NUM_BANDS; i++) {
+            final ProductData data = sourceProduct.getBandAt(i).getRasterData();
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    final double value = data.getElemDoubleAt(y * w + x);
+                    if (value == 0.0) {
+                        continue;
+                    }
+                    double sum = 0.0;
+                    int n = 0;
+                    for (int wy = Math.max(y - halfWindowSize, 0); wy <= Math.min(y + halfWindowSize, h - 1); wy++) {
+                        for (int wx = Math.max(x - halfWindowSize, 0); wx <= Math.min(x + halfWindowSize, w - 1); wx++) {
+                            final double windowValue = data.getElemDoubleAt(wy * w + wx);
+                            if (windowValue != 0.0) {
+                                sum += windowValue;
+                                n++;
+                            }
+                        }
+                    }
+                    means[i][y * w + x] = sum / n;
+                    ratioSum[y * w + x] += value / means[i][y * w + x];
+                    numValidBands[y * w + x]++;
+                }
+            }
+        }
+
+        final double[][] expected = new double[NUM_BANDS][w * h];
+        for (int i = 0; i < NUM_BANDS; i++) {
+            for (int k = 0; k < w * h; k++) {
+                if (means[i][k] != 0.0) {
+                    expected[i][k] = ratioSum[k] / numValidBands[k] * means[i][k];
+                }
+            }
+        }
+        return expected;
+    }
+
+    private float[][] filter(final Product sourceProduct, final String windowSize, final int maxBandsInMemory)
+            throws Exception {
+        final MultiTemporalSpeckleFilterOp op = (MultiTemporalSpeckleFilterOp)spi.createOperator();
+        op.setSourceProduct(sourceProduct);
+        op.setParameter("windowSize", windowSize);
+        op.setParameter("maxBandsInMemory", maxBandsInMemory);
+
+        final Product targetProduct = op.getTargetProduct();
+        assertEquals(NUM_BANDS, targetProduct.getNumBands());
+
+        final int w = targetProduct.getSceneRasterWidth();
+        final int h = targetProduct.getSceneRasterHeight();
+        final float[][] values = new float[NUM_BANDS][w * h];
+        for (int i = 0; i < NUM_BANDS; i++) {
+            targetProduct.getBandAt(i).readPixels(0, 0, w, h, values[i], ProgressMonitor.NULL);
+        }
+        return values;
+    }
+
+    private static Product createTestProduct(final int w, final int h) {
+        final Product product = TestUtils.createProduct("GRD", w, h);
+        product.setPreferredTileSize(16, 16);
+
+        // speckled intensities with a few no data pixels in each band
+        final Random random = new Random(7);
+        for (int i = 0; i < NUM_BANDS; i++) {
+            final Band band = product.addBand("Intensity_VV_" + i, ProductData.TYPE_FLOAT32);
+            band.setUnit(Unit.INTENSITY);
+            band.setNoDataValue(0.0);
+            band.setNoDataValueUsed(true);
+
+            final float[] values = new float[w * h];
+            for (int k = 0; k < values.length; k++) {
+                values[k] = (float)(100.0 * (i + 1) * -Math.log(1.0 - random.nextDouble()));
+            }
+            for (int k = 0; k < 10; k++) {
+                values[random.nextInt(values.length)] = 0.0f;
+            }
+            band.setRasterData(ProductData.createInstance(values));
+        }
+        return product;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf.orbits;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+
+/**
+ * Unit test for OrbitFileIndex.
+ */
+public class TestOrbitFileIndex extends TestCase {
+
+    private File folder;
+    private File indexFile;
+    private int numHeadersRead;
+
+    private final OrbitFileIndex.HeaderReader headerReader = new OrbitFileIndex.HeaderReader() {
+        public double[] readValidity(final File file) throws Exception {
+            ++numHeadersRead;
+            final BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                final String[] tokens = reader.readLine().split(" ");
+                return new double[] { Double.parseDouble(tokens[0]), Double.parseDouble(tokens[1]) };
+            } finally {
+                reader.close();
+            }
+        }
+    };
+
+    protected void setUp() throws Exception {
+        folder = File.createTempFile("orbits", "");
+        folder.delete();
+        new File(folder, "sub").mkdirs();
+        indexFile = new File(folder.getParentFile(), folder.getName() + "_index.txt");
+        numHeadersRead = 0;
+    }
+
+    protected void tearDown() throws Exception {
+        deleteAll(folder);
+        indexFile.delete();
+    }
+
+    public void testFindOrbitFile() throws Exception {
+        final File f1 = writeOrbitFile("orb1", 100.0, 101.1);
+        final File f2 = writeOrbitFile("sub/orb2", 101.0, 102.1);
+        writeOrbitFile("orb3", 103.0, 104.1);
+
+        final OrbitFileIndex index = new OrbitFileIndex(folder, true, indexFile, headerReader);
+        assertEquals(f1, index.findOrbitFile(100.5));
+        assertEquals(f2, index.findOrbitFile(101.05));
+        assertEquals(f2, index.findOrbitFile(102.0));
+        assertNull(index.findOrbitFile(102.5));
+        assertNull(index.findOrbitFile(99.0));
+        assertEquals(3, numHeadersRead);
+
+        // unchanged files are not read again
+        index.findOrbitFile(103.5);
+        assertEquals(3, numHeadersRead);
+        assertTrue(indexFile.exists());
+    }
+
+    public void testPersistentIndex() throws Exception {
+        final File f1 = writeOrbitFile("orb1", 100.0, 101.1);
+        new OrbitFileIndex(folder, true, indexFile, headerReader).findOrbitFile(100.5);
+        assertEquals(1, numHeadersRead);
+
+        final OrbitFileIndex index = new OrbitFileIndex(folder, true, indexFile, headerReader);
+        assertEquals(f1, index.findOrbitFile(100.5));
+        assertEquals(1, numHeadersRead);
+
+        // removed and modified files are updated
+        final File f2 = writeOrbitFile("orb2", 101.0, 102.1);
+        f1.delete();
+        assertNull(index.findOrbitFile(100.5));
+        assertEquals(f2, index.findOrbitFile(101.5));
+        assertEquals(1, index.getNumEntries());
+    }
+
+    public void testScanOnlyWhenFolderModified() throws Exception {
+        final File f1 = writeOrbitFile("orb1", 100.0, 101.1);
+        setLastModified(System.currentTimeMillis() - 60000L);
+
+        final OrbitFileIndex index = new OrbitFileIndex(folder, true, indexFile, headerReader);
+        assertEquals(f1, index.findOrbitFile(100.5));
+        assertEquals(f1, index.findOrbitFile(100.7));
+        assertEquals(1, index.getNumScans());
+
+        // a miss right after a scan does not scan again
+        assertNull(index.findOrbitFile(105.0));
+        assertEquals(1, index.getNumScans());
+
+        // a new file in a sub folder modifies that folder
+        final File f2 = writeOrbitFile("sub/orb2", 105.0, 106.1);
+        assertEquals(f2, index.findOrbitFile(105.0));
+        assertEquals(2, index.getNumScans());
+    }
+
+    private void setLastModified(final long time) {
+        folder.setLastModified(time);
+        new File(folder, "sub").setLastModified(time);
+    }
+
+    private File writeOrbitFile(final String name, final double start, final double stop) throws IOException {
+        final File file = new File(folder, name);
+        final PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println(start + " " + stop);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void deleteAll(final File file) {
+        final File[] list = file.listFiles();
+        if(list != null) {
+            for(File f : list) {
+                deleteAll(f);
+            }
+        }
+        file.delete();
+    }
+}
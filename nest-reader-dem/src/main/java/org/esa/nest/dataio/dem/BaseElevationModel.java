@@ -26,9 +26,7 @@ import org.esa.beam.framework.dataop.resamp.Resampling;
 import org.esa.beam.framework.dataop.resamp.ResamplingFactory;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 public abstract class BaseElevationModel implements ElevationModel, Resampling.Raster {
 
@@ -48,9 +46,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     private final Resampling resampling;
     private final Resampling.Raster resamplingRaster;
 
-    private final List<ElevationTile> elevationTileCache = new ArrayList<ElevationTile>(20);
-    private int maxCacheSize = 60;
-
     public BaseElevationModel(final ElevationModelDescriptor descriptor, Resampling resamplingMethod) {
         this.descriptor = descriptor;
         if(resamplingMethod == null)
@@ -82,10 +77,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return descriptor;
     }
 
-    protected void setMaxCacheSize(final int size) {
-        maxCacheSize = size;
-    }
-
     public final double getElevation(final GeoPos geoPos) throws Exception {
         if (geoPos.lon > 180) {
             geoPos.lon -= 360;
@@ -104,6 +95,116 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return Double.isNaN(elevation) ? NO_DATA_VALUE : elevation;
     }
 
+    public final boolean getElevations(final double[] lat, final double[] lon, final double[] elevations)
+            throws Exception {
+        final GeoPos geoPos = new GeoPos();
+        final boolean isBilinear = resampling == Resampling.BILINEAR_INTERPOLATION;
+        final Resampling.Index index = isBilinear ? null : resampling.createIndex();
+        final TileCursor cursor = new TileCursor();
+
+        boolean valid = false;
+        for (int i = 0; i < elevations.length; ++i) {
+            geoPos.setLocation((float)lat[i], (float)lon[i]);
+            if (geoPos.lon > 180) {
+                geoPos.lon -= 360;
+            }
+            final double pixelY = getIndexY(geoPos);
+            if (pixelY < 0) {
+                elevations[i] = NO_DATA_VALUE;
+                continue;
+            }
+
+            final double elevation;
+            if (isBilinear) {
+                elevation = getBilinearElevation(getIndexX(geoPos), pixelY, cursor);
+            } else {
+                resampling.computeIndex(getIndexX(geoPos), pixelY, RASTER_WIDTH, RASTER_HEIGHT, index);
+                elevation = resampling.resample(resamplingRaster, index);
+            }
+
+            if (Double.isNaN(elevation)) {
+                elevations[i] = NO_DATA_VALUE;
+            } else {
+                elevations[i] = elevation;
+                valid = true;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Bilinear interpolation equivalent to Resampling.BILINEAR_INTERPOLATION operating on primitives
+     * and reusing the DEM tile of the previous sample.
+     */
+    private double getBilinearElevation(final double x, final double y, final TileCursor cursor) throws Exception {
+        final int i0 = (int) Math.floor(x);
+        final int j0 = (int) Math.floor(y);
+        final double di = x - (i0 + 0.5);
+        final double dj = y - (j0 + 0.5);
+
+        final int xa, xb, ya, yb;
+        final double ki, kj;
+        if (di >= 0) {
+            xa = crop(i0, RASTER_WIDTH - 1);
+            xb = crop(i0 + 1, RASTER_WIDTH - 1);
+            ki = di;
+        } else {
+            xa = crop(i0 - 1, RASTER_WIDTH - 1);
+            xb = crop(i0, RASTER_WIDTH - 1);
+            ki = di + 1;
+        }
+        if (dj >= 0) {
+            ya = crop(j0, RASTER_HEIGHT - 1);
+            yb = crop(j0 + 1, RASTER_HEIGHT - 1);
+            kj = dj;
+        } else {
+            ya = crop(j0 - 1, RASTER_HEIGHT - 1);
+            yb = crop(j0, RASTER_HEIGHT - 1);
+            kj = dj + 1;
+        }
+
+        final double s00 = getCachedSample(xa, ya, cursor);
+        final double s01 = getCachedSample(xb, ya, cursor);
+        final double s10 = getCachedSample(xa, yb, cursor);
+        final double s11 = getCachedSample(xb, yb, cursor);
+        if (Double.isNaN(s00) || Double.isNaN(s01) || Double.isNaN(s10) || Double.isNaN(s11)) {
+            return s00;
+        }
+
+        return s00 * (1f - ki) * (1f - kj) +
+               s01 * ki * (1f - kj) +
+               s10 * (1f - ki) * kj +
+               s11 * ki * kj;
+    }
+
+    private static int crop(final int i, final int max) {
+        return (i < 0) ? 0 : (i > max) ? max : i;
+    }
+
+    private double getCachedSample(final int x, final int y, final TileCursor cursor) throws Exception {
+        final int tileXIndex = (int)(x * NUM_PIXELS_PER_TILEinv);
+        final int tileYIndex = (int)(y * NUM_PIXELS_PER_TILEinv);
+        if (tileXIndex != cursor.tileXIndex || tileYIndex != cursor.tileYIndex) {
+            cursor.tile = elevationFiles[tileXIndex][tileYIndex].getTile();
+            cursor.tileXIndex = tileXIndex;
+            cursor.tileYIndex = tileYIndex;
+        }
+        if (cursor.tile == null) {
+            return Double.NaN;
+        }
+        final float sample = cursor.tile.getSample(x - tileXIndex * NUM_PIXELS_PER_TILE, y - tileYIndex * NUM_PIXELS_PER_TILE);
+        return sample == NO_DATA_VALUE ? Double.NaN : sample;
+    }
+
+    /**
+     * The DEM tile used by the previous sample of a bulk request
+     */
+    private static final class TileCursor {
+        int tileXIndex = -1;
+        int tileYIndex = -1;
+        ElevationTile tile = null;
+    }
+
     public abstract double getIndexX(final GeoPos geoPos);
 
     public abstract double getIndexY(final GeoPos geoPos);
@@ -115,11 +216,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     }
 
     public void dispose() {
-        for (ElevationTile tile : elevationTileCache) {
-            if(tile != null)
-                tile.dispose();
-        }
-        elevationTileCache.clear();
         for (ElevationFile[] elevationFile : elevationFiles) {
             for (ElevationFile anElevationFile : elevationFile) {
                 if(anElevationFile != null)
@@ -164,18 +260,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     protected abstract void createElevationFile(final ElevationFile[][] elevationFiles,
                                                 final int x, final int y, final File demInstallDir);
 
-    public void updateCache(final ElevationTile tile) {
-        elevationTileCache.remove(tile);
-        elevationTileCache.add(0, tile);
-        while (elevationTileCache.size() > maxCacheSize) {
-            final int index = elevationTileCache.size() - 1;
-            final ElevationTile lastTile = elevationTileCache.get(index);
-            if(lastTile != null)
-                lastTile.clearCache();
-            elevationTileCache.remove(index);
-        }
-    }
-
     protected static ProductReaderPlugIn getReaderPlugIn(final String formatName) {
         final Iterator readerPlugIns = ProductIOPlugInManager.getInstance().getReaderPlugIns(formatName);
         return (ProductReaderPlugIn) readerPlugIns.next();
@@ -20,7 +20,7 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.dataop.dem.ElevationModel;
 
-import java.util.Arrays;
+import java.io.File;
 
 public class BaseElevationTile implements ElevationTile {
 
@@ -28,7 +28,8 @@ public class BaseElevationTile implements ElevationTile {
     private final Band band;
     private final int bandWidth;
     protected final float noDataValue;
-    private final float[][] objectArray;
+    private final String cacheKey;
+    private volatile ElevationTileCache.TileData tileData;
     private final boolean useDEMGravitationalModel;
 
     public BaseElevationTile(final ElevationModel dem, final Product product) {
@@ -36,33 +37,86 @@ public class BaseElevationTile implements ElevationTile {
         this.band = product.getBandAt(0);
         this.bandWidth = band.getSceneRasterWidth();
         noDataValue = dem.getDescriptor().getNoDataValue();
-        objectArray = new float[band.getSceneRasterHeight() + 1][];
         final String prop = System.getProperty("useDEMGravitationalModel");
         useDEMGravitationalModel = prop != null && prop.equalsIgnoreCase("true");
+
+        // decoded lines are shared with all other elevation models reading the same DEM tile
+        // the file modification time is part of the key so that a replaced DEM file is not served from the cache
+        final File file = product.getFileLocation();
+        final String tileName = file != null ? file.getAbsolutePath() + '@' + file.lastModified() : product.getName();
+        cacheKey = ElevationTileCache.createKey(dem.getDescriptor().getName(),
+                                                tileName + (useDEMGravitationalModel ? "+egm" : ""));
+        tileData = getTileData();
         //System.out.println("Dem Tile "+product.getName());
     }
 
+    /**
+     * Releases the reference to the decoded lines. The lines are shared with other elevation models
+     * and stay in the cache until it evicts them.
+     */
     public final void clearCache() {
-        if (objectArray != null) {
-            Arrays.fill(objectArray, 0, objectArray.length, null);
+        tileData = null;
+    }
+
+    /**
+     * Gets the current shared lines of the tile, looking them up again if they have been evicted
+     * @return the tile data
+     */
+    private ElevationTileCache.TileData getTileData() {
+        ElevationTileCache.TileData data = tileData;
+        if (data == null || data.isEvicted()) {
+            data = ElevationTileCache.instance().getTileData(cacheKey, band.getSceneRasterHeight() + 1);
+            tileData = data;
         }
+        return data;
     }
 
     public final float getSample(final int pixelX, final int pixelY) throws Exception {
 
-        float[] line = objectArray[pixelY];
+        final ElevationTileCache.TileData data = tileData;
+        float[] line = data != null ? data.getLine(pixelY) : null;
         if (line == null) {
-            line = band.readPixels(0, pixelY, bandWidth, 1, new float[bandWidth], ProgressMonitor.NULL);
-            if(useDEMGravitationalModel) {
-                addGravitationalModel(pixelY, line);
-            }
-            objectArray[pixelY] = line;
+            line = readLine(pixelY);
         }
         return line[pixelX];
     }
 
+    private float[] readLine(final int pixelY) throws Exception {
+        final ElevationTileCache.TileData data = getTileData();
+        synchronized (data) {
+            float[] line = data.getLine(pixelY);
+            if (line == null) {
+                line = data.putLine(pixelY, readLineUncached(pixelY));
+            }
+            return line;
+        }
+    }
+
+    /**
+     * Reads and decodes a line without adding it to the shared cache
+     * @param pixelY the line index
+     * @return the decoded line
+     * @throws Exception on read error
+     */
+    final float[] readLineUncached(final int pixelY) throws Exception {
+        final float[] line = band.readPixels(0, pixelY, bandWidth, 1, new float[bandWidth], ProgressMonitor.NULL);
+        if(useDEMGravitationalModel) {
+            addGravitationalModel(pixelY, line);
+        }
+        return line;
+    }
+
+    public int getWidth() {
+        return bandWidth;
+    }
+
+    public int getHeight() {
+        return band.getSceneRasterHeight();
+    }
+
     public void dispose() {
-        clearCache();
+        // the decoded lines stay in the shared cache for other elevation models
+        tileData = null;
         if (product != null) {
             product.dispose();
             product = null;
@@ -71,4 +125,4 @@ public class BaseElevationTile implements ElevationTile {
 
     protected void addGravitationalModel(final int index, final float[] line) {
     }
-}
\ No newline at end of file
+}
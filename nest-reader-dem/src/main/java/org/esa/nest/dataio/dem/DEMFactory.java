@@ -27,7 +27,12 @@ import org.esa.nest.datamodel.AbstractMetadata;
 import org.esa.nest.gpf.TileGeoreferencing;
 import org.jlinda.core.*;
 
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * DEM Handling
@@ -41,6 +46,12 @@ public class DEMFactory {
     private static final String[] demNameList = new String[descriptors.length];
     private static final String[] demResamplingList = new String[ResamplingFactory.resamplingNames.length +1];
 
+    // recently interpolated Delaunay DEM windows of each elevation model, reused when the same tile is requested again.
+    // The elevation models are only weakly referenced and the caches are released when an operator disposes its model.
+    private static final int DELAUNAY_CACHE_SIZE = 8;
+    private static final Map<ElevationModel, Map<DelaunayWindow, double[][]>> delaunayCaches =
+            Collections.synchronizedMap(new WeakHashMap<ElevationModel, Map<DelaunayWindow, double[][]>>());
+
     static {
         for (int i = 0; i < descriptors.length; i++) {
             demNameList[i] = DEMFactory.appendAutoDEM(descriptors[i].getName());
@@ -166,7 +177,11 @@ public class DEMFactory {
 
         final int maxY = y0 + tileHeight + 1;
         final int maxX = x0 + tileWidth + 1;
+        final int width = tileWidth + 2;
         final GeoPos geoPos = new GeoPos();
+        final double[] lat = new double[width];
+        final double[] lon = new double[width];
+        final double[] elevations = new double[width];
 
         double alt;
         boolean valid = false;
@@ -175,33 +190,39 @@ public class DEMFactory {
 
             for (int x = x0 - 1; x < maxX; x++) {
                 tileGeoRef.getGeoPos(x, y, geoPos);
-                /*if(!geoPos.isValid()) {
-                    localDEM[yy][x - x0 + 1] = demNoDataValue;
-                    continue;
-                }
                 if (geoPos.lon > 180) {
                     geoPos.lon -= 360;
-                } else if (geoPos.lon < -180) {
-                    geoPos.lon += 360;
-                }    */
+                }
+                lat[x - x0 + 1] = geoPos.lat;
+                lon[x - x0 + 1] = geoPos.lon;
+            }
 
-                alt = dem.getElevation(geoPos);
+            dem.getElevations(lat, lon, elevations);
+
+            final double[] localDEMRow = localDEM[yy];
+            for (int xx = 0; xx < width; xx++) {
+                alt = elevations[xx];
 
                 if (alt == demNoDataValue && !nodataValueAtSea) {
-                    alt = EarthGravitationalModel96.instance().getEGM(geoPos.lat, geoPos.lon);
+                    alt = EarthGravitationalModel96.instance().getEGM(lat[xx], lon[xx]);
                 }
 
                 if(!valid && alt != demNoDataValue) {
                     valid = true;
                 }
 
-                localDEM[yy][x - x0 + 1] = alt;
+                localDEMRow[xx] = alt;
             }
         }
         return valid;
     }
 
-    public synchronized static boolean getLocalDEMUsingDelaunayInterpolation(
+    /**
+     * Read DEM for current tile using Delaunay triangulation of the DEM posts.
+     * All state of the triangulation is confined to the calling thread, so tiles are interpolated concurrently.
+     * The interpolated window is cached so that a tile requested again is not triangulated again.
+     */
+    public static boolean getLocalDEMUsingDelaunayInterpolation(
             final ElevationModel dem, final float demNoDataValue, final TileGeoreferencing tileGeoRef, final int x0,
             final int y0, final int tileWidth, final int tileHeight, final Product sourceProduct,
             final double[][] localDEM) throws Exception {
@@ -209,8 +230,60 @@ public class DEMFactory {
         // Note: the localDEM covers current tile with 1 extra row above, 1 extra row below, 1 extra column to
         //       the left and 1 extra column to the right of the tile.
 
+        final DelaunayWindow window = new DelaunayWindow(tileGeoRef.getGeoCoding(), sourceProduct, demNoDataValue,
+                x0, y0, tileWidth, tileHeight);
+        final Map<DelaunayWindow, double[][]> delaunayCache = getDelaunayCache(dem);
+        double[][] elevation = delaunayCache.get(window);
+        if (elevation == null) {
+            elevation = computeDelaunayDEM(dem, demNoDataValue, tileGeoRef, x0, y0, tileWidth, tileHeight, sourceProduct);
+            delaunayCache.put(window, elevation);
+        }
+
         final int maxY = y0 + tileHeight + 1;
         final int maxX = x0 + tileWidth + 1;
+        float alt;
+        boolean valid = false;
+        for (int y = y0 - 1; y < maxY; y++) {
+            final int yy = y - y0 + 1;
+            for (int x = x0 - 1; x < maxX; x++) {
+                alt = (float)elevation[yy][x - x0 + 1];
+                if(!valid && alt != demNoDataValue)
+                    valid = true;
+                localDEM[yy][x - x0 + 1] = alt;
+            }
+        }
+        return valid;
+    }
+
+    private static Map<DelaunayWindow, double[][]> getDelaunayCache(final ElevationModel dem) {
+        synchronized (delaunayCaches) {
+            Map<DelaunayWindow, double[][]> cache = delaunayCaches.get(dem);
+            if (cache == null) {
+                cache = Collections.synchronizedMap(
+                        new LinkedHashMap<DelaunayWindow, double[][]>(DELAUNAY_CACHE_SIZE, 0.75f, true) {
+                            @Override
+                            protected boolean removeEldestEntry(final Map.Entry<DelaunayWindow, double[][]> eldest) {
+                                return size() > DELAUNAY_CACHE_SIZE;
+                            }
+                        });
+                delaunayCaches.put(dem, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Releases the Delaunay interpolated DEM windows of an elevation model. To be called before the model is disposed.
+     * @param dem the elevation model
+     */
+    public static void releaseDelaunayCache(final ElevationModel dem) {
+        delaunayCaches.remove(dem);
+    }
+
+    private static double[][] computeDelaunayDEM(
+            final ElevationModel dem, final float demNoDataValue, final TileGeoreferencing tileGeoRef, final int x0,
+            final int y0, final int tileWidth, final int tileHeight, final Product sourceProduct) throws Exception {
+
         final PixelPos pixelPos = new PixelPos();
         final org.jlinda.core.Window tileWindow = new org.jlinda.core.Window(y0-1, y0 + tileHeight, x0-1, x0 + tileWidth);
 
@@ -357,21 +430,8 @@ public class DEMFactory {
         final double rngAzRatio = rangeSpacing / aziSpacing;
 
         // y - lines, x - pixels, z - heights
-        final double[][] elevation = org.jlinda.core.utils.TriangleUtils.gridDataLinear(
+        return org.jlinda.core.utils.TriangleUtils.gridDataLinear(
                 y_in, x_in, z_in, tileWindow, rngAzRatio, 1, 1, demNoDataValue, 0);
-
-        float alt;
-        boolean valid = false;
-        for (int y = y0 - 1; y < maxY; y++) {
-            final int yy = y - y0 + 1;
-            for (int x = x0 - 1; x < maxX; x++) {
-                alt = (float)elevation[yy][x - x0 + 1];
-                if(!valid && alt != demNoDataValue)
-                    valid = true;
-                localDEM[yy][x - x0 + 1] = alt;
-            }
-        }
-        return valid;
     }
 
     private static GeoPos[] extendCorners(final GeoPos extraGeo, final GeoPos[] inGeo) {
@@ -393,4 +453,51 @@ public class DEMFactory {
         return outGeo;
     }
 
+    /**
+     * Identifies an interpolated Delaunay DEM window of an elevation model by target geocoding, source product and tile.
+     * Geocoding and product are only weakly referenced, a window of a garbage collected product matches no other window.
+     */
+    private static final class DelaunayWindow {
+        private final WeakReference<GeoCoding> geoCoding;
+        private final WeakReference<Product> sourceProduct;
+        private final int identityHash;
+        private final float demNoDataValue;
+        private final int x0, y0, width, height;
+
+        DelaunayWindow(final GeoCoding geoCoding, final Product sourceProduct, final float demNoDataValue,
+                       final int x0, final int y0, final int width, final int height) {
+            this.geoCoding = new WeakReference<GeoCoding>(geoCoding);
+            this.sourceProduct = new WeakReference<Product>(sourceProduct);
+            this.identityHash = 31 * System.identityHashCode(geoCoding) + System.identityHashCode(sourceProduct);
+            this.demNoDataValue = demNoDataValue;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof DelaunayWindow))
+                return false;
+            final DelaunayWindow w = (DelaunayWindow) o;
+            if (identityHash != w.identityHash || demNoDataValue != w.demNoDataValue ||
+                    x0 != w.x0 || y0 != w.y0 || width != w.width || height != w.height)
+                return false;
+            final GeoCoding gc = geoCoding.get();
+            final Product product = sourceProduct.get();
+            return gc != null && gc == w.geoCoding.get() && product != null && product == w.sourceProduct.get();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = identityHash;
+            result = 31 * result + x0;
+            result = 31 * result + y0;
+            result = 31 * result + width;
+            return 31 * result + height;
+        }
+    }
 }
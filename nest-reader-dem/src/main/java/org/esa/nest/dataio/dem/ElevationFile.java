@@ -18,6 +18,7 @@ package org.esa.nest.dataio.dem;
 import org.esa.beam.framework.dataio.ProductReader;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.util.io.FileUtils;
+import org.esa.beam.util.logging.BeamLogManager;
 import org.esa.beam.visat.VisatApp;
 import org.esa.nest.gpf.StatusProgressMonitor;
 import org.esa.nest.util.ResourceUtils;
@@ -42,10 +43,11 @@ public abstract class ElevationFile {
     protected boolean localFileExists = false;
     protected boolean remoteFileExists = true;
     private boolean errorInLocalFile = false;
-    private ElevationTile tile = null;
+    private volatile ElevationTile tile = null;
     private ftpUtils ftp = null;
     private Map<String, Long> fileSizeMap = null;
     private boolean unrecoverableError = false;
+    private static final boolean useMappedTileStore = isMappedTileStoreEnabled();
 
     public ElevationFile(final File localFile, final ProductReader reader) {
         this.localFile = localFile;
@@ -121,6 +123,12 @@ public abstract class ElevationFile {
     }
 
     private void getLocalFile() throws IOException {
+        final File mappedFile = useMappedTileStore ? getMappedTileFile() : null;
+        if(mappedFile != null && MappedElevationTile.isValid(mappedFile, localFile.exists() ? localFile : localZipFile)) {
+            tile = MappedElevationTile.open(mappedFile);
+            return;
+        }
+
         File dataFile = localFile;
         if(!dataFile.exists())
             dataFile = getFileFromZip(localZipFile);
@@ -128,10 +136,46 @@ public abstract class ElevationFile {
             final Product product = productReader.readProductNodes(dataFile, null);
             if(product != null) {
                 tile = createTile(product);
+                if(mappedFile != null && tile instanceof BaseElevationTile) {
+                    tile = convertToMappedTile(mappedFile, (BaseElevationTile) tile);
+                }
             }
         }
     }
 
+    private static boolean isMappedTileStoreEnabled() {
+        final String prop = System.getProperty("nest.dem.useMappedTileStore");
+        return prop != null && prop.equalsIgnoreCase("true");
+    }
+
+    /**
+     * The pre-decoded file of this tile in the DEM tile store. The folder name contains a hash of the
+     * folder of the DEM tile, so that tiles of different DEMs with the same file names do not collide.
+     * @return the file
+     */
+    private File getMappedTileFile() {
+        final String prop = System.getProperty("useDEMGravitationalModel");
+        final boolean useDEMGravitationalModel = prop != null && prop.equalsIgnoreCase("true");
+        final File storeDir = new File(ResourceUtils.getApplicationUserTempDataDir(), "DEMTileStore");
+        final File demFolder = localFile.getAbsoluteFile().getParentFile();
+        final File folder = new File(storeDir, demFolder.getName() + '_' + Integer.toHexString(demFolder.getPath().hashCode()));
+        return new File(folder, FileUtils.getFilenameWithoutExtension(localFile) +
+                (useDEMGravitationalModel ? "_egm" : "") + ".raw");
+    }
+
+    private static ElevationTile convertToMappedTile(final File mappedFile, final BaseElevationTile sourceTile) {
+        try {
+            final ElevationTile mappedTile = MappedElevationTile.create(mappedFile, sourceTile,
+                    sourceTile.getWidth(), sourceTile.getHeight());
+            sourceTile.dispose();
+            return mappedTile;
+        } catch(Exception e) {
+            BeamLogManager.getSystemLogger().warning("Unable to create DEM tile store file " +
+                    mappedFile.getAbsolutePath() + ": " + e.getMessage());
+            return sourceTile;
+        }
+    }
+
     protected abstract String getRemoteFTP();
 
     protected abstract String getRemotePath();
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import org.esa.beam.util.logging.BeamLogManager;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Size bounded cache of decoded DEM tile lines shared by all elevation models in the JVM.
+ * Tiles are keyed by DEM and tile file so that operators and threads working on the same area
+ * share the decoded elevations instead of reading the DEM tiles again.
+ * Reading a cached line is lock-free. When the memory limit is exceeded the lines of the
+ * least recently used tiles are released and the tiles are removed from the cache.
+ * Elevation tiles holding evicted tile data look up the current data of their tile again on the next miss.
+ */
+public final class ElevationTileCache {
+
+    private static final int DEFAULT_CACHE_SIZE_MB = 512;
+    private static final ElevationTileCache instance = new ElevationTileCache(getCacheSizeProperty() * 1024L * 1024L);
+
+    private final ConcurrentHashMap<String, TileData> tileMap = new ConcurrentHashMap<String, TileData>();
+    // tiles holding cached lines in least recently cached order, guarded by evictionLock
+    private final LinkedHashMap<String, TileData> lruMap = new LinkedHashMap<String, TileData>(16, 0.75f, true);
+    private final AtomicLong memoryUsed = new AtomicLong(0);
+    private final Object evictionLock = new Object();
+    private final long maxMemory;
+
+    ElevationTileCache(final long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public static ElevationTileCache instance() {
+        return instance;
+    }
+
+    private static int getCacheSizeProperty() {
+        final String prop = System.getProperty("nest.dem.tileCacheSizeMB");
+        if (prop != null) {
+            try {
+                return Integer.parseInt(prop.trim());
+            } catch (NumberFormatException e) {
+                BeamLogManager.getSystemLogger().warning("Invalid nest.dem.tileCacheSizeMB " + prop);
+            }
+        }
+        return DEFAULT_CACHE_SIZE_MB;
+    }
+
+    /**
+     * Creates the cache key of a DEM tile
+     * @param demName the name of the elevation model
+     * @param tileName a name identifying the tile within the elevation model, e.g. its file path
+     * @return the key
+     */
+    public static String createKey(final String demName, final String tileName) {
+        return demName + '|' + tileName;
+    }
+
+    /**
+     * Gets the shared line storage of a DEM tile, creating it if it is not yet cached
+     * @param key the tile key
+     * @param numLines the number of lines of the tile
+     * @return the tile data
+     */
+    public TileData getTileData(final String key, final int numLines) {
+        TileData data = tileMap.get(key);
+        if (data == null) {
+            final TileData newData = new TileData(this, key, numLines);
+            data = tileMap.putIfAbsent(key, newData);
+            if (data == null) {
+                data = newData;
+            }
+        }
+        return data;
+    }
+
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    int getTileCount() {
+        return tileMap.size();
+    }
+
+    public void clear() {
+        synchronized (evictionLock) {
+            for (TileData data : tileMap.values()) {
+                data.evict();
+            }
+            lruMap.clear();
+        }
+    }
+
+    private void touch(final TileData data) {
+        synchronized (evictionLock) {
+            if (!data.evicted) {
+                lruMap.put(data.key, data);
+            }
+        }
+    }
+
+    private void evict() {
+        synchronized (evictionLock) {
+            // tiles read since they were last cached get a second chance before they are evicted
+            int secondChances = lruMap.size();
+            while (memoryUsed.get() > maxMemory && !lruMap.isEmpty()) {
+                final TileData eldest = lruMap.values().iterator().next();
+                if (eldest.referenced && secondChances-- > 0) {
+                    eldest.referenced = false;
+                    lruMap.get(eldest.key);
+                    continue;
+                }
+                lruMap.remove(eldest.key);
+                eldest.evict();
+            }
+        }
+    }
+
+    /**
+     * Decoded lines of one DEM tile
+     */
+    public static final class TileData {
+
+        private final ElevationTileCache cache;
+        private final String key;
+        private final AtomicReferenceArray<float[]> lines;
+        private final AtomicLong memorySize = new AtomicLong(0);
+        private volatile boolean referenced;
+        private volatile boolean evicted;
+
+        private TileData(final ElevationTileCache cache, final String key, final int numLines) {
+            this.cache = cache;
+            this.key = key;
+            this.lines = new AtomicReferenceArray<float[]>(numLines);
+        }
+
+        public int getNumLines() {
+            return lines.length();
+        }
+
+        /**
+         * Gets a cached line
+         * @param index the line index
+         * @return the line or null if it is not cached
+         */
+        public float[] getLine(final int index) {
+            if (!referenced) {
+                referenced = true;
+            }
+            return lines.get(index);
+        }
+
+        /**
+         * Adds a decoded line. If another thread has already added the line, the existing line is kept.
+         * If the tile data has been evicted, the line is not cached.
+         * @param index the line index
+         * @param line the decoded line
+         * @return the cached line
+         */
+        public float[] putLine(final int index, final float[] line) {
+            if (evicted) {
+                return line;
+            }
+            if (lines.compareAndSet(index, null, line)) {
+                final long bytes = 4L * line.length;
+                memorySize.addAndGet(bytes);
+                cache.memoryUsed.addAndGet(bytes);
+                cache.touch(this);
+                // the tile may have been evicted concurrently after the line was added
+                if (evicted) {
+                    if (lines.compareAndSet(index, line, null)) {
+                        memorySize.addAndGet(-bytes);
+                        cache.memoryUsed.addAndGet(-bytes);
+                    }
+                    return line;
+                }
+                if (cache.memoryUsed.get() > cache.maxMemory) {
+                    cache.evict();
+                }
+                return line;
+            }
+            final float[] existing = lines.get(index);
+            return existing != null ? existing : line;
+        }
+
+        public long getMemorySize() {
+            return memorySize.get();
+        }
+
+        /**
+         * @return true if the tile data has been removed from the cache and the current data
+         *         of the tile has to be looked up again with {@link ElevationTileCache#getTileData}
+         */
+        public boolean isEvicted() {
+            return evicted;
+        }
+
+        private void evict() {
+            evicted = true;
+            cache.tileMap.remove(key, this);
+            for (int i = 0; i < lines.length(); ++i) {
+                final float[] line = lines.getAndSet(i, null);
+                if (line != null) {
+                    final long bytes = 4L * line.length;
+                    memorySize.addAndGet(-bytes);
+                    cache.memoryUsed.addAndGet(-bytes);
+                }
+            }
+        }
+    }
+}
@@ -112,6 +112,20 @@ public class FileElevationModel implements ElevationModel, Resampling.Raster {
         }
     }
 
+    public synchronized boolean getElevations(final double[] lat, final double[] lon, final double[] elevations)
+            throws Exception {
+        final GeoPos geoPos = new GeoPos();
+        boolean valid = false;
+        for (int i = 0; i < elevations.length; ++i) {
+            geoPos.setLocation((float)lat[i], (float)lon[i]);
+            elevations[i] = getElevation(geoPos);
+            if (elevations[i] != noDataValue) {
+                valid = true;
+            }
+        }
+        return valid;
+    }
+
     public PixelPos getIndex(final GeoPos geoPos) {
         return tileGeocoding.getPixelPos(geoPos, null);
     }
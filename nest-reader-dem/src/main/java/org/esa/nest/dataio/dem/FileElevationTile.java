@@ -16,41 +16,67 @@
 package org.esa.nest.dataio.dem;
 
 import com.bc.ceres.core.ProgressMonitor;
-import com.bc.util.CachingObjectArray;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 class FileElevationTile {
 
-    private CachingObjectArray linesCache;
+    private static final String EXTERNAL_DEM = "External DEM";
+
     private Product product;
-    private static final int maxLines = 500;
-    private final List<Integer> indexList = new ArrayList<Integer>(maxLines);
+    private final Band band;
+    private final int width;
+    private final String cacheKey;
+    private volatile ElevationTileCache.TileData tileData;
 
     public FileElevationTile(final Product product) {
         this.product = product;
+        this.band = product.getBandAt(0);
+        this.width = product.getSceneRasterWidth();
 
-        linesCache = new CachingObjectArray(getLineFactory());
-        linesCache.setCachedRange(0, product.getBandAt(0).getSceneRasterHeight());
+        // the file modification time is part of the key so that an edited DEM file is not served from the cache
+        final File file = product.getFileLocation();
+        final String tileName = file != null ? file.getAbsolutePath() + '@' + file.lastModified() : product.getName();
+        cacheKey = ElevationTileCache.createKey(EXTERNAL_DEM, tileName);
+        tileData = getTileData();
+    }
+
+    private ElevationTileCache.TileData getTileData() {
+        ElevationTileCache.TileData data = tileData;
+        if (data == null || data.isEvicted()) {
+            // the lines have been evicted, continue with the current data of the tile
+            data = ElevationTileCache.instance().getTileData(cacheKey, band.getSceneRasterHeight());
+            tileData = data;
+        }
+        return data;
     }
 
     public float getSample(int pixelX, int pixelY) throws IOException {
-        final float[] line;
-        try {
-            line = (float[]) linesCache.getObject(pixelY);
-        } catch (Exception e) {
-            throw convertLineCacheException(e);
+        final ElevationTileCache.TileData data = tileData;
+        float[] line = data != null ? data.getLine(pixelY) : null;
+        if (line == null) {
+            line = readLine(pixelY);
         }
         return line[pixelX];
     }
 
+    private float[] readLine(final int pixelY) throws IOException {
+        final ElevationTileCache.TileData data = getTileData();
+        synchronized (data) {
+            float[] line = data.getLine(pixelY);
+            if (line == null) {
+                line = band.readPixels(0, pixelY, width, 1, new float[width], ProgressMonitor.NULL);
+                line = data.putLine(pixelY, line);
+            }
+            return line;
+        }
+    }
+
     public void dispose() {
-        clearCache();
-        linesCache = null;
+        tileData = null;
         if (product != null) {
             product.dispose();
             product = null;
@@ -58,38 +84,7 @@ class FileElevationTile {
     }
 
     public void clearCache() {
-        linesCache.clear();
-    }
-
-    private CachingObjectArray.ObjectFactory getLineFactory() {
-        final Band band = product.getBandAt(0);
-        final int width = product.getSceneRasterWidth();
-        return new CachingObjectArray.ObjectFactory() {
-            public Object createObject(final int index) throws Exception {
-                updateCache(index);
-                return band.readPixels(0, index, width, 1, new float[width], ProgressMonitor.NULL);
-            }
-        };
-    }
-
-     private void updateCache(int index) {
-        indexList.remove((Object)index);
-        indexList.add(0, index);
-        if (indexList.size() > maxLines) {
-            final int i = indexList.size() - 1;
-            linesCache.setObject(i, null);
-            indexList.remove(i);
-        }
-    }
-
-    private static IOException convertLineCacheException(Exception e) {
-        IOException ioe;
-        if (e instanceof IOException) {
-            ioe = (IOException) e;
-        } else {
-            ioe = new IOException();
-            ioe.setStackTrace(e.getStackTrace());
-        }
-        return ioe;
+        // the shared lines are evicted by the cache, only the reference is released
+        tileData = null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Elevation tile served from a pre-decoded raw float32 file through a MappedByteBuffer.
+ * The file is created on first use of a DEM tile so that later sessions skip the product
+ * reader, unzipping and GeoTIFF decoding altogether.
+ * <p>File layout (little endian): 8 byte magic, int width, int height, then width*height float32 samples.</p>
+ */
+public final class MappedElevationTile implements ElevationTile {
+
+    private static final byte[] MAGIC = {'N', 'E', 'S', 'T', 'D', 'E', 'M', '1'};
+    static final int HEADER_SIZE = MAGIC.length + 8;
+
+    private MappedByteBuffer buffer;
+    private final int width;
+    private final int height;
+
+    private MappedElevationTile(final MappedByteBuffer buffer, final int width, final int height) {
+        this.buffer = buffer;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getSample(final int pixelX, final int pixelY) throws Exception {
+        return buffer.getFloat(HEADER_SIZE + ((pixelY * width + pixelX) << 2));
+    }
+
+    public void clearCache() {
+        // pages are managed by the operating system
+    }
+
+    public void dispose() {
+        buffer = null;
+    }
+
+    /**
+     * Checks if a pre-decoded file exists, is complete and is not older than its source DEM file
+     * @param mappedFile the pre-decoded file
+     * @param sourceFile the original DEM tile file
+     * @return true if the file can be mapped
+     */
+    public static boolean isValid(final File mappedFile, final File sourceFile) {
+        if (!mappedFile.isFile())
+            return false;
+        if (sourceFile != null && sourceFile.exists() && sourceFile.lastModified() > mappedFile.lastModified())
+            return false;
+
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(mappedFile, "r");
+            try {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                raf.getChannel().read(header, 0);
+                if (header.position() != HEADER_SIZE)
+                    return false;
+                for (int i = 0; i < MAGIC.length; ++i) {
+                    if (header.get(i) != MAGIC[i])
+                        return false;
+                }
+                final long w = header.getInt(MAGIC.length);
+                final long h = header.getInt(MAGIC.length + 4);
+                return w > 0 && h > 0 && raf.length() == HEADER_SIZE + w * h * 4L;
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Maps an existing pre-decoded file
+     * @param mappedFile the pre-decoded file
+     * @return the tile
+     * @throws IOException on read error
+     */
+    public static MappedElevationTile open(final File mappedFile) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mappedFile, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            final int w = buffer.getInt(MAGIC.length);
+            final int h = buffer.getInt(MAGIC.length + 4);
+            return new MappedElevationTile(buffer, w, h);
+        } finally {
+            raf.close();        // the mapping remains valid after the channel is closed
+        }
+    }
+
+    /**
+     * Decodes all lines of a tile into a pre-decoded file and maps it.
+     * The file is written to a unique temporary file first and then renamed atomically, so that an interrupted
+     * conversion is never mapped and processes converting the same tile concurrently do not write to the same file.
+     * @param mappedFile the pre-decoded file to create
+     * @param sourceTile the tile read through its product reader
+     * @param width the tile width
+     * @param height the tile height
+     * @return the mapped tile
+     * @throws Exception on read or write error
+     */
+    public static MappedElevationTile create(final File mappedFile, final BaseElevationTile sourceTile,
+                                             final int width, final int height) throws Exception {
+        final File folder = mappedFile.getParentFile();
+        if (!folder.exists() && !folder.mkdirs())
+            throw new IOException("Unable to create " + folder.getAbsolutePath());
+
+        final File tmpFile = File.createTempFile(mappedFile.getName(), ".tmp", folder);
+        try {
+            write(tmpFile, sourceTile, width, height);
+        } catch (Exception e) {
+            tmpFile.delete();
+            throw e;
+        }
+        try {
+            Files.move(tmpFile.toPath(), mappedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tmpFile.delete();
+            // another process may have just created the file and this platform does not replace it
+            if (!isValid(mappedFile, null))
+                throw e;
+        }
+        return open(mappedFile);
+    }
+
+    private static void write(final File file, final BaseElevationTile sourceTile,
+                              final int width, final int height) throws Exception {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(width).putInt(height);
+            header.flip();
+            channel.write(header);
+
+            final ByteBuffer lineBuffer = ByteBuffer.allocateDirect(width * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int y = 0; y < height; ++y) {
+                final float[] line = sourceTile.readLineUncached(y);
+                lineBuffer.clear();
+                lineBuffer.asFloatBuffer().put(line, 0, width);
+                lineBuffer.limit(width * 4);
+                while (lineBuffer.hasRemaining()) {
+                    channel.write(lineBuffer);
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+}
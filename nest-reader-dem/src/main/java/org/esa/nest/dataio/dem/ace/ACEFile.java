@@ -46,9 +46,7 @@ public final class ACEFile extends ElevationFile {
     }
 
     protected ElevationTile createTile(final Product product) {
-        final ACEElevationTile tile = new ACEElevationTile(demModel, product);
-        demModel.updateCache(tile);
-        return tile;
+        return new ACEElevationTile(demModel, product);
     }
 
     protected boolean getRemoteFile() throws IOException{
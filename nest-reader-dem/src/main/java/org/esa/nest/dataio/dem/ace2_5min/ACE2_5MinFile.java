@@ -47,9 +47,7 @@ public final class ACE2_5MinFile extends ElevationFile {
     }
 
     protected ElevationTile createTile(final Product product) {
-        final ElevationTile tile = new BaseElevationTile(demModel, product);
-        demModel.updateCache(tile);
-        return tile;
+        return new BaseElevationTile(demModel, product);
     }
 
     protected boolean getRemoteFile() throws IOException{
@@ -35,8 +35,6 @@ public final class AsterElevationModel extends BaseElevationModel {
         super(descriptor, resamplingMethod);
 
         unpackTileBundles();
-
-        setMaxCacheSize(12);
     }
 
     @Override
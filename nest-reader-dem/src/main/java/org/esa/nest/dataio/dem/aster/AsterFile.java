@@ -50,9 +50,7 @@ public final class AsterFile extends ElevationFile {
     }
 
     protected ElevationTile createTile(final Product product) {
-        final AsterElevationTile tile = new AsterElevationTile(demModel, product);
-        demModel.updateCache(tile);
-        return tile;
+        return new AsterElevationTile(demModel, product);
     }
 
     protected boolean findLocalFile() {
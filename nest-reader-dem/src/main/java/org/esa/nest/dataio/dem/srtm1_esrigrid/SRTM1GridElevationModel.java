@@ -30,8 +30,6 @@ public final class SRTM1GridElevationModel extends BaseElevationModel {
 
     public SRTM1GridElevationModel(final SRTM1GridElevationModelDescriptor descriptor, final Resampling resamplingMethod) {
         super(descriptor, resamplingMethod);
-
-        setMaxCacheSize(12);
     }
 
     @Override
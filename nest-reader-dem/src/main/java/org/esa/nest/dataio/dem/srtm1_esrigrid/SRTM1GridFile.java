@@ -47,9 +47,7 @@ public final class SRTM1GridFile extends ElevationFile {
     }
 
     protected ElevationTile createTile(final Product product) {
-        final SRTM1GridElevationTile tile = new SRTM1GridElevationTile(demModel, product);
-        demModel.updateCache(tile);
-        return tile;
+        return new SRTM1GridElevationTile(demModel, product);
     }
 
     protected boolean getRemoteFile() throws IOException {
@@ -50,9 +50,7 @@ public final class SRTM3GeoTiffFile extends ElevationFile {
     }
 
     protected ElevationTile createTile(final Product product) {
-        final SRTM3GeoTiffElevationTile tile = new SRTM3GeoTiffElevationTile(demModel, product);
-        demModel.updateCache(tile);
-        return tile;
+        return new SRTM3GeoTiffElevationTile(demModel, product);
     }
 
     protected boolean getRemoteFile() throws IOException {
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import junit.framework.TestCase;
+
+public class TestElevationTileCache extends TestCase {
+
+    public void testSharedTileData() {
+        final ElevationTileCache cache = new ElevationTileCache(1024 * 1024);
+        final String key = ElevationTileCache.createKey("SRTM 3Sec", "srtm_38_03.tif");
+
+        final ElevationTileCache.TileData data1 = cache.getTileData(key, 10);
+        final ElevationTileCache.TileData data2 = cache.getTileData(key, 10);
+        assertSame(data1, data2);
+        assertNotSame(data1, cache.getTileData(ElevationTileCache.createKey("ACE", "srtm_38_03.tif"), 10));
+
+        final float[] line = new float[100];
+        assertSame(line, data1.putLine(3, line));
+        assertSame(line, data2.getLine(3));
+        assertSame(line, data2.putLine(3, new float[100]));
+        assertNull(data2.getLine(4));
+        assertEquals(400, cache.getMemoryUsed());
+
+        cache.clear();
+        assertEquals(0, cache.getMemoryUsed());
+        assertNull(data1.getLine(3));
+        assertTrue(data1.isEvicted());
+        assertNotSame(data1, cache.getTileData(key, 10));
+    }
+
+    public void testEvictLeastRecentlyUsed() {
+        final ElevationTileCache cache = new ElevationTileCache(2 * 4 * 100);
+
+        final ElevationTileCache.TileData data1 = cache.getTileData("tile1", 2);
+        final ElevationTileCache.TileData data2 = cache.getTileData("tile2", 2);
+        data1.putLine(0, new float[100]);
+        data2.putLine(0, new float[100]);
+        assertEquals(800, cache.getMemoryUsed());
+
+        data1.getLine(0);
+        data1.putLine(1, new float[100]);
+
+        assertTrue(cache.getMemoryUsed() <= cache.getMaxMemory());
+        assertNotNull(data1.getLine(0));
+        assertNotNull(data1.getLine(1));
+        assertNull(data2.getLine(0));
+    }
+
+    public void testReferencedTilesGetSecondChance() {
+        final ElevationTileCache cache = new ElevationTileCache(2 * 4 * 100);
+
+        final ElevationTileCache.TileData data1 = cache.getTileData("tile1", 1);
+        final ElevationTileCache.TileData data2 = cache.getTileData("tile2", 1);
+        data1.putLine(0, new float[100]);
+        data2.putLine(0, new float[100]);
+
+        // tile1 was cached first but has been read since
+        assertNotNull(data1.getLine(0));
+        cache.getTileData("tile3", 1).putLine(0, new float[100]);
+
+        assertEquals(800, cache.getMemoryUsed());
+        assertNotNull(data1.getLine(0));
+        assertTrue(data2.isEvicted());
+        assertFalse(data1.isEvicted());
+    }
+
+    public void testCachingResumesAfterEviction() {
+        final ElevationTileCache cache = new ElevationTileCache(2 * 4 * 100);
+
+        final ElevationTileCache.TileData data1 = cache.getTileData("tile1", 2);
+        data1.putLine(0, new float[100]);
+        cache.clear();
+        assertEquals(0, cache.getTileCount());
+        assertEquals(0, cache.getMemoryUsed());
+        assertTrue(data1.isEvicted());
+
+        // evicted data does not cache lines
+        final float[] line = new float[100];
+        assertSame(line, data1.putLine(1, line));
+        assertNull(data1.getLine(1));
+        assertEquals(0, cache.getTileCount());
+        assertEquals(0, cache.getMemoryUsed());
+
+        // the current data of the tile caches lines again
+        final ElevationTileCache.TileData data3 = cache.getTileData("tile1", 2);
+        assertNotSame(data1, data3);
+        assertSame(line, data3.putLine(1, line));
+        assertEquals(400, data3.getMemorySize());
+        assertEquals(400, cache.getMemoryUsed());
+
+        final ElevationTileCache.TileData data2 = cache.getTileData("tile2", 2);
+        data2.putLine(0, new float[100]);
+        data2.putLine(1, new float[100]);
+        assertTrue(cache.getMemoryUsed() <= cache.getMaxMemory());
+        assertTrue(data3.isEvicted());
+        assertNull(data3.getLine(1));
+        assertEquals(1, cache.getTileCount());
+    }
+}
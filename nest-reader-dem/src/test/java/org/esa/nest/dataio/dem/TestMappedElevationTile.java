@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class TestMappedElevationTile extends TestCase {
+
+    private File file;
+
+    protected void setUp() throws Exception {
+        file = File.createTempFile("dem", ".raw");
+    }
+
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testReadSamples() throws Exception {
+        final int w = 3, h = 2;
+        writeFile(w, h, w * h);
+
+        assertTrue(MappedElevationTile.isValid(file, null));
+
+        final MappedElevationTile tile = MappedElevationTile.open(file);
+        assertEquals(w, tile.getWidth());
+        assertEquals(h, tile.getHeight());
+        assertEquals(0.0f, tile.getSample(0, 0));
+        assertEquals(2.5f, tile.getSample(2, 0));
+        assertEquals(12.5f, tile.getSample(2, 1));
+        tile.dispose();
+    }
+
+    public void testIncompleteFile() throws Exception {
+        writeFile(3, 2, 5);
+        assertFalse(MappedElevationTile.isValid(file, null));
+        assertFalse(MappedElevationTile.isValid(new File(file.getParentFile(), "doesnotexist.raw"), null));
+    }
+
+    private void writeFile(final int w, final int h, final int numSamples) throws Exception {
+        final ByteBuffer buf = ByteBuffer.allocate(MappedElevationTile.HEADER_SIZE + numSamples * 4);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.put("NESTDEM1".getBytes("US-ASCII")).putInt(w).putInt(h);
+        for (int i = 0; i < numSamples; ++i) {
+            buf.putFloat(i * (i < w ? 1.25f : 2.5f));
+        }
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buf.array());
+        } finally {
+            out.close();
+        }
+    }
+}